@@ -0,0 +1,77 @@
+package webcrawler.jmh;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Collecting the links of one page, as {@code CrawlerService.crawl} does: the length-ordered
+ * {@link ConcurrentSkipListSet} it uses, against a hash set and a plain list, for a typical and a
+ * link-heavy page. Each invocation builds the collection for a whole page.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ExtractedUrlSetBenchmark {
+
+    @Param({"50", "300"})
+    public int links;
+
+    private String[] urls;
+
+    @Setup(Level.Trial)
+    public void generate() {
+        List<String> corpus = UrlCorpus.generate(links, 4);
+        urls = corpus.toArray(new String[0]);
+    }
+
+    @Benchmark
+    public Collection<String> skipListSet() {
+        // the comparator of CrawlerService.newExtractedUrlSet
+        ConcurrentSkipListSet<String> set = new ConcurrentSkipListSet<>((url1, url2) -> {
+            int lengthComparison = Integer.compare(url1.length(), url2.length());
+            return lengthComparison != 0 ? lengthComparison : url1.compareTo(url2);
+        });
+        for (String url : urls) {
+            set.add(url);
+        }
+        return set;
+    }
+
+    @Benchmark
+    public Collection<String> concurrentHashSet() {
+        Collection<String> set = ConcurrentHashMap.newKeySet();
+        for (String url : urls) {
+            set.add(url);
+        }
+        return set;
+    }
+
+    @Benchmark
+    public Collection<String> arrayList() {
+        List<String> list = new ArrayList<>();
+        for (String url : urls) {
+            list.add(url);
+        }
+        return list;
+    }
+}
@@ -0,0 +1,110 @@
+package webcrawler.jmh;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import webcrawler.frontier.BucketedFrontier;
+import webcrawler.frontier.Frontier;
+import webcrawler.frontier.PriorityFrontier;
+import webcrawler.frontier.PriorityPolicy;
+import webcrawler.frontier.UrlDepthPair;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One take and one offer of a {@link UrlDepthPair} on a frontier holding {@code queued} distinct
+ * URLs, the steady state of a crawl. The URL taken is offered again with a new depth, so both
+ * frontiers keep their size whatever their duplicate handling.
+ * {@code priorityFrontier} is the {@code PriorityQueue} ordered by {@link UrlDepthPair#compareTo}
+ * behind one lock; {@code bucketedFrontier} is the lock-free {@link BucketedFrontier} with the
+ * same breadth-first order. The {@code *Contended} variants run
+ * 8 threads, like the crawler's consumers and fetch callbacks.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FrontierBenchmark {
+
+    @Param({"1000", "100000"})
+    public int queued;
+
+    private String[] urls;
+    private Frontier priority;
+    private Frontier bucketed;
+
+    @Setup(Level.Trial)
+    public void fill() {
+        List<String> corpus = UrlCorpus.generate(queued, 3);
+        urls = new String[queued];
+        for (int i = 0; i < queued; i++) {
+            // unique, the bucketed frontier rejects URLs already queued
+            urls[i] = corpus.get(i) + "/" + i;
+        }
+        priority = new PriorityFrontier();
+        bucketed = new BucketedFrontier(PriorityPolicy.breadthFirst());
+        for (int i = 0; i < queued; i++) {
+            priority.offer(new UrlDepthPair(urls[i], depth(i)));
+            bucketed.offer(new UrlDepthPair(urls[i], depth(i)));
+        }
+    }
+
+    /**
+     * Depths as in a crawl of depth 4: few seeds, most URLs found at depth 2 and 3
+     */
+    private static int depth(int i) {
+        int spread = i % 16;
+        return spread == 0 ? 1 : spread < 7 ? 2 : spread < 14 ? 3 : 4;
+    }
+
+    private static UrlDepthPair takeAndOffer(Frontier frontier, Cursor cursor) throws InterruptedException {
+        UrlDepthPair taken = frontier.take();
+        frontier.offer(new UrlDepthPair(taken.getUrl(), depth(cursor.next())));
+        return taken;
+    }
+
+    @Benchmark
+    public UrlDepthPair priorityFrontier(Cursor cursor) throws InterruptedException {
+        return takeAndOffer(priority, cursor);
+    }
+
+    @Benchmark
+    @Threads(8)
+    public UrlDepthPair priorityFrontierContended(Cursor cursor) throws InterruptedException {
+        return takeAndOffer(priority, cursor);
+    }
+
+    @Benchmark
+    public UrlDepthPair bucketedFrontier(Cursor cursor) throws InterruptedException {
+        return takeAndOffer(bucketed, cursor);
+    }
+
+    @Benchmark
+    @Threads(8)
+    public UrlDepthPair bucketedFrontierContended(Cursor cursor) throws InterruptedException {
+        return takeAndOffer(bucketed, cursor);
+    }
+
+    @State(Scope.Thread)
+    public static class Cursor {
+        private int index = (int) Thread.currentThread().threadId() * 4099;
+
+        int next() {
+            index += 7919;
+            return index & Integer.MAX_VALUE;
+        }
+    }
+}
@@ -0,0 +1,128 @@
+package webcrawler.jmh;
+
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+import org.jsoup.nodes.Element;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import webcrawler.util.StreamingLinkExtractor;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * DOM vs streaming title/link extraction over a corpus of HTML pages.
+ * <p>
+ * Point {@code -Dcorpus.dir=...} at a directory of saved pages (*.html, *.htm); without it a
+ * generated corpus of link-heavy pages is used. Run with {@code -prof gc} to compare allocation per page.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(java.util.concurrent.TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LinkExtractionBenchmark {
+
+    private static final String BASE = "https://example.com/dir/index.html";
+
+    private final List<byte[]> pages = new ArrayList<>();
+    private final StreamingLinkExtractor extractor = new StreamingLinkExtractor();
+    private int next;
+
+    @Setup(Level.Trial)
+    public void loadCorpus() throws IOException {
+        String dir = System.getProperty("corpus.dir");
+        if (dir != null) {
+            try (Stream<Path> files = Files.list(Paths.get(dir))) {
+                for (Path file : (Iterable<Path>) files.sorted()::iterator) {
+                    String name = file.getFileName().toString().toLowerCase();
+                    if (name.endsWith(".html") || name.endsWith(".htm")) pages.add(Files.readAllBytes(file));
+                }
+            }
+        }
+        if (pages.isEmpty()) {
+            for (int i = 0; i < 32; i++) pages.add(generatePage(i).getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    private byte[] nextPage() {
+        byte[] page = pages.get(next);
+        next = (next + 1) % pages.size();
+        return page;
+    }
+
+    /**
+     * The original path: parse into a Document and select a[href].
+     */
+    @Benchmark
+    public void dom(Blackhole blackhole) throws IOException {
+        Document document = Jsoup.parse(new ByteArrayInputStream(nextPage()), "UTF-8", BASE);
+        blackhole.consume(document.title());
+        for (Element link : document.select("a[href]")) {
+            blackhole.consume(link.attr("abs:href"));
+        }
+    }
+
+    /**
+     * Single pass over the bytes, no DOM.
+     */
+    @Benchmark
+    public void streaming(Blackhole blackhole) throws IOException {
+        extractor.extract(new ByteArrayInputStream(nextPage()), BASE, new StreamingLinkExtractor.Handler() {
+            @Override
+            public void onTitle(String title) {
+                blackhole.consume(title);
+            }
+
+            @Override
+            public void onLink(String absoluteUrl) {
+                blackhole.consume(absoluteUrl);
+            }
+        });
+    }
+
+    /**
+     * A page of roughly 60KB: nested markup, inline script and style, and a few hundred links.
+     */
+    private static String generatePage(int seed) {
+        StringBuilder sb = new StringBuilder(64 * 1024);
+        sb.append("<!DOCTYPE html><html><head><meta charset=\"utf-8\"><title>Generated page ")
+                .append(seed).append(" &amp; friends</title>")
+                .append("<style>body{font-family:sans-serif}a[href]{color:#06c}</style>")
+                .append("<script>var links = document.querySelectorAll('a'); if (links.length < 3) {}</script>")
+                .append("</head><body>");
+        for (int section = 0; section < 20; section++) {
+            sb.append("<div class=\"section\" id=\"s").append(section).append("\"><h2>Section ")
+                    .append(section).append("</h2><ul>");
+            for (int i = 0; i < 15; i++) {
+                int target = (seed * 31 + section * 15 + i) % 1000;
+                sb.append("<li class=\"item\"><a href=\"")
+                        .append(i % 3 == 0 ? "/articles/" : i % 3 == 1 ? "../docs/" : "https://other.org/p/")
+                        .append(target).append(".html?ref=").append(seed).append("&amp;i=").append(i)
+                        .append("\" title=\"Item ").append(target).append("\">Item ").append(target)
+                        .append("</a> <span>lorem ipsum dolor sit amet, consectetur adipiscing elit</span></li>");
+            }
+            sb.append("</ul><p>Sed do eiusmod tempor incididunt ut labore et dolore magna aliqua. ")
+                    .append("<!-- comment with <a href=\"/hidden\">markup</a> --></p></div>");
+        }
+        return sb.append("</body></html>").toString();
+    }
+}
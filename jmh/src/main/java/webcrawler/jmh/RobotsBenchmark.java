@@ -0,0 +1,86 @@
+package webcrawler.jmh;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import webcrawler.robots.RobotsCache;
+import webcrawler.robots.RobotsRules;
+
+import java.net.http.HttpClient;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The robots.txt check on the enqueue path of {@code ParallelCrawler}: {@link RobotsRules#isAllowed}
+ * on compiled rules, and {@link RobotsCache#isAllowedIfKnown} with the host lookup, for
+ * {@link UrlCorpus} URLs against a robots.txt of 60 rules, a third of them with wildcards.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RobotsBenchmark {
+
+    private static final String[] WORDS = {"account", "search", "print", "cart", "admin", "tmp", "api", "login",
+            "export", "preview", "draft", "archive", "feed", "share", "compare", "filter", "sort", "session",
+            "checkout", "wishlist"};
+
+    private String[] urls;
+    private RobotsRules rules;
+    private RobotsCache cache;
+
+    @Setup(Level.Trial)
+    public void compile() {
+        StringBuilder robots = new StringBuilder("User-agent: *\n");
+        for (String word : WORDS) {
+            robots.append("Disallow: /").append(word).append("/\n");
+            robots.append("Allow: /").append(word).append("/public\n");
+            robots.append("Disallow: /*?").append(word).append("=*\n");
+        }
+        rules = RobotsRules.parse(robots.toString(), "webcrawler");
+        List<String> corpus = UrlCorpus.generate(1 << 14, 5);
+        urls = corpus.toArray(new String[0]);
+        // every corpus host gets these rules, nothing is fetched
+        cache = new RobotsCache(HttpClient.newHttpClient(), "webcrawler", RobotsCache.DEFAULT_TTL, 100_000);
+        for (String url : urls) {
+            cache.put(url, rules);
+        }
+    }
+
+    @Benchmark
+    public boolean rules(Cursor cursor) {
+        return rules.isAllowed(urls[cursor.next(urls.length)]);
+    }
+
+    @Benchmark
+    public boolean cache(Cursor cursor) {
+        return cache.isAllowedIfKnown(urls[cursor.next(urls.length)]);
+    }
+
+    @Benchmark
+    @Threads(8)
+    public boolean cacheContended(Cursor cursor) {
+        return cache.isAllowedIfKnown(urls[cursor.next(urls.length)]);
+    }
+
+    @State(Scope.Thread)
+    public static class Cursor {
+        private int index;
+
+        int next(int length) {
+            index = (index + 1) & (length - 1);
+            return index;
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package webcrawler.jmh;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * Absolute URLs shaped like the links the crawler extracts from cfainstitute.org pages: most stay on
+ * the site, hosts of off-site links follow a Zipf distribution, and a share carries query strings,
+ * fragments, upper case, trailing slashes, file extensions or words the default filter rejects.
+ */
+final class UrlCorpus {
+
+    private static final String[] SITE_HOSTS = {"www.cfainstitute.org", "cfainstitute.org", "rpc.cfainstitute.org",
+            "blogs.cfainstitute.org", "my.cfainstitute.org"};
+    private static final String[] WORDS = {"insights", "professional-learning", "research", "programs", "cfa",
+            "about", "press-releases", "events", "foundation", "membership", "ethics", "standards", "articles",
+            "2024", "financial-analysts-journal", "podcast", "en", "topics", "esg-investing", "careers"};
+    private static final String[] EXTENSIONS = {"", "", "", "", "", "", ".html", ".aspx", ".pdf", ".mp4"};
+
+    private UrlCorpus() {
+    }
+
+    /**
+     * @param count number of URLs
+     * @param seed  seed, the same seed gives the same URLs
+     * @return URLs, with duplicates as on real pages
+     */
+    static List<String> generate(int count, long seed) {
+        SplittableRandom random = new SplittableRandom(seed);
+        List<String> urls = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            StringBuilder url = new StringBuilder(96);
+            url.append(random.nextInt(10) == 0 ? "http://" : "https://");
+            if (random.nextInt(4) > 0) {
+                url.append(SITE_HOSTS[random.nextInt(SITE_HOSTS.length)]);
+            } else {
+                // Zipf-like: a few off-site hosts are linked very often
+                int host = (int) (200 * Math.pow(random.nextDouble(), 3));
+                url.append(random.nextInt(2) == 0 ? "www." : "").append("site").append(host).append(".com");
+            }
+            if (random.nextInt(20) == 0) url.setCharAt(url.indexOf("//") + 2, 'W');
+            int segments = 1 + random.nextInt(5);
+            for (int s = 0; s < segments; s++) {
+                url.append('/').append(WORDS[random.nextInt(WORDS.length)]);
+            }
+            if (random.nextInt(50) == 0) url.append("/account");
+            url.append(EXTENSIONS[random.nextInt(EXTENSIONS.length)]);
+            if (random.nextInt(3) == 0) url.append('/');
+            if (random.nextInt(10) == 0) url.append("?utm_source=newsletter&id=").append(random.nextInt(10_000));
+            if (random.nextInt(20) == 0) url.append("#section-").append(random.nextInt(10));
+            urls.add(url.toString());
+        }
+        return urls;
+    }
+}
@@ -0,0 +1,87 @@
+package webcrawler.jmh;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import webcrawler.url.UrlFilter;
+import webcrawler.url.UrlFilterRules;
+import webcrawler.url.UrlNormalizer;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The per-link checks of {@code CrawlerService.addLink}: normalizing and {@code isValidUrl}, which
+ * delegates to {@link UrlFilter#accept}, over a {@link UrlCorpus} with the default filter rules.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class UrlFilterBenchmark {
+
+    private final UrlFilter filter = new UrlFilter(UrlFilterRules.defaults());
+    private final UrlNormalizer normalizer = new UrlNormalizer();
+    private String[] urls;
+    private String[] normalized;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void generate() {
+        List<String> corpus = UrlCorpus.generate(1 << 14, 1);
+        urls = corpus.toArray(new String[0]);
+        normalized = new String[urls.length];
+        for (int i = 0; i < urls.length; i++) {
+            normalized[i] = normalizer.normalize(urls[i]);
+        }
+    }
+
+    private int nextIndex() {
+        next = (next + 1) & (urls.length - 1);
+        return next;
+    }
+
+    @Benchmark
+    public boolean accept() {
+        return filter.accept(normalized[nextIndex()]);
+    }
+
+    @Benchmark
+    public String normalize() {
+        return normalizer.normalize(urls[nextIndex()]);
+    }
+
+    /**
+     * What every extracted link goes through before the visited set
+     */
+    @Benchmark
+    public boolean normalizeAndAccept() {
+        return filter.accept(normalizer.normalize(urls[nextIndex()]));
+    }
+
+    /**
+     * Same with every fetch thread filtering at once; the filter and normalizer are shared, as in the crawler
+     */
+    @Benchmark
+    @Threads(8)
+    public boolean normalizeAndAcceptContended(SharedFilter shared) {
+        return shared.filter.accept(shared.normalizer.normalize(urls[nextIndex()]));
+    }
+
+    @State(Scope.Benchmark)
+    public static class SharedFilter {
+        final UrlFilter filter = new UrlFilter(UrlFilterRules.defaults());
+        final UrlNormalizer normalizer = new UrlNormalizer();
+    }
+}
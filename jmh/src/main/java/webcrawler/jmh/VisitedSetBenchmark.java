@@ -0,0 +1,154 @@
+package webcrawler.jmh;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import webcrawler.dedup.ConcurrentFingerprintSet;
+import webcrawler.url.UrlNormalizer;
+
+import java.util.List;
+import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@code visitedUrls.add} as called for every valid extracted link, on the shared set.
+ * <p>
+ * Most links of a page were seen before, so {@code addSeen*} (URL hashed, already in the set) is the
+ * common case. {@code addNew*} inserts a fixed batch of {@value #NEW_BATCH} fresh fingerprints into a
+ * set half full of {@code visited} entries, rebuilt every iteration; it runs as a single shot per
+ * iteration so the set never outgrows its size and the score is the time of one insert. The
+ * {@code *Contended} variants run 8 threads on one set. {@code concurrentHashSet*} is the
+ * {@code ConcurrentHashMap.newKeySet()} of URL strings the crawler used before.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class VisitedSetBenchmark {
+
+    static final int NEW_BATCH = 50_000;
+    private static final int THREADS = 8;
+
+    @Param({"100000", "1000000"})
+    public int visited;
+
+    private String[] urls;
+    private ConcurrentFingerprintSet seenSet;
+    private Set<String> seenStrings;
+    private ConcurrentFingerprintSet newSet;
+
+    @Setup(Level.Trial)
+    public void fill() {
+        UrlNormalizer normalizer = new UrlNormalizer();
+        List<String> corpus = UrlCorpus.generate(visited, 2);
+        urls = new String[visited];
+        seenSet = new ConcurrentFingerprintSet(visited);
+        seenStrings = ConcurrentHashMap.newKeySet(visited);
+        for (int i = 0; i < visited; i++) {
+            // unique, so the sets hold exactly visited entries
+            urls[i] = normalizer.normalize(corpus.get(i)) + "/" + i;
+            seenSet.add(urls[i]);
+            seenStrings.add(urls[i]);
+        }
+    }
+
+    @Setup(Level.Iteration)
+    public void halfFullNewSet() {
+        newSet = new ConcurrentFingerprintSet(visited);
+        SplittableRandom random = new SplittableRandom();
+        for (int i = 0; i < visited / 2; i++) {
+            newSet.add(Cursor.fingerprint(random));
+        }
+    }
+
+    @Benchmark
+    public boolean addSeen(Cursor cursor) {
+        return seenSet.add(urls[cursor.next(visited)]);
+    }
+
+    @Benchmark
+    @Threads(8)
+    public boolean addSeenContended(Cursor cursor) {
+        return seenSet.add(urls[cursor.next(visited)]);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @Warmup(iterations = 20)
+    @Measurement(iterations = 50)
+    @OperationsPerInvocation(NEW_BATCH)
+    public int addNew(Cursor cursor) {
+        return addAll(cursor.fresh, NEW_BATCH);
+    }
+
+    @Benchmark
+    @Threads(THREADS)
+    @BenchmarkMode(Mode.SingleShotTime)
+    @Warmup(iterations = 20)
+    @Measurement(iterations = 50)
+    @OperationsPerInvocation(NEW_BATCH / THREADS)
+    public int addNewContended(Cursor cursor) {
+        return addAll(cursor.fresh, NEW_BATCH / THREADS);
+    }
+
+    private int addAll(long[] fingerprints, int count) {
+        int added = 0;
+        for (int i = 0; i < count; i++) {
+            if (newSet.add(fingerprints[i])) added++;
+        }
+        return added;
+    }
+
+    @Benchmark
+    public boolean concurrentHashSetSeen(Cursor cursor) {
+        return seenStrings.add(urls[cursor.next(visited)]);
+    }
+
+    @Benchmark
+    @Threads(8)
+    public boolean concurrentHashSetSeenContended(Cursor cursor) {
+        return seenStrings.add(urls[cursor.next(visited)]);
+    }
+
+    /**
+     * Per-thread position in the URLs, and batch of fresh fingerprints.
+     */
+    @State(Scope.Thread)
+    public static class Cursor {
+        private final SplittableRandom random = new SplittableRandom();
+        private final long[] fresh = new long[NEW_BATCH];
+        private int index;
+
+        @Setup(Level.Iteration)
+        public void nextBatch() {
+            for (int i = 0; i < fresh.length; i++) {
+                fresh[i] = fingerprint(random);
+            }
+        }
+
+        int next(int bound) {
+            index = (index + 7919) % bound;
+            return index;
+        }
+
+        static long fingerprint(SplittableRandom random) {
+            long fingerprint = random.nextLong();
+            return fingerprint == 0 ? 1 : fingerprint;
+        }
+    }
+}
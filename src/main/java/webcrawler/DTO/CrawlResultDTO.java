@@ -9,6 +9,8 @@ public class CrawlResultDTO {
     private String title;
     private String crawlTime;
     private ConcurrentSkipListSet<String> extractedUrls;
+    // near-copy of a page crawled before: links not followed, page not stored
+    private boolean duplicate;
 
     // Constructor
     public CrawlResultDTO(){}
@@ -64,6 +66,14 @@ public class CrawlResultDTO {
         this.extractedUrls = extractedUrls;
     }
 
+    public boolean isDuplicate() {
+        return duplicate;
+    }
+
+    public void setDuplicate(boolean duplicate) {
+        this.duplicate = duplicate;
+    }
+
     @Override
     public String toString() {
         return "CrawlResultDTO{" +
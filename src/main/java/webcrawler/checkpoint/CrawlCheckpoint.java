@@ -0,0 +1,355 @@
+package webcrawler.checkpoint;
+
+import webcrawler.dedup.UrlFingerprint;
+import webcrawler.dedup.VisitedSet;
+import webcrawler.frontier.UrlDepthPair;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.CRC32;
+
+/**
+ * Crash recovery for a crawl: an append-only journal of frontier events in memory-mapped files.
+ * <p>
+ * Every URL put in the frontier is appended to {@code frontier.log} as a QUEUED record (URL and
+ * depth), and every URL whose processing finished as a DONE record (its fingerprint). Appending is
+ * a copy into the mapped file under a short lock, never a write system call. A {@link #checkpoint}
+ * flushes the mapped pages written since the last one and then commits the log length and crawl
+ * counter to {@code checkpoint.meta}, so its cost grows with the new records only, never with the
+ * size of the crawl, and crawling threads keep appending while the pages are flushed.
+ * <p>
+ * {@link #recover} replays the committed part of the log: every QUEUED URL is visited, and QUEUED
+ * URLs without a DONE record (including fetches that were in flight) form the frontier to resume
+ * with. The header has two slots written alternately with a checksum, so a crash during a
+ * checkpoint falls back to the previous one.
+ */
+public class CrawlCheckpoint implements Closeable {
+
+    private static final long DEFAULT_CHUNK_BYTES = 64L << 20;
+    private static final byte END_OF_CHUNK = 0;
+    private static final byte QUEUED = 1;
+    private static final byte DONE = 2;
+    private static final int SLOT_BYTES = 32;
+    private static final int MAX_URL_BYTES = 1 << 16;
+
+    private final long chunkBytes;
+    private final FileChannel logChannel;
+    private final FileChannel metaChannel;
+    private final MappedByteBuffer meta;
+    private final ReentrantLock appendLock = new ReentrantLock();
+    private final Object checkpointLock = new Object();
+
+    // guarded by appendLock
+    private long position;
+    private MappedByteBuffer chunk;
+    private long chunkStart = -1;
+    private final List<MappedByteBuffer> unflushed = new ArrayList<>();
+    private boolean closed = false;
+
+    // guarded by checkpointLock
+    private long sequence;
+    private long committedPosition;
+    private long committedCrawlCount;
+
+    /**
+     * @param directory where frontier.log and checkpoint.meta live; created if missing
+     * @throws IOException if the files cannot be opened
+     */
+    public CrawlCheckpoint(Path directory) throws IOException {
+        this(directory, DEFAULT_CHUNK_BYTES);
+    }
+
+    /**
+     * @param directory  where frontier.log and checkpoint.meta live
+     * @param chunkBytes size of each mapped region of the log
+     */
+    CrawlCheckpoint(Path directory, long chunkBytes) throws IOException {
+        if (chunkBytes < 1 + 2 * Integer.BYTES + MAX_URL_BYTES) {
+            throw new IllegalArgumentException("chunkBytes too small for a record: " + chunkBytes);
+        }
+        this.chunkBytes = chunkBytes;
+        Files.createDirectories(directory);
+        logChannel = FileChannel.open(directory.resolve("frontier.log"),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        metaChannel = FileChannel.open(directory.resolve("checkpoint.meta"),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        meta = metaChannel.map(FileChannel.MapMode.READ_WRITE, 0, 2 * SLOT_BYTES);
+        readHeader();
+        // anything after the last checkpoint is discarded and overwritten
+        position = committedPosition;
+    }
+
+    /**
+     * @return true if a checkpoint was committed before, i.e. there is a crawl to resume
+     */
+    public boolean exists() {
+        synchronized (checkpointLock) {
+            return sequence > 0;
+        }
+    }
+
+    /**
+     * Journal a URL put in the frontier; call before the URL becomes visible to consumers
+     * @param url   URL
+     * @param depth its depth
+     */
+    public void logQueued(String url, int depth) {
+        byte[] bytes = url.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > MAX_URL_BYTES) return; // never crawled in practice, not worth a record format
+        appendLock.lock();
+        try {
+            if (closed) return;
+            MappedByteBuffer buffer = reserve(1 + 2 * Integer.BYTES + bytes.length);
+            int offset = (int) (position - chunkStart);
+            buffer.put(offset, QUEUED);
+            buffer.putInt(offset + 1, depth);
+            buffer.putInt(offset + 1 + Integer.BYTES, bytes.length);
+            buffer.put(offset + 1 + 2 * Integer.BYTES, bytes);
+            position += 1 + 2 * Integer.BYTES + bytes.length;
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    /**
+     * Journal that a URL is fully processed and need not be crawled again after a crash
+     * @param url URL logged with {@link #logQueued}
+     */
+    public void logDone(String url) {
+        long fingerprint = UrlFingerprint.of(url);
+        appendLock.lock();
+        try {
+            if (closed) return;
+            MappedByteBuffer buffer = reserve(1 + Long.BYTES);
+            int offset = (int) (position - chunkStart);
+            buffer.put(offset, DONE);
+            buffer.putLong(offset + 1, fingerprint);
+            position += 1 + Long.BYTES;
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    /**
+     * Make everything journaled so far durable, with the given counter. Appends continue while
+     * the pages are flushed; only the records before this call are committed.
+     * @param crawlCount pages crawled so far
+     */
+    public void checkpoint(long crawlCount) {
+        synchronized (checkpointLock) {
+            long end;
+            List<MappedByteBuffer> dirty;
+            appendLock.lock();
+            try {
+                if (closed) return;
+                end = position;
+                dirty = new ArrayList<>(unflushed);
+                unflushed.clear();
+                if (chunk != null) dirty.add(chunk);
+            } finally {
+                appendLock.unlock();
+            }
+            for (MappedByteBuffer buffer : dirty) {
+                buffer.force();
+            }
+            sequence++;
+            int slot = (int) (sequence & 1) * SLOT_BYTES;
+            meta.putLong(slot, sequence);
+            meta.putLong(slot + 8, end);
+            meta.putLong(slot + 16, crawlCount);
+            meta.putInt(slot + 24, checksum(sequence, end, crawlCount));
+            meta.force();
+            committedPosition = end;
+            committedCrawlCount = crawlCount;
+        }
+    }
+
+    /**
+     * Replay the last checkpoint. Call once, after opening and before journaling anything new.
+     * @param visited receives the fingerprint of every URL ever queued
+     * @return frontier and counter to resume with
+     */
+    public Recovery recover(VisitedSet visited) {
+        long end;
+        long crawlCount;
+        synchronized (checkpointLock) {
+            end = committedPosition;
+            crawlCount = committedCrawlCount;
+        }
+        LinkedHashMap<Long, UrlDepthPair> pending = new LinkedHashMap<>();
+        long queued = 0;
+        appendLock.lock();
+        try {
+            long at = 0;
+            while (at < end) {
+                MappedByteBuffer buffer = chunkAt(at);
+                int offset = (int) (at - chunkStart);
+                byte type = buffer.get(offset);
+                if (type == QUEUED) {
+                    int depth = buffer.getInt(offset + 1);
+                    byte[] bytes = new byte[buffer.getInt(offset + 1 + Integer.BYTES)];
+                    buffer.get(offset + 1 + 2 * Integer.BYTES, bytes);
+                    String url = new String(bytes, StandardCharsets.UTF_8);
+                    long fingerprint = UrlFingerprint.of(url);
+                    visited.add(fingerprint);
+                    pending.put(fingerprint, new UrlDepthPair(url, depth));
+                    queued++;
+                    at += 1 + 2 * Integer.BYTES + bytes.length;
+                } else if (type == DONE) {
+                    pending.remove(buffer.getLong(offset + 1));
+                    at += 1 + Long.BYTES;
+                } else {
+                    at = chunkStart + chunkBytes;
+                }
+            }
+            // replay only read the chunks, nothing to flush
+            chunk = null;
+            chunkStart = -1;
+            unflushed.clear();
+        } finally {
+            appendLock.unlock();
+        }
+        return new Recovery(new ArrayList<>(pending.values()), crawlCount, queued);
+    }
+
+    /**
+     * @return bytes journaled, committed or not
+     */
+    public long logBytes() {
+        appendLock.lock();
+        try {
+            return position;
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    /**
+     * Release the files without a final checkpoint; records since the last one are lost,
+     * and later log calls are ignored
+     */
+    @Override
+    public void close() throws IOException {
+        appendLock.lock();
+        try {
+            if (closed) return;
+            closed = true;
+            chunk = null;
+            unflushed.clear();
+            logChannel.close();
+            metaChannel.close();
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    /**
+     * Make room for a record at the current position, moving to the next chunk if it does not fit.
+     * Caller holds appendLock.
+     */
+    private MappedByteBuffer reserve(int length) {
+        MappedByteBuffer buffer = chunkAt(position);
+        int offset = (int) (position - chunkStart);
+        if (offset + length > chunkBytes) {
+            buffer.put(offset, END_OF_CHUNK);
+            position = chunkStart + chunkBytes;
+            buffer = chunkAt(position);
+        }
+        return buffer;
+    }
+
+    /**
+     * Map the chunk holding position. Caller holds appendLock.
+     */
+    private MappedByteBuffer chunkAt(long at) {
+        long start = at - at % chunkBytes;
+        if (chunk == null || start != chunkStart) {
+            try {
+                // the previous chunk is flushed by the next checkpoint, not here on the crawl path
+                if (chunk != null) unflushed.add(chunk);
+                chunk = logChannel.map(FileChannel.MapMode.READ_WRITE, start, chunkBytes);
+                chunkStart = start;
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to map the frontier log at " + start, e);
+            }
+        }
+        return chunk;
+    }
+
+    private void readHeader() {
+        for (int slot = 0; slot < 2 * SLOT_BYTES; slot += SLOT_BYTES) {
+            long seq = meta.getLong(slot);
+            long end = meta.getLong(slot + 8);
+            long count = meta.getLong(slot + 16);
+            if (seq > sequence && meta.getInt(slot + 24) == checksum(seq, end, count)) {
+                sequence = seq;
+                committedPosition = end;
+                committedCrawlCount = count;
+            }
+        }
+    }
+
+    private static int checksum(long sequence, long end, long crawlCount) {
+        CRC32 crc = new CRC32();
+        byte[] bytes = new byte[3 * Long.BYTES];
+        for (int i = 0; i < Long.BYTES; i++) {
+            bytes[i] = (byte) (sequence >>> (8 * i));
+            bytes[Long.BYTES + i] = (byte) (end >>> (8 * i));
+            bytes[2 * Long.BYTES + i] = (byte) (crawlCount >>> (8 * i));
+        }
+        crc.update(bytes);
+        return (int) crc.getValue();
+    }
+
+    /**
+     * State to resume a crawl with.
+     */
+    public static class Recovery {
+        private final List<UrlDepthPair> pending;
+        private final long crawlCount;
+        private final long queued;
+
+        Recovery(List<UrlDepthPair> pending, long crawlCount, long queued) {
+            this.pending = pending;
+            this.crawlCount = crawlCount;
+            this.queued = queued;
+        }
+
+        /**
+         * @return URLs queued or in flight at the checkpoint, in the order they were queued
+         */
+        public List<UrlDepthPair> pending() {
+            return pending;
+        }
+
+        /**
+         * @return pages crawled at the checkpoint
+         */
+        public long crawlCount() {
+            return crawlCount;
+        }
+
+        /**
+         * @return URLs ever queued, now in the visited set
+         */
+        public long queued() {
+            return queued;
+        }
+
+        @Override
+        public String toString() {
+            return "Recovery{pending=" + pending.size() + ", crawlCount=" + crawlCount + ", queued=" + queued + "}";
+        }
+    }
+}
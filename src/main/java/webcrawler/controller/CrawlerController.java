@@ -1,6 +1,7 @@
 package webcrawler.controller;
 
 import webcrawler.DTO.CrawlResultDTO;
+import webcrawler.metrics.CrawlMetrics;
 import webcrawler.parallel.ParallelCrawler;
 import webcrawler.service.CrawlerService;
 import webcrawler.util.Benchmark;
@@ -41,15 +42,17 @@ public class CrawlerController {
         System.out.println("Crawling completed.");
         for (CrawlResultDTO url : urls) {
             System.out.println(url);
-            for(String suburl : url.getExtractedUrls()) {
-                crawlerService.storeData(url.getUrl(), suburl, url.getTitle(), url.getCrawlTime());
-            }
+            crawlerService.storePage(url);
         }
+        crawlerService.flushStorage();
 
     }
 
     public static void main(String[] args) {
 
+        // stage latencies and counters in jconsole under webcrawler:type=CrawlMetrics
+        CrawlMetrics.global().registerMBean();
+
         //thread num:4,5,6 ==> 16, 25, 36 threads
         //depth: 2, 3, 4
         Benchmark.benchmarkrun();
@@ -0,0 +1,151 @@
+package webcrawler.dedup;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Set of URL fingerprints in a memory-mapped file, the exact tier of a {@link TieredUrlDeduplicator}
+ * for crawls whose visited set does not fit on the heap.
+ * <p>
+ * One open-addressing table with linear probing, like {@link ConcurrentFingerprintSet}, but in a
+ * file mapped in 1 GiB chunks: the table lives in the page cache, so the OS keeps the hot pages in
+ * memory and writes the rest back to disk, and the heap holds only the chunk handles. Slots are set
+ * with a CAS on the mapped memory, so adds never block. The table cannot grow; it is sized for
+ * {@code expectedSize} at 50% load and {@link #add(long)} fails once it is 90% full.
+ * <p>
+ * Opening an existing file reuses its fingerprints, e.g. to resume a crawl. Thread safe.
+ */
+public class MappedFingerprintSet implements VisitedSet, Closeable {
+
+    private static final VarHandle SLOTS = MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.nativeOrder());
+    private static final int CHUNK_SLOT_BITS = 27; // 2^27 longs = 1 GiB per mapping
+    private static final long CHUNK_SLOTS = 1L << CHUNK_SLOT_BITS;
+    private static final long MIN_CAPACITY = 1 << 10;
+    private static final double MAX_LOAD = 0.9;
+
+    private final FileChannel channel;
+    private final MappedByteBuffer[] chunks;
+    private final long mask;
+    private final long maxSize;
+    private final LongAdder count = new LongAdder();
+
+    /**
+     * @param file         table file, created if missing; an existing file keeps its size and content
+     * @param expectedSize URLs the set should hold, used to size a new file
+     * @throws IOException if the file cannot be opened or mapped
+     */
+    public MappedFingerprintSet(Path file, long expectedSize) throws IOException {
+        if (expectedSize < 0) throw new IllegalArgumentException("expectedSize must not be negative: " + expectedSize);
+        long capacity;
+        if (Files.exists(file) && Files.size(file) > 0) {
+            capacity = Files.size(file) / Long.BYTES;
+            if (Long.bitCount(capacity) != 1 || capacity * Long.BYTES != Files.size(file)) {
+                throw new IOException("Not a fingerprint table: " + file);
+            }
+        } else {
+            capacity = MIN_CAPACITY;
+            while (capacity < 2 * expectedSize) capacity <<= 1;
+        }
+        this.mask = capacity - 1;
+        this.maxSize = (long) (capacity * MAX_LOAD);
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        int chunkCount = (int) ((capacity + CHUNK_SLOTS - 1) / CHUNK_SLOTS);
+        this.chunks = new MappedByteBuffer[chunkCount];
+        try {
+            for (int i = 0; i < chunkCount; i++) {
+                long slots = Math.min(CHUNK_SLOTS, capacity - i * CHUNK_SLOTS);
+                // mapping past the end grows the file, sparse until written
+                chunks[i] = channel.map(FileChannel.MapMode.READ_WRITE, i * CHUNK_SLOTS * Long.BYTES, slots * Long.BYTES);
+                chunks[i].order(ByteOrder.nativeOrder());
+            }
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+        for (long i = 0; i < capacity; i++) {
+            if (slot(i) != 0) count.increment();
+        }
+    }
+
+    @Override
+    public boolean add(long fingerprint) {
+        checkFingerprint(fingerprint);
+        long index = fingerprint & mask;
+        for (long probes = 0; probes <= mask; probes++) {
+            long slot = slot(index);
+            if (slot == fingerprint) return false;
+            if (slot == 0) {
+                if (count.sum() >= maxSize) {
+                    throw new IllegalStateException("fingerprint table is full: " + maxSize + " URLs");
+                }
+                MappedByteBuffer chunk = chunks[(int) (index >>> CHUNK_SLOT_BITS)];
+                long witness = (long) SLOTS.compareAndExchange(chunk, offset(index), 0L, fingerprint);
+                if (witness == 0) {
+                    count.increment();
+                    return true;
+                }
+                if (witness == fingerprint) return false;
+            }
+            index = (index + 1) & mask;
+        }
+        throw new IllegalStateException("fingerprint table is full: " + maxSize + " URLs");
+    }
+
+    @Override
+    public boolean contains(long fingerprint) {
+        checkFingerprint(fingerprint);
+        long index = fingerprint & mask;
+        for (long probes = 0; probes <= mask; probes++) {
+            long slot = slot(index);
+            if (slot == fingerprint) return true;
+            if (slot == 0) return false;
+            index = (index + 1) & mask;
+        }
+        return false;
+    }
+
+    @Override
+    public long size() {
+        return count.sum();
+    }
+
+    /**
+     * @return bytes of the table file
+     */
+    public long fileBytes() {
+        return (mask + 1) * Long.BYTES;
+    }
+
+    private long slot(long index) {
+        return (long) SLOTS.getVolatile(chunks[(int) (index >>> CHUNK_SLOT_BITS)], offset(index));
+    }
+
+    private static int offset(long index) {
+        return (int) (index & (CHUNK_SLOTS - 1)) * Long.BYTES;
+    }
+
+    private static void checkFingerprint(long fingerprint) {
+        if (fingerprint == 0) throw new IllegalArgumentException("fingerprint 0 is reserved for empty slots");
+    }
+
+    /**
+     * Write the table back to the file and close it
+     * @throws IOException if the file cannot be written
+     */
+    @Override
+    public void close() throws IOException {
+        for (MappedByteBuffer chunk : chunks) {
+            chunk.force();
+        }
+        channel.close();
+    }
+}
@@ -0,0 +1,155 @@
+package webcrawler.dedup;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * SimHashes of the pages crawled so far, indexed for Hamming-distance lookups.
+ * <p>
+ * The 64 bits are cut into {@code maxDistance + 1} bands. Two hashes at most {@code maxDistance}
+ * bits apart cannot differ in every band, so they share at least one band exactly; a lookup only
+ * compares against the hashes filed under one of its own band values, a handful instead of every
+ * page. Each band is a concurrent map from band value to the hashes with that value.
+ * <p>
+ * Thread safe. A check and the insert that follows it are not atomic, so two near-copies crawled
+ * at the same moment may both pass as originals; that costs one extra expansion, never a lost page.
+ */
+public class NearDuplicateIndex {
+
+    /**
+     * Default threshold: templated copies of a page are usually within 3 bits
+     */
+    public static final int DEFAULT_MAX_DISTANCE = 3;
+    private static final String DISTANCE_PROPERTY = "crawler.nearDuplicates";
+    // hashes kept per band value; beyond that the oldest are dropped, bounding lookup cost
+    private static final int MAX_BUCKET = 256;
+
+    private final int maxDistance;
+    private final int[] bandShift;
+    private final long[] bandMask;
+    private final ConcurrentHashMap<Long, long[]>[] bands;
+    private final LongAdder pages = new LongAdder();
+    private final LongAdder duplicates = new LongAdder();
+
+    public NearDuplicateIndex() {
+        this(DEFAULT_MAX_DISTANCE);
+    }
+
+    /**
+     * @param maxDistance pages whose SimHashes differ in at most this many bits are duplicates, 0 to 7
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public NearDuplicateIndex(int maxDistance) {
+        if (maxDistance < 0 || maxDistance > 7) {
+            throw new IllegalArgumentException("maxDistance must be between 0 and 7: " + maxDistance);
+        }
+        this.maxDistance = maxDistance;
+        int count = maxDistance + 1;
+        bandShift = new int[count];
+        bandMask = new long[count];
+        bands = new ConcurrentHashMap[count];
+        for (int band = 0, shift = 0; band < count; band++) {
+            // the first bands take the remainder bit when 64 does not divide evenly
+            int bits = 64 / count + (band < 64 % count ? 1 : 0);
+            bandShift[band] = shift;
+            bandMask[band] = bits == 64 ? -1L : (1L << bits) - 1;
+            bands[band] = new ConcurrentHashMap<>();
+            shift += bits;
+        }
+    }
+
+    /**
+     * Index with the threshold given by {@code -Dcrawler.nearDuplicates=<maxDistance>}
+     * @return the index, or null if the property is not set or not a valid distance
+     */
+    public static NearDuplicateIndex load() {
+        String distance = System.getProperty(DISTANCE_PROPERTY);
+        if (distance == null || distance.isBlank()) return null;
+        try {
+            return new NearDuplicateIndex(Integer.parseInt(distance.trim()));
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    /**
+     * @return threshold in bits
+     */
+    public int getMaxDistance() {
+        return maxDistance;
+    }
+
+    /**
+     * @param simHash SimHash of a page
+     * @return an indexed SimHash at most {@link #getMaxDistance()} bits away, or 0 if there is none
+     */
+    public long findNear(long simHash) {
+        for (int band = 0; band < bands.length; band++) {
+            long[] bucket = bands[band].get(bandValue(simHash, band));
+            if (bucket == null) continue;
+            for (long candidate : bucket) {
+                if (SimHash.distance(candidate, simHash) <= maxDistance) return candidate;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Check a crawled page, and index it if it is not a duplicate.
+     * Pages without text (SimHash 0) are never duplicates and not indexed.
+     * @param simHash SimHash of the page
+     * @return true if a page within the threshold was indexed before
+     */
+    public boolean isDuplicate(long simHash) {
+        if (simHash == 0) return false;
+        pages.increment();
+        if (findNear(simHash) != 0) {
+            duplicates.increment();
+            return true;
+        }
+        for (int band = 0; band < bands.length; band++) {
+            bands[band].merge(bandValue(simHash, band), new long[]{simHash}, NearDuplicateIndex::append);
+        }
+        return false;
+    }
+
+    private long bandValue(long simHash, int band) {
+        return (simHash >>> bandShift[band]) & bandMask[band];
+    }
+
+    private static long[] append(long[] bucket, long[] added) {
+        if (bucket.length < MAX_BUCKET) {
+            long[] grown = Arrays.copyOf(bucket, bucket.length + 1);
+            grown[bucket.length] = added[0];
+            return grown;
+        }
+        long[] shifted = Arrays.copyOfRange(bucket, 1, bucket.length + 1);
+        shifted[bucket.length - 1] = added[0];
+        return shifted;
+    }
+
+    /**
+     * @return pages checked by {@link #isDuplicate}, without those without text
+     */
+    public long getPages() {
+        return pages.sum();
+    }
+
+    /**
+     * @return pages found to be duplicates
+     */
+    public long getDuplicates() {
+        return duplicates.sum();
+    }
+
+    /**
+     * @return counters as one line for the log
+     */
+    public String getStats() {
+        long checked = getPages();
+        long found = getDuplicates();
+        return String.format("Near-duplicates: %d of %d pages (%.1f%%) within %d bits, not expanded or stored",
+                found, checked, checked == 0 ? 0.0 : 100.0 * found / checked, maxDistance);
+    }
+}
@@ -0,0 +1,147 @@
+package webcrawler.dedup;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Concurrent, scalable Bloom filter over 64-bit fingerprints.
+ * <p>
+ * Starts with one slice sized for {@code initialCapacity} entries. When a slice is full a new one twice
+ * as large is added, with half the false-positive rate of the previous one, so the overall rate stays
+ * below the configured target however many entries are added (Almeida et al., "Scalable Bloom Filters").
+ * Bits are set with an atomic OR, so concurrent puts never lose each other's bits.
+ */
+public class ScalableBloomFilter {
+
+    private static final VarHandle WORDS = MethodHandles.arrayElementVarHandle(long[].class);
+    private static final double TIGHTENING_RATIO = 0.5;
+    private static final int GROWTH_FACTOR = 2;
+
+    private final double falsePositiveRate;
+    private volatile Slice[] slices;
+
+    /**
+     * @param initialCapacity   entries the first slice holds
+     * @param falsePositiveRate target overall false-positive rate, e.g. 0.01
+     */
+    public ScalableBloomFilter(long initialCapacity, double falsePositiveRate) {
+        if (initialCapacity < 1) throw new IllegalArgumentException("initialCapacity must be positive: " + initialCapacity);
+        if (falsePositiveRate <= 0 || falsePositiveRate >= 1)
+            throw new IllegalArgumentException("falsePositiveRate must be in (0, 1): " + falsePositiveRate);
+        this.falsePositiveRate = falsePositiveRate;
+        // the slice rates form a geometric series that sums to falsePositiveRate
+        this.slices = new Slice[]{new Slice(initialCapacity, falsePositiveRate * (1 - TIGHTENING_RATIO))};
+    }
+
+    /**
+     * @param fingerprint 64-bit fingerprint
+     * @return false if the fingerprint was definitely never put, true if it may have been
+     */
+    public boolean mightContain(long fingerprint) {
+        for (Slice slice : slices) {
+            if (slice.mightContain(fingerprint)) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Add a fingerprint to the newest slice, growing the filter if that slice is full
+     * @param fingerprint 64-bit fingerprint
+     */
+    public void put(long fingerprint) {
+        Slice[] current = slices;
+        Slice last = current[current.length - 1];
+        last.put(fingerprint);
+        if (last.count.incrementAndGet() >= last.capacity) grow(current);
+    }
+
+    /**
+     * @return entries put so far
+     */
+    public long size() {
+        long size = 0;
+        for (Slice slice : slices) size += slice.count.get();
+        return size;
+    }
+
+    /**
+     * @return bytes held by the bit arrays
+     */
+    public long memoryBytes() {
+        long bytes = 0;
+        for (Slice slice : slices) bytes += (long) slice.words.length * Long.BYTES;
+        return bytes;
+    }
+
+    /**
+     * @return number of slices, 1 until the first slice fills up
+     */
+    public int sliceCount() {
+        return slices.length;
+    }
+
+    /**
+     * @return configured upper bound of the false-positive rate
+     */
+    public double getFalsePositiveRate() {
+        return falsePositiveRate;
+    }
+
+    private synchronized void grow(Slice[] seen) {
+        if (slices != seen) return;
+        Slice last = seen[seen.length - 1];
+        Slice[] grown = new Slice[seen.length + 1];
+        System.arraycopy(seen, 0, grown, 0, seen.length);
+        grown[seen.length] = new Slice(last.capacity * GROWTH_FACTOR, last.falsePositiveRate * TIGHTENING_RATIO);
+        slices = grown;
+    }
+
+    /**
+     * Classic Bloom filter with k hashes derived from the fingerprint by double hashing.
+     */
+    private static class Slice {
+        private final long capacity;
+        private final double falsePositiveRate;
+        private final long[] words;
+        private final long bitCount;
+        private final int hashCount;
+        private final AtomicLong count = new AtomicLong();
+
+        private Slice(long capacity, double falsePositiveRate) {
+            this.capacity = capacity;
+            this.falsePositiveRate = falsePositiveRate;
+            // optimal m = -n ln p / (ln 2)^2 and k = m/n ln 2
+            long bits = (long) Math.ceil(-capacity * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+            long wordCount = Math.max(1, (bits + Long.SIZE - 1) / Long.SIZE);
+            if (wordCount > Integer.MAX_VALUE - 8)
+                throw new IllegalArgumentException("Bloom filter slice too large: " + capacity + " entries");
+            this.words = new long[(int) wordCount];
+            this.bitCount = wordCount * Long.SIZE;
+            this.hashCount = Math.max(1, (int) Math.round(-Math.log(falsePositiveRate) / Math.log(2)));
+        }
+
+        private void put(long fingerprint) {
+            long h1 = fingerprint;
+            long h2 = UrlFingerprint.fmix64(fingerprint) | 1;
+            for (int i = 0; i < hashCount; i++) {
+                long bit = Math.floorMod(h1 + i * h2, bitCount);
+                int word = (int) (bit >>> 6);
+                long mask = 1L << bit;
+                if (((long) WORDS.getVolatile(words, word) & mask) == 0) {
+                    WORDS.getAndBitwiseOr(words, word, mask);
+                }
+            }
+        }
+
+        private boolean mightContain(long fingerprint) {
+            long h1 = fingerprint;
+            long h2 = UrlFingerprint.fmix64(fingerprint) | 1;
+            for (int i = 0; i < hashCount; i++) {
+                long bit = Math.floorMod(h1 + i * h2, bitCount);
+                if (((long) WORDS.getVolatile(words, (int) (bit >>> 6)) & (1L << bit)) == 0) return false;
+            }
+            return true;
+        }
+    }
+}
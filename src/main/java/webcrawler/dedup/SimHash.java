@@ -0,0 +1,159 @@
+package webcrawler.dedup;
+
+import java.util.Arrays;
+
+/**
+ * 64-bit SimHash of the text of a page, for near-duplicate detection.
+ * <p>
+ * The text is split into lower-cased words, every run of {@value #SHINGLE_WORDS} consecutive words
+ * (a shingle) is hashed, and bit i of the result is set if bit i is set in most shingle hashes.
+ * Pages that share most shingles, such as print views or templated copies with a different date,
+ * end up a few bits apart, while unrelated pages differ in about half of the 64 bits.
+ * <p>
+ * Text can be fed in pieces as chars or as UTF-8 bytes, so it works on a Jsoup document and inside
+ * the streaming scan alike; words are hashed as they arrive and nothing is allocated. Words may span
+ * pieces. An instance is not thread safe and can be reused after {@link #reset()}.
+ */
+public class SimHash {
+
+    /**
+     * Words per shingle
+     */
+    public static final int SHINGLE_WORDS = 3;
+
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    // number of shingle hashes with bit i set
+    private final int[] ones = new int[64];
+    private final long[] window = new long[SHINGLE_WORDS];
+    private int shingles;
+    private long words;
+    private long word = FNV_OFFSET;
+    private boolean inWord;
+
+    /**
+     * @param text text of a page
+     * @return its SimHash, 0 if it has no words
+     */
+    public static long of(CharSequence text) {
+        return new SimHash().append(text).value();
+    }
+
+    /**
+     * @param a SimHash
+     * @param b SimHash
+     * @return number of differing bits
+     */
+    public static int distance(long a, long b) {
+        return Long.bitCount(a ^ b);
+    }
+
+    /**
+     * Add text; the end of the text does not end a word, call {@link #value()} for that
+     * @param text more text of the page
+     * @return this
+     */
+    public SimHash append(CharSequence text) {
+        for (int i = 0, length = text.length(); i < length; i++) {
+            char c = text.charAt(i);
+            if (c < 0x80) {
+                appendAscii(c);
+            } else if (Character.isLetterOrDigit(c)) {
+                addToWord(Character.toLowerCase(c));
+            } else {
+                endWord();
+            }
+        }
+        return this;
+    }
+
+    /**
+     * Add UTF-8 text. Multi-byte characters are always taken as word characters, so the hash of
+     * non-ASCII text differs from {@link #append(CharSequence)}; compare hashes from one source only.
+     * @param bytes  buffer
+     * @param start  first byte
+     * @param length number of bytes
+     * @return this
+     */
+    public SimHash append(byte[] bytes, int start, int length) {
+        for (int i = start, end = start + length; i < end; i++) {
+            byte b = bytes[i];
+            if (b < 0) addToWord(b & 0xff);
+            else appendAscii((char) b);
+        }
+        return this;
+    }
+
+    private void appendAscii(char c) {
+        if (c >= 'a' && c <= 'z' || c >= '0' && c <= '9') {
+            addToWord(c);
+        } else if (c >= 'A' && c <= 'Z') {
+            addToWord(c + ('a' - 'A'));
+        } else {
+            endWord();
+        }
+    }
+
+    private void addToWord(int c) {
+        word = (word ^ c) * FNV_PRIME;
+        inWord = true;
+    }
+
+    private void endWord() {
+        if (!inWord) return;
+        window[(int) (words % SHINGLE_WORDS)] = word;
+        words++;
+        if (words >= SHINGLE_WORDS) addShingle(SHINGLE_WORDS);
+        word = FNV_OFFSET;
+        inWord = false;
+    }
+
+    /**
+     * Hash the last n words in order and count its bits
+     */
+    private void addShingle(int n) {
+        long h = 0;
+        for (long w = words - n; w < words; w++) {
+            h = h * FNV_PRIME + window[(int) (w % SHINGLE_WORDS)];
+        }
+        h = UrlFingerprint.fmix64(h);
+        for (int bit = 0; bit < 64; bit++) {
+            ones[bit] += (int) (h >>> bit) & 1;
+        }
+        shingles++;
+    }
+
+    /**
+     * End the current word and compute the hash of everything appended so far
+     * @return SimHash, 0 if no word was appended
+     */
+    public long value() {
+        endWord();
+        // a text shorter than a shingle is one shingle of all its words
+        if (shingles == 0 && words > 0) addShingle((int) words);
+        long value = 0;
+        for (int bit = 0; bit < 64; bit++) {
+            if (2 * ones[bit] > shingles) value |= 1L << bit;
+        }
+        return value;
+    }
+
+    /**
+     * @return number of words appended so far
+     */
+    public long words() {
+        return words;
+    }
+
+    /**
+     * Forget all text, to hash another page
+     */
+    public void reset() {
+        Arrays.fill(ones, 0);
+        shingles = 0;
+        words = 0;
+        word = FNV_OFFSET;
+        inWord = false;
+    }
+}
@@ -0,0 +1,188 @@
+package webcrawler.dedup;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Two-tier visited set for crawls too large for an exact in-memory set.
+ * <p>
+ * A {@link ScalableBloomFilter} answers the common case: when it says a URL is definitely new, the URL is
+ * recorded in the exact store but the answer does not depend on it. Only when the filter reports a possible
+ * duplicate does the exact store decide between a real duplicate and a Bloom false positive, so the exact
+ * tier can be slow to query without slowing down most adds. For crawls beyond the heap use
+ * {@link #onDisk}, whose exact tier is a {@link MappedFingerprintSet}; {@link #inMemory} keeps the
+ * exact tier on the heap and so needs more memory than a {@link ConcurrentFingerprintSet} alone.
+ * <p>
+ * The first-time path is serialized per lock stripe, and a fingerprint is in the exact store before
+ * its Bloom bits are set, so two threads adding the same new URL cannot both report it as new.
+ */
+public class TieredUrlDeduplicator implements VisitedSet {
+
+    private static final int LOCK_STRIPES = 64;
+
+    private final ScalableBloomFilter bloomFilter;
+    private final VisitedSet exactStore;
+    private final Object[] locks = new Object[LOCK_STRIPES];
+
+    private final LongAdder definitelyNew = new LongAdder();
+    private final LongAdder possibleDuplicates = new LongAdder();
+    private final LongAdder confirmedDuplicates = new LongAdder();
+    private final LongAdder falsePositives = new LongAdder();
+
+    /**
+     * @param bloomFilter first tier
+     * @param exactStore  second tier, holds every fingerprint added
+     */
+    public TieredUrlDeduplicator(ScalableBloomFilter bloomFilter, VisitedSet exactStore) {
+        this.bloomFilter = bloomFilter;
+        this.exactStore = exactStore;
+        for (int i = 0; i < LOCK_STRIPES; i++) locks[i] = new Object();
+    }
+
+    /**
+     * Bloom filter in front of an in-memory {@link ConcurrentFingerprintSet}; only saves exact-store
+     * lookups, not memory, so for tests and crawls that fit on the heap
+     * @param expectedUrls      URLs expected in the crawl
+     * @param falsePositiveRate target Bloom false-positive rate
+     * @return new deduplicator
+     */
+    public static TieredUrlDeduplicator inMemory(long expectedUrls, double falsePositiveRate) {
+        return new TieredUrlDeduplicator(new ScalableBloomFilter(expectedUrls, falsePositiveRate),
+                new ConcurrentFingerprintSet(expectedUrls));
+    }
+
+    /**
+     * Bloom filter in front of a memory-mapped {@link MappedFingerprintSet}, for crawls whose visited
+     * set does not fit on the heap; the heap only holds the Bloom filter, a few bytes per URL
+     * @param file              table file of the exact tier, reused if it exists
+     * @param expectedUrls      URLs expected in the crawl; the exact tier cannot hold more than 1.8 times this
+     * @param falsePositiveRate target Bloom false-positive rate
+     * @return new deduplicator; close the exact tier through {@link #getExactStore()}
+     * @throws IOException if the file cannot be mapped
+     */
+    public static TieredUrlDeduplicator onDisk(Path file, long expectedUrls, double falsePositiveRate) throws IOException {
+        return new TieredUrlDeduplicator(new ScalableBloomFilter(expectedUrls, falsePositiveRate),
+                new MappedFingerprintSet(file, expectedUrls));
+    }
+
+    /**
+     * @return the exact tier
+     */
+    public VisitedSet getExactStore() {
+        return exactStore;
+    }
+
+    @Override
+    public boolean add(long fingerprint) {
+        if (!bloomFilter.mightContain(fingerprint)) {
+            synchronized (locks[(int) (fingerprint & (LOCK_STRIPES - 1))]) {
+                // another thread may have added it since the unlocked check
+                if (!bloomFilter.mightContain(fingerprint)) {
+                    // exact store first: a thread that sees the Bloom bits must find it there, and one
+                    // that got through the fall-back path first has already reported it as new
+                    boolean added = exactStore.add(fingerprint);
+                    bloomFilter.put(fingerprint);
+                    if (!added) {
+                        confirmedDuplicates.increment();
+                        return false;
+                    }
+                    definitelyNew.increment();
+                    return true;
+                }
+            }
+        }
+        possibleDuplicates.increment();
+        if (exactStore.add(fingerprint)) {
+            falsePositives.increment();
+            return true;
+        }
+        confirmedDuplicates.increment();
+        return false;
+    }
+
+    @Override
+    public boolean contains(long fingerprint) {
+        return bloomFilter.mightContain(fingerprint) && exactStore.contains(fingerprint);
+    }
+
+    @Override
+    public long size() {
+        return exactStore.size();
+    }
+
+    /**
+     * @return counters since creation
+     */
+    public Stats getStats() {
+        return new Stats(definitelyNew.sum(), possibleDuplicates.sum(), confirmedDuplicates.sum(),
+                falsePositives.sum(), bloomFilter.memoryBytes(), bloomFilter.sliceCount());
+    }
+
+    /**
+     * Snapshot of the dedup counters, used to size the Bloom filter for a crawl.
+     */
+    public static class Stats {
+        private final long definitelyNew;
+        private final long possibleDuplicates;
+        private final long confirmedDuplicates;
+        private final long falsePositives;
+        private final long bloomBytes;
+        private final int bloomSlices;
+
+        public Stats(long definitelyNew, long possibleDuplicates, long confirmedDuplicates, long falsePositives,
+                     long bloomBytes, int bloomSlices) {
+            this.definitelyNew = definitelyNew;
+            this.possibleDuplicates = possibleDuplicates;
+            this.confirmedDuplicates = confirmedDuplicates;
+            this.falsePositives = falsePositives;
+            this.bloomBytes = bloomBytes;
+            this.bloomSlices = bloomSlices;
+        }
+
+        /**
+         * @return adds answered by the Bloom filter alone (misses)
+         */
+        public long getDefinitelyNew() {
+            return definitelyNew;
+        }
+
+        /**
+         * @return adds that fell through to the exact store (hits)
+         */
+        public long getPossibleDuplicates() {
+            return possibleDuplicates;
+        }
+
+        public long getConfirmedDuplicates() {
+            return confirmedDuplicates;
+        }
+
+        public long getFalsePositives() {
+            return falsePositives;
+        }
+
+        /**
+         * @return fraction of new URLs the Bloom filter wrongly reported as possible duplicates
+         */
+        public double getObservedFalsePositiveRate() {
+            long newUrls = definitelyNew + falsePositives;
+            return newUrls == 0 ? 0 : (double) falsePositives / newUrls;
+        }
+
+        public long getBloomBytes() {
+            return bloomBytes;
+        }
+
+        public int getBloomSlices() {
+            return bloomSlices;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("Dedup{new=%d, possibleDuplicates=%d, duplicates=%d, falsePositives=%d (%.4f%%), bloom=%d bytes in %d slices}",
+                    definitelyNew, possibleDuplicates, confirmedDuplicates, falsePositives,
+                    getObservedFalsePositiveRate() * 100, bloomBytes, bloomSlices);
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package webcrawler.dedup;
+
+/**
+ * Set of URLs already seen by the crawler, keyed by {@link UrlFingerprint}. Implementations are thread safe.
+ */
+public interface VisitedSet {
+
+    /**
+     * @param fingerprint non-zero URL fingerprint
+     * @return true if it was not in the set before
+     */
+    boolean add(long fingerprint);
+
+    /**
+     * @param fingerprint non-zero URL fingerprint
+     * @return true if it is in the set
+     */
+    boolean contains(long fingerprint);
+
+    /**
+     * @return number of fingerprints in the set
+     */
+    long size();
+
+    /**
+     * @param url URL
+     * @return true if the URL was not seen before
+     */
+    default boolean add(String url) {
+        return add(UrlFingerprint.of(url));
+    }
+
+    /**
+     * @param url URL
+     * @return true if the URL was seen before
+     */
+    default boolean contains(String url) {
+        return contains(UrlFingerprint.of(url));
+    }
+}
@@ -0,0 +1,193 @@
+package webcrawler.frontier;
+
+import webcrawler.graph.LinkListener;
+
+import java.util.Collection;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Frontier ordered by a pluggable {@link PriorityPolicy}, without a global lock.
+ * <p>
+ * Each of the {@link PriorityPolicy#BUCKETS} priorities has its own lock-free FIFO queue, and one
+ * 64-bit mask marks the buckets that may hold URLs, so {@link #take()} finds the best bucket with
+ * one bit scan. A semaphore counts queued URLs and is only used to block when the frontier is empty.
+ * <p>
+ * Raising the priority of a queued URL ({@link #reprioritize}) is O(1): the entry moves to a
+ * higher bucket and the copy left behind is skipped when it comes up. Lower priorities, such as a
+ * host running out of budget, are applied lazily: take re-checks the policy and moves the URL down
+ * if it no longer belongs in its bucket.
+ * <p>
+ * Registered as a {@link LinkListener} with the crawler service, it raises queued URLs as new
+ * links to them are found (the {@link webcrawler.parallel.ParallelCrawler} does this itself).
+ * A URL can be queued once at a time; the crawler's visited set already guarantees that.
+ */
+public class BucketedFrontier implements Frontier, LinkListener {
+
+    private static final int TAKEN = -1;
+
+    private final PriorityPolicy policy;
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private final ConcurrentLinkedQueue<Entry>[] buckets = new ConcurrentLinkedQueue[PriorityPolicy.BUCKETS];
+    // bit b set: bucket b may be non-empty; never clear while it holds a live entry
+    private final AtomicLong nonEmpty = new AtomicLong();
+    private final ConcurrentHashMap<String, Entry> queued = new ConcurrentHashMap<>();
+    // one permit per queued URL, so take blocks only when there is nothing to hand out
+    private final Semaphore available = new Semaphore(0);
+    private final AtomicInteger size = new AtomicInteger();
+    private volatile boolean closed = false;
+
+    /**
+     * @param policy decides the bucket of each URL
+     */
+    public BucketedFrontier(PriorityPolicy policy) {
+        this.policy = policy;
+        for (int b = 0; b < buckets.length; b++) {
+            buckets[b] = new ConcurrentLinkedQueue<>();
+        }
+    }
+
+    @Override
+    public boolean offer(UrlDepthPair pair) {
+        if (closed) return false;
+        Entry entry = new Entry(pair, clamp(policy.priority(pair)));
+        if (queued.putIfAbsent(pair.getUrl(), entry) != null) return false;
+        size.incrementAndGet();
+        push(entry, entry.bucket.get());
+        available.release();
+        return true;
+    }
+
+    @Override
+    public UrlDepthPair take() throws InterruptedException {
+        available.acquire();
+        if (closed) {
+            // pass the wake-up on to the next waiting consumer
+            available.release();
+            return null;
+        }
+        // holding a permit guarantees a live entry exists, it may just be moving between buckets
+        while (true) {
+            long mask = nonEmpty.get();
+            if (mask == 0) {
+                Thread.onSpinWait();
+                continue;
+            }
+            int b = 63 - Long.numberOfLeadingZeros(mask);
+            Entry entry = buckets[b].poll();
+            if (entry == null) {
+                clear(b);
+                continue;
+            }
+            if (entry.bucket.get() != b) continue; // moved up, or already taken
+            int priority = clamp(policy.priority(entry.pair));
+            if (priority < b) {
+                // priority dropped since it was queued: move it down and look again
+                if (entry.bucket.compareAndSet(b, priority)) push(entry, priority);
+                continue;
+            }
+            if (!entry.bucket.compareAndSet(b, TAKEN)) continue;
+            queued.remove(entry.pair.getUrl(), entry);
+            size.decrementAndGet();
+            policy.onTaken(entry.pair);
+            return entry.pair;
+        }
+    }
+
+    /**
+     * Re-evaluate a queued URL and move it up if its priority has risen
+     * @param url queued URL; ignored if not queued
+     * @return true if the URL moved to a higher bucket
+     */
+    public boolean reprioritize(String url) {
+        Entry entry = queued.get(url);
+        if (entry == null) return false;
+        int priority = clamp(policy.priority(entry.pair));
+        while (true) {
+            int current = entry.bucket.get();
+            if (current == TAKEN || priority <= current) return false;
+            if (entry.bucket.compareAndSet(current, priority)) {
+                push(entry, priority);
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Tell the policy about links to queued URLs and move those URLs up if needed
+     */
+    @Override
+    public void onCrawled(String url, Collection<String> links) {
+        for (String link : links) {
+            if (!queued.containsKey(link)) continue;
+            policy.onInLink(url, link);
+            reprioritize(link);
+        }
+    }
+
+    /**
+     * @param url URL
+     * @return its current bucket, or -1 if it is not queued
+     */
+    public int bucketOf(String url) {
+        Entry entry = queued.get(url);
+        return entry == null ? -1 : entry.bucket.get();
+    }
+
+    @Override
+    public int size() {
+        return size.get();
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        // wake every blocked take; each one passes the permit on
+        available.release();
+    }
+
+    private void push(Entry entry, int bucket) {
+        buckets[bucket].add(entry);
+        long bit = 1L << bucket;
+        long mask;
+        while (((mask = nonEmpty.get()) & bit) == 0 && !nonEmpty.compareAndSet(mask, mask | bit)) {
+            Thread.onSpinWait();
+        }
+    }
+
+    /**
+     * Clear the bit of an empty bucket, then set it again if a push raced with the clear
+     */
+    private void clear(int bucket) {
+        long bit = 1L << bucket;
+        long mask;
+        while (((mask = nonEmpty.get()) & bit) != 0 && !nonEmpty.compareAndSet(mask, mask & ~bit)) {
+            Thread.onSpinWait();
+        }
+        if (!buckets[bucket].isEmpty()) {
+            while (((mask = nonEmpty.get()) & bit) == 0 && !nonEmpty.compareAndSet(mask, mask | bit)) {
+                Thread.onSpinWait();
+            }
+        }
+    }
+
+    private static int clamp(int priority) {
+        return Math.max(0, Math.min(PriorityPolicy.BUCKETS - 1, priority));
+    }
+
+    /**
+     * A queued URL; bucket is where the live copy sits, or TAKEN
+     */
+    private static class Entry {
+        private final UrlDepthPair pair;
+        private final AtomicInteger bucket;
+
+        private Entry(UrlDepthPair pair, int bucket) {
+            this.pair = pair;
+            this.bucket = new AtomicInteger(bucket);
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package webcrawler.frontier;
+
+/**
+ * The set of URLs waiting to be crawled, shared by all consumer threads of the crawler.
+ */
+public interface Frontier {
+
+    /**
+     * Add a URL, never blocks
+     * @param pair URL and depth
+     * @return false if the URL was not accepted (frontier full or closed)
+     */
+    boolean offer(UrlDepthPair pair);
+
+    /**
+     * Remove the next URL that may be crawled now, blocking until there is one
+     * @return the next URL, or null once the frontier has been closed
+     * @throws InterruptedException if interrupted while waiting
+     */
+    UrlDepthPair take() throws InterruptedException;
+
+    /**
+     * Report that the fetch of a URL returned by {@link #take()} has finished,
+     * so per-host limits can hand out the next URL of the same host.
+     * @param pair URL returned by take
+     */
+    default void release(UrlDepthPair pair) {
+    }
+
+    /**
+     * @return number of URLs waiting
+     */
+    int size();
+
+    /**
+     * Wake up every blocked {@link #take()} and make all further calls return null.
+     */
+    void close();
+}
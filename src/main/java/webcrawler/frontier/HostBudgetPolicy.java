@@ -0,0 +1,55 @@
+package webcrawler.frontier;
+
+import webcrawler.util.UrlUtils;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Wraps another policy and demotes hosts that have used up their budget of fetches, so a fixed
+ * crawl budget is spread over many sites instead of being spent on one large one. URLs of such
+ * hosts go to bucket 0 and are only crawled when nothing else is waiting.
+ */
+public class HostBudgetPolicy implements PriorityPolicy {
+
+    private final PriorityPolicy policy;
+    private final int budgetPerHost;
+    private final ConcurrentHashMap<String, AtomicInteger> taken = new ConcurrentHashMap<>();
+
+    /**
+     * @param policy        priority within the budget
+     * @param budgetPerHost fetches per host before its URLs are demoted
+     */
+    public HostBudgetPolicy(PriorityPolicy policy, int budgetPerHost) {
+        if (budgetPerHost < 1) throw new IllegalArgumentException("budgetPerHost must be positive: " + budgetPerHost);
+        this.policy = policy;
+        this.budgetPerHost = budgetPerHost;
+    }
+
+    @Override
+    public int priority(UrlDepthPair pair) {
+        if (fetches(UrlUtils.host(pair.getUrl())) >= budgetPerHost) return 0;
+        // bucket 0 is reserved for hosts over budget
+        return Math.max(1, policy.priority(pair));
+    }
+
+    @Override
+    public void onTaken(UrlDepthPair pair) {
+        taken.computeIfAbsent(UrlUtils.host(pair.getUrl()), host -> new AtomicInteger()).incrementAndGet();
+        policy.onTaken(pair);
+    }
+
+    @Override
+    public void onInLink(String from, String to) {
+        policy.onInLink(from, to);
+    }
+
+    /**
+     * @param host host name
+     * @return URLs of the host handed out so far
+     */
+    public int fetches(String host) {
+        AtomicInteger count = taken.get(host);
+        return count == null ? 0 : count.get();
+    }
+}
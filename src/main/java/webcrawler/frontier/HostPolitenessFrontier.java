@@ -0,0 +1,270 @@
+package webcrawler.frontier;
+
+import webcrawler.util.UrlUtils;
+
+import java.util.ArrayDeque;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Frontier that keeps one priority queue per host and never hands out a URL its host is not ready for.
+ * <p>
+ * A host is ready when at least {@code minDelay} has passed since its last fetch started and fewer than
+ * {@code maxConnectionsPerHost} of its fetches are in flight. Ready hosts sit in a heap ordered by the
+ * time they become ready, so {@link #take()} is O(log hosts) and workers spread across many hosts
+ * instead of queueing behind one. A host can ask for a longer delay, e.g. by the Crawl-delay of its
+ * robots.txt, with {@link #setCrawlDelay}.
+ */
+public class HostPolitenessFrontier implements Frontier {
+
+    private final long minDelayNanos;
+    private final int maxConnectionsPerHost;
+
+    private final Map<String, HostQueue> hosts = new HashMap<>();
+    // delays above minDelay asked for by hosts; kept while the host queue comes and goes
+    private final Map<String, Long> crawlDelays = new HashMap<>();
+    // hosts with waiting URLs and a free connection, earliest ready time first
+    private final PriorityQueue<HostQueue> readyHosts = new PriorityQueue<>(
+            Comparator.comparingLong((HostQueue h) -> h.readyAt).thenComparingLong(h -> h.sequence));
+    // hosts that went idle, oldest first; dropped from hosts once their delay has passed
+    private final ArrayDeque<HostQueue> idleHosts = new ArrayDeque<>();
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition changed = lock.newCondition();
+    private long nextSequence = 0;
+    private int size = 0;
+    private boolean closed = false;
+
+    /**
+     * @param minDelay              minimum time between two fetch starts on the same host
+     * @param unit                  unit of minDelay
+     * @param maxConnectionsPerHost max fetches in flight per host
+     */
+    public HostPolitenessFrontier(long minDelay, TimeUnit unit, int maxConnectionsPerHost) {
+        if (minDelay < 0) throw new IllegalArgumentException("minDelay must not be negative: " + minDelay);
+        if (maxConnectionsPerHost < 1)
+            throw new IllegalArgumentException("maxConnectionsPerHost must be positive: " + maxConnectionsPerHost);
+        this.minDelayNanos = unit.toNanos(minDelay);
+        this.maxConnectionsPerHost = maxConnectionsPerHost;
+    }
+
+    @Override
+    public boolean offer(UrlDepthPair pair) {
+        String host = UrlUtils.host(pair.getUrl());
+        lock.lock();
+        try {
+            if (closed) return false;
+            long now = System.nanoTime();
+            evictIdle(now);
+            HostQueue hostQueue = hosts.computeIfAbsent(host, this::newHostQueue);
+            hostQueue.urls.add(pair);
+            size++;
+            if (schedule(hostQueue, now)) changed.signal();
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public UrlDepthPair take() throws InterruptedException {
+        lock.lockInterruptibly();
+        try {
+            while (!closed) {
+                HostQueue hostQueue = readyHosts.peek();
+                if (hostQueue == null) {
+                    changed.await();
+                    continue;
+                }
+                long now = System.nanoTime();
+                long wait = hostQueue.readyAt - now;
+                if (wait > 0) {
+                    changed.awaitNanos(wait);
+                    continue;
+                }
+                readyHosts.poll();
+                hostQueue.scheduled = false;
+                UrlDepthPair pair = hostQueue.urls.poll();
+                size--;
+                hostQueue.active++;
+                hostQueue.nextFetchAt = now + hostQueue.delayNanos;
+                hostQueue.fetched = true;
+                schedule(hostQueue, now);
+                // another host may be ready as well
+                if (!readyHosts.isEmpty()) changed.signal();
+                return pair;
+            }
+            return null;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void release(UrlDepthPair pair) {
+        String host = UrlUtils.host(pair.getUrl());
+        lock.lock();
+        try {
+            HostQueue hostQueue = hosts.get(host);
+            if (hostQueue == null || hostQueue.active == 0) return;
+            hostQueue.active--;
+            long now = System.nanoTime();
+            if (schedule(hostQueue, now)) {
+                changed.signal();
+            } else if (isIdle(hostQueue) && !hostQueue.idleListed) {
+                // kept until its delay has passed, so a new URL of the host still waits for it
+                hostQueue.idleListed = true;
+                idleHosts.add(hostQueue);
+            }
+            evictIdle(now);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public int size() {
+        lock.lock();
+        try {
+            return size;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Space the fetches of one host further apart than the frontier's minimum delay
+     * @param host  host as in {@link UrlUtils#host}
+     * @param delay time between two fetch starts on the host; at most minDelay restores the default
+     * @param unit  unit of delay
+     */
+    public void setCrawlDelay(String host, long delay, TimeUnit unit) {
+        long delayNanos = Math.max(minDelayNanos, unit.toNanos(delay));
+        lock.lock();
+        try {
+            if (delayNanos > minDelayNanos) crawlDelays.put(host, delayNanos);
+            else crawlDelays.remove(host);
+            HostQueue hostQueue = hosts.get(host);
+            if (hostQueue != null) {
+                // the next fetch waits for the new delay, counted from the last one if there was one
+                if (hostQueue.fetched) hostQueue.nextFetchAt += delayNanos - hostQueue.delayNanos;
+                hostQueue.delayNanos = delayNanos;
+                if (hostQueue.scheduled) {
+                    // rare, once per host and robots.txt fetch, so the linear remove is fine
+                    readyHosts.remove(hostQueue);
+                    hostQueue.scheduled = false;
+                    schedule(hostQueue, System.nanoTime());
+                    changed.signal();
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @param host host as in {@link UrlUtils#host}
+     * @param unit unit of the result
+     * @return time between two fetch starts on the host
+     */
+    public long getCrawlDelay(String host, TimeUnit unit) {
+        lock.lock();
+        try {
+            return unit.convert(crawlDelays.getOrDefault(host, minDelayNanos), TimeUnit.NANOSECONDS);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return number of hosts with queued or in-flight URLs, or whose delay since the last fetch
+     * has not passed yet
+     */
+    public int hostCount() {
+        lock.lock();
+        try {
+            evictIdle(System.nanoTime());
+            return hosts.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void close() {
+        lock.lock();
+        try {
+            closed = true;
+            changed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private HostQueue newHostQueue(String host) {
+        return new HostQueue(host, crawlDelays.getOrDefault(host, minDelayNanos));
+    }
+
+    private static boolean isIdle(HostQueue hostQueue) {
+        return hostQueue.active == 0 && hostQueue.urls.isEmpty();
+    }
+
+    /**
+     * Forget idle hosts whose delay has passed, from the oldest; amortized O(1). Hosts busy again are
+     * dropped from the list and listed anew when they next go idle. Caller holds the lock.
+     */
+    private void evictIdle(long now) {
+        HostQueue hostQueue;
+        while ((hostQueue = idleHosts.peek()) != null) {
+            if (isIdle(hostQueue) && hostQueue.nextFetchAt - now > 0) return;
+            idleHosts.poll();
+            hostQueue.idleListed = false;
+            if (isIdle(hostQueue)) hosts.remove(hostQueue.host, hostQueue);
+        }
+    }
+
+    /**
+     * Put the host into the ready heap if it has work and a free connection. Caller holds the lock.
+     * @return true if the host was added
+     */
+    private boolean schedule(HostQueue hostQueue, long now) {
+        if (hostQueue.scheduled || hostQueue.urls.isEmpty() || hostQueue.active >= maxConnectionsPerHost) {
+            return false;
+        }
+        hostQueue.readyAt = hostQueue.nextFetchAt - now > 0 ? hostQueue.nextFetchAt : now;
+        hostQueue.sequence = nextSequence++;
+        hostQueue.scheduled = true;
+        readyHosts.add(hostQueue);
+        return true;
+    }
+
+    /**
+     * Waiting URLs and politeness state of one host, guarded by the frontier lock.
+     */
+    private static class HostQueue {
+        private final String host;
+        private final PriorityQueue<UrlDepthPair> urls = new PriorityQueue<>();
+        private long delayNanos;
+        private boolean fetched = false;
+        private long nextFetchAt = System.nanoTime();
+        private long readyAt;
+        private long sequence;
+        private int active = 0;
+        private boolean scheduled = false;
+        private boolean idleListed = false;
+
+        private HostQueue(String host, long delayNanos) {
+            this.host = host;
+            this.delayNanos = delayNanos;
+        }
+
+        @Override
+        public String toString() {
+            return host;
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package webcrawler.frontier;
+
+import webcrawler.util.UrlUtils;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * URLs linked to from more crawled pages first. Counts are kept only while a URL is queued,
+ * starting at 1 for the page it was discovered on. Links within one host can be ignored, so
+ * navigation menus do not dominate.
+ */
+public class InLinkCountPolicy implements PriorityPolicy {
+
+    private final ConcurrentHashMap<String, AtomicInteger> inLinks = new ConcurrentHashMap<>();
+    private final boolean crossHostOnly;
+
+    /**
+     * Count every link
+     */
+    public InLinkCountPolicy() {
+        this(false);
+    }
+
+    /**
+     * @param crossHostOnly count only links between different hosts
+     */
+    public InLinkCountPolicy(boolean crossHostOnly) {
+        this.crossHostOnly = crossHostOnly;
+    }
+
+    @Override
+    public int priority(UrlDepthPair pair) {
+        return PriorityPolicy.logBucket(inLinks(pair.getUrl()), 1);
+    }
+
+    @Override
+    public void onTaken(UrlDepthPair pair) {
+        inLinks.remove(pair.getUrl());
+    }
+
+    @Override
+    public void onInLink(String from, String to) {
+        if (crossHostOnly && UrlUtils.host(from).equals(UrlUtils.host(to))) return;
+        inLinks.computeIfAbsent(to, url -> new AtomicInteger(1)).incrementAndGet();
+    }
+
+    /**
+     * @param url queued URL
+     * @return in-links seen so far
+     */
+    public int inLinks(String url) {
+        AtomicInteger count = inLinks.get(url);
+        return count == null ? 1 : count.get();
+    }
+}
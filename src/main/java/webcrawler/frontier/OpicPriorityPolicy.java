@@ -0,0 +1,28 @@
+package webcrawler.frontier;
+
+import webcrawler.graph.OpicEstimator;
+
+/**
+ * URLs holding the most OPIC cash first, i.e. the pages whose fetch moves the importance estimate
+ * the most. The estimator must be fed by the crawler, e.g. with
+ * {@link webcrawler.service.CrawlerService#setImportanceEstimator}.
+ */
+public class OpicPriorityPolicy implements PriorityPolicy {
+
+    // a seed's initial cash lands in the middle of the bucket range
+    private static final int SEED_BUCKET = BUCKETS / 2;
+
+    private final OpicEstimator estimator;
+
+    /**
+     * @param estimator importance estimate of the running crawl
+     */
+    public OpicPriorityPolicy(OpicEstimator estimator) {
+        this.estimator = estimator;
+    }
+
+    @Override
+    public int priority(UrlDepthPair pair) {
+        return PriorityPolicy.logBucket(estimator.cash(pair.getUrl()), SEED_BUCKET);
+    }
+}
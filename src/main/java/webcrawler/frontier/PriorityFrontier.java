@@ -0,0 +1,63 @@
+package webcrawler.frontier;
+
+import java.util.PriorityQueue;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * One global priority queue in {@link UrlDepthPair} order, the crawler's default frontier.
+ */
+public class PriorityFrontier implements Frontier {
+
+    private final PriorityQueue<UrlDepthPair> queue = new PriorityQueue<>();
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+    private boolean closed = false;
+
+    @Override
+    public boolean offer(UrlDepthPair pair) {
+        lock.lock();
+        try {
+            if (closed) return false;
+            queue.add(pair);
+            notEmpty.signal();
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public UrlDepthPair take() throws InterruptedException {
+        lock.lockInterruptibly();
+        try {
+            while (!closed && queue.isEmpty()) {
+                notEmpty.await();
+            }
+            return closed ? null : queue.poll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public int size() {
+        lock.lock();
+        try {
+            return queue.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void close() {
+        lock.lock();
+        try {
+            closed = true;
+            notEmpty.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+}
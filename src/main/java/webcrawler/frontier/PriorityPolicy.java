@@ -0,0 +1,57 @@
+package webcrawler.frontier;
+
+/**
+ * Decides how valuable a queued URL is, for {@link BucketedFrontier}.
+ * <p>
+ * A priority is a bucket number in [0, {@link #BUCKETS}), higher is crawled first; URLs in the same
+ * bucket come out in arrival order. Coarse buckets are enough to fetch the valuable pages first
+ * and keep every frontier operation O(1).
+ */
+public interface PriorityPolicy {
+
+    /**
+     * Number of priority buckets
+     */
+    int BUCKETS = 64;
+
+    /**
+     * @param pair queued URL
+     * @return bucket in [0, BUCKETS), higher first
+     */
+    int priority(UrlDepthPair pair);
+
+    /**
+     * The frontier handed out a URL
+     * @param pair URL returned by take
+     */
+    default void onTaken(UrlDepthPair pair) {
+    }
+
+    /**
+     * A crawled page links to a URL that is still queued; called before the frontier reprioritizes it
+     * @param from crawled page
+     * @param to   queued URL
+     */
+    default void onInLink(String from, String to) {
+    }
+
+    /**
+     * Shallow pages first, the order of a breadth-first crawl
+     * @return stateless policy
+     */
+    static PriorityPolicy breadthFirst() {
+        return pair -> BUCKETS - 1 - Math.min(pair.getDepth(), BUCKETS - 1);
+    }
+
+    /**
+     * Bucket of a positive value on a log scale with two buckets per doubling
+     * @param value  e.g. an in-link count or cash
+     * @param offset bucket of value 1
+     * @return bucket in [0, BUCKETS), 0 for values that are not positive
+     */
+    static int logBucket(double value, int offset) {
+        if (!(value > 0)) return 0;
+        long bucket = offset + (long) Math.floor(2 * Math.log(value) / Math.log(2));
+        return (int) Math.max(1, Math.min(BUCKETS - 1, bucket));
+    }
+}
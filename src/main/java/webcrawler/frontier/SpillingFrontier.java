@@ -0,0 +1,413 @@
+package webcrawler.frontier;
+
+import edu.neu.coe.info6205.util.LazyLogger;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.IntConsumer;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Frontier with a bounded memory footprint: each priority band keeps at most {@code headCapacity}
+ * URLs on the heap and appends the overflow to gzip-compressed segment files on disk.
+ * <p>
+ * Bands are the buckets of a {@link PriorityPolicy}, evaluated once when a URL is offered. Within a
+ * band URLs stay in arrival order: once a band has spilled, new URLs go to disk behind the spilled
+ * ones, and the head is refilled from the oldest segment when it runs empty. Segments are written
+ * sequentially, closed once they hold {@code segmentRecords} URLs (or when they are needed for a
+ * refill), read sequentially and deleted once consumed. Heap use is bands x headCapacity URLs plus one
+ * writer and one reader buffer per spilling band, however large the frontier grows.
+ * <p>
+ * Disk errors do not escape: a URL that cannot be spilled is not accepted, and a segment that
+ * cannot be written or read is dropped with its URLs, which are logged, counted by
+ * {@link #getLost()} and reported to the {@link #setLossListener loss listener}.
+ */
+public class SpillingFrontier implements Frontier {
+
+    private static final LazyLogger logger = new LazyLogger(SpillingFrontier.class);
+
+    private final Path directory;
+    private final PriorityPolicy policy;
+    private final int headCapacity;
+    private final int segmentRecords;
+    private final Band[] bands = new Band[PriorityPolicy.BUCKETS];
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+    private int size = 0;
+    private long segmentsWritten = 0;
+    private boolean closed = false;
+    private long lost = 0;
+    // lost URLs not yet reported to the listener, which is called outside the lock
+    private int unreported = 0;
+    private volatile IntConsumer lossListener;
+
+    /**
+     * Breadth-first bands, 10,000 URLs in memory per band, 100,000 URLs per segment
+     * @param directory where segments are written; created if missing
+     * @throws IOException if the directory cannot be created
+     */
+    public SpillingFrontier(Path directory) throws IOException {
+        this(directory, PriorityPolicy.breadthFirst(), 10_000, 100_000);
+    }
+
+    /**
+     * @param directory      where segments are written; created if missing
+     * @param policy         band of each URL, read once at offer time
+     * @param headCapacity   URLs kept in memory per band
+     * @param segmentRecords URLs per segment file
+     * @throws IOException if the directory cannot be created
+     */
+    public SpillingFrontier(Path directory, PriorityPolicy policy, int headCapacity, int segmentRecords) throws IOException {
+        if (headCapacity < 1) throw new IllegalArgumentException("headCapacity must be positive: " + headCapacity);
+        if (segmentRecords < 1) throw new IllegalArgumentException("segmentRecords must be positive: " + segmentRecords);
+        this.directory = Files.createDirectories(directory);
+        this.policy = policy;
+        this.headCapacity = headCapacity;
+        this.segmentRecords = segmentRecords;
+    }
+
+    /**
+     * @param listener told the number of queued URLs lost with a segment that could not be written
+     *                 or read, e.g. to stop waiting for them; called without the frontier lock
+     */
+    public void setLossListener(IntConsumer listener) {
+        this.lossListener = listener;
+    }
+
+    /**
+     * @return false if closed, or if the URL had to be spilled and the segment cannot be written
+     */
+    @Override
+    public boolean offer(UrlDepthPair pair) {
+        int priority = Math.max(0, Math.min(PriorityPolicy.BUCKETS - 1, policy.priority(pair)));
+        int lostNow = 0;
+        lock.lock();
+        try {
+            if (closed) return false;
+            Band band = bands[priority];
+            if (band == null) band = bands[priority] = new Band(priority);
+            if (band.spilled == 0 && band.head.size() < headCapacity) {
+                band.head.add(pair);
+            } else {
+                try {
+                    band.spill(pair);
+                } catch (IOException e) {
+                    logger.error("Cannot spill to " + directory + ", not queued: " + pair.getUrl() + ": " + e.getMessage());
+                    lose(band.abandonWriter());
+                    lostNow = takeUnreported();
+                    return false;
+                }
+            }
+            size++;
+            notEmpty.signal();
+            return true;
+        } finally {
+            lock.unlock();
+            reportLost(lostNow);
+        }
+    }
+
+    @Override
+    public UrlDepthPair take() throws InterruptedException {
+        while (true) {
+            UrlDepthPair pair;
+            int lostNow;
+            lock.lockInterruptibly();
+            try {
+                while (!closed && size == 0) {
+                    notEmpty.await();
+                }
+                if (closed) return null;
+                pair = poll();
+                if (pair != null) policy.onTaken(pair);
+                lostNow = takeUnreported();
+            } finally {
+                lock.unlock();
+            }
+            reportLost(lostNow);
+            // null if a segment was dropped: look again
+            if (pair != null) return pair;
+        }
+    }
+
+    /**
+     * @return the first URL of the highest non-empty band, or null if a segment had to be dropped
+     */
+    private UrlDepthPair poll() {
+        for (int b = bands.length - 1; b >= 0; b--) {
+            Band band = bands[b];
+            if (band == null || band.size() == 0) continue;
+            if (band.head.isEmpty()) {
+                try {
+                    band.refill();
+                } catch (IOException e) {
+                    logger.error("Cannot read frontier segment in " + directory + ", skipping it: " + e.getMessage());
+                    // no segment being read: closing the open one for the refill failed
+                    lose(band.readerPath != null ? band.abandonReader() : band.abandonWriter());
+                }
+                if (band.head.isEmpty()) return null;
+            }
+            size--;
+            return band.head.poll();
+        }
+        throw new IllegalStateException("frontier size is " + size + " but every band is empty");
+    }
+
+    /**
+     * Count URLs dropped with a segment; the caller holds the lock
+     */
+    private void lose(int count) {
+        if (count == 0) return;
+        logger.warn(count + " queued URLs lost with a frontier segment in " + directory);
+        size -= count;
+        lost += count;
+        unreported += count;
+    }
+
+    /**
+     * @return lost URLs not reported yet, now handed to the caller; the caller holds the lock
+     */
+    private int takeUnreported() {
+        int count = unreported;
+        unreported = 0;
+        return count;
+    }
+
+    /**
+     * Tell the listener about lost URLs, outside the lock as it may call back into the frontier
+     */
+    private void reportLost(int count) {
+        IntConsumer listener = lossListener;
+        if (count > 0 && listener != null) listener.accept(count);
+    }
+
+    @Override
+    public int size() {
+        lock.lock();
+        try {
+            return size;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return URLs currently held on the heap
+     */
+    public int inMemory() {
+        lock.lock();
+        try {
+            int count = 0;
+            for (Band band : bands) {
+                if (band != null) count += band.head.size();
+            }
+            return count;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return URLs currently on disk
+     */
+    public long onDisk() {
+        lock.lock();
+        try {
+            long count = 0;
+            for (Band band : bands) {
+                if (band != null) count += band.spilled;
+            }
+            return count;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return queued URLs lost with segments that could not be written or read
+     */
+    public long getLost() {
+        lock.lock();
+        try {
+            return lost;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return segment files written since the frontier was created
+     */
+    public long getSegmentsWritten() {
+        lock.lock();
+        try {
+            return segmentsWritten;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Wake every blocked take and delete the segment files; URLs still queued are dropped
+     */
+    @Override
+    public void close() {
+        lock.lock();
+        try {
+            if (closed) return;
+            closed = true;
+            notEmpty.signalAll();
+            for (Band band : bands) {
+                if (band != null) band.discard();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Head and segments of one priority, guarded by the frontier lock.
+     */
+    private class Band {
+        private final int priority;
+        private final ArrayDeque<UrlDepthPair> head = new ArrayDeque<>();
+        // finished segments, oldest first, with their record counts
+        private final ArrayDeque<Path> segments = new ArrayDeque<>();
+        private final ArrayDeque<Integer> segmentSizes = new ArrayDeque<>();
+        private long spilled = 0;
+        private long nextSegment = 0;
+        private DataOutputStream writer;
+        private Path writerPath;
+        private int writerRecords;
+        private DataInputStream reader;
+        private Path readerPath;
+        private int readerRemaining;
+
+        private Band(int priority) {
+            this.priority = priority;
+        }
+
+        private long size() {
+            return head.size() + spilled;
+        }
+
+        private void spill(UrlDepthPair pair) throws IOException {
+            // a full segment is closed when the next record comes, so a failed close loses only counted URLs
+            if (writer != null && writerRecords == segmentRecords) finishWriter();
+            if (writer == null) {
+                writerPath = directory.resolve("band-" + priority + "-" + (nextSegment++) + ".seg.gz");
+                writer = new DataOutputStream(new BufferedOutputStream(
+                        new GZIPOutputStream(Files.newOutputStream(writerPath), 8192)));
+                writerRecords = 0;
+            }
+            byte[] url = pair.getUrl().getBytes(StandardCharsets.UTF_8);
+            writer.writeInt(url.length);
+            writer.write(url);
+            writer.writeInt(pair.getDepth());
+            writerRecords++;
+            spilled++;
+        }
+
+        private void finishWriter() throws IOException {
+            writer.close();
+            segments.add(writerPath);
+            segmentSizes.add(writerRecords);
+            segmentsWritten++;
+            writer = null;
+            writerPath = null;
+        }
+
+        /**
+         * Drop the segment being written after a write error, as its tail is unusable
+         * @return URLs lost with it
+         */
+        private int abandonWriter() {
+            int records = writer == null ? 0 : writerRecords;
+            closeQuietly(writer, writerPath);
+            writer = null;
+            writerPath = null;
+            writerRecords = 0;
+            spilled -= records;
+            return records;
+        }
+
+        /**
+         * Drop the segment being read after a read error
+         * @return URLs of it not read yet
+         */
+        private int abandonReader() {
+            int records = readerPath == null ? 0 : readerRemaining;
+            closeQuietly(reader, readerPath);
+            reader = null;
+            readerPath = null;
+            readerRemaining = 0;
+            spilled -= records;
+            return records;
+        }
+
+        /**
+         * Move up to headCapacity spilled URLs back into the head, in the order they were spilled
+         */
+        private void refill() throws IOException {
+            while (head.size() < headCapacity && spilled > 0) {
+                if (reader == null) {
+                    // the open segment is only readable once its gzip trailer is written
+                    if (segments.isEmpty()) finishWriter();
+                    readerPath = segments.poll();
+                    readerRemaining = segmentSizes.poll();
+                    // path and count are set before the open, so a failed open drops the segment's records
+                    reader = new DataInputStream(new BufferedInputStream(
+                            new GZIPInputStream(Files.newInputStream(readerPath), 8192)));
+                }
+                byte[] url = new byte[reader.readInt()];
+                reader.readFully(url);
+                head.add(new UrlDepthPair(new String(url, StandardCharsets.UTF_8), reader.readInt()));
+                spilled--;
+                if (--readerRemaining == 0) {
+                    reader.close();
+                    Files.deleteIfExists(readerPath);
+                    reader = null;
+                    readerPath = null;
+                }
+            }
+        }
+
+        private void discard() {
+            head.clear();
+            spilled = 0;
+            closeQuietly(writer, writerPath);
+            closeQuietly(reader, readerPath);
+            for (Path segment : segments) {
+                closeQuietly(null, segment);
+            }
+            writer = null;
+            reader = null;
+            segments.clear();
+            segmentSizes.clear();
+        }
+
+        private void closeQuietly(Closeable stream, Path file) {
+            try {
+                if (stream != null) stream.close();
+            } catch (IOException e) {
+                // the file is deleted anyway
+            }
+            try {
+                if (file != null) Files.deleteIfExists(file);
+            } catch (IOException e) {
+                logger.warn("Cannot delete frontier segment " + file + ": " + e.getMessage());
+            }
+        }
+    }
+}
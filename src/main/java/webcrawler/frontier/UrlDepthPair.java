@@ -0,0 +1,45 @@
+package webcrawler.frontier;
+
+/**
+ * A URL waiting in the frontier, with the depth it was discovered at.
+ * Ordered by depth, then by URL length.
+ */
+public class UrlDepthPair implements Comparable<UrlDepthPair> {
+    private final String url;
+    private final int depth;
+    private final long queuedAt = System.nanoTime();
+
+    public UrlDepthPair(String url, int depth) {
+        this.url = url;
+        this.depth = depth;
+    }
+
+    public String getUrl() {
+        return url;
+    }
+
+    public int getDepth() {
+        return depth;
+    }
+
+    /**
+     * @return {@link System#nanoTime()} when the pair was created, i.e. queued
+     */
+    public long getQueuedAt() {
+        return queuedAt;
+    }
+
+    @Override
+    public int compareTo(UrlDepthPair o) {
+        int depthComp = Integer.compare(this.depth, o.depth);
+        if(depthComp != 0) {
+            return depthComp;
+        }
+        return Integer.compare(this.url.length(), o.url.length());
+    }
+
+    @Override
+    public String toString() {
+        return url + " @" + depth;
+    }
+}
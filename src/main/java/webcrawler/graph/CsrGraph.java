@@ -0,0 +1,171 @@
+package webcrawler.graph;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Immutable directed graph in compressed sparse row form.
+ * <p>
+ * Vertices are dense ints {@code 0..n-1}. The in-links of vertex {@code v} are
+ * {@code sources[inOffsets[v] .. inOffsets[v+1])}; out-degrees are kept separately. This is the layout
+ * PageRank's pull step wants: each vertex reads its in-neighbours, so vertex ranges can be computed
+ * in parallel without any writes to shared slots. An edge costs one int.
+ */
+public class CsrGraph {
+
+    private final int vertexCount;
+    private final int[] inOffsets;
+    private final int[] sources;
+    private final int[] outDegree;
+
+    private CsrGraph(int vertexCount, int[] inOffsets, int[] sources, int[] outDegree) {
+        this.vertexCount = vertexCount;
+        this.inOffsets = inOffsets;
+        this.sources = sources;
+        this.outDegree = outDegree;
+    }
+
+    /**
+     * Build from parallel edge arrays with a counting sort by target, O(n + m)
+     * @param vertexCount number of vertices, every id must be below it
+     * @param from        edge sources
+     * @param to          edge targets
+     * @param edgeCount   number of edges used from the arrays
+     * @return graph
+     */
+    public static CsrGraph fromEdges(int vertexCount, int[] from, int[] to, int edgeCount) {
+        int[] inOffsets = new int[vertexCount + 1];
+        int[] outDegree = new int[vertexCount];
+        for (int i = 0; i < edgeCount; i++) {
+            inOffsets[to[i] + 1]++;
+            outDegree[from[i]]++;
+        }
+        for (int v = 0; v < vertexCount; v++) {
+            inOffsets[v + 1] += inOffsets[v];
+        }
+        int[] next = Arrays.copyOf(inOffsets, vertexCount);
+        int[] sources = new int[edgeCount];
+        for (int i = 0; i < edgeCount; i++) {
+            sources[next[to[i]]++] = from[i];
+        }
+        return new CsrGraph(vertexCount, inOffsets, sources, outDegree);
+    }
+
+    /**
+     * @return number of vertices
+     */
+    public int vertexCount() {
+        return vertexCount;
+    }
+
+    /**
+     * @return number of edges
+     */
+    public int edgeCount() {
+        return sources.length;
+    }
+
+    /**
+     * @param v vertex
+     * @return number of out-links
+     */
+    public int outDegree(int v) {
+        return outDegree[v];
+    }
+
+    /**
+     * @param v vertex
+     * @return number of in-links
+     */
+    public int inDegree(int v) {
+        return inOffsets[v + 1] - inOffsets[v];
+    }
+
+    /**
+     * @param v vertex
+     * @return sources of the in-links of v
+     */
+    public int[] inLinks(int v) {
+        return Arrays.copyOfRange(sources, inOffsets[v], inOffsets[v + 1]);
+    }
+
+    int[] inOffsets() {
+        return inOffsets;
+    }
+
+    int[] sources() {
+        return sources;
+    }
+
+    int[] outDegrees() {
+        return outDegree;
+    }
+
+    /**
+     * Collects edges, optionally by label (e.g. URL), then builds a {@link CsrGraph}. Not thread safe.
+     */
+    public static class Builder {
+        private final HashMap<String, Integer> ids = new HashMap<>();
+        private final List<String> labels = new ArrayList<>();
+        private int vertexCount;
+        private int[] from = new int[1024];
+        private int[] to = new int[1024];
+        private int edgeCount;
+
+        /**
+         * @param label vertex label
+         * @return its id, assigned on first use
+         */
+        public int vertex(String label) {
+            Integer id = ids.get(label);
+            if (id != null) return id;
+            ids.put(label, vertexCount);
+            while (labels.size() < vertexCount) labels.add(null);
+            labels.add(label);
+            return vertexCount++;
+        }
+
+        /**
+         * @param fromLabel source label
+         * @param toLabel   target label
+         * @return this
+         */
+        public Builder addEdge(String fromLabel, String toLabel) {
+            return addEdge(vertex(fromLabel), vertex(toLabel));
+        }
+
+        /**
+         * @param source source id; ids above the current count grow the graph
+         * @param target target id
+         * @return this
+         */
+        public Builder addEdge(int source, int target) {
+            if (edgeCount == from.length) {
+                from = Arrays.copyOf(from, edgeCount * 2);
+                to = Arrays.copyOf(to, edgeCount * 2);
+            }
+            from[edgeCount] = source;
+            to[edgeCount] = target;
+            edgeCount++;
+            vertexCount = Math.max(vertexCount, Math.max(source, target) + 1);
+            return this;
+        }
+
+        /**
+         * @param id vertex id
+         * @return its label, or null if it was added by id
+         */
+        public String label(int id) {
+            return id < labels.size() ? labels.get(id) : null;
+        }
+
+        /**
+         * @return the graph
+         */
+        public CsrGraph build() {
+            return fromEdges(vertexCount, from, to, edgeCount);
+        }
+    }
+}
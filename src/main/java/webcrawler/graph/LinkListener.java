@@ -0,0 +1,24 @@
+package webcrawler.graph;
+
+import java.util.Collection;
+
+/**
+ * Receives the link graph as the crawler discovers it, e.g. to keep importance estimates or
+ * frontier priorities up to date. Called from fetch threads, so implementations must be thread safe.
+ */
+public interface LinkListener {
+
+    /**
+     * A start URL was added
+     * @param url canonical start URL
+     */
+    default void onSeed(String url) {
+    }
+
+    /**
+     * A page was crawled
+     * @param url   crawled page
+     * @param links all of its valid out-links, already visited or not
+     */
+    void onCrawled(String url, Collection<String> links);
+}
@@ -0,0 +1,207 @@
+package webcrawler.graph;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.DoubleAdder;
+
+/**
+ * Online page importance while the crawl runs, with OPIC (On-line Page Importance Computation).
+ * <p>
+ * Every page holds some cash. Seeds start with one unit each. When a page is crawled, its cash is
+ * added to its history and passed on to its out-links in equal shares. A {@code teleport} fraction,
+ * and all the cash of a page without links, goes to a virtual page that links to every known page.
+ * Importance is (history + cash) over the total, which converges to PageRank with damping
+ * {@code 1 - teleport} as pages are recrawled. Between recrawls it is a running estimate.
+ * <p>
+ * Each crawled page costs O(out-degree): only the page and its direct targets change. The virtual
+ * page's share is tracked lazily with one global counter instead of touching every page. The cash
+ * of a page not yet fetched says how much importance is waiting on it, which makes it a good
+ * frontier priority. State is kept per URL, so memory grows with the number of discovered URLs.
+ * All methods are thread safe.
+ */
+public class OpicEstimator implements LinkListener {
+
+    private final double teleport;
+    private final ConcurrentHashMap<String, PageCash> pages = new ConcurrentHashMap<>();
+    private final DoubleAdder totalHistory = new DoubleAdder();
+    private final DoubleAdder totalCash = new DoubleAdder();
+    // cumulative virtual-page cash per page, as double bits
+    private final AtomicLong virtualPerPage = new AtomicLong(Double.doubleToRawLongBits(0));
+    private final AtomicLong crawled = new AtomicLong();
+
+    /**
+     * Teleport 0.15, i.e. PageRank's damping factor 0.85
+     */
+    public OpicEstimator() {
+        this(0.15);
+    }
+
+    /**
+     * @param teleport share of a crawled page's cash given to all pages instead of its links
+     */
+    public OpicEstimator(double teleport) {
+        if (teleport < 0 || teleport > 1) throw new IllegalArgumentException("teleport must be in [0, 1]: " + teleport);
+        this.teleport = teleport;
+    }
+
+    /**
+     * Give a start URL one unit of cash
+     * @param url start URL
+     */
+    public void seed(String url) {
+        page(url).add(1.0);
+        totalCash.add(1.0);
+    }
+
+    @Override
+    public void onSeed(String url) {
+        seed(url);
+    }
+
+    /**
+     * Account for a crawled page: move its cash to its history and distribute it over its links
+     * @param url   crawled page
+     * @param links all of its out-links, already visited or not
+     */
+    @Override
+    public void onCrawled(String url, Collection<String> links) {
+        double cash = page(url).spend(virtual());
+        totalHistory.add(cash);
+        crawled.incrementAndGet();
+        if (cash == 0) return;
+
+        int degree = links.size();
+        double toAll = degree == 0 ? cash : cash * teleport;
+        if (degree > 0) {
+            double share = (cash - toAll) / degree;
+            for (String link : links) {
+                page(link).add(share);
+            }
+        }
+        addVirtual(toAll);
+    }
+
+    /**
+     * @param url page
+     * @return cash waiting on the page, i.e. importance it would pass on if fetched now
+     */
+    public double cash(String url) {
+        PageCash page = pages.get(url);
+        return page == null ? 0 : page.cash(virtual());
+    }
+
+    /**
+     * @param url page
+     * @return estimated importance, all pages sum to 1
+     */
+    public double importance(String url) {
+        PageCash page = pages.get(url);
+        if (page == null) return 0;
+        double total = totalHistory.sum() + totalCash.sum();
+        return total == 0 ? 0 : page.importance(virtual()) / total;
+    }
+
+    /**
+     * @param k number of pages
+     * @return the k most important pages with their importance, highest first
+     */
+    public Map<String, Double> topK(int k) {
+        double virtual = virtual();
+        double total = totalHistory.sum() + totalCash.sum();
+        PriorityQueue<Map.Entry<String, Double>> heap = new PriorityQueue<>(Math.max(1, k), Map.Entry.comparingByValue());
+        for (Map.Entry<String, PageCash> entry : pages.entrySet()) {
+            double value = entry.getValue().importance(virtual);
+            if (heap.size() < k) {
+                heap.add(Map.entry(entry.getKey(), value));
+            } else if (k > 0 && value > heap.peek().getValue()) {
+                heap.poll();
+                heap.add(Map.entry(entry.getKey(), value));
+            }
+        }
+        List<Map.Entry<String, Double>> sorted = new ArrayList<>(heap);
+        sorted.sort(Map.Entry.<String, Double>comparingByValue().reversed());
+        LinkedHashMap<String, Double> top = new LinkedHashMap<>();
+        for (Map.Entry<String, Double> entry : sorted) {
+            top.put(entry.getKey(), total == 0 ? 0 : entry.getValue() / total);
+        }
+        return top;
+    }
+
+    /**
+     * @return pages known (seeded, crawled or linked to)
+     */
+    public int pageCount() {
+        return pages.size();
+    }
+
+    /**
+     * @return pages crawled so far
+     */
+    public long crawledCount() {
+        return crawled.get();
+    }
+
+    private PageCash page(String url) {
+        PageCash page = pages.get(url);
+        if (page != null) return page;
+        return pages.computeIfAbsent(url, u -> new PageCash(virtual()));
+    }
+
+    private double virtual() {
+        return Double.longBitsToDouble(virtualPerPage.get());
+    }
+
+    /**
+     * Spread cash over every known page by raising the shared per-page counter
+     */
+    private void addVirtual(double cash) {
+        int count = pages.size();
+        if (cash == 0 || count == 0) return;
+        double perPage = cash / count;
+        long current, updated;
+        do {
+            current = virtualPerPage.get();
+            updated = Double.doubleToRawLongBits(Double.longBitsToDouble(current) + perPage);
+        } while (!virtualPerPage.compareAndSet(current, updated));
+    }
+
+    /**
+     * Cash and history of one page. Virtual cash is settled lazily: the page owns the growth of the
+     * global per-page counter since it last looked.
+     */
+    private static class PageCash {
+        private double cash;
+        private double history;
+        private double virtualSeen;
+
+        PageCash(double virtual) {
+            this.virtualSeen = virtual;
+        }
+
+        synchronized void add(double amount) {
+            cash += amount;
+        }
+
+        synchronized double spend(double virtual) {
+            double amount = cash + (virtual - virtualSeen);
+            virtualSeen = virtual;
+            cash = 0;
+            history += amount;
+            return amount;
+        }
+
+        synchronized double cash(double virtual) {
+            return cash + (virtual - virtualSeen);
+        }
+
+        synchronized double importance(double virtual) {
+            return history + cash + (virtual - virtualSeen);
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package webcrawler.graph;
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Times CSR construction and {@link ParallelPageRank} on a synthetic web-like graph
+ * (uniform sources, power-law targets), with 1 thread and with all cores.
+ * Arguments: vertex count (default 1M), edge count (default 10M).
+ */
+public class PageRankBenchmark {
+
+    public static void main(String[] args) {
+        int n = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        int m = args.length > 1 ? Integer.parseInt(args[1]) : 10_000_000;
+        Random random = new Random(42);
+        int[] from = new int[m];
+        int[] to = new int[m];
+        for (int e = 0; e < m; e++) {
+            from[e] = random.nextInt(n);
+            to[e] = (int) (n * Math.pow(random.nextDouble(), 3));
+        }
+
+        long start = System.nanoTime();
+        CsrGraph graph = CsrGraph.fromEdges(n, from, to, m);
+        System.out.printf("CSR build: %d vertices, %d edges in %.3f s%n", n, m, (System.nanoTime() - start) / 1e9);
+
+        int cores = Runtime.getRuntime().availableProcessors();
+        for (int threads : new int[]{1, cores}) {
+            ForkJoinPool pool = new ForkJoinPool(threads);
+            ParallelPageRank pageRank = new ParallelPageRank(pool, 0.85, 1e-6, 100);
+            pageRank.compute(graph); // warmup
+            start = System.nanoTime();
+            ParallelPageRank.Result result = pageRank.compute(graph);
+            double seconds = (System.nanoTime() - start) / 1e9;
+            System.out.printf("%d thread(s): %d iterations in %.3f s (%.0f M edges/s), converged=%b%n",
+                    threads, result.iterations(), seconds, (double) m * result.iterations() / seconds / 1e6,
+                    result.converged());
+            pool.shutdown();
+        }
+    }
+}
@@ -0,0 +1,275 @@
+package webcrawler.graph;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * PageRank by power iteration over a {@link CsrGraph}, parallel over vertex ranges on a fork-join pool.
+ * <p>
+ * Each iteration is one pull pass: a vertex sums the precomputed contributions
+ * {@code rank[u] / outDegree[u]} of its in-neighbours, so tasks only write their own slice of the
+ * primitive arrays and need no synchronization. The same pass produces the next contributions, the
+ * rank of dangling pages (spread evenly, as in the random-surfer model) and the L1 change used to
+ * stop once the ranks have converged.
+ */
+public class ParallelPageRank {
+
+    private static final int MIN_SLICE = 4096;
+
+    private final ForkJoinPool pool;
+    private final double dampingFactor;
+    private final double tolerance;
+    private final int maxIterations;
+
+    /**
+     * Common pool, damping 0.85, tolerance 1e-6, at most 100 iterations
+     */
+    public ParallelPageRank() {
+        this(ForkJoinPool.commonPool(), 0.85, 1e-6, 100);
+    }
+
+    /**
+     * @param dampingFactor probability of following a link
+     * @param tolerance     stop when the L1 change of the rank vector falls below this; 0 runs all iterations
+     * @param maxIterations upper bound on iterations
+     */
+    public ParallelPageRank(double dampingFactor, double tolerance, int maxIterations) {
+        this(ForkJoinPool.commonPool(), dampingFactor, tolerance, maxIterations);
+    }
+
+    /**
+     * @param pool          pool the vertex ranges run on
+     * @param dampingFactor probability of following a link
+     * @param tolerance     stop when the L1 change of the rank vector falls below this; 0 runs all iterations
+     * @param maxIterations upper bound on iterations
+     */
+    public ParallelPageRank(ForkJoinPool pool, double dampingFactor, double tolerance, int maxIterations) {
+        if (dampingFactor < 0 || dampingFactor >= 1) {
+            throw new IllegalArgumentException("dampingFactor must be in [0, 1): " + dampingFactor);
+        }
+        this.pool = pool;
+        this.dampingFactor = dampingFactor;
+        this.tolerance = tolerance;
+        this.maxIterations = maxIterations;
+    }
+
+    /**
+     * @param graph link graph
+     * @return scores (summing to 1) and convergence information
+     */
+    public Result compute(CsrGraph graph) {
+        int n = graph.vertexCount();
+        double[] rank = new double[n];
+        double[] next = new double[n];
+        double[] contribution = new double[n];
+        double[] nextContribution = new double[n];
+        if (n == 0) return new Result(rank, 0, 0, true);
+
+        int[] outDegree = graph.outDegrees();
+        double initial = 1.0 / n;
+        double dangling = 0;
+        for (int v = 0; v < n; v++) {
+            rank[v] = initial;
+            if (outDegree[v] == 0) dangling += initial;
+            else contribution[v] = initial / outDegree[v];
+        }
+        // slices small enough to balance skewed in-degrees, large enough to amortize task overhead
+        int slice = Math.max(MIN_SLICE, n / (pool.getParallelism() * 8));
+
+        int iteration = 0;
+        double delta = Double.MAX_VALUE;
+        while (iteration < maxIterations && delta >= tolerance) {
+            double base = (1 - dampingFactor) / n + dampingFactor * dangling / n;
+            Pass pass = new Pass(graph, base, rank, next, contribution, nextContribution, 0, n, slice);
+            pool.invoke(pass);
+            delta = pass.delta;
+            dangling = pass.dangling;
+            iteration++;
+
+            double[] swap = rank;
+            rank = next;
+            next = swap;
+            swap = contribution;
+            contribution = nextContribution;
+            nextContribution = swap;
+        }
+        return new Result(rank, iteration, delta, delta < tolerance);
+    }
+
+    /**
+     * One iteration over the vertices [from, to), split in halves down to the slice size.
+     */
+    @SuppressWarnings("serial")
+    private class Pass extends RecursiveAction {
+        private final CsrGraph graph;
+        private final double base;
+        private final double[] rank, next, contribution, nextContribution;
+        private final int from, to, slice;
+        private double delta;
+        private double dangling;
+
+        Pass(CsrGraph graph, double base, double[] rank, double[] next, double[] contribution,
+             double[] nextContribution, int from, int to, int slice) {
+            this.graph = graph;
+            this.base = base;
+            this.rank = rank;
+            this.next = next;
+            this.contribution = contribution;
+            this.nextContribution = nextContribution;
+            this.from = from;
+            this.to = to;
+            this.slice = slice;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > slice) {
+                int middle = (from + to) >>> 1;
+                Pass left = new Pass(graph, base, rank, next, contribution, nextContribution, from, middle, slice);
+                Pass right = new Pass(graph, base, rank, next, contribution, nextContribution, middle, to, slice);
+                invokeAll(left, right);
+                delta = left.delta + right.delta;
+                dangling = left.dangling + right.dangling;
+                return;
+            }
+            int[] offsets = graph.inOffsets();
+            int[] sources = graph.sources();
+            int[] outDegree = graph.outDegrees();
+            double d = 0, dang = 0;
+            for (int v = from; v < to; v++) {
+                double sum = 0;
+                for (int e = offsets[v], end = offsets[v + 1]; e < end; e++) {
+                    sum += contribution[sources[e]];
+                }
+                double value = base + dampingFactor * sum;
+                d += Math.abs(value - rank[v]);
+                next[v] = value;
+                int degree = outDegree[v];
+                if (degree == 0) {
+                    dang += value;
+                    nextContribution[v] = 0;
+                } else {
+                    nextContribution[v] = value / degree;
+                }
+            }
+            delta = d;
+            dangling = dang;
+        }
+    }
+
+    /**
+     * Scores of one run.
+     */
+    public static class Result {
+        private final double[] scores;
+        private final int iterations;
+        private final double delta;
+        private final boolean converged;
+
+        Result(double[] scores, int iterations, double delta, boolean converged) {
+            this.scores = scores;
+            this.iterations = iterations;
+            this.delta = delta;
+            this.converged = converged;
+        }
+
+        /**
+         * @return score per vertex id, not copied
+         */
+        public double[] scores() {
+            return scores;
+        }
+
+        /**
+         * @param v vertex
+         * @return its score
+         */
+        public double score(int v) {
+            return scores[v];
+        }
+
+        /**
+         * @return iterations run
+         */
+        public int iterations() {
+            return iterations;
+        }
+
+        /**
+         * @return L1 change of the last iteration
+         */
+        public double delta() {
+            return delta;
+        }
+
+        /**
+         * @return true if the run stopped on the tolerance rather than the iteration limit
+         */
+        public boolean converged() {
+            return converged;
+        }
+
+        /**
+         * The k highest scoring vertices, with a size-k min-heap instead of sorting all n
+         * @param k number of vertices
+         * @return vertex ids, highest score first
+         */
+        public int[] topK(int k) {
+            int size = Math.min(k, scores.length);
+            int[] heap = new int[size];
+            int count = 0;
+            for (int v = 0; v < scores.length; v++) {
+                if (count < size) {
+                    heap[count] = v;
+                    siftUp(heap, count++);
+                } else if (size > 0 && scores[v] > scores[heap[0]]) {
+                    heap[0] = v;
+                    siftDown(heap, 0, size);
+                }
+            }
+            // pop the heap from the back: smallest first, so the array ends up in descending order
+            for (int end = size - 1; end > 0; end--) {
+                int min = heap[0];
+                heap[0] = heap[end];
+                heap[end] = min;
+                siftDown(heap, 0, end);
+            }
+            return heap;
+        }
+
+        private boolean less(int a, int b) {
+            return scores[a] < scores[b] || (scores[a] == scores[b] && a > b);
+        }
+
+        private void siftUp(int[] heap, int i) {
+            while (i > 0) {
+                int parent = (i - 1) >>> 1;
+                if (!less(heap[i], heap[parent])) break;
+                int swap = heap[i];
+                heap[i] = heap[parent];
+                heap[parent] = swap;
+                i = parent;
+            }
+        }
+
+        private void siftDown(int[] heap, int i, int size) {
+            while (true) {
+                int left = 2 * i + 1;
+                if (left >= size) return;
+                int smallest = left + 1 < size && less(heap[left + 1], heap[left]) ? left + 1 : left;
+                if (!less(heap[smallest], heap[i])) return;
+                int swap = heap[i];
+                heap[i] = heap[smallest];
+                heap[smallest] = swap;
+                i = smallest;
+            }
+        }
+
+        @Override
+        public String toString() {
+            return "PageRank{vertices=" + scores.length + ", iterations=" + iterations + ", delta=" + delta
+                    + ", converged=" + converged + ", top=" + Arrays.toString(topK(5)) + "}";
+        }
+    }
+}
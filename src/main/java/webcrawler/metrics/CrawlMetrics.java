@@ -0,0 +1,330 @@
+package webcrawler.metrics;
+
+import edu.neu.coe.info6205.util.LazyLogger;
+import webcrawler.util.UrlUtils;
+
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Where each millisecond of a crawl goes: a {@link LatencyHistogram} per {@link CrawlStage},
+ * responses per status code and per host, and crawled and failed pages.
+ * <p>
+ * Fetchers, {@link webcrawler.service.CrawlerService}, the graph writers and
+ * {@link webcrawler.parallel.ParallelCrawler} record into the shared {@link #global()} instance, like
+ * {@link webcrawler.util.HttpUtils} shares one fetcher. Recording is lock-free and allocation-free
+ * except for the first response of a host. Read it with {@link #snapshot()}, periodically through
+ * {@code ParallelCrawler.enableMetricsReport}, or over JMX after {@link #registerMBean()}.
+ */
+public class CrawlMetrics implements CrawlMetricsMXBean {
+
+    private static final LazyLogger logger = new LazyLogger(CrawlMetrics.class);
+    private static final CrawlMetrics GLOBAL = new CrawlMetrics();
+    private static final String OBJECT_NAME = "webcrawler:type=CrawlMetrics";
+    // bounds the host map on very wide crawls; later hosts are counted together
+    private static final int MAX_HOSTS = 10_000;
+    private static final String OTHER_HOSTS = "(other)";
+    private static final int TOP_HOSTS = 20;
+
+    private final LatencyHistogram[] stages = new LatencyHistogram[CrawlStage.values().length];
+    private final AtomicLongArray statusCounts = new AtomicLongArray(600);
+    private final ConcurrentHashMap<String, LongAdder> hostCounts = new ConcurrentHashMap<>();
+    private final LongAdder pagesCrawled = new LongAdder();
+    private final LongAdder pagesFailed = new LongAdder();
+    private volatile long startNanos = System.nanoTime();
+
+    public CrawlMetrics() {
+        for (int i = 0; i < stages.length; i++) {
+            stages[i] = new LatencyHistogram();
+        }
+    }
+
+    /**
+     * @return the instance the crawler records into
+     */
+    public static CrawlMetrics global() {
+        return GLOBAL;
+    }
+
+    /**
+     * @param stage step of the pipeline
+     * @param nanos time it took
+     */
+    public void record(CrawlStage stage, long nanos) {
+        stages[stage.ordinal()].record(nanos);
+    }
+
+    /**
+     * Record the time since start
+     * @param stage      step of the pipeline
+     * @param startNanos {@link System#nanoTime()} when the step began
+     */
+    public void recordSince(CrawlStage stage, long startNanos) {
+        stages[stage.ordinal()].record(System.nanoTime() - startNanos);
+    }
+
+    /**
+     * Count an HTTP response
+     * @param url    requested URL
+     * @param status status code
+     */
+    public void recordResponse(String url, int status) {
+        if (status >= 0 && status < statusCounts.length()) statusCounts.incrementAndGet(status);
+        LongAdder counter = hostCounts.get(UrlUtils.host(url));
+        if (counter == null) {
+            String host = hostCounts.size() < MAX_HOSTS ? UrlUtils.host(url) : OTHER_HOSTS;
+            counter = hostCounts.computeIfAbsent(host, key -> new LongAdder());
+        }
+        counter.increment();
+    }
+
+    /**
+     * @param success false if the fetch or extraction failed
+     */
+    public void recordPage(boolean success) {
+        if (success) pagesCrawled.increment();
+        else pagesFailed.increment();
+    }
+
+    /**
+     * @param stage step of the pipeline
+     * @return its histogram
+     */
+    public LatencyHistogram histogram(CrawlStage stage) {
+        return stages[stage.ordinal()];
+    }
+
+    /**
+     * @return copy of all counters
+     */
+    public Snapshot snapshot() {
+        LatencyHistogram.Snapshot[] stageSnapshots = new LatencyHistogram.Snapshot[stages.length];
+        for (int i = 0; i < stages.length; i++) {
+            stageSnapshots[i] = stages[i].snapshot();
+        }
+        Map<Integer, Long> statuses = new TreeMap<>();
+        for (int i = 0; i < statusCounts.length(); i++) {
+            long count = statusCounts.get(i);
+            if (count > 0) statuses.put(i, count);
+        }
+        return new Snapshot(System.nanoTime(), startNanos, pagesCrawled.sum(), pagesFailed.sum(), stageSnapshots, statuses);
+    }
+
+    /**
+     * Publish on the platform MBean server as {@code webcrawler:type=CrawlMetrics}; does nothing if
+     * an instance is already registered
+     */
+    public void registerMBean() {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(OBJECT_NAME);
+            if (!server.isRegistered(name)) server.registerMBean(this, name);
+        } catch (InstanceAlreadyExistsException e) {
+            // registered by another thread meanwhile
+        } catch (JMException e) {
+            logger.error("Failed to register crawl metrics MBean: " + e.getMessage());
+        }
+    }
+
+    @Override
+    public long getPagesCrawled() {
+        return pagesCrawled.sum();
+    }
+
+    @Override
+    public long getPagesFailed() {
+        return pagesFailed.sum();
+    }
+
+    @Override
+    public double getPagesPerSecond() {
+        return snapshot().getPagesPerSecond();
+    }
+
+    @Override
+    public Map<String, Long> getStageCounts() {
+        Map<String, Long> counts = new LinkedHashMap<>();
+        for (CrawlStage stage : CrawlStage.values()) {
+            counts.put(stage.name(), histogram(stage).count());
+        }
+        return counts;
+    }
+
+    @Override
+    public Map<String, Double> getStageMeanMillis() {
+        Map<String, Double> means = new LinkedHashMap<>();
+        for (CrawlStage stage : CrawlStage.values()) {
+            means.put(stage.name(), histogram(stage).snapshot().getMean() / 1e6);
+        }
+        return means;
+    }
+
+    @Override
+    public Map<String, Double> getStageP50Millis() {
+        return stageValues(0.5);
+    }
+
+    @Override
+    public Map<String, Double> getStageP99Millis() {
+        return stageValues(0.99);
+    }
+
+    @Override
+    public Map<String, Double> getStageMaxMillis() {
+        Map<String, Double> values = new LinkedHashMap<>();
+        for (CrawlStage stage : CrawlStage.values()) {
+            values.put(stage.name(), histogram(stage).snapshot().getMax() / 1e6);
+        }
+        return values;
+    }
+
+    @Override
+    public Map<String, Long> getStatusCounts() {
+        Map<String, Long> counts = new LinkedHashMap<>();
+        snapshot().getStatusCounts().forEach((status, count) -> counts.put(String.valueOf(status), count));
+        return counts;
+    }
+
+    @Override
+    public Map<String, Long> getTopHosts() {
+        Map<String, Long> top = new LinkedHashMap<>();
+        hostCounts.entrySet().stream()
+                .map(entry -> Map.entry(entry.getKey(), entry.getValue().sum()))
+                .sorted(Map.Entry.<String, Long>comparingByValue(Comparator.reverseOrder()))
+                .limit(TOP_HOSTS)
+                .forEach(entry -> top.put(entry.getKey(), entry.getValue()));
+        return top;
+    }
+
+    @Override
+    public String getReport() {
+        return snapshot() + "\n  top hosts: " + getTopHosts();
+    }
+
+    /**
+     * Clear every counter and restart the throughput clock
+     */
+    @Override
+    public void reset() {
+        for (LatencyHistogram stage : stages) {
+            stage.reset();
+        }
+        for (int i = 0; i < statusCounts.length(); i++) {
+            statusCounts.set(i, 0);
+        }
+        hostCounts.clear();
+        pagesCrawled.reset();
+        pagesFailed.reset();
+        startNanos = System.nanoTime();
+    }
+
+    private Map<String, Double> stageValues(double quantile) {
+        Map<String, Double> values = new LinkedHashMap<>();
+        for (CrawlStage stage : CrawlStage.values()) {
+            values.put(stage.name(), histogram(stage).snapshot().getValueAt(quantile) / 1e6);
+        }
+        return values;
+    }
+
+    /**
+     * Counters at one point in time; the difference of two gives the rates of an interval.
+     */
+    public static class Snapshot {
+        private final long takenNanos;
+        private final long startNanos;
+        private final long pagesCrawled;
+        private final long pagesFailed;
+        private final LatencyHistogram.Snapshot[] stages;
+        private final Map<Integer, Long> statusCounts;
+
+        Snapshot(long takenNanos, long startNanos, long pagesCrawled, long pagesFailed,
+                 LatencyHistogram.Snapshot[] stages, Map<Integer, Long> statusCounts) {
+            this.takenNanos = takenNanos;
+            this.startNanos = startNanos;
+            this.pagesCrawled = pagesCrawled;
+            this.pagesFailed = pagesFailed;
+            this.stages = stages;
+            this.statusCounts = statusCounts;
+        }
+
+        /**
+         * @param earlier snapshot taken before this one
+         * @return what was recorded between the two
+         */
+        public Snapshot since(Snapshot earlier) {
+            LatencyHistogram.Snapshot[] difference = new LatencyHistogram.Snapshot[stages.length];
+            for (int i = 0; i < stages.length; i++) {
+                difference[i] = stages[i].since(earlier.stages[i]);
+            }
+            Map<Integer, Long> statuses = new TreeMap<>();
+            statusCounts.forEach((status, count) -> {
+                long delta = count - earlier.statusCounts.getOrDefault(status, 0L);
+                if (delta > 0) statuses.put(status, delta);
+            });
+            return new Snapshot(takenNanos, earlier.takenNanos, pagesCrawled - earlier.pagesCrawled,
+                    pagesFailed - earlier.pagesFailed, difference, statuses);
+        }
+
+        /**
+         * @param stage step of the pipeline
+         * @return its latencies
+         */
+        public LatencyHistogram.Snapshot getStage(CrawlStage stage) {
+            return stages[stage.ordinal()];
+        }
+
+        public long getPagesCrawled() {
+            return pagesCrawled;
+        }
+
+        public long getPagesFailed() {
+            return pagesFailed;
+        }
+
+        /**
+         * @return status code to number of responses, in code order
+         */
+        public Map<Integer, Long> getStatusCounts() {
+            return statusCounts;
+        }
+
+        /**
+         * @return seconds covered by this snapshot
+         */
+        public double getSeconds() {
+            return (takenNanos - startNanos) / 1e9;
+        }
+
+        /**
+         * @return pages crawled per second over the period covered
+         */
+        public double getPagesPerSecond() {
+            double seconds = getSeconds();
+            return seconds <= 0 ? 0 : pagesCrawled / seconds;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder builder = new StringBuilder(String.format(
+                    "%d pages crawled, %d failed in %.1f s (%.1f pages/s), status %s",
+                    pagesCrawled, pagesFailed, getSeconds(), getPagesPerSecond(), statusCounts));
+            for (CrawlStage stage : CrawlStage.values()) {
+                LatencyHistogram.Snapshot histogram = getStage(stage);
+                if (histogram.getCount() > 0) {
+                    builder.append(String.format("%n  %-11s %s", stage, histogram));
+                }
+            }
+            return builder.toString();
+        }
+    }
+}
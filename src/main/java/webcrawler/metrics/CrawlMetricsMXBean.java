@@ -0,0 +1,52 @@
+package webcrawler.metrics;
+
+import java.util.Map;
+
+/**
+ * JMX view of {@link CrawlMetrics}, registered as {@code webcrawler:type=CrawlMetrics}.
+ * Stage maps are keyed by {@link CrawlStage} name, durations in milliseconds.
+ */
+public interface CrawlMetricsMXBean {
+
+    /**
+     * @return pages crawled successfully
+     */
+    long getPagesCrawled();
+
+    /**
+     * @return pages whose fetch or extraction failed
+     */
+    long getPagesFailed();
+
+    /**
+     * @return pages crawled per second since the start or the last reset
+     */
+    double getPagesPerSecond();
+
+    Map<String, Long> getStageCounts();
+
+    Map<String, Double> getStageMeanMillis();
+
+    Map<String, Double> getStageP50Millis();
+
+    Map<String, Double> getStageP99Millis();
+
+    Map<String, Double> getStageMaxMillis();
+
+    /**
+     * @return responses per HTTP status code
+     */
+    Map<String, Long> getStatusCounts();
+
+    /**
+     * @return responses of the 20 busiest hosts
+     */
+    Map<String, Long> getTopHosts();
+
+    /**
+     * @return all of the above as text
+     */
+    String getReport();
+
+    void reset();
+}
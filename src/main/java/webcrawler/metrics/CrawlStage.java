@@ -0,0 +1,44 @@
+package webcrawler.metrics;
+
+/**
+ * Steps of the crawl pipeline that are timed by {@link CrawlMetrics}.
+ */
+public enum CrawlStage {
+    /**
+     * From being put in the frontier to being taken by a consumer
+     */
+    QUEUE_WAIT,
+    /**
+     * From sending the request to the response headers: DNS, connect, TLS and server time.
+     * The HTTP clients do not report DNS and connect separately.
+     */
+    CONNECT,
+    /**
+     * Reading the response body
+     */
+    DOWNLOAD,
+    /**
+     * Turning the body into title and links (Jsoup parse, or the streaming scan including the read)
+     */
+    PARSE,
+    /**
+     * SimHash of the page text and the near-duplicate lookup, when enabled
+     */
+    FINGERPRINT,
+    /**
+     * Normalizing, filtering and deduplicating the links of a page
+     */
+    FILTER,
+    /**
+     * Handing a page to storage until it is queued (batched) or committed (async)
+     */
+    STORE,
+    /**
+     * One write transaction of a batch of pages and links
+     */
+    WRITE_BATCH,
+    /**
+     * A URL from being taken until its page and links are stored
+     */
+    TOTAL
+}
@@ -0,0 +1,169 @@
+package webcrawler.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free histogram of durations in nanoseconds, with log-linear buckets like HdrHistogram.
+ * <p>
+ * Values below 64 have a bucket each; above, every power of two is split into 32 buckets, so a
+ * percentile is within about 3% of the true value over the whole range of a long. Recording is an
+ * index computation and an atomic increment, with no allocation and no lock; threads only contend
+ * when they record values in the same bucket.
+ */
+public class LatencyHistogram {
+
+    private static final int SUB_BITS = 5;
+    private static final int SUB_BUCKETS = 1 << SUB_BITS;
+    private static final int LINEAR = 2 * SUB_BUCKETS;
+    static final int BUCKETS = (Long.SIZE - SUB_BITS - 1) * SUB_BUCKETS + LINEAR;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * @param nanos duration, negative values count as 0
+     */
+    public void record(long nanos) {
+        long value = Math.max(0, nanos);
+        counts.incrementAndGet(bucket(value));
+        count.increment();
+        sum.add(value);
+        long current = max.get();
+        while (value > current && !max.compareAndSet(current, value)) {
+            current = max.get();
+        }
+    }
+
+    /**
+     * @return values recorded
+     */
+    public long count() {
+        return count.sum();
+    }
+
+    /**
+     * Copy of the counts; not atomic with respect to concurrent records, each bucket is exact
+     * @return snapshot
+     */
+    public Snapshot snapshot() {
+        long[] copy = new long[BUCKETS];
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            copy[i] = counts.get(i);
+            total += copy[i];
+        }
+        return new Snapshot(copy, total, sum.sum(), max.get());
+    }
+
+    /**
+     * Clear all counts; values recorded meanwhile may be lost
+     */
+    public void reset() {
+        for (int i = 0; i < BUCKETS; i++) {
+            counts.set(i, 0);
+        }
+        count.reset();
+        sum.reset();
+        max.set(0);
+    }
+
+    static int bucket(long value) {
+        if (value < LINEAR) return (int) value;
+        int shift = Long.SIZE - Long.numberOfLeadingZeros(value) - 1 - SUB_BITS;
+        return shift * SUB_BUCKETS + (int) (value >>> shift);
+    }
+
+    static long lowerBound(int bucket) {
+        if (bucket < LINEAR) return bucket;
+        int shift = bucket / SUB_BUCKETS - 1;
+        return (long) (bucket % SUB_BUCKETS + SUB_BUCKETS) << shift;
+    }
+
+    static long upperBound(int bucket) {
+        if (bucket < LINEAR) return bucket;
+        int shift = bucket / SUB_BUCKETS - 1;
+        return lowerBound(bucket) + (1L << shift) - 1;
+    }
+
+    /**
+     * Immutable copy of a histogram.
+     */
+    public static class Snapshot {
+        private final long[] counts;
+        private final long count;
+        private final long sum;
+        private final long max;
+
+        Snapshot(long[] counts, long count, long sum, long max) {
+            this.counts = counts;
+            this.count = count;
+            this.sum = sum;
+            this.max = max;
+        }
+
+        /**
+         * Values recorded after an earlier snapshot of the same histogram. The max is the max
+         * since the histogram was created or reset.
+         * @param earlier snapshot taken before this one
+         * @return difference
+         */
+        public Snapshot since(Snapshot earlier) {
+            long[] difference = new long[BUCKETS];
+            long total = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                difference[i] = Math.max(0, counts[i] - earlier.counts[i]);
+                total += difference[i];
+            }
+            return new Snapshot(difference, total, Math.max(0, sum - earlier.sum), max);
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        /**
+         * @return mean in nanoseconds, 0 if empty
+         */
+        public double getMean() {
+            return count == 0 ? 0 : sum / (double) count;
+        }
+
+        /**
+         * @return largest value in nanoseconds
+         */
+        public long getMax() {
+            return max;
+        }
+
+        /**
+         * @param quantile between 0 and 1, e.g. 0.99
+         * @return the value below which that share of the values falls, in nanoseconds; 0 if empty
+         */
+        public long getValueAt(double quantile) {
+            if (quantile < 0 || quantile > 1) throw new IllegalArgumentException("quantile not in [0, 1]: " + quantile);
+            if (count == 0) return 0;
+            long rank = Math.max(1, (long) Math.ceil(quantile * count));
+            long seen = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                seen += counts[i];
+                if (seen >= rank) {
+                    // middle of the bucket, but never above the largest value recorded
+                    long value = lowerBound(i) + (upperBound(i) - lowerBound(i)) / 2;
+                    return max > 0 ? Math.min(value, max) : value;
+                }
+            }
+            return max;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("n=%d mean=%.2fms p50=%.2fms p90=%.2fms p99=%.2fms max=%.2fms",
+                    count, getMean() / 1e6, getValueAt(0.5) / 1e6, getValueAt(0.9) / 1e6,
+                    getValueAt(0.99) / 1e6, max / 1e6);
+        }
+    }
+}
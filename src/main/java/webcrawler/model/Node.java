@@ -5,7 +5,7 @@ public class Node {
     private String title; // 新增字段
     private String crawlTime; // 新增字段
 
-    public Node(String id, String title, String s) {
+    public Node(String id, String title, String crawlTime) {
         this.id = id;
         this.title = title;
         this.crawlTime = crawlTime;
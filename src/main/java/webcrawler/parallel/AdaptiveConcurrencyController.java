@@ -0,0 +1,158 @@
+package webcrawler.parallel;
+
+import java.util.function.IntSupplier;
+
+/**
+ * Finds the number of concurrent fetches that gives peak throughput, instead of a hand-tuned pool size.
+ * <p>
+ * Fetch samples are grouped into windows. At the end of each window the limit is updated like
+ * TCP Vegas: the shortest average latency seen so far is taken as the no-queueing latency, and the
+ * ratio {@code minLatency / latency} says how much of the current latency is queueing (at the
+ * servers, the network or our own pools). The new limit is {@code limit * ratio + sqrt(limit)}, so
+ * it keeps growing while latency stays flat and shrinks as soon as extra fetches only add waiting.
+ * If more than {@code maxErrorRate} of a window's fetches failed or timed out, the limit is cut
+ * multiplicatively instead (AIMD). The limit only grows while it is actually used and URLs are
+ * waiting, so an idle crawl does not inflate it. Every few dozen windows the limit is halved for
+ * one window to re-measure the minimum latency with little queueing, so the controller follows
+ * sites that get slower or faster.
+ * <p>
+ * The controller only computes the limit; {@link ParallelCrawler} applies it to its fetch permits.
+ */
+public class AdaptiveConcurrencyController {
+
+    private static final int MIN_WINDOW_SAMPLES = 10;
+    private static final long WINDOW_NANOS = 1_000_000_000L;
+    private static final int PROBE_WINDOWS = 30;
+    private static final double SMOOTHING = 0.2;
+    private static final double BACKOFF = 0.7;
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final double maxErrorRate;
+
+    // guarded by this
+    private double limit;
+    private long windowStart = System.nanoTime();
+    private int samples;
+    private int errors;
+    private long latencySum;
+    private int maxInFlight;
+    private double minLatency = Double.MAX_VALUE;
+    private int windows;
+    private double lastLatency;
+    private double limitBeforeProbe; // 0 unless the current window is a probe
+
+    /**
+     * Tolerate up to 10% failed fetches before backing off
+     * @param initialLimit concurrent fetches to start with
+     * @param minLimit     lower bound
+     * @param maxLimit     upper bound
+     */
+    public AdaptiveConcurrencyController(int initialLimit, int minLimit, int maxLimit) {
+        this(initialLimit, minLimit, maxLimit, 0.1);
+    }
+
+    /**
+     * @param initialLimit concurrent fetches to start with
+     * @param minLimit     lower bound
+     * @param maxLimit     upper bound
+     * @param maxErrorRate share of failed fetches in a window above which the limit is cut
+     */
+    public AdaptiveConcurrencyController(int initialLimit, int minLimit, int maxLimit, double maxErrorRate) {
+        if (minLimit < 1 || maxLimit < minLimit || initialLimit < minLimit || initialLimit > maxLimit) {
+            throw new IllegalArgumentException("need 1 <= minLimit <= initialLimit <= maxLimit: "
+                    + minLimit + ", " + initialLimit + ", " + maxLimit);
+        }
+        this.limit = initialLimit;
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.maxErrorRate = maxErrorRate;
+    }
+
+    /**
+     * Record one finished fetch
+     * @param latencyNanos time from dispatch to result
+     * @param success      false if the fetch failed or timed out
+     * @param inFlight     fetches in flight when it was dispatched
+     * @param backlog      URLs waiting, read only when a window closes
+     * @return the limit to apply from now on
+     */
+    public synchronized int onSample(long latencyNanos, boolean success, int inFlight, IntSupplier backlog) {
+        return onSample(latencyNanos, success, inFlight, backlog, System.nanoTime());
+    }
+
+    /**
+     * @param now time of the sample, for tests
+     */
+    synchronized int onSample(long latencyNanos, boolean success, int inFlight, IntSupplier backlog, long now) {
+        samples++;
+        if (!success) errors++;
+        latencySum += latencyNanos;
+        maxInFlight = Math.max(maxInFlight, inFlight);
+        if (samples >= Math.max(MIN_WINDOW_SAMPLES, (int) limit) || (now - windowStart >= WINDOW_NANOS && samples > 0)) {
+            update(backlog.getAsInt());
+            windowStart = now;
+            samples = 0;
+            errors = 0;
+            latencySum = 0;
+            maxInFlight = 0;
+        }
+        return getLimit();
+    }
+
+    private void update(int backlog) {
+        double latency = latencySum / (double) samples;
+        double errorRate = errors / (double) samples;
+        lastLatency = latency;
+        windows++;
+        if (limitBeforeProbe > 0) {
+            // the probe window ran at half the limit: its latency is the new baseline, so a site
+            // that became slower does not pin the limit down
+            minLatency = latency;
+            limit = limitBeforeProbe;
+            limitBeforeProbe = 0;
+            return;
+        }
+        minLatency = Math.min(minLatency, latency);
+
+        if (errorRate > maxErrorRate) {
+            limit = Math.max(minLimit, limit * BACKOFF);
+            return;
+        }
+        if (windows % PROBE_WINDOWS == 0) {
+            limitBeforeProbe = limit;
+            limit = Math.max(minLimit, limit / 2);
+            return;
+        }
+        double target;
+        if (maxInFlight < limit * 0.8 || backlog == 0) {
+            // not limited by us: more permits would not be used, so only allow shrinking
+            target = Math.min(limit, limit * (minLatency / latency) + Math.sqrt(limit));
+        } else {
+            double gradient = Math.max(0.5, Math.min(1.0, minLatency / latency));
+            target = limit * gradient + Math.sqrt(limit);
+        }
+        limit = Math.max(minLimit, Math.min(maxLimit, (1 - SMOOTHING) * limit + SMOOTHING * target));
+    }
+
+    /**
+     * @return current limit on concurrent fetches
+     */
+    public synchronized int getLimit() {
+        return (int) Math.round(limit);
+    }
+
+    public int getMinLimit() {
+        return minLimit;
+    }
+
+    public int getMaxLimit() {
+        return maxLimit;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("AdaptiveConcurrency{limit=%d, minLatency=%.1f ms, lastLatency=%.1f ms, windows=%d}",
+                getLimit(), minLatency == Double.MAX_VALUE ? 0 : minLatency / 1e6, lastLatency / 1e6, windows);
+    }
+}
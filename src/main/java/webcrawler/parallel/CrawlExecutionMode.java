@@ -0,0 +1,15 @@
+package webcrawler.parallel;
+
+/**
+ * How {@link ParallelCrawler} runs its fetches.
+ */
+public enum CrawlExecutionMode {
+    /**
+     * Fixed pool of platform threads, each fetch holds one OS thread for the whole request.
+     */
+    PLATFORM,
+    /**
+     * One virtual thread per fetch (Java 21), concurrency is capped by a semaphore instead of the pool size.
+     */
+    VIRTUAL
+}
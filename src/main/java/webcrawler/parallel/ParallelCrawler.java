@@ -2,36 +2,82 @@ package webcrawler.parallel;
 
 import edu.neu.coe.info6205.util.LazyLogger;
 import webcrawler.DTO.CrawlResultDTO;
+import webcrawler.checkpoint.CrawlCheckpoint;
+import webcrawler.dedup.TieredUrlDeduplicator;
+import webcrawler.frontier.Frontier;
+import webcrawler.frontier.HostPolitenessFrontier;
+import webcrawler.frontier.PriorityFrontier;
+import webcrawler.frontier.SpillingFrontier;
+import webcrawler.frontier.UrlDepthPair;
+import webcrawler.graph.LinkListener;
+import webcrawler.graph.OpicEstimator;
+import webcrawler.metrics.CrawlMetrics;
+import webcrawler.metrics.CrawlStage;
 import webcrawler.repository.GraphRepository;
+import webcrawler.robots.RobotsCache;
 import webcrawler.service.CrawlerService;
 import webcrawler.service.GraphService;
+import webcrawler.sitemap.SitemapSource;
 import webcrawler.util.HttpUtils;
 
+import java.io.Closeable;
+import java.io.IOException;
 import java.util.HashSet;
-import java.util.Queue;
+import java.util.Iterator;
 import java.util.Set;
 import java.util.concurrent.*;
 import java.util.concurrent.atomic.AtomicInteger;
 
-import static java.lang.Thread.sleep;
-
 /**
  * 并行爬虫逻辑，使用队列管理并行任务。
  */
 public class ParallelCrawler {
 
     private static final LazyLogger logger = new LazyLogger(ParallelCrawler.class);
+    // log the current top pages every this many crawled pages, when importance is estimated
+    private static final int IMPORTANCE_REPORT_INTERVAL = 1000;
+    private static final CrawlMetrics metrics = CrawlMetrics.global();
+    // sitemap seeding pauses at this many pending URLs and goes on once half of them are done
+    private static final int SEED_HIGH_WATER = 10_000;
+    private static final int SEED_LOW_WATER = SEED_HIGH_WATER / 2;
+    // a URL whose robots.txt is unreachable is put off this many times before it is dropped
+    private static final int ROBOTS_RETRIES = 3;
+    // result of crawl() for a URL put off until its robots.txt can be fetched
+    private static final CrawlResultDTO DEFERRED = new CrawlResultDTO();
 
     private final ExecutorService executorService; // main thread poll
     private final ExecutorService asyncExecutor; // crawler thread poll
+    private final CrawlExecutionMode executionMode;
+    // caps the number of fetches in flight, a consumer needs a permit before it takes a URL
+    private final AdjustableSemaphore fetchPermits;
+    private final int maxConcurrentFetches;
     private final CrawlerService crawlerService;
 //    private final Set<String> visitedUrls;
     private final int maxDepth;
-    private final Queue<UrlDepthPair> urlQueue; //
+    private final Frontier urlQueue; //
     private volatile boolean isStopped = false;
     private final AtomicInteger crawlCount = new AtomicInteger(0); // counter
-    private int emptyQueueCount = 0;
-    private static final int MAX_EMPTY_COUNT = 20; // max empty queue request
+    // URLs that are queued or being crawled; the crawl is finished when this drops to zero
+    private final AtomicInteger pendingUrls = new AtomicInteger(0);
+    private final CountDownLatch finished = new CountDownLatch(1);
+    // journal of the frontier for crash recovery, null if not enabled
+    private volatile CrawlCheckpoint checkpoint;
+    private long checkpointIntervalMillis;
+    private long metricsIntervalMillis;
+    private ScheduledExecutorService scheduler; // periodic checkpoints and metrics reports
+    // tunes the number of fetch permits at runtime, null for a fixed limit
+    private volatile AdaptiveConcurrencyController concurrencyController;
+    private int fetchLimit; // permits currently handed out, guarded by applyLimit
+    private final AtomicInteger inFlight = new AtomicInteger(0);
+    // robots.txt rules checked before a URL is queued and before it is fetched, null if ignored
+    private volatile RobotsCache robots;
+    private final AtomicInteger robotsSkipped = new AtomicInteger(0);
+    // times each URL was put off because its robots.txt was unreachable
+    private final ConcurrentHashMap<String, Integer> robotsRetries = new ConcurrentHashMap<>();
+    private final AtomicInteger robotsUnreachable = new AtomicInteger(0);
+    // the sitemap feeder waits on this while the frontier is full, null without sitemaps
+    private volatile Object seedSignal;
+    private final AtomicInteger sitemapSeeds = new AtomicInteger(0);
 
     /**
      * Make sure all threads are terminated and isStopped is true
@@ -48,16 +94,86 @@ public class ParallelCrawler {
      * @param maxDepth set max depth
      */
     public ParallelCrawler(int threadCount, int maxDepth) {
+        this(threadCount, maxDepth, CrawlExecutionMode.PLATFORM, threadCount);
+    }
+
+    /**
+     * Constructor
+     * @param threadCount          number of consumer threads taking URLs from the queue
+     * @param maxDepth             set max depth
+     * @param executionMode        run fetches on a fixed platform pool or on virtual threads
+     * @param maxConcurrentFetches max fetches in flight; for PLATFORM this is also the fetch pool size
+     */
+    public ParallelCrawler(int threadCount, int maxDepth, CrawlExecutionMode executionMode, int maxConcurrentFetches) {
+        this(threadCount, maxDepth, executionMode, maxConcurrentFetches, new PriorityFrontier());
+    }
+
+    /**
+     * Constructor
+     * @param threadCount          number of consumer threads taking URLs from the frontier
+     * @param maxDepth             set max depth
+     * @param executionMode        run fetches on a fixed platform pool or on virtual threads
+     * @param maxConcurrentFetches max fetches in flight; for PLATFORM this is also the fetch pool size
+     * @param frontier             queue of URLs to crawl, e.g. a {@link webcrawler.frontier.HostPolitenessFrontier}
+     */
+    public ParallelCrawler(int threadCount, int maxDepth, CrawlExecutionMode executionMode, int maxConcurrentFetches,
+                           Frontier frontier) {
+        this(threadCount, maxDepth, executionMode, maxConcurrentFetches, frontier, new CrawlerService());
+    }
 
+    /**
+     * Constructor
+     * @param threadCount          number of consumer threads taking URLs from the frontier
+     * @param maxDepth             set max depth
+     * @param executionMode        run fetches on a fixed platform pool or on virtual threads
+     * @param maxConcurrentFetches max fetches in flight; for PLATFORM this is also the fetch pool size
+     * @param frontier             queue of URLs to crawl; told about new links if it is a {@link LinkListener}
+     * @param crawlerService       fetch, dedup and store logic, e.g. with a custom visited set
+     */
+    public ParallelCrawler(int threadCount, int maxDepth, CrawlExecutionMode executionMode, int maxConcurrentFetches,
+                           Frontier frontier, CrawlerService crawlerService) {
+        if (maxConcurrentFetches < 1) {
+            throw new IllegalArgumentException("maxConcurrentFetches must be positive: " + maxConcurrentFetches);
+        }
         this.executorService = Executors.newFixedThreadPool(threadCount);
-        this.asyncExecutor = Executors.newFixedThreadPool(threadCount); // bigger than the main thread pool
-        this.crawlerService = new CrawlerService();
+        this.executionMode = executionMode;
+        if (executionMode == CrawlExecutionMode.VIRTUAL) {
+            this.asyncExecutor = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("crawl-fetch-", 0).factory());
+        } else {
+            this.asyncExecutor = Executors.newFixedThreadPool(maxConcurrentFetches);
+        }
+        this.maxConcurrentFetches = maxConcurrentFetches;
+        this.fetchLimit = maxConcurrentFetches;
+        this.fetchPermits = new AdjustableSemaphore(maxConcurrentFetches);
+        this.crawlerService = crawlerService;
         this.maxDepth = maxDepth;
         // parallel safe type set, serve as priority queue
 //        this.visitedUrls = ConcurrentHashMap.newKeySet();
 //        this.urlQueue = new ConcurrentLinkedQueue<>();
 
-        this.urlQueue = new PriorityBlockingQueue<>();
+        this.urlQueue = frontier;
+        // e.g. a BucketedFrontier raising queued URLs as more links to them are found
+        if (frontier instanceof LinkListener listener) {
+            crawlerService.addLinkListener(listener);
+        }
+        // URLs lost with an unreadable spill segment are never taken, so their pending slots are freed here
+        if (frontier instanceof SpillingFrontier spilling) {
+            spilling.setLossListener(count -> {
+                for (int i = 0; i < count; i++) {
+                    completeUrl();
+                }
+            });
+        }
+        RobotsCache robots = RobotsCache.load();
+        if (robots != null) enableRobots(robots);
+    }
+
+    /**
+     * getter
+     * @return how fetches are executed
+     */
+    public CrawlExecutionMode getExecutionMode() {
+        return executionMode;
     }
 
     /**
@@ -75,8 +191,11 @@ public class ParallelCrawler {
      * @param startUrls URL set
      */
     public void startCrawling(Set<String> startUrls) {
+        // hold one pending slot while seeding so the crawl cannot finish before all seeds are queued
+        pendingUrls.incrementAndGet();
         for (String url : startUrls) {
-            enqueueUrl(url, 0);
+            String seed = crawlerService.addSeed(url);
+            if (seed != null) enqueueUrl(seed, 0);
         }
 
 //        // warmup
@@ -90,6 +209,197 @@ public class ParallelCrawler {
 //            }
 //        }
 
+        startConsumers();
+        completeUrl();
+    }
+
+    /**
+     * start the crawler mission with the start URLs, then with the pages of a sitemap source as it
+     * is read. Sitemap pages are seeds at depth 0, so the depth limit does not hide pages deep in
+     * the link graph. They are read on a thread of their own and only while fewer than
+     * {@value #SEED_HIGH_WATER} URLs are pending, so a sitemap of millions of pages is never in
+     * memory and cannot flood the frontier; the crawl ends once the source is used up.
+     *
+     * @param startUrls   URL set, may be empty
+     * @param sitemapUrls page URLs, e.g. a {@link SitemapSource}; closed when used up if {@link Closeable}
+     */
+    public void startCrawling(Set<String> startUrls, Iterator<String> sitemapUrls) {
+        Object signal = new Object();
+        seedSignal = signal;
+        // the feeder's pending slot keeps the crawl alive until the source is used up
+        pendingUrls.incrementAndGet();
+        Thread feeder = new Thread(() -> feedSitemap(sitemapUrls, signal), "crawl-sitemap-feeder");
+        feeder.setDaemon(true);
+        startCrawling(startUrls);
+        feeder.start();
+    }
+
+    /**
+     * Queue the pages of a sitemap source as seeds, pausing while too many URLs are pending
+     */
+    private void feedSitemap(Iterator<String> sitemapUrls, Object signal) {
+        try {
+            while (!isStopped && sitemapUrls.hasNext()) {
+                synchronized (signal) {
+                    while (pendingUrls.get() >= SEED_HIGH_WATER && !isStopped) {
+                        // woken at the low water mark; the timeout covers a wakeup missed in between
+                        signal.wait(100);
+                    }
+                }
+                String seed = crawlerService.addSeed(sitemapUrls.next());
+                if (seed != null && enqueueUrl(seed, 0, true)) sitemapSeeds.incrementAndGet();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (RuntimeException e) {
+            logger.error("Sitemap seeding failed: " + e.getMessage(), e);
+        } finally {
+            if (sitemapUrls instanceof Closeable closeable) {
+                try {
+                    closeable.close();
+                } catch (IOException e) {
+                    logger.warn("Cannot close sitemap source: " + e.getMessage());
+                }
+            }
+            if (sitemapUrls instanceof SitemapSource source) logger.info(source.getStats());
+            logger.info("Seeded " + sitemapSeeds.get() + " URLs from sitemaps");
+            completeUrl();
+        }
+    }
+
+    /**
+     * getter
+     * @return URLs queued from sitemaps so far
+     */
+    public int getSitemapSeeds() {
+        return sitemapSeeds.get();
+    }
+
+    /**
+     * Journal the frontier so a crawl that dies can be resumed, and commit a checkpoint at a fixed rate.
+     * Call before {@link #startCrawling} or {@link #resumeCrawling}.
+     * @param checkpoint journal, closed by the caller after the crawl
+     * @param interval   time between checkpoints
+     * @param unit       unit of interval
+     */
+    public void enableCheckpoints(CrawlCheckpoint checkpoint, long interval, TimeUnit unit) {
+        this.checkpoint = checkpoint;
+        this.checkpointIntervalMillis = unit.toMillis(interval);
+    }
+
+    /**
+     * Log the stage latencies, status codes and throughput of every interval, from {@link CrawlMetrics#global()}.
+     * Call before {@link #startCrawling} or {@link #resumeCrawling}.
+     * @param interval time between reports
+     * @param unit     unit of interval
+     */
+    public void enableMetricsReport(long interval, TimeUnit unit) {
+        this.metricsIntervalMillis = unit.toMillis(interval);
+    }
+
+    /**
+     * Let the number of concurrent fetches follow fetch latency, errors and queue depth instead of
+     * staying at maxConcurrentFetches. Call before {@link #startCrawling} or {@link #resumeCrawling}.
+     * @param controller computes the limit; for PLATFORM its max limit must not exceed the fetch pool size
+     */
+    public void enableAdaptiveConcurrency(AdaptiveConcurrencyController controller) {
+        if (executionMode == CrawlExecutionMode.PLATFORM && controller.getMaxLimit() > maxConcurrentFetches) {
+            throw new IllegalArgumentException("max limit " + controller.getMaxLimit()
+                    + " exceeds the fetch pool size " + maxConcurrentFetches);
+        }
+        this.concurrencyController = controller;
+        applyLimit(controller.getLimit());
+    }
+
+    /**
+     * Obey robots.txt: disallowed URLs are neither queued nor fetched, and with a
+     * {@link HostPolitenessFrontier} a host's Crawl-delay spaces its fetches. A URL whose robots.txt
+     * is unreachable is put back in the frontier once the cache fetches it again, and dropped after
+     * {@value #ROBOTS_RETRIES} tries. Enabled by default with
+     * {@code -Dcrawler.robots=<product token>}. Call before {@link #startCrawling} or {@link #resumeCrawling}.
+     * @param robots rules cache for the crawler's user agent
+     */
+    public void enableRobots(RobotsCache robots) {
+        if (urlQueue instanceof HostPolitenessFrontier politeness) {
+            robots.setRulesListener((host, rules) -> {
+                long delay = rules.getCrawlDelayMillis();
+                politeness.setCrawlDelay(host, Math.max(delay, 0), TimeUnit.MILLISECONDS);
+            });
+        }
+        this.robots = robots;
+    }
+
+    /**
+     * getter
+     * @return URLs not crawled because robots.txt disallows them
+     */
+    public int getRobotsSkipped() {
+        return robotsSkipped.get();
+    }
+
+    /**
+     * getter
+     * @return URLs dropped because their robots.txt stayed unreachable
+     */
+    public int getRobotsUnreachable() {
+        return robotsUnreachable.get();
+    }
+
+    /**
+     * getter
+     * @return permits for concurrent fetches currently in use
+     */
+    public synchronized int getFetchLimit() {
+        return fetchLimit;
+    }
+
+    /**
+     * Continue the crawl saved in the checkpoint given to {@link #enableCheckpoints}: every URL queued
+     * before is marked visited, and URLs that were queued or in flight are crawled again.
+     * @return number of URLs put back in the frontier
+     */
+    public int resumeCrawling() {
+        CrawlCheckpoint journal = checkpoint;
+        if (journal == null) throw new IllegalStateException("enableCheckpoints() must be called first");
+        long start = System.nanoTime();
+        CrawlCheckpoint.Recovery recovery = journal.recover(crawlerService.getVisitedUrls());
+        crawlCount.set((int) recovery.crawlCount());
+        logger.info("Resuming from checkpoint: " + recovery + " in "
+                + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) + " ms");
+
+        pendingUrls.incrementAndGet();
+        int resumed = 0;
+        for (UrlDepthPair pair : recovery.pending()) {
+            // already journaled as queued, only its DONE record is missing
+            if (enqueueUrl(pair.getUrl(), pair.getDepth(), false)) resumed++;
+        }
+        startConsumers();
+        completeUrl();
+        return resumed;
+    }
+
+    private void startConsumers() {
+        boolean checkpoints = checkpoint != null && checkpointIntervalMillis > 0;
+        // the scheduler also puts back URLs whose robots.txt was unreachable
+        if (checkpoints || metricsIntervalMillis > 0 || robots != null) {
+            scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "crawl-scheduler");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        if (checkpoints) {
+            scheduler.scheduleAtFixedRate(this::checkpoint,
+                    checkpointIntervalMillis, checkpointIntervalMillis, TimeUnit.MILLISECONDS);
+        }
+        if (metricsIntervalMillis > 0) {
+            CrawlMetrics.Snapshot[] previous = {metrics.snapshot()};
+            scheduler.scheduleAtFixedRate(() -> {
+                CrawlMetrics.Snapshot current = metrics.snapshot();
+                logger.info("Last " + metricsIntervalMillis / 1000 + " s: " + current.since(previous[0]));
+                previous[0] = current;
+            }, metricsIntervalMillis, metricsIntervalMillis, TimeUnit.MILLISECONDS);
+        }
         int consumerNum = ((ThreadPoolExecutor) executorService).getCorePoolSize();
         System.out.println("consumer num" + consumerNum);
         for (int i = 0; i < consumerNum; i++) {
@@ -97,11 +407,82 @@ public class ParallelCrawler {
         }
     }
 
+    /**
+     * Commit the journal with the current counter
+     */
+    private void checkpoint() {
+        CrawlCheckpoint journal = checkpoint;
+        if (journal == null) return;
+        try {
+            journal.checkpoint(crawlCount.get());
+        } catch (RuntimeException e) {
+            logger.error("Checkpoint failed: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Put a URL whose robots.txt is unreachable back in the frontier once the cache fetches it
+     * again, or drop it after {@value #ROBOTS_RETRIES} tries. The URL keeps its pending slot, and
+     * its journal record, while it waits.
+     * @param pair URL returned by the frontier
+     */
+    private void defer(UrlDepthPair pair) {
+        String url = pair.getUrl();
+        if (robotsRetries.merge(url, 1, Integer::sum) > ROBOTS_RETRIES) {
+            robotsRetries.remove(url);
+            robotsUnreachable.incrementAndGet();
+            logger.warn("robots.txt still unreachable, dropping " + url);
+            dropDeferred(url);
+            return;
+        }
+        try {
+            scheduler.schedule(() -> {
+                if (isStopped || !urlQueue.offer(new UrlDepthPair(url, pair.getDepth()))) {
+                    robotsRetries.remove(url);
+                    dropDeferred(url);
+                }
+            }, robots.getErrorTtl().toNanos(), TimeUnit.NANOSECONDS);
+        } catch (RejectedExecutionException e) {
+            // stopped while the URL was being fetched
+            robotsRetries.remove(url);
+            dropDeferred(url);
+        }
+    }
+
+    private void dropDeferred(String url) {
+        CrawlCheckpoint checkpoint = this.checkpoint;
+        if (checkpoint != null) checkpoint.logDone(url);
+        completeUrl();
+    }
+
+    /**
+     * Stop the periodic checkpoints and reports and commit a last checkpoint
+     */
+    private void finalCheckpoint() {
+        if (scheduler != null) scheduler.shutdown();
+        checkpoint();
+    }
+
+    /**
+     * Block until the crawl has finished, i.e. the queue is empty and no fetch is in flight.
+     *
+     * @param timeout max time to wait
+     * @param unit    unit of timeout
+     * @return true if the crawl finished, false if the timeout elapsed first
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public boolean awaitCompletion(long timeout, TimeUnit unit) throws InterruptedException {
+        return finished.await(timeout, unit) && executorService.awaitTermination(timeout, unit)
+                && asyncExecutor.awaitTermination(timeout, unit);
+    }
+
     /**
      * stop Crawling and wait for job to stop within 60s
      */
     public void stopCrawling() {
         isStopped = true;
+        urlQueue.close();
+        finished.countDown();
         executorService.shutdown();
         asyncExecutor.shutdown();
         try {
@@ -111,6 +492,8 @@ public class ParallelCrawler {
             if (!asyncExecutor.awaitTermination(30, TimeUnit.SECONDS)) {
                 asyncExecutor.shutdownNow();
             }
+            // unfinished URLs stay in the journal and are crawled on resume
+            finalCheckpoint();
         } catch (InterruptedException e) {
             executorService.shutdownNow();
             asyncExecutor.shutdownNow();
@@ -127,66 +510,152 @@ public class ParallelCrawler {
      * @param depth current depth
      */
     private void enqueueUrl(String url, int depth) {
+        enqueueUrl(url, depth, true);
+    }
+
+    /**
+     * add URL to the Queue
+     *
+     * @param url     URL
+     * @param depth   current depth
+     * @param journal false if the checkpoint journal already has the URL
+     * @return true if the URL was queued
+     */
+    private boolean enqueueUrl(String url, int depth, boolean journal) {
 //        System.out.println(Thread.currentThread().getName() + " AM I blocked the program?");
-        if (depth > maxDepth) return;
+        if (depth > maxDepth || isStopped) return false;
+        RobotsCache robots = this.robots;
+        if (robots != null && !robots.isAllowedIfKnown(url)) {
+            robotsSkipped.incrementAndGet();
+            return false;
+        }
 
+        // count the URL before it becomes visible to consumers, so pendingUrls never under-reports
+        pendingUrls.incrementAndGet();
+        CrawlCheckpoint checkpoint = this.checkpoint;
+        if (checkpoint != null && journal) checkpoint.logQueued(url, depth);
         // unblock way
         if (!urlQueue.offer(new UrlDepthPair(url, depth))) {
 //            System.err.println("Queue is full, cannot add URL: " + url);
             logger.warn("Queue is full, cannot add URL: " + url);
-
+            if (checkpoint != null) checkpoint.logDone(url);
+            completeUrl();
+            return false;
         } else {
 //            System.out.println(Thread.currentThread().getName() + "add url: " + url);
+            return true;
         }
     }
 
     /**
-     * processQueue
+     * Mark one queued URL as fully processed (crawled, children enqueued, data stored).
+     * The thread that brings the pending count to zero finishes the crawl.
      */
-    private void processQueue() {
-        while (!isStopped ) {// && !Thread.currentThread().isInterrupted()
-            try {
-                UrlDepthPair pair = urlQueue.poll(); //take() ; poll(1, java.util.concurrent.TimeUnit.MINUTES)
-                 // take(): use the block way to get elements, not null
-                if (pair == null) {
-                    emptyQueueCount++;
-//                    System.out.println(Thread.currentThread().getName() + " - No tasks in the queue. Waiting for new tasks...sleep 1 s");
-
-                    if (emptyQueueCount >= MAX_EMPTY_COUNT) {
-//                        System.out.println(Thread.currentThread().getName() + " - Reached max empty count. Stopping crawler...");
-                        stopCrawling();
+    private void completeUrl() {
+        int pending = pendingUrls.decrementAndGet();
+        if (pending == 0) {
+            finishCrawling();
+        } else if (pending == SEED_LOW_WATER) {
+            Object signal = seedSignal;
+            if (signal != null) {
+                synchronized (signal) {
+                    signal.notifyAll();
+                }
+            }
+        }
+    }
 
-                        logger.info( "Crawler stopped due to empty queue.");
-                        logger.info( "Total crawled so far: " + getCrawlCount());
-                        System.out.println("Crawler stopped");
+    /**
+     * The queue is empty and nothing is in flight: release the consumers and shut the pools down.
+     * Does not wait for termination, as it runs on one of the pool threads.
+     */
+    private void finishCrawling() {
+        if (isStopped) return;
+        isStopped = true;
+        urlQueue.close();
+        executorService.shutdown();
+        asyncExecutor.shutdown();
+        // so awaitCompletion() also means everything is in the database
+        crawlerService.flushStorage();
+        finalCheckpoint();
+        finished.countDown();
+
+        logger.info("Crawler stopped due to empty queue.");
+        logger.info("Total crawled so far: " + getCrawlCount());
+        if (crawlerService.getVisitedUrls() instanceof TieredUrlDeduplicator deduplicator) {
+            logger.info(deduplicator.getStats());
+        }
+        if (crawlerService.getRevalidatingFetcher() != null) {
+            logger.info(crawlerService.getRevalidatingFetcher().getStats());
+        }
+        if (robots != null) {
+            logger.info(robots.getStats() + ", " + robotsSkipped.get() + " URLs skipped, "
+                    + robotsUnreachable.get() + " dropped as unreachable");
+        }
+        if (crawlerService.getNearDuplicateIndex() != null) {
+            logger.info(crawlerService.getNearDuplicateIndex().getStats());
+        }
+        if (concurrencyController != null) {
+            logger.info("Fetch concurrency at finish: " + concurrencyController);
+        }
+        logger.info("Crawl metrics: " + metrics.snapshot());
+        reportImportance();
+        System.out.println("Crawler stopped");
+        System.out.println("Total crawled so far: " + getCrawlCount());
+    }
 
-                        System.out.println("Total crawled so far: " + getCrawlCount());
-                        break;
-                    }
+    /**
+     * Log the most important pages so far, if the crawler service keeps an importance estimate
+     */
+    private void reportImportance() {
+        OpicEstimator estimator = crawlerService.getImportanceEstimator();
+        if (estimator == null) return;
+        logger.info("Top pages after " + estimator.crawledCount() + " crawled, " + estimator.pageCount()
+                + " known: " + estimator.topK(10));
+    }
 
-                    sleep(1000);
-                    continue;
+    /**
+     * processQueue, block on the frontier until a URL is ready or the frontier is closed
+     */
+    private void processQueue() {
+        while (!isStopped) {// && !Thread.currentThread().isInterrupted()
+            try {
+                // wait for a free fetch slot first, so URLs stay in the priority queue until they can run
+                fetchPermits.acquire();
+                UrlDepthPair pair = urlQueue.take();
+                if (pair == null) {
+                    fetchPermits.release();
+                    break;
                 }
-                // reset counter
-                emptyQueueCount = 0;
                 String url = pair.getUrl();
                 int depth = pair.getDepth();
+                int dispatched = inFlight.incrementAndGet();
+                long start = System.nanoTime();
+                metrics.record(CrawlStage.QUEUE_WAIT, start - pair.getQueuedAt());
 
 //                System.out.println(Thread.currentThread().getName() + " - Processing URL: " + url + " at depth " + depth);
 
-                // synchronous crawl and store
-                // crawl
-                CompletableFuture.supplyAsync(() -> crawlerService.crawl(url), asyncExecutor)
-                        .thenAccept(result -> {
+                // crawl, then enqueue and store on the same chain; the fetch permit is held until the
+                // page is stored, so slow writes throttle fetching instead of piling up
+                CompletableFuture<CrawlResultDTO> fetch = crawl(url);
+                fetch
+                        .thenCompose(result -> {
+                            if (result == DEFERRED) return CompletableFuture.completedFuture(null);
                             if (result != null) {
-                                crawlCount.incrementAndGet();
+                                // the fetch is done here; storage time is not fetch latency. A null result
+                                // (already visited, or disallowed by robots.txt) fetched nothing, so its
+                                // near-zero latency must not reach the controller's baseline
+                                sampleFetch(start, result.getUrl() != null, dispatched);
+                                metrics.recordPage(result.getUrl() != null);
+                                if (crawlCount.incrementAndGet() % IMPORTANCE_REPORT_INTERVAL == 0) {
+                                    reportImportance();
+                                }
 //                                System.out.println(Thread.currentThread().getName() + " - Processing crawl result for: " + url);
                                 if(result.getExtractedUrls() != null) {
                                     result.getExtractedUrls()
                                             .forEach(link -> enqueueUrl(link, depth + 1)); // add new URL
-                                    result.getExtractedUrls()
-                                            .forEach(link -> crawlerService.storeData(result.getUrl(), link, result.getTitle(), result.getCrawlTime()));
 //                                    System.out.println(Thread.currentThread().getName() + "Queue size after enqueue: " + urlQueue.size());
+                                    return crawlerService.storePageAsync(result);
                                 } else {
 //                                    System.out.println(Thread.currentThread().getName() + "No sub URL found from " + result.getUrl());
                                     logger.warn(Thread.currentThread().getName() + "No sub URL found from " + result.getUrl());
@@ -195,13 +664,36 @@ public class ParallelCrawler {
 //                                System.out.println(Thread.currentThread().getName() + " - No result for: " + url);
                                 logger.warn(Thread.currentThread().getName() + " - No result for: " + url);
                             }
+                            return CompletableFuture.completedFuture(null);
                         })
                         .exceptionally(ex -> {
 //                            System.err.println(Thread.currentThread().getName() + " - Error processing URL: " + url + ", " + ex.getMessage());
                             logger.error(Thread.currentThread().getName() + " - Error processing URL: " + url + ", " + ex.getMessage());
                             return null;
+                        })
+                        .whenComplete((ignored, ex) -> {
+                            boolean deferred = fetch.isDone() && !fetch.isCompletedExceptionally()
+                                    && fetch.join() == DEFERRED;
+                            CrawlCheckpoint checkpoint = this.checkpoint;
+                            // only once the page and its links are stored
+                            if (checkpoint != null && !deferred) checkpoint.logDone(url);
+                            urlQueue.release(pair);
+                            metrics.recordSince(CrawlStage.TOTAL, start);
+                            inFlight.decrementAndGet();
+                            fetchPermits.release();
+                            if (deferred) {
+                                defer(pair);
+                            } else {
+                                robotsRetries.remove(url);
+                                completeUrl();
+                            }
                         });
 
+            } catch (RejectedExecutionException e) {
+                // pools were shut down by stopCrawling() while this consumer was dispatching
+                inFlight.decrementAndGet();
+                fetchPermits.release();
+                break;
             } catch (InterruptedException e) {
                 Thread.currentThread().interrupt();
 //                System.out.println("Thread interrupted. Exiting...");
@@ -212,32 +704,62 @@ public class ParallelCrawler {
     }
 
     /**
-     * inner class
+     * Crawl a URL once robots.txt allows it; rules of a new host are fetched first
+     * @return future of the result, null if robots.txt disallows the URL, {@link #DEFERRED} if the
+     * robots.txt is unreachable
      */
-    private static class UrlDepthPair implements Comparable<UrlDepthPair>{
-        private final String url;
-        private final int depth;
+    private CompletableFuture<CrawlResultDTO> crawl(String url) {
+        RobotsCache robots = this.robots;
+        if (robots == null) return crawlerService.crawlAsync(url, asyncExecutor);
+        return robots.rulesAsync(url).thenCompose(rules -> {
+            if (rules.isAllowed(url)) return crawlerService.crawlAsync(url, asyncExecutor);
+            // not the site's decision: try again once the robots.txt is fetched again
+            if (rules.isUnreachable()) return CompletableFuture.completedFuture(DEFERRED);
+            // queued before the rules of its host were known
+            robotsSkipped.incrementAndGet();
+            return CompletableFuture.completedFuture(null);
+        });
+    }
 
-        public UrlDepthPair(String url, int depth) {
-            this.url = url;
-            this.depth = depth;
-        }
+    /**
+     * Feed one finished fetch to the concurrency controller and apply the limit it returns
+     * @param start      nanoTime when the fetch was dispatched
+     * @param success    false if the fetch failed
+     * @param dispatched fetches in flight including this one
+     */
+    private void sampleFetch(long start, boolean success, int dispatched) {
+        AdaptiveConcurrencyController controller = concurrencyController;
+        if (controller == null) return;
+        int limit = controller.onSample(System.nanoTime() - start, success, dispatched, urlQueue::size);
+        if (limit != getFetchLimit()) applyLimit(limit);
+    }
 
-        public String getUrl() {
-            return url;
+    /**
+     * Grow or shrink the fetch permits to the given total. Shrinking takes effect as fetches in flight
+     * finish, nothing is interrupted.
+     * @param limit new number of permits
+     */
+    private synchronized void applyLimit(int limit) {
+        if (limit > fetchLimit) {
+            fetchPermits.release(limit - fetchLimit);
+        } else if (limit < fetchLimit) {
+            fetchPermits.reducePermits(fetchLimit - limit);
         }
+        fetchLimit = limit;
+    }
 
-        public int getDepth() {
-            return depth;
+    /**
+     * Semaphore whose number of permits can be lowered while they are held.
+     */
+    @SuppressWarnings("serial")
+    private static class AdjustableSemaphore extends Semaphore {
+        AdjustableSemaphore(int permits) {
+            super(permits);
         }
 
         @Override
-        public int compareTo(UrlDepthPair o) {
-            int depthComp = Integer.compare(this.depth, o.depth);
-            if(depthComp != 0) {
-                return depthComp;
-            }
-            return Integer.compare(this.url.length(), o.url.length());
+        protected void reducePermits(int reduction) {
+            super.reducePermits(reduction);
         }
     }
 }
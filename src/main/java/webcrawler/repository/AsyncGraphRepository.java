@@ -0,0 +1,185 @@
+package webcrawler.repository;
+
+import org.neo4j.driver.Driver;
+import org.neo4j.driver.Values;
+import org.neo4j.driver.async.AsyncSession;
+import org.neo4j.driver.async.AsyncTransactionContext;
+import org.neo4j.driver.async.ResultCursor;
+import webcrawler.metrics.CrawlMetrics;
+import webcrawler.metrics.CrawlStage;
+import webcrawler.model.Edge;
+import webcrawler.model.Node;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Non-blocking writes on the driver's {@link AsyncSession}: every method returns at once with a
+ * {@link CompletionStage}, and no thread waits on the network round trip.
+ * <p>
+ * At most {@code maxInFlightWrites} transactions run at the same time. Further writes are queued
+ * (without holding a thread) and start as earlier ones complete, so a fast crawler cannot open
+ * an unbounded number of transactions.
+ */
+public class AsyncGraphRepository {
+
+    private final Driver driver;
+    private final int maxInFlightWrites;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final ConcurrentLinkedQueue<Runnable> waiting = new ConcurrentLinkedQueue<>();
+    private final AtomicLong writesCompleted = new AtomicLong();
+    private final AtomicLong writesFailed = new AtomicLong();
+
+    /**
+     * @param driver            shared driver, not closed by this repository
+     * @param maxInFlightWrites transactions allowed in flight at once
+     */
+    public AsyncGraphRepository(Driver driver, int maxInFlightWrites) {
+        if (maxInFlightWrites < 1) {
+            throw new IllegalArgumentException("maxInFlightWrites must be positive: " + maxInFlightWrites);
+        }
+        this.driver = driver;
+        this.maxInFlightWrites = maxInFlightWrites;
+    }
+
+    /**
+     * @param node page
+     * @return completes when the node is committed
+     */
+    public CompletionStage<Void> addNodeAsync(Node node) {
+        return insertBatchAsync(List.of(node), List.of());
+    }
+
+    /**
+     * @param edge link
+     * @return completes when the edge is committed
+     */
+    public CompletionStage<Void> addEdgeAsync(Edge edge) {
+        return insertBatchAsync(List.of(), List.of(edge));
+    }
+
+    /**
+     * Same statements as {@link GraphRepository#insertBatch}, in one asynchronous transaction
+     * @param nodes pages with title and crawl time
+     * @param edges links
+     * @return completes when the transaction is committed, or exceptionally if it fails
+     */
+    public CompletionStage<Void> insertBatchAsync(List<Node> nodes, List<Edge> edges) {
+        if (nodes.isEmpty() && edges.isEmpty()) return CompletableFuture.completedFuture(null);
+        List<Map<String, Object>> nodeRows = GraphRepository.nodeRows(nodes);
+        List<Map<String, Object>> edgeRows = GraphRepository.edgeRows(edges);
+        return limit(() -> {
+            // timed from when the transaction starts, not while it waits for a slot
+            long start = System.nanoTime();
+            return write(nodeRows, edgeRows)
+                    .thenRun(() -> CrawlMetrics.global().recordSince(CrawlStage.WRITE_BATCH, start));
+        });
+    }
+
+    /**
+     * @return transactions started but not finished
+     */
+    public int inFlightWrites() {
+        return inFlight.get();
+    }
+
+    /**
+     * @return writes waiting for a free slot
+     */
+    public int queuedWrites() {
+        return waiting.size();
+    }
+
+    /**
+     * @return transactions committed
+     */
+    public long getWritesCompleted() {
+        return writesCompleted.get();
+    }
+
+    /**
+     * @return transactions that failed
+     */
+    public long getWritesFailed() {
+        return writesFailed.get();
+    }
+
+    /**
+     * Run one write transaction; overridden in tests
+     */
+    protected CompletionStage<Void> write(List<Map<String, Object>> nodeRows, List<Map<String, Object>> edgeRows) {
+        AsyncSession session = driver.session(AsyncSession.class);
+        return session.executeWriteAsync(tx -> run(tx, GraphRepository.UNWIND_NODES, nodeRows)
+                        .thenCompose(ignored -> run(tx, GraphRepository.UNWIND_EDGES, edgeRows)))
+                // close the session whatever happened, then pass the outcome on
+                .handle((ignored, ex) -> session.closeAsync().thenCompose(closed -> ex == null
+                        ? CompletableFuture.<Void>completedFuture(null)
+                        : CompletableFuture.<Void>failedFuture(ex)))
+                .thenCompose(stage -> stage);
+    }
+
+    private static CompletionStage<Void> run(AsyncTransactionContext tx, String query, List<Map<String, Object>> rows) {
+        if (rows.isEmpty()) return CompletableFuture.completedFuture(null);
+        return tx.runAsync(query, Values.parameters("rows", rows))
+                .thenCompose(ResultCursor::consumeAsync)
+                .thenApply(summary -> null);
+    }
+
+    /**
+     * Start the write now if a slot is free, otherwise when one frees up
+     */
+    private CompletionStage<Void> limit(Supplier<CompletionStage<Void>> writeAction) {
+        CompletableFuture<Void> result = new CompletableFuture<>();
+        Runnable start = () -> {
+            CompletionStage<Void> stage;
+            try {
+                stage = writeAction.get();
+            } catch (RuntimeException e) {
+                stage = CompletableFuture.failedFuture(e);
+            }
+            stage.whenComplete((ignored, ex) -> {
+                // free the slot first, so a caller that sees the result also sees the slot released
+                releaseSlot();
+                if (ex == null) {
+                    writesCompleted.incrementAndGet();
+                    result.complete(null);
+                } else {
+                    writesFailed.incrementAndGet();
+                    result.completeExceptionally(ex);
+                }
+            });
+        };
+        waiting.add(start);
+        drain();
+        return result;
+    }
+
+    private void releaseSlot() {
+        inFlight.decrementAndGet();
+        drain();
+    }
+
+    /**
+     * Start queued writes while slots are free. A slot is claimed before polling, so
+     * concurrent callers never exceed the limit and never strand a queued write.
+     */
+    private void drain() {
+        while (!waiting.isEmpty()) {
+            int current = inFlight.get();
+            if (current >= maxInFlightWrites) return;
+            if (!inFlight.compareAndSet(current, current + 1)) continue;
+            Runnable next = waiting.poll();
+            if (next == null) {
+                inFlight.decrementAndGet();
+                continue;
+            }
+            next.run();
+        }
+    }
+}
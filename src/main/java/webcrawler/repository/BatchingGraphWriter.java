@@ -0,0 +1,241 @@
+package webcrawler.repository;
+
+import edu.neu.coe.info6205.util.LazyLogger;
+import webcrawler.metrics.CrawlMetrics;
+import webcrawler.metrics.CrawlStage;
+import webcrawler.model.Edge;
+import webcrawler.model.Node;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Write-behind stage in front of a {@link GraphStore}, e.g. {@link GraphRepository}.
+ * <p>
+ * Crawl threads hand over whole pages (one node plus its out-links) and return immediately; a single
+ * writer thread collects rows across pages and writes them with {@link GraphStore#insertBatch},
+ * one transaction per batch. A batch is flushed when it reaches {@code batchSize} rows or when the
+ * oldest row has waited {@code flushInterval}. At most {@code maxPendingRows} rows are buffered:
+ * beyond that {@link #savePage} blocks, which slows the crawler down to the speed of the database.
+ */
+public class BatchingGraphWriter implements AutoCloseable {
+
+    private static final LazyLogger logger = new LazyLogger(BatchingGraphWriter.class);
+
+    private final GraphStore repository;
+    private final int batchSize;
+    private final long flushIntervalNanos;
+    private final int maxPendingRows;
+    private final LinkedBlockingQueue<Item> queue = new LinkedBlockingQueue<>();
+    // one permit per buffered row, released once the row is written
+    private final Semaphore rowPermits;
+    private final Thread writer;
+    // guards closed and every put: nothing can be queued after the writer's final drain
+    private final Object lock = new Object();
+    private volatile boolean closed = false;
+
+    private final AtomicLong batchesWritten = new AtomicLong();
+    private final AtomicLong rowsWritten = new AtomicLong();
+    private final AtomicLong rowsFailed = new AtomicLong();
+
+    /**
+     * @param repository     target database
+     * @param batchSize      rows (nodes + edges) per transaction
+     * @param flushInterval  max time a row waits before its batch is written
+     * @param unit           unit of flushInterval
+     * @param maxPendingRows rows buffered before {@link #savePage} blocks
+     */
+    public BatchingGraphWriter(GraphStore repository, int batchSize, long flushInterval, TimeUnit unit,
+                               int maxPendingRows) {
+        if (batchSize < 1 || maxPendingRows < batchSize) {
+            throw new IllegalArgumentException("need 0 < batchSize <= maxPendingRows: " + batchSize + ", " + maxPendingRows);
+        }
+        this.repository = repository;
+        this.batchSize = batchSize;
+        this.flushIntervalNanos = unit.toNanos(flushInterval);
+        this.maxPendingRows = maxPendingRows;
+        this.rowPermits = new Semaphore(maxPendingRows);
+        this.writer = new Thread(this::run, "graph-writer");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    /**
+     * Queue a page and its out-links, blocking while the buffer is full
+     * @param url       page URL
+     * @param title     page title
+     * @param crawlTime crawl time
+     * @param links     out-links, stored as RELATES_TO edges
+     * @throws InterruptedException if interrupted while waiting for buffer space
+     */
+    public void savePage(String url, String title, String crawlTime, Iterable<String> links) throws InterruptedException {
+        List<Edge> edges = new ArrayList<>();
+        for (String link : links) {
+            edges.add(new Edge(url, link, "RELATES_TO"));
+        }
+        enqueue(new Item(new Node(url, title, crawlTime), edges, null));
+    }
+
+    /**
+     * Block until everything queued before this call has been written (or has failed)
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public void flush() throws InterruptedException {
+        CompletableFuture<Void> done = new CompletableFuture<>();
+        synchronized (lock) {
+            // close() has written everything
+            if (closed) return;
+            queue.add(new Item(null, List.of(), done));
+        }
+        try {
+            done.get();
+        } catch (ExecutionException e) {
+            // never completed exceptionally
+        }
+    }
+
+    /**
+     * Write what is left and stop the writer thread.
+     */
+    @Override
+    public void close() {
+        synchronized (lock) {
+            if (closed) return;
+            closed = true;
+            // wake the writer; it drains the queue and exits
+            queue.add(new Item(null, List.of(), new CompletableFuture<>()));
+        }
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * @return rows queued but not yet written
+     */
+    public int pendingRows() {
+        return maxPendingRows - rowPermits.availablePermits();
+    }
+
+    /**
+     * @return transactions committed
+     */
+    public long getBatchesWritten() {
+        return batchesWritten.get();
+    }
+
+    /**
+     * @return nodes and edges committed
+     */
+    public long getRowsWritten() {
+        return rowsWritten.get();
+    }
+
+    /**
+     * @return nodes and edges dropped because their batch failed
+     */
+    public long getRowsFailed() {
+        return rowsFailed.get();
+    }
+
+    private void enqueue(Item item) throws InterruptedException {
+        if (closed) throw new IllegalStateException("writer is closed");
+        // a page bigger than the whole buffer still gets through, it just waits for an empty buffer
+        int permits = Math.min(item.rows, maxPendingRows);
+        rowPermits.acquire(permits);
+        synchronized (lock) {
+            // closed while waiting for buffer space
+            if (!closed) {
+                queue.add(item);
+                return;
+            }
+        }
+        rowPermits.release(permits);
+        throw new IllegalStateException("writer is closed");
+    }
+
+    private void run() {
+        List<Node> nodes = new ArrayList<>();
+        List<Edge> edges = new ArrayList<>();
+        List<Item> items = new ArrayList<>();
+        long deadline = 0;
+        while (!closed) {
+            Item item;
+            try {
+                if (items.isEmpty()) {
+                    item = queue.take();
+                    deadline = System.nanoTime() + flushIntervalNanos;
+                } else {
+                    item = queue.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+                }
+            } catch (InterruptedException e) {
+                continue;
+            }
+            if (item != null) add(item, nodes, edges, items);
+            if (item == null || item.done != null || nodes.size() + edges.size() >= batchSize
+                    || System.nanoTime() - deadline >= 0) {
+                write(nodes, edges, items);
+            }
+        }
+        // pages queued while closing
+        Item item;
+        while ((item = queue.poll()) != null) {
+            add(item, nodes, edges, items);
+        }
+        write(nodes, edges, items);
+    }
+
+    private static void add(Item item, List<Node> nodes, List<Edge> edges, List<Item> items) {
+        items.add(item);
+        if (item.node != null) nodes.add(item.node);
+        edges.addAll(item.edges);
+    }
+
+    private void write(List<Node> nodes, List<Edge> edges, List<Item> items) {
+        int rows = nodes.size() + edges.size();
+        if (rows > 0) {
+            long start = System.nanoTime();
+            try {
+                repository.insertBatch(nodes, edges);
+                CrawlMetrics.global().recordSince(CrawlStage.WRITE_BATCH, start);
+                batchesWritten.incrementAndGet();
+                rowsWritten.addAndGet(rows);
+            } catch (Exception e) {
+                rowsFailed.addAndGet(rows);
+                logger.error("Failed to write batch of " + rows + " rows, Error: " + e.getMessage());
+            }
+        }
+        for (Item item : items) {
+            if (item.done != null) item.done.complete(null);
+            else rowPermits.release(Math.min(item.rows, maxPendingRows));
+        }
+        nodes.clear();
+        edges.clear();
+        items.clear();
+    }
+
+    /**
+     * A page with its links, or a flush barrier when done is set.
+     */
+    private static class Item {
+        private final Node node;
+        private final List<Edge> edges;
+        private final CompletableFuture<Void> done;
+        private final int rows;
+
+        private Item(Node node, List<Edge> edges, CompletableFuture<Void> done) {
+            this.node = node;
+            this.edges = edges;
+            this.done = done;
+            this.rows = (node == null ? 0 : 1) + edges.size();
+        }
+    }
+}
@@ -0,0 +1,487 @@
+package webcrawler.repository;
+
+import edu.neu.coe.info6205.util.LazyLogger;
+import webcrawler.dedup.ConcurrentFingerprintSet;
+import webcrawler.graph.CsrGraph;
+import webcrawler.graph.ParallelPageRank;
+import webcrawler.model.Edge;
+import webcrawler.model.Node;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.BiConsumer;
+
+/**
+ * In-process graph store, an alternative to Neo4j for single-box crawls and benchmarks.
+ * <p>
+ * Every page URL is interned once into a dense int id; titles and crawl times live in arrays indexed
+ * by id, and links are primitive {@code int[]} adjacency lists, so an edge costs a few bytes instead
+ * of a database round trip. Like the Cypher {@code MERGE}, adding an existing link again is a no-op.
+ * <p>
+ * With a directory, pages are appended to {@code nodes.log} and links to {@code edges.log}, a
+ * memory-mapped file of (from, to) int pairs whose header holds the committed edge count. Opening
+ * the same directory again replays both logs. Writes are durable after {@link #close()}; after a
+ * crash the graph is recovered up to the last committed edge whose pages reached the node log.
+ */
+public class EmbeddedGraphStore implements GraphStore {
+
+    private static final LazyLogger logger = new LazyLogger(EmbeddedGraphStore.class);
+    private static final int HEADER_BYTES = Long.BYTES;
+    private static final int EDGE_BYTES = 2 * Integer.BYTES;
+    private static final long DEFAULT_CHUNK_BYTES = 64L << 20;
+    private static final int PRINT_LIMIT = 100;
+    // largest Java array, the bound of the int-indexed CSR arrays
+    private static final long MAX_CSR_EDGES = Integer.MAX_VALUE - 8;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final HashMap<String, Integer> ids = new HashMap<>();
+    private String[] urls = new String[1024];
+    private String[] titles = new String[1024];
+    private String[] crawlTimes = new String[1024];
+    private int[][] outLinks = new int[1024][];
+    private int[] outDegree = new int[1024];
+    private int nodeCount;
+    private long edgeCount;
+    // (from, to) pairs already stored, for MERGE semantics
+    private final ConcurrentFingerprintSet edgeKeys = new ConcurrentFingerprintSet(1 << 16);
+
+    // persistence, all null for a memory-only store
+    private final long chunkBytes;
+    private FileChannel edgeChannel;
+    private MappedByteBuffer header;
+    private MappedByteBuffer chunk;
+    private long chunkStart;
+    private DataOutputStream nodeLog;
+
+    /**
+     * Memory-only store
+     */
+    public EmbeddedGraphStore() {
+        this.chunkBytes = DEFAULT_CHUNK_BYTES;
+    }
+
+    /**
+     * Store backed by append-only logs in a directory, replayed if they exist
+     * @param directory where nodes.log and edges.log live
+     * @throws IOException if the logs cannot be opened or read
+     */
+    public EmbeddedGraphStore(Path directory) throws IOException {
+        this(directory, DEFAULT_CHUNK_BYTES);
+    }
+
+    /**
+     * @param directory  where nodes.log and edges.log live
+     * @param chunkBytes size of each mapped region of the edge log
+     */
+    EmbeddedGraphStore(Path directory, long chunkBytes) throws IOException {
+        this.chunkBytes = chunkBytes - chunkBytes % EDGE_BYTES;
+        Files.createDirectories(directory);
+        Path nodeFile = directory.resolve("nodes.log");
+        if (Files.exists(nodeFile)) replayNodes(nodeFile);
+        edgeChannel = FileChannel.open(directory.resolve("edges.log"),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        header = edgeChannel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_BYTES);
+        replayEdges(header.getLong(0));
+        nodeLog = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(nodeFile,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND)));
+    }
+
+    @Override
+    public void addNode(Node node) {
+        insertBatch(List.of(node), List.of());
+    }
+
+    @Override
+    public void addEdge(Edge edge) {
+        insertBatch(List.of(), List.of(edge));
+    }
+
+    @Override
+    public void insertBatch(List<Node> nodes, List<Edge> edges) {
+        lock.writeLock().lock();
+        try {
+            for (Node node : nodes) {
+                int id = intern(node.getId(), false);
+                titles[id] = node.getTitle();
+                crawlTimes[id] = node.getCrawlTime();
+                logNode(id);
+            }
+            for (Edge edge : edges) {
+                int from = intern(edge.getFrom(), true);
+                int to = intern(edge.getTo(), true);
+                if (link(from, to)) logEdge(from, to);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void getNode(String nodeId) {
+        lock.readLock().lock();
+        try {
+            Integer id = ids.get(nodeId);
+            if (id != null) {
+                System.out.println("Node: {id=" + urls[id] + ", title=" + titles[id] + ", crawlTime=" + crawlTimes[id] + "}");
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void getEdges(String fromNode) {
+        lock.readLock().lock();
+        try {
+            Integer from = ids.get(fromNode);
+            if (from == null) return;
+            for (int i = 0; i < outDegree[from]; i++) {
+                int to = outLinks[from][i];
+                System.out.println("From: " + urls[from] + ", To: " + urls[to] + ", Relationship: RELATES_TO");
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Parallel PageRank on a CSR snapshot of the graph; prints the highest scores,
+     * like {@link GraphRepository#runPageRank()}.
+     */
+    @Override
+    public void runPageRank() {
+        ParallelPageRank.Result result = new ParallelPageRank().compute(toCsr());
+        int[] top = result.topK(PRINT_LIMIT);
+        System.out.println("PageRank Results:");
+        for (int id : top) {
+            System.out.println("Page " + url(id) + " has score: " + result.score(id));
+        }
+    }
+
+    @Override
+    public void forEachEdge(BiConsumer<String, String> visitor) {
+        lock.readLock().lock();
+        try {
+            for (int from = 0; from < nodeCount; from++) {
+                for (int i = 0; i < outDegree[from]; i++) {
+                    visitor.accept(urls[from], urls[outLinks[from][i]]);
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Snapshot of the link graph in CSR form; vertex ids are the page ids of this store
+     * @return graph
+     * @throws IllegalStateException if the store has more edges than a Java array can hold
+     */
+    public CsrGraph toCsr() {
+        lock.readLock().lock();
+        try {
+            if (edgeCount > MAX_CSR_EDGES) {
+                throw new IllegalStateException("too many edges for a CSR graph: " + edgeCount + " > " + MAX_CSR_EDGES);
+            }
+            int[] from = new int[(int) edgeCount];
+            int[] to = new int[(int) edgeCount];
+            int e = 0;
+            for (int v = 0; v < nodeCount; v++) {
+                for (int i = 0; i < outDegree[v]; i++) {
+                    from[e] = v;
+                    to[e++] = outLinks[v][i];
+                }
+            }
+            return CsrGraph.fromEdges(nodeCount, from, to, e);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Write buffered pages and the edge log to disk and release the files
+     */
+    @Override
+    public void close() {
+        lock.writeLock().lock();
+        try {
+            if (nodeLog != null) {
+                nodeLog.close();
+                if (chunk != null) chunk.force();
+                header.force();
+                edgeChannel.close();
+                nodeLog = null;
+                edgeChannel = null;
+            }
+        } catch (IOException e) {
+            logger.error("Failed to close graph store, Error: " + e.getMessage());
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * @return number of pages
+     */
+    public int nodeCount() {
+        lock.readLock().lock();
+        try {
+            return nodeCount;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return number of distinct links
+     */
+    public long edgeCount() {
+        lock.readLock().lock();
+        try {
+            return edgeCount;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @param url page URL
+     * @return interned id, or -1 if the page is unknown
+     */
+    public int idOf(String url) {
+        lock.readLock().lock();
+        try {
+            Integer id = ids.get(url);
+            return id == null ? -1 : id;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @param id page id
+     * @return page URL
+     */
+    public String url(int id) {
+        lock.readLock().lock();
+        try {
+            return urls[id];
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @param id page id
+     * @return page title, the URL for pages only known as link targets
+     */
+    public String title(int id) {
+        lock.readLock().lock();
+        try {
+            return titles[id];
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @param id page id
+     * @return ids of the pages it links to, in insertion order
+     */
+    public int[] outLinks(int id) {
+        lock.readLock().lock();
+        try {
+            return Arrays.copyOf(outLinks[id], outDegree[id]);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * PageRank for a fixed number of iterations
+     * @param iterations     rounds
+     * @param dampingFactor  probability of following a link
+     * @return score per page id
+     */
+    public double[] pageRank(int iterations, double dampingFactor) {
+        return new ParallelPageRank(dampingFactor, 0, iterations).compute(toCsr()).scores();
+    }
+
+    /**
+     * Id of a URL, creating the page (titled with its URL, like the Cypher MERGE does) if it is new
+     * @param log false if the caller logs the page itself after setting its title
+     */
+    private int intern(String url, boolean log) throws IOException {
+        Integer id = ids.get(url);
+        if (id != null) return id;
+        int newId = nodeCount++;
+        if (newId == urls.length) grow();
+        ids.put(url, newId);
+        urls[newId] = url;
+        titles[newId] = url;
+        outLinks[newId] = new int[0];
+        if (log) logNode(newId);
+        return newId;
+    }
+
+    private void grow() {
+        int capacity = urls.length * 2;
+        urls = Arrays.copyOf(urls, capacity);
+        titles = Arrays.copyOf(titles, capacity);
+        crawlTimes = Arrays.copyOf(crawlTimes, capacity);
+        outLinks = Arrays.copyOf(outLinks, capacity);
+        outDegree = Arrays.copyOf(outDegree, capacity);
+    }
+
+    /**
+     * @return false if the link already exists
+     */
+    private boolean link(int from, int to) {
+        if (!edgeKeys.add(edgeKey(from, to))) return false;
+        int degree = outDegree[from];
+        if (degree == outLinks[from].length) {
+            outLinks[from] = Arrays.copyOf(outLinks[from], Math.max(4, degree * 2));
+        }
+        outLinks[from][degree] = to;
+        outDegree[from] = degree + 1;
+        edgeCount++;
+        return true;
+    }
+
+    /**
+     * Non-zero, well mixed key of a link: the fingerprint set picks its segment from the high bits
+     */
+    private static long edgeKey(int from, int to) {
+        long k = ((long) (from + 1) << 32) | (to & 0xFFFFFFFFL);
+        k ^= k >>> 33;
+        k *= 0xff51afd7ed558ccdL;
+        k ^= k >>> 33;
+        k *= 0xc4ceb9fe1a85ec53L;
+        k ^= k >>> 33;
+        return k;
+    }
+
+    private void logNode(int id) throws IOException {
+        if (nodeLog == null) return;
+        nodeLog.writeInt(id);
+        writeString(nodeLog, urls[id]);
+        writeString(nodeLog, titles[id]);
+        writeString(nodeLog, crawlTimes[id]);
+    }
+
+    private void logEdge(int from, int to) throws IOException {
+        if (edgeChannel == null) return;
+        long position = HEADER_BYTES + (edgeCount - 1) * EDGE_BYTES;
+        MappedByteBuffer buffer = chunkAt(position);
+        int offset = (int) (position - chunkStart);
+        buffer.putInt(offset, from);
+        buffer.putInt(offset + Integer.BYTES, to);
+        // the record is in place before the count that makes it visible
+        header.putLong(0, edgeCount);
+    }
+
+    /**
+     * Map the region of the edge log holding position, growing the file if needed
+     */
+    private MappedByteBuffer chunkAt(long position) throws IOException {
+        if (chunk == null || position < chunkStart || position + EDGE_BYTES > chunkStart + chunkBytes) {
+            if (chunk != null) chunk.force();
+            chunkStart = position;
+            chunk = edgeChannel.map(FileChannel.MapMode.READ_WRITE, chunkStart, chunkBytes);
+        }
+        return chunk;
+    }
+
+    private void replayNodes(Path nodeFile) throws IOException {
+        long valid = 0;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(nodeFile)))) {
+            while (true) {
+                int id;
+                String url, title, crawlTime;
+                try {
+                    id = in.readInt();
+                    url = readString(in);
+                    title = readString(in);
+                    crawlTime = readString(in);
+                } catch (EOFException e) {
+                    // end of log, or a record cut short by a crash
+                    break;
+                }
+                if (id == nodeCount) {
+                    if (id == urls.length) grow();
+                    ids.put(url, id);
+                    urls[id] = url;
+                    outLinks[id] = new int[0];
+                    nodeCount++;
+                } else if (id > nodeCount) {
+                    break;
+                }
+                titles[id] = title;
+                crawlTimes[id] = crawlTime;
+                valid += Integer.BYTES + stringBytes(url) + stringBytes(title) + stringBytes(crawlTime);
+            }
+        }
+        // drop a torn tail so new records are appended to a readable log
+        if (Files.size(nodeFile) > valid) {
+            try (FileChannel channel = FileChannel.open(nodeFile, StandardOpenOption.WRITE)) {
+                channel.truncate(valid);
+            }
+        }
+    }
+
+    private void replayEdges(long committed) throws IOException {
+        for (long i = 0; i < committed; i++) {
+            long position = HEADER_BYTES + i * EDGE_BYTES;
+            MappedByteBuffer buffer = chunkAt(position);
+            int offset = (int) (position - chunkStart);
+            int from = buffer.getInt(offset);
+            int to = buffer.getInt(offset + Integer.BYTES);
+            if (from >= nodeCount || to >= nodeCount) {
+                // pages still in the node log buffer when the process died
+                logger.warn("Edge log replay stopped at edge " + i + " of " + committed);
+                header.putLong(0, edgeCount);
+                return;
+            }
+            link(from, to);
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String s) throws IOException {
+        if (s == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static long stringBytes(String s) {
+        return Integer.BYTES + (s == null ? 0 : s.getBytes(StandardCharsets.UTF_8).length);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) return null;
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -5,12 +5,26 @@ import org.neo4j.driver.*;
 import webcrawler.model.Edge;
 import webcrawler.model.Node;
 
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.function.BiConsumer;
 
 
-public class GraphRepository {
+public class GraphRepository implements GraphStore {
     private static final LazyLogger logger = new LazyLogger(GraphRepository.class);
 
+    static final String UNWIND_NODES = "UNWIND $rows AS row " +
+            "MERGE (n:Page {id: row.id}) " +
+            "SET n.title = row.title, n.crawlTime = row.crawlTime";
+    static final String UNWIND_EDGES = "UNWIND $rows AS row " +
+            "MERGE (a:Page {id: row.from}) " +
+            "MERGE (b:Page {id: row.to}) " +
+            "ON CREATE SET b.title = row.to " +
+            "MERGE (a)-[r:RELATES_TO]->(b) " +
+            "SET r.type = row.type";
+
     private final Driver driver;
 
     public GraphRepository(String uri, String username, String password) {
@@ -18,6 +32,7 @@ public class GraphRepository {
     }
 
     // 关闭连接
+    @Override
     public void close() {
         if (driver != null) {
             driver.close(); // 调用 Driver 的 close 方法
@@ -25,6 +40,7 @@ public class GraphRepository {
     }
 
     // 添加节点
+    @Override
     public void addNode(Node node) {
         try (Session session = driver.session()) {
             session.writeTransaction(tx -> {
@@ -47,6 +63,7 @@ public class GraphRepository {
 
 
     // 添加
+    @Override
     public void addEdge(Edge edge) {
         try (Session session = driver.session()) {
             session.writeTransaction(tx -> {
@@ -70,6 +87,7 @@ public class GraphRepository {
 
 
     // 查询节点
+    @Override
     public void getNode(String nodeId) {
         try (Session session = driver.session()) {
             var result = session.run(
@@ -84,6 +102,7 @@ public class GraphRepository {
     }
 
     // 查询关系
+    @Override
     public void getEdges(String fromNode) {
         try (Session session = driver.session()) {
             var result = session.run(
@@ -101,16 +120,100 @@ public class GraphRepository {
     }
 
     // 插入所有节点
+    @Override
     public void insertNodes(List<Node> nodes) {
-        for (Node node : nodes) {
-            addNode(node); // 调用单个插入节点的方法
-        }
+        insertBatch(nodes, List.of());
     }
 
     // 插入所有边
+    @Override
     public void insertEdges(List<Edge> edges) {
+        insertBatch(List.of(), edges);
+    }
+
+    /**
+     * Write nodes and edges in one transaction, one UNWIND statement each, instead of a session
+     * and a transaction per element.
+     * Link targets that have no node yet get their URL as title, like {@code storeData} does.
+     * @param nodes pages with title and crawl time
+     * @param edges links
+     */
+    @Override
+    public void insertBatch(List<Node> nodes, List<Edge> edges) {
+        if (nodes.isEmpty() && edges.isEmpty()) return;
+        List<Map<String, Object>> nodeRows = nodeRows(nodes);
+        List<Map<String, Object>> edgeRows = edgeRows(edges);
+        try (Session session = driver.session()) {
+            session.executeWrite(tx -> {
+                if (!nodeRows.isEmpty()) {
+                    tx.run(UNWIND_NODES, Values.parameters("rows", nodeRows)).consume();
+                }
+                if (!edgeRows.isEmpty()) {
+                    tx.run(UNWIND_EDGES, Values.parameters("rows", edgeRows)).consume();
+                }
+                return null;
+            });
+        }
+    }
+
+    /**
+     * Non-blocking writes on the same driver (and connection pool)
+     * @param maxInFlightWrites transactions allowed in flight at once
+     * @return async repository
+     */
+    public AsyncGraphRepository async(int maxInFlightWrites) {
+        return new AsyncGraphRepository(driver, maxInFlightWrites);
+    }
+
+    static List<Map<String, Object>> nodeRows(List<Node> nodes) {
+        List<Map<String, Object>> rows = new ArrayList<>(nodes.size());
+        for (Node node : nodes) {
+            Map<String, Object> row = new HashMap<>(4);
+            row.put("id", node.getId());
+            row.put("title", node.getTitle());
+            row.put("crawlTime", node.getCrawlTime());
+            rows.add(row);
+        }
+        return rows;
+    }
+
+    static List<Map<String, Object>> edgeRows(List<Edge> edges) {
+        List<Map<String, Object>> rows = new ArrayList<>(edges.size());
         for (Edge edge : edges) {
-            addEdge(edge); // 调用单个插入边的方法
+            Map<String, Object> row = new HashMap<>(4);
+            row.put("from", edge.getFrom());
+            row.put("to", edge.getTo());
+            row.put("type", edge.getRelationshipType());
+            rows.add(row);
+        }
+        return rows;
+    }
+
+    /**
+     * Index Page.id so every MERGE is an index lookup instead of a label scan.
+     */
+    public void createIndexes() {
+        try (Session session = driver.session()) {
+            session.executeWrite(tx -> {
+                tx.run("CREATE INDEX page_id IF NOT EXISTS FOR (n:Page) ON (n.id)").consume();
+                return null;
+            });
+        }
+    }
+
+
+    /**
+     * Stream all RELATES_TO links out of Neo4j, record by record
+     * @param visitor receives (from, to) page ids
+     */
+    @Override
+    public void forEachEdge(BiConsumer<String, String> visitor) {
+        try (Session session = driver.session()) {
+            var result = session.run("MATCH (a:Page)-[:RELATES_TO]->(b:Page) RETURN a.id AS from, b.id AS to");
+            while (result.hasNext()) {
+                var record = result.next();
+                visitor.accept(record.get("from").asString(), record.get("to").asString());
+            }
         }
     }
 
@@ -180,6 +283,7 @@ public class GraphRepository {
     }
 
     // 运行 PageRank 并输出结果
+    @Override
     public void runPageRank() {
         try (Session session = driver.session()) {
             String query = """
@@ -0,0 +1,78 @@
+package webcrawler.repository;
+
+import webcrawler.model.Edge;
+import webcrawler.model.Node;
+
+import java.util.List;
+import java.util.function.BiConsumer;
+
+/**
+ * Where crawled pages (nodes) and links (edges) are stored.
+ * <p>
+ * {@link GraphRepository} keeps them in Neo4j; {@link EmbeddedGraphStore} keeps them in process,
+ * so a crawl can run (and be benchmarked) without a database.
+ */
+public interface GraphStore extends AutoCloseable {
+
+    /**
+     * Create or update a page
+     * @param node page id (URL), title and crawl time
+     */
+    void addNode(Node node);
+
+    /**
+     * Create a link, and its end pages if missing
+     * @param edge link
+     */
+    void addEdge(Edge edge);
+
+    /**
+     * Create or update pages and links in one write
+     * @param nodes pages
+     * @param edges links
+     */
+    void insertBatch(List<Node> nodes, List<Edge> edges);
+
+    /**
+     * @param nodes pages
+     */
+    default void insertNodes(List<Node> nodes) {
+        insertBatch(nodes, List.of());
+    }
+
+    /**
+     * @param edges links
+     */
+    default void insertEdges(List<Edge> edges) {
+        insertBatch(List.of(), edges);
+    }
+
+    /**
+     * Print a page
+     * @param nodeId page id
+     */
+    void getNode(String nodeId);
+
+    /**
+     * Print the links of a page
+     * @param fromNode page id
+     */
+    void getEdges(String fromNode);
+
+    /**
+     * Stream every stored link, e.g. to build a {@link webcrawler.graph.CsrGraph}
+     * @param visitor receives (from, to) page ids
+     */
+    void forEachEdge(BiConsumer<String, String> visitor);
+
+    /**
+     * Compute PageRank over the stored graph and print the scores
+     */
+    void runPageRank();
+
+    /**
+     * Release connections or files
+     */
+    @Override
+    void close();
+}
@@ -0,0 +1,293 @@
+package webcrawler.robots;
+
+import edu.neu.coe.info6205.util.LazyLogger;
+import webcrawler.util.UrlUtils;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiConsumer;
+
+/**
+ * robots.txt rules of every host the crawl touches, fetched once per host and kept for a TTL.
+ * <p>
+ * The check on the enqueue path, {@link #isAllowedIfKnown}, is a map lookup and a walk of the
+ * compiled {@link RobotsRules}; it never waits for the network. A host seen for the first time is
+ * let through and its robots.txt fetched in the background, and the fetch path waits for the rules
+ * with {@link #rulesAsync} before the page is requested, so no disallowed page is fetched.
+ * <p>
+ * As RFC 9309 asks, a missing robots.txt (4xx) allows everything and an unreachable one (5xx,
+ * network error) allows nothing for now: it is cached as {@link RobotsRules#UNREACHABLE} and
+ * fetched again after {@link #ERROR_TTL}. As that is a temporary state, not a decision of the site,
+ * {@link #isAllowedIfKnown} lets such URLs through and the fetch path puts them off. The number of
+ * hosts is bounded: beyond it the least recently used of a sample of hosts is dropped, an
+ * approximate LRU that needs no lock on lookups.
+ */
+public class RobotsCache {
+
+    private static final LazyLogger logger = new LazyLogger(RobotsCache.class);
+    private static final String AGENT_PROPERTY = "crawler.robots";
+    /**
+     * Time before rules are fetched again
+     */
+    public static final Duration DEFAULT_TTL = Duration.ofHours(24);
+    /**
+     * Time before an unreachable robots.txt is tried again
+     */
+    public static final Duration ERROR_TTL = Duration.ofMinutes(5);
+    private static final int DEFAULT_MAX_HOSTS = 10_000;
+    private static final Duration TIMEOUT = Duration.ofSeconds(10);
+    // RFC 9309: parse at least 500 KiB, ignore the rest
+    private static final int MAX_BYTES = 500 * 1024;
+    private static final int EVICTION_SAMPLE = 16;
+    private static final long TOUCH_INTERVAL_NANOS = 1_000_000_000L;
+
+    private final HttpClient client;
+    private final String userAgent;
+    private final long ttlNanos;
+    private final int maxHosts;
+    // keyed by scheme://authority, as robots.txt applies per origin
+    private final ConcurrentHashMap<String, Entry> hosts = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, CompletableFuture<RobotsRules>> loading = new ConcurrentHashMap<>();
+    private volatile BiConsumer<String, RobotsRules> rulesListener;
+    private final LongAdder fetched = new LongAdder();
+    private final LongAdder allowed = new LongAdder();
+    private final LongAdder disallowed = new LongAdder();
+
+    /**
+     * @param userAgent product token the crawler announces and looks up in robots.txt
+     */
+    public RobotsCache(String userAgent) {
+        this(HttpClient.newBuilder()
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .connectTimeout(TIMEOUT)
+                .build(), userAgent, DEFAULT_TTL, DEFAULT_MAX_HOSTS);
+    }
+
+    /**
+     * @param client    client for the robots.txt requests, following redirects
+     * @param userAgent product token the crawler announces and looks up in robots.txt
+     * @param ttl       time before the rules of a host are fetched again
+     * @param maxHosts  hosts kept at most
+     */
+    public RobotsCache(HttpClient client, String userAgent, Duration ttl, int maxHosts) {
+        if (userAgent == null || userAgent.isBlank()) throw new IllegalArgumentException("userAgent must not be blank");
+        if (maxHosts < 1) throw new IllegalArgumentException("maxHosts must be positive: " + maxHosts);
+        this.client = client;
+        this.userAgent = userAgent.trim();
+        this.ttlNanos = ttl.toNanos();
+        this.maxHosts = maxHosts;
+    }
+
+    /**
+     * Cache for the user agent given by {@code -Dcrawler.robots=<product token>}
+     * @return the cache, or null if the property is not set
+     */
+    public static RobotsCache load() {
+        String agent = System.getProperty(AGENT_PROPERTY);
+        if (agent == null || agent.isBlank()) return null;
+        return new RobotsCache(agent);
+    }
+
+    /**
+     * @param listener told the host (as {@link UrlUtils#host}) and its rules whenever rules are
+     *                 fetched, e.g. to apply the Crawl-delay
+     */
+    public void setRulesListener(BiConsumer<String, RobotsRules> listener) {
+        this.rulesListener = listener;
+    }
+
+    /**
+     * Check a URL against the rules already cached for its host, without waiting.
+     * If the rules are unknown or expired they start loading and the URL is let through, as it is
+     * while the robots.txt is unreachable.
+     * @param url absolute URL
+     * @return false only if cached rules of a fetched robots.txt disallow the URL
+     */
+    public boolean isAllowedIfKnown(String url) {
+        int pathStart = RobotsRules.pathStart(url);
+        Entry entry = hosts.get(url.substring(0, pathStart));
+        long now = System.nanoTime();
+        if (entry == null || now - entry.expiresAt >= 0) {
+            rulesAsync(url);
+            return true;
+        }
+        entry.touch(now);
+        if (entry.rules.isUnreachable()) return true;
+        int end = url.indexOf('#', pathStart);
+        boolean allow = entry.rules.isAllowed(url, pathStart, end < 0 ? url.length() : end);
+        (allow ? allowed : disallowed).increment();
+        return allow;
+    }
+
+    /**
+     * Rules for the host of a URL, fetched if not cached. Concurrent calls for one host share a fetch.
+     * @param url absolute URL
+     * @return future of the rules, {@link RobotsRules#UNREACHABLE} if the robots.txt cannot be
+     * fetched, never completed exceptionally
+     */
+    public CompletableFuture<RobotsRules> rulesAsync(String url) {
+        String origin = url.substring(0, RobotsRules.pathStart(url));
+        Entry entry = hosts.get(origin);
+        long now = System.nanoTime();
+        if (entry != null && now - entry.expiresAt < 0) {
+            entry.touch(now);
+            return CompletableFuture.completedFuture(entry.rules);
+        }
+        CompletableFuture<RobotsRules> pending = loading.get(origin);
+        if (pending != null) return pending;
+        CompletableFuture<RobotsRules> created = new CompletableFuture<>();
+        pending = loading.putIfAbsent(origin, created);
+        if (pending != null) return pending;
+        fetch(origin).whenComplete((result, ex) -> {
+            // fetch() maps every failure already
+            Fetched outcome = ex == null ? result : new Fetched(RobotsRules.UNREACHABLE, errorTtlNanos());
+            try {
+                store(origin, outcome);
+            } finally {
+                loading.remove(origin, created);
+                created.complete(outcome.rules);
+            }
+        });
+        return created;
+    }
+
+    /**
+     * Use the given rules for the host of a URL until the TTL expires, instead of fetching them
+     * @param url   absolute URL on the host
+     * @param rules rules, e.g. parsed from a robots.txt saved earlier
+     */
+    public void put(String url, RobotsRules rules) {
+        store(url.substring(0, RobotsRules.pathStart(url)), new Fetched(rules, ttlNanos));
+    }
+
+    /**
+     * @param url absolute URL
+     * @return true if the rules allow the URL, waiting for them if needed
+     */
+    public boolean isAllowed(String url) {
+        boolean allow = rulesAsync(url).join().isAllowed(url);
+        (allow ? allowed : disallowed).increment();
+        return allow;
+    }
+
+    private CompletableFuture<Fetched> fetch(String origin) {
+        HttpRequest request;
+        try {
+            request = HttpRequest.newBuilder(URI.create(origin + "/robots.txt"))
+                    .timeout(TIMEOUT)
+                    .header("User-Agent", userAgent)
+                    .GET()
+                    .build();
+        } catch (IllegalArgumentException e) {
+            logger.warn("Cannot request robots.txt of " + origin + ": " + e.getMessage());
+            return CompletableFuture.completedFuture(new Fetched(RobotsRules.ALLOW_ALL, ttlNanos));
+        }
+        fetched.increment();
+        return client.sendAsync(request, HttpResponse.BodyHandlers.ofByteArray())
+                .thenApply(response -> {
+                    int status = response.statusCode();
+                    if (status >= 200 && status < 300) {
+                        byte[] body = response.body();
+                        String text = new String(body, 0, Math.min(body.length, MAX_BYTES), StandardCharsets.UTF_8);
+                        return new Fetched(RobotsRules.parse(text, userAgent), ttlNanos);
+                    }
+                    if (status >= 400 && status < 500) return new Fetched(RobotsRules.ALLOW_ALL, ttlNanos);
+                    logger.warn("robots.txt of " + origin + " answered " + status + ", host disallowed for now");
+                    return new Fetched(RobotsRules.UNREACHABLE, errorTtlNanos());
+                })
+                .exceptionally(ex -> {
+                    logger.warn("robots.txt of " + origin + " unreachable, host disallowed for now: " + ex.getMessage());
+                    return new Fetched(RobotsRules.UNREACHABLE, errorTtlNanos());
+                });
+    }
+
+    /**
+     * @return time before an unreachable robots.txt is fetched again, {@link #ERROR_TTL} or the TTL
+     * if shorter
+     */
+    public Duration getErrorTtl() {
+        return Duration.ofNanos(errorTtlNanos());
+    }
+
+    private long errorTtlNanos() {
+        return Math.min(ttlNanos, ERROR_TTL.toNanos());
+    }
+
+    private void store(String origin, Fetched outcome) {
+        long now = System.nanoTime();
+        hosts.put(origin, new Entry(outcome.rules, now + outcome.ttlNanos, now));
+        if (hosts.size() > maxHosts) evict();
+        BiConsumer<String, RobotsRules> listener = rulesListener;
+        if (listener == null) return;
+        try {
+            listener.accept(UrlUtils.host(origin), outcome.rules);
+        } catch (RuntimeException e) {
+            logger.error("robots.txt listener failed for " + origin + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Drop the least recently used of the first hosts met by an iterator, whose order does not
+     * depend on use; like Redis, a sample is enough to keep the hot hosts
+     */
+    private void evict() {
+        while (hosts.size() > maxHosts) {
+            String oldest = null;
+            long oldestUse = Long.MAX_VALUE;
+            Iterator<Map.Entry<String, Entry>> iterator = hosts.entrySet().iterator();
+            for (int i = 0; i < EVICTION_SAMPLE && iterator.hasNext(); i++) {
+                Map.Entry<String, Entry> candidate = iterator.next();
+                if (oldest == null || candidate.getValue().lastUsed - oldestUse < 0) {
+                    oldest = candidate.getKey();
+                    oldestUse = candidate.getValue().lastUsed;
+                }
+            }
+            if (oldest == null) return;
+            hosts.remove(oldest);
+        }
+    }
+
+    /**
+     * @return hosts with cached rules
+     */
+    public int size() {
+        return hosts.size();
+    }
+
+    /**
+     * @return counters as one line for the log
+     */
+    public String getStats() {
+        return String.format("robots.txt: %d fetched, %d hosts cached, %d URLs allowed, %d disallowed",
+                fetched.sum(), hosts.size(), allowed.sum(), disallowed.sum());
+    }
+
+    private record Fetched(RobotsRules rules, long ttlNanos) {
+    }
+
+    private static class Entry {
+        private final RobotsRules rules;
+        private final long expiresAt;
+        // written at most once a second per host, so hot hosts do not bounce a cache line
+        private volatile long lastUsed;
+
+        Entry(RobotsRules rules, long expiresAt, long lastUsed) {
+            this.rules = rules;
+            this.expiresAt = expiresAt;
+            this.lastUsed = lastUsed;
+        }
+
+        void touch(long now) {
+            if (now - lastUsed > TOUCH_INTERVAL_NANOS) lastUsed = now;
+        }
+    }
+}
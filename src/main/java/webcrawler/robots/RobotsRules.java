@@ -0,0 +1,353 @@
+package webcrawler.robots;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * The robots.txt rules of one host for one user agent, compiled for fast checks.
+ * <p>
+ * Matching follows RFC 9309: the rule with the longest pattern that matches the path and query wins,
+ * and Allow wins a tie. Patterns without wildcards go into a trie walked once along the path, so a
+ * check costs one step per path char whatever the number of rules. Patterns with {@code *} or a
+ * trailing {@code $} are split at the wildcards into literal parts and only tried when they are
+ * longer than the best trie match. {@link #isAllowed(String)} does not allocate.
+ * <p>
+ * Immutable and thread safe.
+ */
+public class RobotsRules {
+
+    /**
+     * Rules when robots.txt is missing (4xx): everything allowed
+     */
+    public static final RobotsRules ALLOW_ALL = new RobotsRules(List.of(), -1, List.of());
+    /**
+     * Rules that allow nothing, as a robots.txt of {@code Disallow: /}
+     */
+    public static final RobotsRules DISALLOW_ALL = new RobotsRules(List.of(new Rule("/", false)), -1, List.of());
+    /**
+     * Rules when robots.txt cannot be fetched (5xx, network error): nothing allowed for now, but
+     * unlike {@link #DISALLOW_ALL} not a decision of the site, see {@link #isUnreachable()}
+     */
+    public static final RobotsRules UNREACHABLE = new RobotsRules(List.of(new Rule("/", false)), -1, List.of());
+    // a larger Crawl-delay would stall a host for good; RFC 9309 lets crawlers cap it
+    static final long MAX_CRAWL_DELAY_MILLIS = 60_000;
+
+    private static final int ALLOW = 1;
+    private static final int DISALLOW = 2;
+
+    private final Node root;
+    private final WildcardRule[] wildcards;
+    private final long crawlDelayMillis;
+    private final List<String> sitemaps;
+
+    private RobotsRules(List<Rule> rules, long crawlDelayMillis, List<String> sitemaps) {
+        Builder builder = new Builder();
+        List<WildcardRule> wildcardRules = new ArrayList<>();
+        for (Rule rule : rules) {
+            if (rule.pattern.indexOf('*') >= 0 || rule.pattern.endsWith("$")) {
+                wildcardRules.add(new WildcardRule(rule.pattern, rule.allow));
+                continue;
+            }
+            Builder node = builder;
+            for (int i = 0; i < rule.pattern.length(); i++) {
+                node = node.child(rule.pattern.charAt(i));
+            }
+            node.decision |= rule.allow ? ALLOW : DISALLOW;
+        }
+        this.root = builder.freeze();
+        // longest first, so the first match is the one that counts
+        wildcardRules.sort(Comparator.comparingInt((WildcardRule rule) -> -rule.length)
+                .thenComparing(rule -> !rule.allow));
+        this.wildcards = wildcardRules.toArray(new WildcardRule[0]);
+        this.crawlDelayMillis = crawlDelayMillis;
+        this.sitemaps = List.copyOf(sitemaps);
+    }
+
+    /**
+     * Parse a robots.txt and keep the group for the user agent, or the {@code *} group if no group
+     * names it. Groups naming the same agent are merged; unknown lines are ignored.
+     * @param robotsTxt content of robots.txt
+     * @param userAgent product token of the crawler, e.g. "webcrawler", matched case-insensitively
+     * @return compiled rules
+     */
+    public static RobotsRules parse(String robotsTxt, String userAgent) {
+        String agent = userAgent.toLowerCase(Locale.ROOT);
+        List<Rule> ownRules = new ArrayList<>();
+        List<Rule> anyRules = new ArrayList<>();
+        long ownDelay = -1;
+        long anyDelay = -1;
+        boolean ownSeen = false;
+        List<String> sitemaps = new ArrayList<>();
+
+        boolean own = false;
+        boolean any = false;
+        boolean inAgents = false;
+        for (String line : robotsTxt.split("\r\n|\r|\n")) {
+            int comment = line.indexOf('#');
+            if (comment >= 0) line = line.substring(0, comment);
+            int colon = line.indexOf(':');
+            if (colon < 0) continue;
+            String key = line.substring(0, colon).trim().toLowerCase(Locale.ROOT);
+            String value = line.substring(colon + 1).trim();
+            switch (key) {
+                case "user-agent" -> {
+                    if (!inAgents) {
+                        // first user-agent line of a new group
+                        own = false;
+                        any = false;
+                        inAgents = true;
+                    }
+                    String token = value.toLowerCase(Locale.ROOT);
+                    if (token.equals("*")) {
+                        any = true;
+                    } else if (token.equals(agent)) {
+                        own = true;
+                        ownSeen = true;
+                    }
+                }
+                case "allow", "disallow" -> {
+                    inAgents = false;
+                    // an empty Disallow allows everything, which is the default anyway
+                    if (value.isEmpty()) continue;
+                    Rule rule = new Rule(encode(value), key.equals("allow"));
+                    if (own) ownRules.add(rule);
+                    if (any) anyRules.add(rule);
+                }
+                case "crawl-delay" -> {
+                    inAgents = false;
+                    long delay = parseDelay(value);
+                    if (own && delay >= 0) ownDelay = delay;
+                    if (any && delay >= 0) anyDelay = delay;
+                }
+                case "sitemap" -> {
+                    if (!value.isEmpty()) sitemaps.add(value);
+                }
+                default -> inAgents = false;
+            }
+        }
+        return ownSeen ? new RobotsRules(ownRules, ownDelay, sitemaps) : new RobotsRules(anyRules, anyDelay, sitemaps);
+    }
+
+    /**
+     * @param url absolute URL on this host
+     * @return true if the rules allow fetching it
+     */
+    public boolean isAllowed(String url) {
+        int from = pathStart(url);
+        int to = url.indexOf('#', from);
+        if (to < 0) to = url.length();
+        return isAllowed(url, from, to);
+    }
+
+    /**
+     * @param s    string holding the path
+     * @param from start of the path and query, at the '/'; an empty region is the path "/"
+     * @param to   end of the query
+     * @return true if the rules allow the path
+     */
+    boolean isAllowed(String s, int from, int to) {
+        if (from == to) return isAllowed("/", 0, 1);
+        // longest literal match; a deeper trie node is a longer pattern
+        int bestLength = -1;
+        int bestDecision = 0;
+        Node node = root;
+        if (node.decision != 0) {
+            bestLength = 0;
+            bestDecision = node.decision;
+        }
+        for (int i = from; i < to && node != null; i++) {
+            node = node.next(s.charAt(i));
+            if (node != null && node.decision != 0) {
+                bestLength = i + 1 - from;
+                bestDecision = node.decision;
+            }
+        }
+        for (WildcardRule rule : wildcards) {
+            if (rule.length < bestLength) break;
+            if (rule.length == bestLength && (bestDecision & ALLOW) != 0) break;
+            if (rule.matches(s, from, to)) return rule.allow;
+        }
+        // both an allow and a disallow of the same pattern: allow wins
+        return bestDecision == 0 || (bestDecision & ALLOW) != 0;
+    }
+
+    /**
+     * @return true if these rules stand for a robots.txt that could not be fetched, so a URL they
+     * disallow may be allowed once it is fetched again
+     */
+    public boolean isUnreachable() {
+        return this == UNREACHABLE;
+    }
+
+    /**
+     * @return Crawl-delay of the group in milliseconds, at most one minute, or -1 if it has none
+     */
+    public long getCrawlDelayMillis() {
+        return crawlDelayMillis;
+    }
+
+    /**
+     * @return Sitemap URLs listed anywhere in the file
+     */
+    public List<String> getSitemaps() {
+        return sitemaps;
+    }
+
+    /**
+     * @param url absolute URL
+     * @return index of the path, or of the query or fragment if the path is empty
+     */
+    static int pathStart(String url) {
+        int start = url.indexOf("://");
+        start = start < 0 ? 0 : start + 3;
+        int n = url.length();
+        while (start < n) {
+            char c = url.charAt(start);
+            if (c == '/' || c == '?' || c == '#') break;
+            start++;
+        }
+        return start;
+    }
+
+    private static long parseDelay(String value) {
+        try {
+            double seconds = Double.parseDouble(value);
+            if (!(seconds >= 0)) return -1;
+            return Math.min(MAX_CRAWL_DELAY_MILLIS, Math.round(seconds * 1000));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Percent-encode non-ASCII chars as UTF-8 and upper-case existing escapes, as URLs are encoded
+     */
+    private static String encode(String pattern) {
+        StringBuilder encoded = null;
+        for (int i = 0; i < pattern.length(); i++) {
+            char c = pattern.charAt(i);
+            boolean escape = c == '%' && i + 2 < pattern.length();
+            if (c < 0x80 && !escape) {
+                if (encoded != null) encoded.append(c);
+                continue;
+            }
+            if (encoded == null) encoded = new StringBuilder(pattern.substring(0, i));
+            if (escape) {
+                encoded.append('%').append(pattern.substring(i + 1, i + 3).toUpperCase(Locale.ROOT));
+                i += 2;
+                continue;
+            }
+            int end = Character.isHighSurrogate(c) && i + 1 < pattern.length() ? i + 2 : i + 1;
+            for (byte b : pattern.substring(i, end).getBytes(StandardCharsets.UTF_8)) {
+                encoded.append('%').append(Character.toUpperCase(Character.forDigit((b >> 4) & 0xf, 16)))
+                        .append(Character.toUpperCase(Character.forDigit(b & 0xf, 16)));
+            }
+            i = end - 1;
+        }
+        return encoded == null ? pattern : encoded.toString();
+    }
+
+    private record Rule(String pattern, boolean allow) {
+    }
+
+    /**
+     * A pattern with wildcards: literal parts that must appear in order, the first at the start of
+     * the path unless the pattern starts with '*', the last at its end if the pattern ends with '$'
+     */
+    private static class WildcardRule {
+        private final String[] parts;
+        private final boolean firstAtStart;
+        private final boolean lastAtEnd;
+        private final boolean emptyOnly;
+        private final int length;
+        private final boolean allow;
+
+        WildcardRule(String pattern, boolean allow) {
+            this.length = pattern.length();
+            this.allow = allow;
+            boolean anchored = pattern.endsWith("$");
+            String body = anchored ? pattern.substring(0, pattern.length() - 1) : pattern;
+            this.parts = Arrays.stream(body.split("\\*", -1)).filter(part -> !part.isEmpty()).toArray(String[]::new);
+            this.firstAtStart = !body.startsWith("*");
+            this.lastAtEnd = anchored && !body.endsWith("*");
+            // a bare "$" only matches an empty path
+            this.emptyOnly = anchored && body.isEmpty();
+        }
+
+        boolean matches(String s, int from, int to) {
+            if (parts.length == 0) return !emptyOnly || from == to;
+            int position = from;
+            int last = parts.length - 1;
+            for (int p = 0; p <= last; p++) {
+                String part = parts[p];
+                boolean atStart = p == 0 && firstAtStart;
+                if (p == last && lastAtEnd) {
+                    // leftmost matches of the earlier parts leave the most room for this one
+                    int start = to - part.length();
+                    return start >= position && (!atStart || start == from) && s.startsWith(part, start);
+                }
+                if (atStart) {
+                    if (to - position < part.length() || !s.startsWith(part, position)) return false;
+                    position += part.length();
+                } else {
+                    int found = s.indexOf(part, position);
+                    if (found < 0 || found + part.length() > to) return false;
+                    position = found + part.length();
+                }
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Trie node with its children in a sorted char array, as in {@code webcrawler.url.CharTrie}
+     */
+    private static class Node {
+        private final char[] keys;
+        private final Node[] children;
+        private final int decision;
+
+        Node(char[] keys, Node[] children, int decision) {
+            this.keys = keys;
+            this.children = children;
+            this.decision = decision;
+        }
+
+        Node next(char c) {
+            int i = Arrays.binarySearch(keys, c);
+            return i >= 0 ? children[i] : null;
+        }
+    }
+
+    private static class Builder {
+        private final List<Character> keys = new ArrayList<>();
+        private final List<Builder> children = new ArrayList<>();
+        private int decision;
+
+        Builder child(char c) {
+            int i = keys.indexOf(c);
+            if (i >= 0) return children.get(i);
+            Builder child = new Builder();
+            keys.add(c);
+            children.add(child);
+            return child;
+        }
+
+        Node freeze() {
+            Integer[] order = new Integer[keys.size()];
+            for (int i = 0; i < order.length; i++) order[i] = i;
+            Arrays.sort(order, Comparator.comparing(keys::get));
+            char[] sortedKeys = new char[order.length];
+            Node[] frozen = new Node[order.length];
+            for (int i = 0; i < order.length; i++) {
+                sortedKeys[i] = keys.get(order[i]);
+                frozen[i] = children.get(order[i]).freeze();
+            }
+            return new Node(sortedKeys, frozen, decision);
+        }
+    }
+}
@@ -2,28 +2,213 @@ package webcrawler.service;
 
 import edu.neu.coe.info6205.util.LazyLogger;
 import webcrawler.DTO.CrawlResultDTO;
+import webcrawler.dedup.ConcurrentFingerprintSet;
+import webcrawler.dedup.NearDuplicateIndex;
+import webcrawler.dedup.SimHash;
+import webcrawler.dedup.VisitedSet;
+import webcrawler.graph.LinkListener;
+import webcrawler.graph.OpicEstimator;
+import webcrawler.metrics.CrawlMetrics;
+import webcrawler.metrics.CrawlStage;
+import webcrawler.url.UrlFilter;
+import webcrawler.url.UrlNormalizer;
 import webcrawler.util.HttpUtils;
+import webcrawler.util.PageStream;
+import webcrawler.util.RevalidatingFetcher;
+import webcrawler.util.StreamingLinkExtractor;
 
 import org.jsoup.nodes.Document;
 import org.jsoup.nodes.Element;
+import org.jsoup.nodes.TextNode;
 import org.jsoup.select.Elements;
 
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
 import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
 
 public class CrawlerService {
     private static final LazyLogger logger = new LazyLogger(CrawlerService.class);
+    private static final int EXPECTED_URLS = 1 << 16;
+    private static final CrawlMetrics metrics = CrawlMetrics.global();
 
-    private final Set<String> visitedUrls ;
+    // shared by every fetch thread; 64-bit fingerprints instead of URL strings
+    private final VisitedSet visitedUrls ;
     private final GraphService graphService ;
-
+    private final UrlNormalizer urlNormalizer;
+    private final UrlFilter urlFilter;
+    private volatile ExtractionMode extractionMode = ExtractionMode.DOM;
+    private volatile StorageMode storageMode = StorageMode.BATCHED;
+    private volatile OpicEstimator importanceEstimator;
+    // recrawls revalidate cached pages instead of refetching them, null if not enabled
+    private volatile RevalidatingFetcher revalidatingFetcher;
+    // pages too similar to one crawled before are not expanded or stored, null if not enabled
+    private volatile NearDuplicateIndex nearDuplicateIndex;
+    // told about every seed and crawled page; the importance estimator always goes first
+    private final List<LinkListener> linkListeners = new CopyOnWriteArrayList<>();
 
     public CrawlerService() {
-        this.visitedUrls = new HashSet<>();
-        this.graphService = new GraphService();
+        this(new ConcurrentFingerprintSet(EXPECTED_URLS));
+    }
+
+    /**
+     * @param visitedUrls dedup set, e.g. a {@link webcrawler.dedup.TieredUrlDeduplicator} for very large crawls
+     */
+    public CrawlerService(VisitedSet visitedUrls) {
+        this(visitedUrls, UrlFilter.load());
+    }
+
+    /**
+     * @param visitedUrls dedup set
+     * @param urlFilter   decides which extracted links are followed
+     */
+    public CrawlerService(VisitedSet visitedUrls, UrlFilter urlFilter) {
+        this(visitedUrls, urlFilter, GraphService.load());
+    }
+
+    /**
+     * @param visitedUrls  dedup set
+     * @param urlFilter    decides which extracted links are followed
+     * @param graphService where crawled pages are stored, e.g. backed by an {@link webcrawler.repository.EmbeddedGraphStore}
+     */
+    public CrawlerService(VisitedSet visitedUrls, UrlFilter urlFilter, GraphService graphService) {
+        this(visitedUrls, urlFilter, graphService, new UrlNormalizer());
+    }
+
+    /**
+     * @param visitedUrls   dedup set
+     * @param urlFilter     decides which extracted links are followed
+     * @param graphService  where crawled pages are stored
+     * @param urlNormalizer canonicalizes URLs, e.g. with the http to https upgrade for sites known to serve https
+     */
+    public CrawlerService(VisitedSet visitedUrls, UrlFilter urlFilter, GraphService graphService, UrlNormalizer urlNormalizer) {
+        this.visitedUrls = visitedUrls;
+        this.urlNormalizer = urlNormalizer;
+        this.urlFilter = urlFilter;
+        this.graphService = graphService;
+        this.revalidatingFetcher = RevalidatingFetcher.load();
+        this.nearDuplicateIndex = NearDuplicateIndex.load();
+    }
+
+    /**
+     * Canonicalize a start URL and mark it visited, so links back to it are not crawled again
+     * @param url start URL
+     * @return canonical URL, or null if it was already visited
+     */
+    public String addSeed(String url) {
+        String canonical = urlNormalizer.normalize(url);
+        if (!visitedUrls.add(canonical)) return null;
+        for (LinkListener listener : linkListeners) {
+            listener.onSeed(canonical);
+        }
+        return canonical;
+    }
+
+    /**
+     * @return how pages are turned into title and links
+     */
+    public ExtractionMode getExtractionMode() {
+        return extractionMode;
+    }
+
+    /**
+     * @param extractionMode DOM (default) or STREAMING
+     */
+    public void setExtractionMode(ExtractionMode extractionMode) {
+        this.extractionMode = extractionMode;
+    }
+
+    /**
+     * @return how crawled pages are written by {@link #storePageAsync}
+     */
+    public StorageMode getStorageMode() {
+        return storageMode;
+    }
+
+    /**
+     * @param storageMode BATCHED (default) or ASYNC
+     */
+    public void setStorageMode(StorageMode storageMode) {
+        this.storageMode = storageMode;
+    }
+
+    /**
+     * @return online importance estimate fed by every crawled page, or null if not enabled
+     */
+    public OpicEstimator getImportanceEstimator() {
+        return importanceEstimator;
+    }
+
+    /**
+     * Keep an online importance estimate while crawling. Set it before seeding, since seeds hold
+     * the initial cash. It is updated before any other {@link LinkListener}, so listeners see fresh scores.
+     * @param importanceEstimator estimator, or null to disable
+     */
+    public synchronized void setImportanceEstimator(OpicEstimator importanceEstimator) {
+        if (this.importanceEstimator != null) linkListeners.remove(this.importanceEstimator);
+        this.importanceEstimator = importanceEstimator;
+        if (importanceEstimator != null) linkListeners.add(0, importanceEstimator);
+    }
+
+    /**
+     * Tell a listener about every seed and crawled page, after the importance estimator.
+     * Add it before seeding; while any listener is registered each page collects all of its valid out-links.
+     * @param listener e.g. a {@link webcrawler.frontier.BucketedFrontier} that reprioritizes queued URLs
+     */
+    public void addLinkListener(LinkListener listener) {
+        linkListeners.add(listener);
+    }
+
+    /**
+     * @return fetcher with the response cache, or null if pages are always fetched in full
+     */
+    public RevalidatingFetcher getRevalidatingFetcher() {
+        return revalidatingFetcher;
+    }
+
+    /**
+     * Fetch through a response cache with conditional requests; pages answered with 304 are not parsed.
+     * Enabled by default with {@code -Dcrawler.cache=<dir>}.
+     * @param revalidatingFetcher fetcher, or null to always fetch in full
+     */
+    public void setRevalidatingFetcher(RevalidatingFetcher revalidatingFetcher) {
+        this.revalidatingFetcher = revalidatingFetcher;
+    }
+
+    /**
+     * @return SimHash index of crawled pages, or null if near-duplicates are crawled like any page
+     */
+    public NearDuplicateIndex getNearDuplicateIndex() {
+        return nearDuplicateIndex;
+    }
+
+    /**
+     * Detect near-duplicate pages (print views, locale variants, templated copies) by the SimHash of
+     * their text: such a page is marked {@link CrawlResultDTO#isDuplicate()}, its links are not
+     * followed and it is not stored. Pages revalidated from the response cache are checked with the
+     * SimHash stored with them.
+     * Enabled by default with {@code -Dcrawler.nearDuplicates=<maxDistance>}.
+     * @param nearDuplicateIndex index, or null to disable
+     */
+    public void setNearDuplicateIndex(NearDuplicateIndex nearDuplicateIndex) {
+        this.nearDuplicateIndex = nearDuplicateIndex;
+    }
+
+    /**
+     * getter
+     * @return URLs seen so far
+     */
+    public VisitedSet getVisitedUrls() {
+        return visitedUrls;
     }
 
     /**
@@ -34,104 +219,317 @@ public class CrawlerService {
     public CrawlResultDTO crawl(String url) {
 
         CrawlResultDTO data = new CrawlResultDTO();
-        ConcurrentSkipListSet<String> extractedUrls = new ConcurrentSkipListSet<>((url1, url2) -> {
-            int lengthComparison = Integer.compare(url1.length(), url2.length());
-            // If lengths are equal, use natural order to ensure consistency
-            return lengthComparison != 0 ? lengthComparison : url1.compareTo(url2);
-        });
 
         try {
+            RevalidatingFetcher fetcher = revalidatingFetcher;
+            if (fetcher != null) {
+                return extractCached(fetcher, url, data);
+            }
+            if (extractionMode == ExtractionMode.STREAMING) {
+                return extractStreaming(url, data);
+            }
             // get html content
             Document document = HttpUtils.fetchPage(url);
 
-            // get title
-            String title = document.title();
+            extract(url, document, data);
+
+        } catch (Exception e) {
+//            System.out.println("Failed to crawl URL: " + url + ", Error: " + e.getMessage());
+            logger.error("Failed to crawl URL: " + url + ", Error: " + e.getMessage());
+            data.setExtractedUrls(newExtractedUrlSet());
+        }
 
-            // get time
-            String crawlTime = LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss"));
+        return data;
+    }
 
-            // print web info
+    /**
+     * Same as {@link #crawl(String)}, but the fetch does not block the caller.
+     * With a non-blocking {@link webcrawler.util.PageFetcher} no thread is held while waiting for the network.
+     * @param url      URL
+     * @param executor executor for parsing and link extraction
+     * @return future of the crawl result, never completed exceptionally
+     */
+    public CompletableFuture<CrawlResultDTO> crawlAsync(String url, Executor executor) {
+        if (extractionMode == ExtractionMode.STREAMING || revalidatingFetcher != null) {
+            // these paths fetch and scan in one blocking call, so it runs on the executor
+            return CompletableFuture.supplyAsync(() -> crawl(url), executor);
+        }
+        return HttpUtils.fetchPageAsync(url, executor)
+                .thenApply(document -> extract(url, document, new CrawlResultDTO()))
+                .exceptionally(ex -> {
+                    Throwable cause = ex instanceof CompletionException && ex.getCause() != null ? ex.getCause() : ex;
+                    logger.error("Failed to crawl URL: " + url + ", Error: " + cause.getMessage());
+                    CrawlResultDTO data = new CrawlResultDTO();
+                    data.setExtractedUrls(newExtractedUrlSet());
+                    return data;
+                });
+    }
+
+    /**
+     * Pull title and unvisited valid links out of a fetched page
+     * @param url      URL of the page
+     * @param document parsed page
+     * @param data     result to fill
+     * @return data
+     */
+    private CrawlResultDTO extract(String url, Document document, CrawlResultDTO data) {
+        ConcurrentSkipListSet<String> extractedUrls = newExtractedUrlSet();
+
+        // get title
+        String title = document.title();
+
+        // get time
+        String crawlTime = LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss"));
+
+        // print web info
 //            System.out.println("Crawled: " + url);
 //            System.out.println("Title: " + title);
 //            System.out.println("Crawl Time: " + crawlTime);
 
-            Elements links = document.select("a[href]");
-            for (Element link : links) {
-                String absoluteUrl = link.attr("abs:href");
+        NearDuplicateIndex index = nearDuplicateIndex;
+        if (index != null && isDuplicate(index, document)) {
+            data.setAllElements(url, title, crawlTime, extractedUrls);
+            data.setDuplicate(true);
+            return data;
+        }
 
-                if (isValidUrl(absoluteUrl) && visitedUrls.add(absoluteUrl)) {
-                    extractedUrls.add(absoluteUrl);
-                }
-            }
+        long start = System.nanoTime();
+        Set<String> outLinks = linkListeners.isEmpty() ? null : new HashSet<>();
+        Elements links = document.select("a[href]");
+        for (Element link : links) {
+            addLink(link.attr("abs:href"), outLinks, extractedUrls);
+        }
+        metrics.recordSince(CrawlStage.FILTER, start);
+        if (outLinks != null) notifyCrawled(url, outLinks);
 
 //            System.out.println("Found links: " + extractedUrls.size());
 //            logger.info("Found links: " + extractedUrls.size());
-            data.setAllElements(url, title, crawlTime, extractedUrls);
+        data.setAllElements(url, title, crawlTime, extractedUrls);
+        return data;
+    }
 
-        } catch (Exception e) {
-//            System.out.println("Failed to crawl URL: " + url + ", Error: " + e.getMessage());
-            logger.error("Failed to crawl URL: " + url + ", Error: " + e.getMessage());
+    /**
+     * Fetch a page as a byte stream and pull title and unvisited valid links out of it without a DOM
+     * @param url  URL of the page
+     * @param data result to fill
+     * @return data
+     * @throws Exception if the fetch or the read fails
+     */
+    private CrawlResultDTO extractStreaming(String url, CrawlResultDTO data) throws Exception {
+        ConcurrentSkipListSet<String> extractedUrls = newExtractedUrlSet();
+        Set<String> outLinks = linkListeners.isEmpty() ? null : new HashSet<>();
+        String[] title = {""};
+        // links are filtered while the body is scanned; the scan is recorded as parse time without them
+        long[] filterNanos = {0};
+        NearDuplicateIndex index = nearDuplicateIndex;
+        // with duplicate detection links wait for the end of the page, since a duplicate must not mark them visited
+        SimHash simHash = index == null ? null : new SimHash();
+        List<String> pendingLinks = index == null ? null : new ArrayList<>();
+        try (PageStream page = HttpUtils.openPageStream(url)) {
+            long start = System.nanoTime();
+            new StreamingLinkExtractor().extract(page.getBody(), page.getUrl(), page.getCharset(), new StreamingLinkExtractor.Handler() {
+                @Override
+                public void onTitle(String pageTitle) {
+                    title[0] = pageTitle;
+                }
+
+                @Override
+                public void onLink(String link) {
+                    if (pendingLinks != null) {
+                        pendingLinks.add(link);
+                        return;
+                    }
+                    long linkStart = System.nanoTime();
+                    addLink(link, outLinks, extractedUrls);
+                    filterNanos[0] += System.nanoTime() - linkStart;
+                }
+
+                @Override
+                public void onText(byte[] buffer, int start, int length) {
+                    // a call ends at a tag or whitespace, like a text node
+                    if (simHash != null) simHash.append(buffer, start, length).append(" ");
+                }
+            });
+            metrics.record(CrawlStage.PARSE, System.nanoTime() - start - filterNanos[0]);
+        }
+        String crawlTime = LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss"));
+        if (index != null) {
+            long start = System.nanoTime();
+            boolean duplicate = index.isDuplicate(simHash.value());
+            metrics.recordSince(CrawlStage.FINGERPRINT, start);
+            if (duplicate) {
+                data.setAllElements(url, title[0], crawlTime, extractedUrls);
+                data.setDuplicate(true);
+                return data;
+            }
+            start = System.nanoTime();
+            for (String link : pendingLinks) {
+                addLink(link, outLinks, extractedUrls);
+            }
+            filterNanos[0] = System.nanoTime() - start;
         }
+        metrics.record(CrawlStage.FILTER, filterNanos[0]);
+        if (outLinks != null) notifyCrawled(url, outLinks);
+        data.setAllElements(url, title[0], crawlTime, extractedUrls);
+        return data;
+    }
 
+    /**
+     * Fetch through the response cache; a page answered with 304 reuses its cached title, links and
+     * SimHash
+     * @param fetcher revalidating fetcher
+     * @param url     URL of the page
+     * @param data    result to fill
+     * @return data
+     * @throws Exception if the fetch fails
+     */
+    private CrawlResultDTO extractCached(RevalidatingFetcher fetcher, String url, CrawlResultDTO data) throws Exception {
+        ConcurrentSkipListSet<String> extractedUrls = newExtractedUrlSet();
+        Set<String> outLinks = linkListeners.isEmpty() ? null : new HashSet<>();
+        RevalidatingFetcher.Page page = fetcher.fetch(url);
+        String crawlTime = LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss"));
+        NearDuplicateIndex index = nearDuplicateIndex;
+        if (index != null) {
+            // before the links are marked visited, a duplicate must not claim them
+            long start = System.nanoTime();
+            boolean duplicate = index.isDuplicate(page.getSimHash());
+            metrics.recordSince(CrawlStage.FINGERPRINT, start);
+            if (duplicate) {
+                data.setAllElements(url, page.getTitle(), crawlTime, extractedUrls);
+                data.setDuplicate(true);
+                return data;
+            }
+        }
+        long start = System.nanoTime();
+        for (String link : page.getLinks()) {
+            addLink(link, outLinks, extractedUrls);
+        }
+        metrics.recordSince(CrawlStage.FILTER, start);
+        if (outLinks != null) notifyCrawled(url, outLinks);
+        data.setAllElements(url, page.getTitle(), crawlTime, extractedUrls);
         return data;
     }
 
+    /**
+     * SimHash the text of the page and check it against the index
+     * @return true if a near-copy was crawled before
+     */
+    private boolean isDuplicate(NearDuplicateIndex index, Document document) {
+        long start = System.nanoTime();
+        SimHash simHash = new SimHash();
+        // text nodes one by one, without building the text of the whole page
+        document.body().traverse((node, depth) -> {
+            if (node instanceof TextNode text) simHash.append(text.getWholeText()).append(" ");
+        });
+        boolean duplicate = index.isDuplicate(simHash.value());
+        metrics.recordSince(CrawlStage.FINGERPRINT, start);
+        return duplicate;
+    }
+
+    /**
+     * Normalize and filter one link; keep it as an out-link, and as a new URL if it was not visited
+     */
+    private void addLink(String link, Set<String> outLinks, ConcurrentSkipListSet<String> extractedUrls) {
+        String absoluteUrl = urlNormalizer.normalize(link);
+        if (!isValidUrl(absoluteUrl)) return;
+        if (outLinks != null) outLinks.add(absoluteUrl);
+        if (visitedUrls.add(absoluteUrl)) {
+            extractedUrls.add(absoluteUrl);
+        }
+    }
+
+    private void notifyCrawled(String url, Set<String> outLinks) {
+        for (LinkListener listener : linkListeners) {
+            listener.onCrawled(url, outLinks);
+        }
+    }
+
+    private static ConcurrentSkipListSet<String> newExtractedUrlSet() {
+        return new ConcurrentSkipListSet<>((url1, url2) -> {
+            int lengthComparison = Integer.compare(url1.length(), url2.length());
+            // If lengths are equal, use natural order to ensure consistency
+            return lengthComparison != 0 ? lengthComparison : url1.compareTo(url2);
+        });
+    }
+
 
     public void pageRank() {
         graphService.runPageRank();
     }
 
+    /**
+     * In-process PageRank over the stored link graph
+     * @param k number of pages
+     * @return the k highest ranked URLs with their scores, highest first
+     */
+    public Map<String, Double> topPages(int k) {
+        return graphService.topPages(k);
+    }
+
     /**
      * Check the validation of the URL
      * @param url URL
      * @return if valid
      */
     private boolean isValidUrl(String url) {
+        return urlFilter.accept(url);
+    }
 
-//        // Check if the URL starts with "https://www.cfainstitute.org/"
-        if (!url.contains("cfainstitute")) {
-            return false;
-        }
 
-        // Check if the URL starts with "http" or "https"
-        if (!url.startsWith("http")) {
-            return false;
-        }
-        // Exclude .onion domains (dark web URLs)
-        if (url.endsWith(".onion")) {
-            return false;
-        }
-        // Ignore "my" subdomains
-        if (url.startsWith("https://my.") || url.startsWith("http://my.")) {
-            return false;
-        }
-        // Ignore query parameters or session-related links
-        if (url.contains("?") || url.contains("session")) {
-            return false;
-        }
-        // Ignore anchor tags
-        if (url.contains("#")) {
-            return false;
-        }
-        // Ignore URLs containing "Account" or "Create Account" (case-insensitive)
-        String lowerCaseUrl = url.toLowerCase();
-        if (lowerCaseUrl.contains("account") || lowerCaseUrl.contains("create account")) {
-            return false;
+    /**
+     * Store a crawled page and its new links through the batching writer, instead of three
+     * transactions per link as {@link #storeData} does. Blocks only while the write buffer is full.
+     * @param data crawl result, ignored if the crawl failed or the page is a near-duplicate
+     */
+    public void storePage(CrawlResultDTO data) {
+        if (data.getUrl() == null || data.getExtractedUrls() == null || data.isDuplicate()) return;
+        long start = System.nanoTime();
+        try {
+            graphService.savePage(data.getUrl(), data.getTitle(), data.getCrawlTime(), data.getExtractedUrls());
+            metrics.recordSince(CrawlStage.STORE, start);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            logger.warn("Interrupted while storing page: " + data.getUrl());
+        } catch (Exception e) {
+            logger.error("Failed to store page: " + data.getUrl() + ", Error: " + e.getMessage());
         }
-        // Ignore URLs ending with .pdf
-        if (lowerCaseUrl.endsWith(".pdf")) {
-            return false;
+    }
+
+    /**
+     * Store a crawled page so that it can be composed into the crawl's future chain.
+     * In {@link StorageMode#ASYNC} no thread waits on the database; in {@link StorageMode#BATCHED}
+     * the page is handed to the batching writer and the stage is already complete.
+     * @param data crawl result, ignored if the crawl failed or the page is a near-duplicate
+     * @return completes when the page is stored (ASYNC) or queued (BATCHED); never completes exceptionally
+     */
+    public CompletionStage<Void> storePageAsync(CrawlResultDTO data) {
+        if (storageMode == StorageMode.BATCHED) {
+            storePage(data);
+            return CompletableFuture.completedFuture(null);
         }
-        // Ignore URLs ending with common video file extensions
-        String[] videoExtensions = {".mp4", ".avi", ".mkv", ".mov", ".wmv", ".flv", ".webm"};
-        for (String ext : videoExtensions) {
-            if (lowerCaseUrl.endsWith(ext)) {
-                return false;
-            }
+        if (data.getUrl() == null || data.getExtractedUrls() == null || data.isDuplicate()) {
+            return CompletableFuture.completedFuture(null);
         }
-        return true;
+        long start = System.nanoTime();
+        return graphService.savePageAsync(data.getUrl(), data.getTitle(), data.getCrawlTime(), data.getExtractedUrls())
+                .thenRun(() -> metrics.recordSince(CrawlStage.STORE, start))
+                .exceptionally(ex -> {
+                    Throwable cause = ex instanceof CompletionException && ex.getCause() != null ? ex.getCause() : ex;
+                    logger.error("Failed to store page: " + data.getUrl() + ", Error: " + cause.getMessage());
+                    return null;
+                });
     }
 
+    /**
+     * Wait until every page passed to {@link #storePage} is in the database
+     */
+    public void flushStorage() {
+        try {
+            graphService.flush();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
 
     /**
      * store URL data to Graph database
@@ -0,0 +1,15 @@
+package webcrawler.service;
+
+/**
+ * How {@link CrawlerService} gets the title and links out of a page.
+ */
+public enum ExtractionMode {
+    /**
+     * Parse the whole page into a Jsoup Document and select {@code a[href]}.
+     */
+    DOM,
+    /**
+     * Scan the response bytes with {@link webcrawler.util.StreamingLinkExtractor}, no DOM is built.
+     */
+    STREAMING
+}
@@ -1,27 +1,92 @@
 package webcrawler.service;
 
 
+import edu.neu.coe.info6205.util.LazyLogger;
+import webcrawler.graph.CsrGraph;
+import webcrawler.graph.ParallelPageRank;
 import webcrawler.model.Node;
 import webcrawler.model.Edge;
+import webcrawler.repository.AsyncGraphRepository;
+import webcrawler.repository.BatchingGraphWriter;
+import webcrawler.repository.EmbeddedGraphStore;
 import webcrawler.repository.GraphRepository;
+import webcrawler.repository.GraphStore;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.TimeUnit;
 
 public class GraphService {
-    private final GraphRepository graphRepository;
+    private static final LazyLogger logger = new LazyLogger(GraphService.class);
+    private static final int BATCH_SIZE = 1000;
+    private static final long FLUSH_INTERVAL_MILLIS = 200;
+    private static final int MAX_PENDING_ROWS = 50_000;
+    private static final int MAX_IN_FLIGHT_WRITES = 32;
+    private static final String GRAPH_PROPERTY = "crawler.graph";
+
+    private final GraphStore graphRepository;
+    private final BatchingGraphWriter graphWriter;
+    // null when the store is not Neo4j, async writes then go straight to the store
+    private final AsyncGraphRepository asyncGraphRepository;
 
     public GraphService() {
+        this(connectNeo4j());
+    }
+
+    /**
+     * @param graphStore where pages and links are stored, e.g. an {@link EmbeddedGraphStore} to crawl without Neo4j
+     */
+    public GraphService(GraphStore graphStore) {
+        this.graphRepository = graphStore;
+        this.graphWriter = new BatchingGraphWriter(graphStore, BATCH_SIZE, FLUSH_INTERVAL_MILLIS,
+                TimeUnit.MILLISECONDS, MAX_PENDING_ROWS);
+        this.asyncGraphRepository = graphStore instanceof GraphRepository repository
+                ? repository.async(MAX_IN_FLIGHT_WRITES) : null;
+    }
+
+    /**
+     * Pick the graph backend from the system property {@code crawler.graph}:
+     * {@code embedded} (in memory), {@code embedded:<directory>} (in process, logged to the directory),
+     * anything else or unset for Neo4j on localhost.
+     * @return graph service
+     */
+    public static GraphService load() {
+        String backend = System.getProperty(GRAPH_PROPERTY, "neo4j");
+        if (backend.equals("embedded")) {
+            return new GraphService(new EmbeddedGraphStore());
+        }
+        if (backend.startsWith("embedded:")) {
+            try {
+                return new GraphService(new EmbeddedGraphStore(Paths.get(backend.substring("embedded:".length()))));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        return new GraphService();
+    }
+
+    private static GraphRepository connectNeo4j() {
         String uri = "bolt://localhost:7687";
         String username = "neo4j";
         String password = "12345678";
-        this.graphRepository = new GraphRepository(uri, username, password);
+        GraphRepository graphRepository = new GraphRepository(uri, username, password);
 
         graphRepository.initializeGraphData();
+        graphRepository.createIndexes();
         graphRepository.createGraphProjection();
-
+        return graphRepository;
     }
 
     // 添加网页节点
     public void savePageNode(String id, String title, String crawlTime) {
-        Node node = new Node(id, title, "2024-11-29T10:00:00");
+        Node node = new Node(id, title, crawlTime);
         graphRepository.addNode(node);
     }
 
@@ -31,6 +96,62 @@ public class GraphService {
         graphRepository.addEdge(edge);
     }
 
+    /**
+     * Queue a crawled page and its links for a batched write; blocks only while the write buffer is full
+     * @param url       page URL
+     * @param title     page title
+     * @param crawlTime crawl time
+     * @param links     out-links
+     * @throws InterruptedException if interrupted while waiting for buffer space
+     */
+    public void savePage(String url, String title, String crawlTime, Iterable<String> links) throws InterruptedException {
+        graphWriter.savePage(url, title, crawlTime, links);
+    }
+
+    /**
+     * Write a crawled page and its links in one asynchronous transaction, without blocking the caller
+     * @param url       page URL
+     * @param title     page title
+     * @param crawlTime crawl time
+     * @param links     out-links
+     * @return completes when the page is committed
+     */
+    public CompletionStage<Void> savePageAsync(String url, String title, String crawlTime, Iterable<String> links) {
+        List<Edge> edges = new ArrayList<>();
+        for (String link : links) {
+            edges.add(new Edge(url, link, "RELATES_TO"));
+        }
+        List<Node> nodes = List.of(new Node(url, title, crawlTime));
+        if (asyncGraphRepository != null) {
+            return asyncGraphRepository.insertBatchAsync(nodes, edges);
+        }
+        // an in-process store has no round trip to wait for
+        try {
+            graphRepository.insertBatch(nodes, edges);
+            return CompletableFuture.completedFuture(null);
+        } catch (RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    /**
+     * Wait until every queued page is in the database
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public void flush() throws InterruptedException {
+        graphWriter.flush();
+    }
+
+    /**
+     * Write what is queued, then close the database connection (or the embedded store's files)
+     */
+    public void close() {
+        graphWriter.close();
+        logger.info("Graph writer: " + graphWriter.getBatchesWritten() + " batches, "
+                + graphWriter.getRowsWritten() + " rows written, " + graphWriter.getRowsFailed() + " rows failed");
+        graphRepository.close();
+    }
+
     // 查询网页信息
     public void getPageInfo(String nodeId) {
         graphRepository.getNode(nodeId);
@@ -41,7 +162,39 @@ public class GraphService {
         graphRepository.getEdges(fromNode);
     }
 
+    /**
+     * PageRank computed in process ({@link ParallelPageRank} over a CSR snapshot of the stored links),
+     * without the Neo4j GDS plugin
+     * @param k number of pages to return
+     * @return the k highest ranked page URLs with their scores, highest first
+     */
+    public Map<String, Double> topPages(int k) {
+        try {
+            flush();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return Map.of();
+        }
+        LinkedHashMap<String, Double> top = new LinkedHashMap<>();
+        if (graphRepository instanceof EmbeddedGraphStore store) {
+            ParallelPageRank.Result result = new ParallelPageRank().compute(store.toCsr());
+            for (int id : result.topK(k)) top.put(store.url(id), result.score(id));
+        } else {
+            CsrGraph.Builder builder = new CsrGraph.Builder();
+            graphRepository.forEachEdge(builder::addEdge);
+            ParallelPageRank.Result result = new ParallelPageRank().compute(builder.build());
+            for (int id : result.topK(k)) top.put(builder.label(id), result.score(id));
+        }
+        return top;
+    }
+
     public void runPageRank() {
+        try {
+            flush();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
         graphRepository.runPageRank();
     }
 
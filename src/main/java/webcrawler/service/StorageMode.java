@@ -0,0 +1,16 @@
+package webcrawler.service;
+
+/**
+ * How {@link CrawlerService#storePageAsync} writes crawled pages to the graph database.
+ */
+public enum StorageMode {
+    /**
+     * Hand the page to the write-behind {@link webcrawler.repository.BatchingGraphWriter}; many pages share a transaction.
+     */
+    BATCHED,
+    /**
+     * One non-blocking transaction per page on {@link webcrawler.repository.AsyncGraphRepository};
+     * the returned stage completes when the page is committed.
+     */
+    ASYNC
+}
@@ -0,0 +1,146 @@
+package webcrawler.sitemap;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Pull parser for one sitemap document, a {@code <urlset>} of pages or a {@code <sitemapindex>} of
+ * sitemaps, plain or gzipped.
+ * <p>
+ * Built on StAX, so only the current element is in memory: a 50,000-URL sitemap costs the same as a
+ * one-URL one. Gzip is recognized by its magic bytes, not by the file name or Content-Type, as
+ * servers get both wrong. DTDs and external entities are refused, and the uncompressed size is
+ * capped at {@link #MAX_BYTES}, beyond which the document is cut off.
+ * <p>
+ * Not thread safe.
+ */
+public class SitemapParser implements Closeable {
+
+    /**
+     * Uncompressed bytes read at most, the limit of the sitemap protocol
+     */
+    public static final long MAX_BYTES = 50L * 1024 * 1024;
+
+    private static final XMLInputFactory factory = newFactory();
+
+    private final InputStream in;
+    private final XMLStreamReader reader;
+    // element holding the current <loc>: "url" or "sitemap"
+    private String entry;
+
+    /**
+     * @param in sitemap content, closed by {@link #close()}
+     * @throws IOException if the content cannot be read or is not XML
+     */
+    public SitemapParser(InputStream in) throws IOException {
+        BufferedInputStream buffered = new BufferedInputStream(in);
+        InputStream content = buffered;
+        buffered.mark(2);
+        boolean gzip = buffered.read() == 0x1f && buffered.read() == 0x8b;
+        buffered.reset();
+        if (gzip) content = new GZIPInputStream(buffered);
+        this.in = new LimitedInputStream(content, MAX_BYTES);
+        try {
+            this.reader = factory.createXMLStreamReader(this.in);
+        } catch (XMLStreamException e) {
+            this.in.close();
+            throw new IOException("Not a sitemap: " + e.getMessage(), e);
+        }
+    }
+
+    private static XMLInputFactory newFactory() {
+        XMLInputFactory factory = XMLInputFactory.newFactory();
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        // elements are matched by local name, some sitemaps omit or misspell the namespace
+        factory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, false);
+        return factory;
+    }
+
+    /**
+     * @return the next page or sitemap of the document, or null at its end
+     * @throws IOException if the document is malformed or cannot be read
+     */
+    public Entry next() throws IOException {
+        try {
+            while (reader.hasNext()) {
+                int event = reader.next();
+                if (event != XMLStreamConstants.START_ELEMENT) continue;
+                String name = localName(reader.getLocalName());
+                if (name.equals("url") || name.equals("sitemap")) {
+                    entry = name;
+                } else if (name.equals("loc") && entry != null) {
+                    String loc = reader.getElementText().trim();
+                    boolean sitemap = entry.equals("sitemap");
+                    entry = null;
+                    if (!loc.isEmpty()) return new Entry(loc, sitemap);
+                }
+            }
+            return null;
+        } catch (XMLStreamException e) {
+            throw new IOException("Malformed sitemap: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * @return the name without a prefix, as the parser is not namespace aware
+     */
+    private static String localName(String name) {
+        int colon = name.indexOf(':');
+        return colon < 0 ? name : name.substring(colon + 1);
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            reader.close();
+        } catch (XMLStreamException e) {
+            // the stream is closed below anyway
+        }
+        in.close();
+    }
+
+    /**
+     * A {@code <loc>} of the document
+     * @param loc     URL as written in the sitemap
+     * @param sitemap true if it is a sitemap listed by an index, false if it is a page
+     */
+    public record Entry(String loc, boolean sitemap) {
+    }
+
+    /**
+     * Ends the stream after a number of bytes, so a gzip bomb cannot run forever
+     */
+    private static class LimitedInputStream extends FilterInputStream {
+        private long remaining;
+
+        LimitedInputStream(InputStream in, long limit) {
+            super(in);
+            this.remaining = limit;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (remaining <= 0) return -1;
+            int b = super.read();
+            if (b >= 0) remaining--;
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (remaining <= 0) return -1;
+            int n = super.read(b, off, (int) Math.min(len, remaining));
+            if (n > 0) remaining -= n;
+            return n;
+        }
+    }
+}
@@ -0,0 +1,204 @@
+package webcrawler.sitemap;
+
+import edu.neu.coe.info6205.util.LazyLogger;
+import webcrawler.robots.RobotsCache;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * Page URLs of a set of sitemaps, read lazily: a sitemap is fetched when the previous one is used
+ * up, and parsed one {@code <loc>} at a time by a {@link SitemapParser}. Sitemap indexes are
+ * followed, breadth first, so any number of pages costs one open response and the queue of sitemap
+ * URLs in memory.
+ * <p>
+ * A sitemap that cannot be fetched or parsed is logged and skipped; the URLs read before a parse
+ * error are kept. Each sitemap is read once, so an index listing itself does not loop.
+ * <p>
+ * Not thread safe: meant for the single thread that seeds a crawl.
+ */
+public class SitemapSource implements Iterator<String>, Closeable {
+
+    private static final LazyLogger logger = new LazyLogger(SitemapSource.class);
+    private static final Duration TIMEOUT = Duration.ofSeconds(30);
+    // an index lists at most 50,000 sitemaps; this bounds nested or looping indexes
+    private static final int MAX_SITEMAPS = 50_000;
+
+    private final HttpClient client;
+    private final ArrayDeque<String> sitemaps = new ArrayDeque<>();
+    private final Set<String> seen = new HashSet<>();
+    private SitemapParser parser;
+    private String current; // sitemap being parsed
+    private String next;
+    private long urls;
+    private int read;
+    private int failed;
+
+    /**
+     * @param sitemapUrls URLs of sitemaps or sitemap indexes
+     */
+    public SitemapSource(Collection<String> sitemapUrls) {
+        this(HttpClient.newBuilder()
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .connectTimeout(TIMEOUT)
+                .build(), sitemapUrls);
+    }
+
+    /**
+     * @param client      client for the sitemap requests, following redirects
+     * @param sitemapUrls URLs of sitemaps or sitemap indexes
+     */
+    public SitemapSource(HttpClient client, Collection<String> sitemapUrls) {
+        this.client = client;
+        for (String url : sitemapUrls) {
+            addSitemap(url);
+        }
+    }
+
+    /**
+     * Sitemaps of some sites as announced by their robots.txt, or {@code /sitemap.xml} of a site
+     * whose robots.txt lists none
+     * @param robots   cache the robots.txt are read through, waiting for them if needed
+     * @param siteUrls any URL of each site
+     * @return sitemap URLs, without duplicates
+     */
+    public static List<String> locate(RobotsCache robots, Collection<String> siteUrls) {
+        Set<String> found = new HashSet<>();
+        List<String> sitemapUrls = new ArrayList<>();
+        for (String site : siteUrls) {
+            List<String> listed = robots.rulesAsync(site).join().getSitemaps();
+            if (listed.isEmpty()) listed = List.of(URI.create(site).resolve("/sitemap.xml").toString());
+            for (String url : listed) {
+                if (found.add(url)) sitemapUrls.add(url);
+            }
+        }
+        return sitemapUrls;
+    }
+
+    @Override
+    public boolean hasNext() {
+        while (next == null) {
+            if (parser == null && !open()) return false;
+            try {
+                SitemapParser.Entry entry = parser.next();
+                if (entry == null) {
+                    closeParser();
+                } else if (entry.sitemap()) {
+                    addSitemap(entry.loc());
+                } else {
+                    next = entry.loc();
+                    urls++;
+                }
+            } catch (IOException e) {
+                logger.warn("Sitemap " + current + " cut short: " + e.getMessage());
+                failed++;
+                closeParser();
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public String next() {
+        if (!hasNext()) throw new NoSuchElementException();
+        String url = next;
+        next = null;
+        return url;
+    }
+
+    private void addSitemap(String url) {
+        if (seen.size() >= MAX_SITEMAPS) {
+            logger.warn("More than " + MAX_SITEMAPS + " sitemaps, ignoring " + url);
+            return;
+        }
+        if (seen.add(url)) sitemaps.add(url);
+    }
+
+    /**
+     * Fetch the next sitemap that can be opened
+     * @return false if none is left
+     */
+    private boolean open() {
+        while (!sitemaps.isEmpty()) {
+            String url = sitemaps.poll();
+            try {
+                parser = new SitemapParser(fetch(url));
+                current = url;
+                read++;
+                return true;
+            } catch (IOException | IllegalArgumentException e) {
+                logger.warn("Skipping sitemap " + url + ": " + e.getMessage());
+                failed++;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                sitemaps.clear();
+            }
+        }
+        return false;
+    }
+
+    private InputStream fetch(String url) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(url))
+                .timeout(TIMEOUT)
+                .header("Accept", "application/xml,text/xml,application/gzip")
+                .GET()
+                .build();
+        HttpResponse<InputStream> response = client.send(request, HttpResponse.BodyHandlers.ofInputStream());
+        int status = response.statusCode();
+        if (status < 200 || status >= 300) {
+            response.body().close();
+            throw new IOException("HTTP " + status);
+        }
+        return response.body();
+    }
+
+    private void closeParser() {
+        if (parser == null) return;
+        try {
+            parser.close();
+        } catch (IOException e) {
+            // nothing more is read from it
+        }
+        parser = null;
+        current = null;
+    }
+
+    /**
+     * Stop reading; later calls to {@link #hasNext()} return false
+     */
+    @Override
+    public void close() {
+        closeParser();
+        sitemaps.clear();
+        next = null;
+    }
+
+    /**
+     * @return page URLs returned so far
+     */
+    public long getUrls() {
+        return urls;
+    }
+
+    /**
+     * @return counters as one line for the log
+     */
+    public String getStats() {
+        return String.format("Sitemaps: %d read, %d failed, %d page URLs, %d sitemaps not read yet",
+                read, failed, urls, sitemaps.size());
+    }
+}
@@ -0,0 +1,130 @@
+package webcrawler.url;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Immutable trie over chars, matched in place against a region of a string without allocating.
+ * A reversed trie (keys inserted back to front) answers suffix queries.
+ */
+class CharTrie {
+
+    private final Node root;
+    private final boolean reversed;
+    private final boolean ignoreCase;
+
+    /**
+     * @param keys       strings to match
+     * @param reversed   build over reversed keys, for suffix matching
+     * @param ignoreCase match ASCII letters case-insensitively
+     */
+    CharTrie(Collection<String> keys, boolean reversed, boolean ignoreCase) {
+        this.reversed = reversed;
+        this.ignoreCase = ignoreCase;
+        Builder builder = new Builder();
+        for (String key : keys) {
+            Builder node = builder;
+            for (int i = 0; i < key.length(); i++) {
+                char c = key.charAt(reversed ? key.length() - 1 - i : i);
+                node = node.child(ignoreCase ? lower(c) : c);
+            }
+            node.terminal = true;
+        }
+        this.root = builder.freeze();
+    }
+
+    boolean isEmpty() {
+        return !root.terminal && root.keys.length == 0;
+    }
+
+    /**
+     * @return true if some key is a prefix of s[from, to)
+     */
+    boolean matchesPrefix(CharSequence s, int from, int to) {
+        Node node = root;
+        if (node.terminal) return true;
+        for (int i = from; i < to; i++) {
+            node = node.next(ignoreCase ? lower(s.charAt(i)) : s.charAt(i));
+            if (node == null) return false;
+            if (node.terminal) return true;
+        }
+        return false;
+    }
+
+    /**
+     * For a reversed trie: true if some key is a suffix of s[from, to)
+     */
+    boolean matchesSuffix(CharSequence s, int from, int to) {
+        return matchesSuffix(s, from, to, false);
+    }
+
+    /**
+     * For a reversed trie of domain names: true if some key equals s[from, to) or is a suffix
+     * starting at a label boundary, so example.com matches www.example.com but not badexample.com.
+     */
+    boolean matchesDomain(CharSequence s, int from, int to) {
+        return matchesSuffix(s, from, to, true);
+    }
+
+    private boolean matchesSuffix(CharSequence s, int from, int to, boolean labelBoundary) {
+        if (!reversed) throw new IllegalStateException("suffix match needs a reversed trie");
+        Node node = root;
+        for (int i = to - 1; i >= from; i--) {
+            char c = s.charAt(i);
+            node = node.next(ignoreCase ? lower(c) : c);
+            if (node == null) return false;
+            if (node.terminal && (!labelBoundary || i == from || c == '.' || s.charAt(i - 1) == '.')) return true;
+        }
+        return false;
+    }
+
+    static char lower(char c) {
+        return c >= 'A' && c <= 'Z' ? (char) (c + ('a' - 'A')) : c;
+    }
+
+    private static class Node {
+        private final char[] keys;
+        private final Node[] children;
+        private final boolean terminal;
+
+        private Node(char[] keys, Node[] children, boolean terminal) {
+            this.keys = keys;
+            this.children = children;
+            this.terminal = terminal;
+        }
+
+        private Node next(char c) {
+            char[] k = keys;
+            for (int i = 0; i < k.length; i++) {
+                if (k[i] == c) return children[i];
+            }
+            return null;
+        }
+    }
+
+    private static class Builder {
+        private final List<Character> keys = new ArrayList<>();
+        private final List<Builder> children = new ArrayList<>();
+        private boolean terminal;
+
+        private Builder child(char c) {
+            int i = keys.indexOf(c);
+            if (i >= 0) return children.get(i);
+            Builder child = new Builder();
+            keys.add(c);
+            children.add(child);
+            return child;
+        }
+
+        private Node freeze() {
+            char[] k = new char[keys.size()];
+            Node[] n = new Node[keys.size()];
+            for (int i = 0; i < k.length; i++) {
+                k[i] = keys.get(i);
+                n[i] = children.get(i).freeze();
+            }
+            return new Node(k, n, terminal);
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package webcrawler.url;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Queue;
+
+/**
+ * Aho-Corasick automaton that finds whether any of a set of ASCII substrings occurs in a string,
+ * ignoring ASCII case, in one scan and without allocating.
+ * The goto function is precomputed for every state and char, so each input char costs one array lookup.
+ */
+class SubstringAutomaton {
+
+    private static final int ALPHABET = 128;
+
+    private final int[] transitions;
+    private final boolean[] accepting;
+
+    /**
+     * @param patterns ASCII substrings, matched case-insensitively
+     */
+    SubstringAutomaton(Collection<String> patterns) {
+        List<int[]> gotos = new ArrayList<>();
+        List<Boolean> outputs = new ArrayList<>();
+        gotos.add(newRow());
+        outputs.add(false);
+        for (String pattern : patterns) {
+            if (pattern.isEmpty()) continue;
+            int state = 0;
+            for (int i = 0; i < pattern.length(); i++) {
+                char c = CharTrie.lower(pattern.charAt(i));
+                if (c >= ALPHABET) throw new IllegalArgumentException("only ASCII substrings are supported: " + pattern);
+                if (gotos.get(state)[c] <= 0) {
+                    gotos.add(newRow());
+                    outputs.add(false);
+                    gotos.get(state)[c] = gotos.size() - 1;
+                }
+                state = gotos.get(state)[c];
+            }
+            outputs.set(state, true);
+        }
+
+        int states = gotos.size();
+        int[] fail = new int[states];
+        this.transitions = new int[states * ALPHABET];
+        this.accepting = new boolean[states];
+        for (int s = 0; s < states; s++) accepting[s] = outputs.get(s);
+
+        // breadth-first: complete the goto function along failure links
+        Queue<Integer> queue = new ArrayDeque<>();
+        for (int c = 0; c < ALPHABET; c++) {
+            int next = gotos.get(0)[c];
+            if (next > 0) {
+                transitions[c] = next;
+                fail[next] = 0;
+                queue.add(next);
+            }
+        }
+        while (!queue.isEmpty()) {
+            int state = queue.poll();
+            accepting[state] |= accepting[fail[state]];
+            for (int c = 0; c < ALPHABET; c++) {
+                int next = gotos.get(state)[c];
+                if (next > 0) {
+                    fail[next] = transitions[fail[state] * ALPHABET + c];
+                    transitions[state * ALPHABET + c] = next;
+                    queue.add(next);
+                } else {
+                    transitions[state * ALPHABET + c] = transitions[fail[state] * ALPHABET + c];
+                }
+            }
+        }
+    }
+
+    boolean isEmpty() {
+        return accepting.length == 1;
+    }
+
+    /**
+     * @return true if any pattern occurs in s
+     */
+    boolean containsAny(CharSequence s) {
+        int state = 0;
+        for (int i = 0, n = s.length(); i < n; i++) {
+            char c = CharTrie.lower(s.charAt(i));
+            state = c < ALPHABET ? transitions[state * ALPHABET + c] : 0;
+            if (accepting[state]) return true;
+        }
+        return false;
+    }
+
+    private static int[] newRow() {
+        return new int[ALPHABET];
+    }
+}
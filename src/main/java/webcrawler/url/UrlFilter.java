@@ -0,0 +1,132 @@
+package webcrawler.url;
+
+import edu.neu.coe.info6205.util.Config;
+import edu.neu.coe.info6205.util.LazyLogger;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * {@link UrlFilterRules} compiled for the per-link hot path.
+ * <p>
+ * Host and path rules become tries matched in place on the URL string, the denied substrings one
+ * Aho-Corasick automaton and the regexes one alternation with a reused per-thread {@link Matcher}.
+ * {@link #accept(String)} scans each URL once, ignores case without lower-casing a copy, and does
+ * not allocate.
+ */
+public class UrlFilter {
+
+    private static final LazyLogger logger = new LazyLogger(UrlFilter.class);
+
+    /**
+     * System property naming an ini file to read the filter rules from instead of config.ini on the classpath
+     */
+    public static final String CONFIG_PROPERTY = "crawler.config";
+
+    private final UrlFilterRules rules;
+    private final CharTrie allowedHosts;
+    private final CharTrie deniedHostPrefixes;
+    private final CharTrie deniedHostSuffixes;
+    private final CharTrie allowedPathPrefixes;
+    private final CharTrie deniedPathPrefixes;
+    private final CharTrie deniedExtensions;
+    private final SubstringAutomaton deniedSubstrings;
+    private final ThreadLocal<Matcher> deniedPattern;
+
+    /**
+     * @param rules rules to compile
+     */
+    public UrlFilter(UrlFilterRules rules) {
+        this.rules = rules;
+        this.allowedHosts = new CharTrie(rules.getAllowedHosts(), true, true);
+        this.deniedHostPrefixes = new CharTrie(rules.getDeniedHostPrefixes(), false, true);
+        this.deniedHostSuffixes = new CharTrie(rules.getDeniedHostSuffixes(), true, true);
+        this.allowedPathPrefixes = new CharTrie(rules.getAllowedPathPrefixes(), false, false);
+        this.deniedPathPrefixes = new CharTrie(rules.getDeniedPathPrefixes(), false, false);
+        this.deniedExtensions = new CharTrie(rules.getDeniedExtensions(), true, true);
+        this.deniedSubstrings = new SubstringAutomaton(rules.getDeniedSubstrings());
+        this.deniedPattern = compile(rules.getDeniedPatterns());
+    }
+
+    /**
+     * Filter with the rules of config.ini (or the file named by the {@value #CONFIG_PROPERTY} system property),
+     * falling back to {@link UrlFilterRules#defaults()} if no configuration can be read
+     * @return new filter
+     */
+    public static UrlFilter load() {
+        try {
+            String file = System.getProperty(CONFIG_PROPERTY);
+            Config config = file != null ? new Config(file) : Config.load(UrlFilter.class);
+            return new UrlFilter(UrlFilterRules.fromConfig(config));
+        } catch (IOException e) {
+            logger.warn("Cannot read URL filter config, using defaults: " + e.getMessage());
+            return new UrlFilter(UrlFilterRules.defaults());
+        }
+    }
+
+    public UrlFilterRules getRules() {
+        return rules;
+    }
+
+    /**
+     * @param url absolute URL
+     * @return true if the crawler may follow the URL
+     */
+    public boolean accept(String url) {
+        int n = url.length();
+        int i;
+        if (url.regionMatches(true, 0, "https://", 0, 8)) {
+            i = 8;
+        } else if (url.regionMatches(true, 0, "http://", 0, 7)) {
+            i = 7;
+        } else {
+            return false;
+        }
+
+        // host
+        int authorityEnd = i;
+        while (authorityEnd < n) {
+            char c = url.charAt(authorityEnd);
+            if (c == '/' || c == '?' || c == '#') break;
+            authorityEnd++;
+        }
+        int hostStart = Math.max(i, url.lastIndexOf('@', authorityEnd - 1) + 1);
+        int hostEnd = authorityEnd;
+        int colon = url.lastIndexOf(':', authorityEnd - 1);
+        if (colon >= hostStart && url.lastIndexOf(']', authorityEnd - 1) < colon) hostEnd = colon;
+        if (!allowedHosts.isEmpty() && !allowedHosts.matchesDomain(url, hostStart, hostEnd)) return false;
+        if (deniedHostPrefixes.matchesPrefix(url, hostStart, hostEnd)) return false;
+        if (deniedHostSuffixes.matchesSuffix(url, hostStart, hostEnd)) return false;
+
+        // path, query, fragment
+        int pathEnd = authorityEnd;
+        while (pathEnd < n) {
+            char c = url.charAt(pathEnd);
+            if (c == '?' || c == '#') break;
+            pathEnd++;
+        }
+        if (pathEnd < n) {
+            if (url.charAt(pathEnd) == '?' ? !rules.isAllowQuery() || (!rules.isAllowFragment() && url.indexOf('#', pathEnd) >= 0)
+                    : !rules.isAllowFragment()) return false;
+        }
+        if (!allowedPathPrefixes.isEmpty() && !allowedPathPrefixes.matchesPrefix(url, authorityEnd, pathEnd)) return false;
+        if (deniedPathPrefixes.matchesPrefix(url, authorityEnd, pathEnd)) return false;
+        if (deniedExtensions.matchesSuffix(url, authorityEnd, pathEnd)) return false;
+
+        if (deniedSubstrings.containsAny(url)) return false;
+        return deniedPattern == null || !deniedPattern.get().reset(url).find();
+    }
+
+    private static ThreadLocal<Matcher> compile(List<String> patterns) {
+        if (patterns.isEmpty()) return null;
+        StringBuilder alternation = new StringBuilder();
+        for (String pattern : patterns) {
+            if (alternation.length() > 0) alternation.append('|');
+            alternation.append("(?:").append(pattern).append(')');
+        }
+        Pattern compiled = Pattern.compile(alternation.toString());
+        return ThreadLocal.withInitial(() -> compiled.matcher(""));
+    }
+}
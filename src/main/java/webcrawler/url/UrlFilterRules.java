@@ -0,0 +1,194 @@
+package webcrawler.url;
+
+import edu.neu.coe.info6205.util.Config;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Rules deciding which extracted links the crawler follows, read from the {@code [crawlerfilter]}
+ * section of config.ini and compiled into a {@link UrlFilter}.
+ * <p>
+ * List values are comma separated. A key that is missing keeps its default; a key that is present
+ * but empty clears the list (e.g. {@code allowedHosts =} allows every host).
+ */
+public class UrlFilterRules {
+
+    public static final String SECTION = "crawlerfilter";
+
+    private List<String> allowedHosts = new ArrayList<>();
+    private List<String> deniedHostPrefixes = new ArrayList<>();
+    private List<String> deniedHostSuffixes = new ArrayList<>();
+    private List<String> allowedPathPrefixes = new ArrayList<>();
+    private List<String> deniedPathPrefixes = new ArrayList<>();
+    private List<String> deniedSubstrings = new ArrayList<>();
+    private List<String> deniedExtensions = new ArrayList<>();
+    private List<String> deniedPatterns = new ArrayList<>();
+    private boolean allowQuery = true;
+    private boolean allowFragment = true;
+
+    /**
+     * The rules the crawler has always used for cfainstitute.org
+     * @return default rules
+     */
+    public static UrlFilterRules defaults() {
+        UrlFilterRules rules = new UrlFilterRules();
+        rules.setAllowedHosts(List.of("cfainstitute.org"));
+        rules.setDeniedHostPrefixes(List.of("my."));
+        rules.setDeniedHostSuffixes(List.of(".onion"));
+        rules.setDeniedSubstrings(List.of("session", "account"));
+        rules.setDeniedExtensions(List.of(".pdf", ".mp4", ".avi", ".mkv", ".mov", ".wmv", ".flv", ".webm"));
+        rules.setAllowQuery(false);
+        rules.setAllowFragment(false);
+        return rules;
+    }
+
+    /**
+     * Defaults overridden by whatever the config's {@code [crawlerfilter]} section sets
+     * @param config loaded configuration
+     * @return rules
+     */
+    public static UrlFilterRules fromConfig(Config config) {
+        UrlFilterRules rules = defaults();
+        rules.setAllowedHosts(list(config, "allowedHosts", rules.getAllowedHosts()));
+        rules.setDeniedHostPrefixes(list(config, "deniedHostPrefixes", rules.getDeniedHostPrefixes()));
+        rules.setDeniedHostSuffixes(list(config, "deniedHostSuffixes", rules.getDeniedHostSuffixes()));
+        rules.setAllowedPathPrefixes(list(config, "allowedPathPrefixes", rules.getAllowedPathPrefixes()));
+        rules.setDeniedPathPrefixes(list(config, "deniedPathPrefixes", rules.getDeniedPathPrefixes()));
+        rules.setDeniedSubstrings(list(config, "deniedSubstrings", rules.getDeniedSubstrings()));
+        rules.setDeniedExtensions(list(config, "deniedExtensions", rules.getDeniedExtensions()));
+        rules.setDeniedPatterns(list(config, "deniedPatterns", rules.getDeniedPatterns()));
+        String allowQuery = config.get(SECTION, "allowQuery");
+        if (allowQuery != null && !allowQuery.isBlank()) rules.setAllowQuery(Boolean.parseBoolean(allowQuery.trim()));
+        String allowFragment = config.get(SECTION, "allowFragment");
+        if (allowFragment != null && !allowFragment.isBlank()) rules.setAllowFragment(Boolean.parseBoolean(allowFragment.trim()));
+        return rules;
+    }
+
+    private static List<String> list(Config config, String key, List<String> defaultValue) {
+        String value = config.get(SECTION, key);
+        if (value == null) return defaultValue;
+        List<String> result = new ArrayList<>();
+        for (String item : value.split(",")) {
+            if (!item.isBlank()) result.add(item.trim());
+        }
+        return result;
+    }
+
+    public List<String> getAllowedHosts() {
+        return allowedHosts;
+    }
+
+    /**
+     * @param allowedHosts host suffixes that may be crawled, e.g. example.com matches www.example.com; empty allows all
+     */
+    public void setAllowedHosts(List<String> allowedHosts) {
+        this.allowedHosts = new ArrayList<>(allowedHosts);
+    }
+
+    public List<String> getDeniedHostPrefixes() {
+        return deniedHostPrefixes;
+    }
+
+    /**
+     * @param deniedHostPrefixes host prefixes never crawled, e.g. my.
+     */
+    public void setDeniedHostPrefixes(List<String> deniedHostPrefixes) {
+        this.deniedHostPrefixes = new ArrayList<>(deniedHostPrefixes);
+    }
+
+    public List<String> getDeniedHostSuffixes() {
+        return deniedHostSuffixes;
+    }
+
+    /**
+     * @param deniedHostSuffixes host suffixes never crawled, e.g. .onion
+     */
+    public void setDeniedHostSuffixes(List<String> deniedHostSuffixes) {
+        this.deniedHostSuffixes = new ArrayList<>(deniedHostSuffixes);
+    }
+
+    public List<String> getAllowedPathPrefixes() {
+        return allowedPathPrefixes;
+    }
+
+    /**
+     * @param allowedPathPrefixes path prefixes that may be crawled, e.g. /insights; empty allows all
+     */
+    public void setAllowedPathPrefixes(List<String> allowedPathPrefixes) {
+        this.allowedPathPrefixes = new ArrayList<>(allowedPathPrefixes);
+    }
+
+    public List<String> getDeniedPathPrefixes() {
+        return deniedPathPrefixes;
+    }
+
+    public void setDeniedPathPrefixes(List<String> deniedPathPrefixes) {
+        this.deniedPathPrefixes = new ArrayList<>(deniedPathPrefixes);
+    }
+
+    public List<String> getDeniedSubstrings() {
+        return deniedSubstrings;
+    }
+
+    /**
+     * @param deniedSubstrings case-insensitive substrings anywhere in the URL, e.g. session
+     */
+    public void setDeniedSubstrings(List<String> deniedSubstrings) {
+        this.deniedSubstrings = new ArrayList<>(deniedSubstrings);
+    }
+
+    public List<String> getDeniedExtensions() {
+        return deniedExtensions;
+    }
+
+    /**
+     * @param deniedExtensions case-insensitive endings of the path, e.g. .pdf
+     */
+    public void setDeniedExtensions(List<String> deniedExtensions) {
+        this.deniedExtensions = new ArrayList<>(deniedExtensions);
+    }
+
+    public List<String> getDeniedPatterns() {
+        return deniedPatterns;
+    }
+
+    /**
+     * @param deniedPatterns regular expressions; a URL containing a match is rejected
+     */
+    public void setDeniedPatterns(List<String> deniedPatterns) {
+        this.deniedPatterns = new ArrayList<>(deniedPatterns);
+    }
+
+    public boolean isAllowQuery() {
+        return allowQuery;
+    }
+
+    public void setAllowQuery(boolean allowQuery) {
+        this.allowQuery = allowQuery;
+    }
+
+    public boolean isAllowFragment() {
+        return allowFragment;
+    }
+
+    public void setAllowFragment(boolean allowFragment) {
+        this.allowFragment = allowFragment;
+    }
+
+    @Override
+    public String toString() {
+        return "UrlFilterRules{" +
+                "allowedHosts=" + allowedHosts +
+                ", deniedHostPrefixes=" + deniedHostPrefixes +
+                ", deniedHostSuffixes=" + deniedHostSuffixes +
+                ", allowedPathPrefixes=" + allowedPathPrefixes +
+                ", deniedPathPrefixes=" + deniedPathPrefixes +
+                ", deniedSubstrings=" + deniedSubstrings +
+                ", deniedExtensions=" + deniedExtensions +
+                ", deniedPatterns=" + deniedPatterns +
+                ", allowQuery=" + allowQuery +
+                ", allowFragment=" + allowFragment +
+                '}';
+    }
+}
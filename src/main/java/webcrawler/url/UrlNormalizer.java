@@ -0,0 +1,171 @@
+package webcrawler.url;
+
+/**
+ * Canonical form of http(s) URLs, applied before dedup and enqueue so that spellings of the same page
+ * share one visited entry and one fetch.
+ * <p>
+ * In a single pass over the URL it
+ * <ul>
+ *     <li>lower-cases scheme and host, drops a trailing dot of the host and the default port,</li>
+ *     <li>optionally maps http to https, unless an explicit port is given,</li>
+ *     <li>collapses duplicate slashes and resolves {@code .} and {@code ..} segments,</li>
+ *     <li>upper-cases percent-escapes and decodes escaped unreserved characters,</li>
+ *     <li>optionally removes the trailing slash of a non-root path, and</li>
+ *     <li>drops the fragment (and an empty query).</li>
+ * </ul>
+ * The result is built in a per-thread {@link StringBuilder}; a URL that is already canonical is returned
+ * as the same instance, so the common case allocates nothing. Anything that is not an absolute http(s)
+ * URL is returned unchanged.
+ */
+public class UrlNormalizer {
+
+    private static final ThreadLocal<StringBuilder> BUFFER = ThreadLocal.withInitial(() -> new StringBuilder(256));
+
+    private final boolean upgradeHttp;
+    private final boolean removeTrailingSlash;
+
+    /**
+     * Normalizer that keeps the scheme and trailing slashes, so the URL fetched is one the site serves.
+     */
+    public UrlNormalizer() {
+        this(false, false);
+    }
+
+    /**
+     * @param upgradeHttp         treat http://x and https://x as the same page, written as https; the
+     *                            result is what gets fetched, so only for sites known to serve https
+     * @param removeTrailingSlash treat /a/ and /a as the same page, written as /a; the result is what
+     *                            gets fetched, so only for sites that serve both spellings
+     */
+    public UrlNormalizer(boolean upgradeHttp, boolean removeTrailingSlash) {
+        this.upgradeHttp = upgradeHttp;
+        this.removeTrailingSlash = removeTrailingSlash;
+    }
+
+    /**
+     * @param url absolute URL
+     * @return canonical URL, the same instance if url is already canonical or not http(s)
+     */
+    public String normalize(String url) {
+        int n = url.length();
+        boolean https;
+        int i;
+        if (url.regionMatches(true, 0, "https://", 0, 8)) {
+            https = true;
+            i = 8;
+        } else if (url.regionMatches(true, 0, "http://", 0, 7)) {
+            https = false;
+            i = 7;
+        } else {
+            return url;
+        }
+
+        StringBuilder sb = BUFFER.get();
+        sb.setLength(0);
+
+        // authority: [userinfo@]host[:port]
+        int authorityEnd = i;
+        while (authorityEnd < n) {
+            char c = url.charAt(authorityEnd);
+            if (c == '/' || c == '?' || c == '#') break;
+            authorityEnd++;
+        }
+        int hostStart = url.lastIndexOf('@', authorityEnd - 1) + 1;
+        if (hostStart <= i) hostStart = i;
+        int hostEnd = authorityEnd;
+        int portStart = -1;
+        int colon = url.lastIndexOf(':', authorityEnd - 1);
+        if (colon >= hostStart && url.lastIndexOf(']', authorityEnd - 1) < colon) {
+            hostEnd = colon;
+            portStart = colon + 1;
+        }
+        if (hostEnd > hostStart && url.charAt(hostEnd - 1) == '.') hostEnd--;
+        if (hostEnd == hostStart) return url;
+        boolean explicitPort = portStart >= 0 && portStart < authorityEnd && !isDefaultPort(url, portStart, authorityEnd, https);
+        // http://h:8080 is a different server than https://h:8080
+        sb.append(https || upgradeHttp && !explicitPort ? "https://" : "http://");
+        if (hostStart > i) sb.append(url, i, hostStart);
+        for (int h = hostStart; h < hostEnd; h++) {
+            char c = url.charAt(h);
+            sb.append(c >= 'A' && c <= 'Z' ? (char) (c + ('a' - 'A')) : c);
+        }
+        if (explicitPort) sb.append(url, colon, authorityEnd);
+
+        // path
+        int pathBase = sb.length();
+        int pathEnd = authorityEnd;
+        while (pathEnd < n) {
+            char c = url.charAt(pathEnd);
+            if (c == '?' || c == '#') break;
+            pathEnd++;
+        }
+        boolean trailingSlash = false;
+        int segStart = authorityEnd;
+        while (segStart < pathEnd) {
+            if (url.charAt(segStart) == '/') {
+                segStart++;
+                trailingSlash = true;
+                continue;
+            }
+            int segEnd = url.indexOf('/', segStart);
+            if (segEnd < 0 || segEnd > pathEnd) segEnd = pathEnd;
+            int length = segEnd - segStart;
+            if (length == 1 && url.charAt(segStart) == '.') {
+                trailingSlash = true;
+            } else if (length == 2 && url.charAt(segStart) == '.' && url.charAt(segStart + 1) == '.') {
+                int previous = sb.lastIndexOf("/");
+                sb.setLength(Math.max(previous, pathBase));
+                trailingSlash = true;
+            } else {
+                sb.append('/');
+                appendSegment(sb, url, segStart, segEnd);
+                trailingSlash = false;
+            }
+            segStart = segEnd;
+        }
+        if (sb.length() == pathBase || (trailingSlash && !removeTrailingSlash)) sb.append('/');
+
+        // query, fragment dropped
+        if (pathEnd < n && url.charAt(pathEnd) == '?') {
+            int queryEnd = url.indexOf('#', pathEnd);
+            if (queryEnd < 0) queryEnd = n;
+            if (queryEnd - pathEnd > 1) sb.append(url, pathEnd, queryEnd);
+        }
+
+        return sb.length() == n && url.contentEquals(sb) ? url : sb.toString();
+    }
+
+    private static boolean isDefaultPort(String url, int start, int end, boolean https) {
+        String port = https ? "443" : "80";
+        return end - start == port.length() && url.startsWith(port, start);
+    }
+
+    /**
+     * Copy one path segment, normalizing percent-escapes
+     */
+    private static void appendSegment(StringBuilder sb, String url, int start, int end) {
+        for (int i = start; i < end; i++) {
+            char c = url.charAt(i);
+            if (c == '%' && i + 2 < end) {
+                int hi = Character.digit(url.charAt(i + 1), 16);
+                int lo = Character.digit(url.charAt(i + 2), 16);
+                if (hi >= 0 && lo >= 0) {
+                    char decoded = (char) (hi << 4 | lo);
+                    if (isUnreserved(decoded)) {
+                        sb.append(decoded);
+                    } else {
+                        sb.append('%').append(Character.toUpperCase(url.charAt(i + 1))).append(Character.toUpperCase(url.charAt(i + 2)));
+                    }
+                    i += 2;
+                    continue;
+                }
+            }
+            sb.append(c);
+        }
+    }
+
+    private static boolean isUnreserved(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9')
+                || c == '-' || c == '.' || c == '_' || c == '~';
+    }
+}
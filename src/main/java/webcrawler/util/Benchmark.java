@@ -1,9 +1,12 @@
 package webcrawler.util;
 
+import webcrawler.metrics.CrawlMetrics;
+import webcrawler.parallel.CrawlExecutionMode;
 import webcrawler.parallel.ParallelCrawler;
 
 import java.util.HashSet;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
 
 public class Benchmark {
 
@@ -22,30 +25,63 @@ public class Benchmark {
             for (int depth : depths) {
                 System.out.printf("Testing with thread pool size: %d and max depth: %d%n", threadPoolSize, depth);
 
-                ParallelCrawler crawler = new ParallelCrawler(threadPoolSize, depth);
+                if (!run(new ParallelCrawler(threadPoolSize, depth), startUrls)) break;
+            }
+        }
+
+        System.out.println("Benchmark completed.");
+    }
 
-                long startTime = System.nanoTime();
+    /**
+     * Same grid as {@link #benchmarkrun()}, but every fetch runs on its own virtual thread
+     * and the concurrency cap replaces the pool size.
+     */
+    public static void benchmarkVirtual() {
+        Set<String> startUrls = new HashSet<>();
+        startUrls.add("https://www.cfainstitute.org/insights/professional-learning");
 
-                crawler.startCrawling(startUrls);
+        System.out.println("Starting virtual thread Benchmark...");
 
-                while (!crawler.getIsStopped()) {
-                    try {
-                        Thread.sleep(80); // Check every 100ms
-                    } catch (InterruptedException e) {
-                        Thread.currentThread().interrupt();
-                        break;
-                    }
-                }
-                System.out.println("Flag of parallel crawler: " + crawler.getIsStopped());
+        int consumers = 4;
+        int[] concurrencyCaps = {64, 256, 1024}; // max fetches in flight
+        int[] depths = {2, 3, 4};
 
-                long endTime = System.nanoTime();
-                double durationInSeconds = (endTime - startTime) / 1_000_000_000.0;
-                System.out.println("-----------------------------------------------");
-                System.out.printf("Completed in %.3f seconds.%n%n", durationInSeconds);
-                System.out.println("-----------------------------------------------");
+        for (int cap : concurrencyCaps) {
+            for (int depth : depths) {
+                System.out.printf("Testing with virtual threads, max concurrent fetches: %d and max depth: %d%n", cap, depth);
+
+                if (!run(new ParallelCrawler(consumers, depth, CrawlExecutionMode.VIRTUAL, cap), startUrls)) break;
             }
         }
 
         System.out.println("Benchmark completed.");
     }
-}
\ No newline at end of file
+
+    /**
+     * Run one crawl to completion and print the elapsed time.
+     * @return false if interrupted
+     */
+    private static boolean run(ParallelCrawler crawler, Set<String> startUrls) {
+        long startTime = System.nanoTime();
+        CrawlMetrics.global().reset();
+
+        crawler.startCrawling(startUrls);
+
+        try {
+            // returns as soon as the queue is drained and no fetch is in flight
+            crawler.awaitCompletion(1, TimeUnit.HOURS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+        System.out.println("Flag of parallel crawler: " + crawler.getIsStopped());
+
+        long endTime = System.nanoTime();
+        double durationInSeconds = (endTime - startTime) / 1_000_000_000.0;
+        System.out.println("-----------------------------------------------");
+        System.out.printf("Completed in %.3f seconds.%n%n", durationInSeconds);
+        System.out.println(CrawlMetrics.global().snapshot());
+        System.out.println("-----------------------------------------------");
+        return true;
+    }
+}
@@ -0,0 +1,61 @@
+package webcrawler.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Compares the blocking Jsoup fetcher with the async HttpClient fetcher against a local {@link StubHttpServer}.
+ */
+public class FetcherBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int pages = args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+        long latency = args.length > 1 ? Long.parseLong(args[1]) : 50;
+        int[] concurrencies = {6, 64, 256};
+
+        try (StubHttpServer server = new StubHttpServer(pages, 20, latency)) {
+            System.out.printf("Fetching %d pages, %d ms server latency%n", pages, latency);
+            PageFetcher jsoup = new JsoupPageFetcher();
+            PageFetcher httpClient = new HttpClientPageFetcher();
+            // warmup
+            run(jsoup, server, 8, Math.min(200, pages));
+            run(httpClient, server, 8, Math.min(200, pages));
+            for (int concurrency : concurrencies) {
+                report("jsoup", concurrency, pages, run(jsoup, server, concurrency, pages));
+                report("httpclient", concurrency, pages, run(httpClient, server, concurrency, pages));
+            }
+        }
+    }
+
+    /**
+     * Fetch every page with at most concurrency requests in flight
+     * @return elapsed nanoseconds
+     */
+    private static long run(PageFetcher fetcher, StubHttpServer server, int concurrency, int pages) throws InterruptedException {
+        // blocking fetches need one thread per request in flight, the async fetcher only parses on it
+        ExecutorService executor = Executors.newFixedThreadPool(concurrency);
+        Semaphore inFlight = new Semaphore(concurrency);
+        List<CompletableFuture<?>> futures = new ArrayList<>(pages);
+        long start = System.nanoTime();
+        try {
+            for (int i = 0; i < pages; i++) {
+                inFlight.acquire();
+                futures.add(fetcher.fetchAsync(server.pageUrl(i), executor)
+                        .whenComplete((document, ex) -> inFlight.release()));
+            }
+            CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).exceptionally(ex -> null).join();
+            return System.nanoTime() - start;
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private static void report(String name, int concurrency, int pages, long nanos) {
+        double seconds = nanos / 1_000_000_000.0;
+        System.out.printf("%-10s concurrency %4d: %.3f s, %.1f pages/s%n", name, concurrency, seconds, pages / seconds);
+    }
+}
@@ -0,0 +1,167 @@
+package webcrawler.util;
+
+import webcrawler.metrics.CrawlMetrics;
+import webcrawler.metrics.CrawlStage;
+
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+
+/**
+ * Non-blocking fetcher on {@link java.net.http.HttpClient}.
+ * <p>
+ * One client is shared by every request, so connections are pooled and reused (HTTP/2 multiplexes
+ * requests to the same host over one connection). {@link #fetchAsync} does not hold a thread while
+ * waiting for the network; only the Jsoup parse runs on the given executor.
+ * Time to headers, download and parse are recorded in {@link CrawlMetrics#global()}.
+ */
+public class HttpClientPageFetcher implements PageFetcher {
+
+    private static final Duration DEFAULT_TIMEOUT = Duration.ofSeconds(30);
+
+    private final HttpClient client;
+    private final Duration requestTimeout;
+
+    public HttpClientPageFetcher() {
+        this(DEFAULT_TIMEOUT);
+    }
+
+    /**
+     * @param timeout connect timeout and per-request timeout
+     */
+    public HttpClientPageFetcher(Duration timeout) {
+        this(HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_2)
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .connectTimeout(timeout)
+                .build(), timeout);
+    }
+
+    /**
+     * @param client         shared client
+     * @param requestTimeout per-request timeout
+     */
+    public HttpClientPageFetcher(HttpClient client, Duration requestTimeout) {
+        this.client = client;
+        this.requestTimeout = requestTimeout;
+    }
+
+    @Override
+    public Document fetch(String url) throws Exception {
+        HttpResponse<byte[]> response = client.send(request(url), timed(url, HttpResponse.BodyHandlers.ofByteArray(), true));
+        return parse(url, response);
+    }
+
+    @Override
+    public CompletableFuture<Document> fetchAsync(String url, Executor executor) {
+        HttpRequest request;
+        try {
+            request = request(url);
+        } catch (IllegalArgumentException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        return client.sendAsync(request, timed(url, HttpResponse.BodyHandlers.ofByteArray(), true))
+                .thenApplyAsync(response -> {
+                    try {
+                        return parse(url, response);
+                    } catch (IOException e) {
+                        throw new CompletionException(e);
+                    }
+                }, executor);
+    }
+
+    @Override
+    public PageStream openStream(String url) throws Exception {
+        // the body is read while it is scanned, so only the time to headers is recorded here
+        HttpResponse<InputStream> response = client.send(request(url), timed(url, HttpResponse.BodyHandlers.ofInputStream(), false));
+        String contentType;
+        try {
+            contentType = check(url, response);
+        } catch (IOException e) {
+            response.body().close();
+            throw e;
+        }
+        return new PageStream(response.uri().toString(), response.body(), charset(contentType));
+    }
+
+    private HttpRequest request(String url) {
+        return HttpRequest.newBuilder(URI.create(url))
+                .timeout(requestTimeout)
+                .header("Accept", "text/html,application/xhtml+xml")
+                .GET()
+                .build();
+    }
+
+    /**
+     * Check status and content type the way Jsoup does, then parse with the final URL as base URI.
+     */
+    private static Document parse(String url, HttpResponse<byte[]> response) throws IOException {
+        String contentType = check(url, response);
+        long start = System.nanoTime();
+        Document document = Jsoup.parse(new ByteArrayInputStream(response.body()), charset(contentType), response.uri().toString());
+        CrawlMetrics.global().recordSince(CrawlStage.PARSE, start);
+        return document;
+    }
+
+    /**
+     * Record the status and the time to the response headers of a request sent now, and optionally
+     * the time from the headers to the end of the body
+     * @param url      requested URL
+     * @param handler  body handler to wrap
+     * @param download true to time the body; false if the body is read later by the caller
+     * @return handler to send the request with
+     */
+    static <T> HttpResponse.BodyHandler<T> timed(String url, HttpResponse.BodyHandler<T> handler, boolean download) {
+        long start = System.nanoTime();
+        return info -> {
+            long headers = System.nanoTime();
+            CrawlMetrics metrics = CrawlMetrics.global();
+            metrics.record(CrawlStage.CONNECT, headers - start);
+            metrics.recordResponse(url, info.statusCode());
+            if (!download) return handler.apply(info);
+            return HttpResponse.BodySubscribers.mapping(handler.apply(info), body -> {
+                metrics.recordSince(CrawlStage.DOWNLOAD, headers);
+                return body;
+            });
+        };
+    }
+
+    /**
+     * @return the Content-Type header, or "" if absent
+     * @throws IOException on a non-2xx status or a non-HTML content type
+     */
+    static String check(String url, HttpResponse<?> response) throws IOException {
+        int status = response.statusCode();
+        if (status < 200 || status >= 300) {
+            throw new IOException("HTTP error fetching URL. Status=" + status + ", URL=" + url);
+        }
+        String contentType = response.headers().firstValue("Content-Type").orElse("");
+        if (!contentType.isEmpty() && !contentType.startsWith("text/") && !contentType.contains("xml")) {
+            throw new IOException("Unhandled content type " + contentType + ", URL=" + url);
+        }
+        return contentType;
+    }
+
+    /**
+     * @return charset from the Content-Type header, or null to let Jsoup detect it
+     */
+    static String charset(String contentType) {
+        int i = contentType.toLowerCase().indexOf("charset=");
+        if (i < 0) return null;
+        String charset = contentType.substring(i + "charset=".length()).trim();
+        int end = charset.indexOf(';');
+        if (end >= 0) charset = charset.substring(0, end);
+        return charset.replace("\"", "").trim();
+    }
+}
@@ -1,9 +1,14 @@
 package webcrawler.util;
 
-import org.jsoup.Jsoup;
 import org.jsoup.nodes.Document;
 
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
 public class HttpUtils {
+
+    private static volatile PageFetcher fetcher = new JsoupPageFetcher();
+
     /**
      * 获取网页内容
      * @param url 目标 URL
@@ -11,6 +16,41 @@ public class HttpUtils {
      * @throws Exception 如果请求失败
      */
     public static Document fetchPage(String url) throws Exception {
-        return Jsoup.connect(url).get();
+        return fetcher.fetch(url);
+    }
+
+    /**
+     * Fetch a page without blocking the caller
+     * @param url      target URL
+     * @param executor executor for blocking work and parsing
+     * @return future of the parsed page
+     */
+    public static CompletableFuture<Document> fetchPageAsync(String url, Executor executor) {
+        return fetcher.fetchAsync(url, executor);
+    }
+
+    /**
+     * Fetch a page as an unparsed byte stream
+     * @param url target URL
+     * @return response body, to be closed by the caller
+     * @throws Exception if the request fails
+     */
+    public static PageStream openPageStream(String url) throws Exception {
+        return fetcher.openStream(url);
+    }
+
+    /**
+     * @return the installed fetcher
+     */
+    public static PageFetcher getFetcher() {
+        return fetcher;
+    }
+
+    /**
+     * Replace the fetcher used by all crawls, e.g. with {@link HttpClientPageFetcher}
+     * @param pageFetcher new fetcher
+     */
+    public static void setFetcher(PageFetcher pageFetcher) {
+        fetcher = pageFetcher;
     }
 }
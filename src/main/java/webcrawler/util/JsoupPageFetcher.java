@@ -0,0 +1,38 @@
+package webcrawler.util;
+
+import webcrawler.metrics.CrawlMetrics;
+import webcrawler.metrics.CrawlStage;
+
+import org.jsoup.Connection;
+import org.jsoup.HttpStatusException;
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+
+/**
+ * Blocking fetcher on Jsoup's own connection code, the original behaviour of {@link HttpUtils#fetchPage(String)}.
+ * Time to headers, download and parse are recorded in {@link CrawlMetrics#global()}.
+ */
+public class JsoupPageFetcher implements PageFetcher {
+
+    @Override
+    public Document fetch(String url) throws Exception {
+        CrawlMetrics metrics = CrawlMetrics.global();
+        long start = System.nanoTime();
+        Connection.Response response;
+        try {
+            response = Jsoup.connect(url).execute();
+        } catch (HttpStatusException e) {
+            metrics.recordResponse(url, e.getStatusCode());
+            throw e;
+        }
+        long headers = System.nanoTime();
+        metrics.record(CrawlStage.CONNECT, headers - start);
+        metrics.recordResponse(url, response.statusCode());
+        response.bufferUp();
+        long downloaded = System.nanoTime();
+        metrics.record(CrawlStage.DOWNLOAD, downloaded - headers);
+        Document document = response.parse();
+        metrics.recordSince(CrawlStage.PARSE, downloaded);
+        return document;
+    }
+}
@@ -0,0 +1,67 @@
+package webcrawler.util;
+
+import webcrawler.metrics.CrawlMetrics;
+import webcrawler.metrics.CrawlStage;
+
+import org.jsoup.Connection;
+import org.jsoup.HttpStatusException;
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+
+/**
+ * Fetches a page and parses it into a Jsoup {@link Document}.
+ * <p>
+ * {@link HttpUtils} delegates to the installed fetcher, so the HTTP stack can be swapped without touching the crawler.
+ */
+public interface PageFetcher {
+
+    /**
+     * Fetch and parse a page, blocking the calling thread.
+     * @param url absolute URL
+     * @return parsed page
+     * @throws Exception if the request fails or the response is not HTML
+     */
+    Document fetch(String url) throws Exception;
+
+    /**
+     * Fetch and parse a page without blocking the caller.
+     * The default runs {@link #fetch(String)} on the executor; non-blocking implementations override it.
+     * @param url      absolute URL
+     * @param executor executor for blocking or CPU work (parsing)
+     * @return future of the parsed page, completed exceptionally if the fetch fails
+     */
+    default CompletableFuture<Document> fetchAsync(String url, Executor executor) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return fetch(url);
+            } catch (Exception e) {
+                throw new CompletionException(e);
+            }
+        }, executor);
+    }
+
+    /**
+     * Fetch a page without parsing it. The default goes through Jsoup's connection,
+     * which checks status and content type like {@link #fetch(String)}.
+     * @param url absolute URL
+     * @return response body, to be closed by the caller
+     * @throws Exception if the request fails or the response is not HTML
+     */
+    default PageStream openStream(String url) throws Exception {
+        long start = System.nanoTime();
+        Connection.Response response;
+        try {
+            response = Jsoup.connect(url).execute();
+        } catch (HttpStatusException e) {
+            CrawlMetrics.global().recordResponse(url, e.getStatusCode());
+            throw e;
+        }
+        CrawlMetrics.global().recordSince(CrawlStage.CONNECT, start);
+        CrawlMetrics.global().recordResponse(url, response.statusCode());
+        return new PageStream(response.url().toString(), response.bodyStream(), response.charset());
+    }
+}
@@ -0,0 +1,61 @@
+package webcrawler.util;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Unparsed response body of a fetched page, for consumers that read the bytes themselves
+ * (see {@link StreamingLinkExtractor}). Closing it releases the connection.
+ */
+public class PageStream implements Closeable {
+
+    private final String url;
+    private final InputStream body;
+    private final String charset;
+
+    /**
+     * @param url  final URL after redirects, the base for relative links
+     * @param body response body
+     */
+    public PageStream(String url, InputStream body) {
+        this(url, body, null);
+    }
+
+    /**
+     * @param url     final URL after redirects, the base for relative links
+     * @param body    response body
+     * @param charset charset of the Content-Type header, or null if it names none
+     */
+    public PageStream(String url, InputStream body, String charset) {
+        this.url = url;
+        this.body = body;
+        this.charset = charset;
+    }
+
+    /**
+     * @return final URL after redirects
+     */
+    public String getUrl() {
+        return url;
+    }
+
+    /**
+     * @return charset of the Content-Type header, or null if it names none
+     */
+    public String getCharset() {
+        return charset;
+    }
+
+    /**
+     * @return response body
+     */
+    public InputStream getBody() {
+        return body;
+    }
+
+    @Override
+    public void close() throws IOException {
+        body.close();
+    }
+}
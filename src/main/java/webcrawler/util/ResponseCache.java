@@ -0,0 +1,296 @@
+package webcrawler.util;
+
+import webcrawler.dedup.UrlFingerprint;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+
+/**
+ * On-disk cache of fetched pages for recrawls.
+ * <p>
+ * Bodies are stored gzip-compressed under their SHA-256, so pages with identical content share one
+ * file. Per URL an index record keeps the validators ({@code ETag}, {@code Last-Modified}), the body
+ * hash and what was extracted from the page (final URL, title, links, SimHash), so a 304 answer can be used
+ * without reading or parsing the body. Index records are one small file per URL fingerprint, with
+ * the most recently used {@code maxIndexEntries} held in an in-memory LRU. Thread safe.
+ */
+public class ResponseCache {
+
+    private static final int INDEX_VERSION = 2;
+
+    private final Path bodies;
+    private final Path index;
+    private final Map<String, Entry> lru;
+
+    /**
+     * @param directory       cache root, created if missing
+     * @param maxIndexEntries index records kept in memory
+     * @throws IOException if the directories cannot be created
+     */
+    public ResponseCache(Path directory, int maxIndexEntries) throws IOException {
+        if (maxIndexEntries < 1) throw new IllegalArgumentException("maxIndexEntries must be positive: " + maxIndexEntries);
+        this.bodies = Files.createDirectories(directory.resolve("bodies"));
+        this.index = Files.createDirectories(directory.resolve("index"));
+        this.lru = new LinkedHashMap<>(1024, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > maxIndexEntries;
+            }
+        };
+    }
+
+    /**
+     * @param url requested URL
+     * @return cached record, or null if the URL was never stored
+     */
+    public Entry get(String url) {
+        synchronized (lru) {
+            Entry entry = lru.get(url);
+            if (entry != null) return entry;
+        }
+        Entry entry = readIndex(url);
+        if (entry != null) {
+            synchronized (lru) {
+                lru.put(url, entry);
+            }
+        }
+        return entry;
+    }
+
+    /**
+     * Store a fetched page; the body is written only if no page with the same content was stored before
+     * @param url   requested URL
+     * @param entry validators and extracted data; content hash and length are filled in here
+     * @param body  response body
+     * @return the stored entry
+     */
+    public Entry put(String url, Entry entry, byte[] body) {
+        String hash = sha256(body);
+        Entry stored = new Entry(entry.finalUrl, entry.etag, entry.lastModified, hash, body.length, entry.title,
+                entry.links, entry.simHash);
+        try {
+            Path file = bodyPath(hash);
+            if (!Files.exists(file)) {
+                Files.createDirectories(file.getParent());
+                Path temp = Files.createTempFile(file.getParent(), hash, ".tmp");
+                try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(temp))) {
+                    out.write(body);
+                }
+                Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            }
+            writeIndex(url, stored);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to cache " + url, e);
+        }
+        synchronized (lru) {
+            lru.put(url, stored);
+        }
+        return stored;
+    }
+
+    /**
+     * @param entry cached record
+     * @return the body it points to
+     * @throws IOException if the body file is missing or unreadable
+     */
+    public byte[] body(Entry entry) throws IOException {
+        try (InputStream in = new GZIPInputStream(Files.newInputStream(bodyPath(entry.contentHash)))) {
+            return in.readAllBytes();
+        }
+    }
+
+    /**
+     * @return index records currently in memory
+     */
+    public int indexedInMemory() {
+        synchronized (lru) {
+            return lru.size();
+        }
+    }
+
+    private Path bodyPath(String hash) {
+        return bodies.resolve(hash.substring(0, 2)).resolve(hash + ".gz");
+    }
+
+    private Path indexPath(String url) {
+        return index.resolve(Long.toHexString(UrlFingerprint.of(url)));
+    }
+
+    private void writeIndex(String url, Entry entry) throws IOException {
+        Path file = indexPath(url);
+        Path temp = Files.createTempFile(index, file.getFileName().toString(), ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+            out.writeInt(INDEX_VERSION);
+            out.writeUTF(url);
+            out.writeUTF(entry.finalUrl);
+            writeNullable(out, entry.etag);
+            writeNullable(out, entry.lastModified);
+            out.writeUTF(entry.contentHash);
+            out.writeInt(entry.bodyLength);
+            out.writeUTF(entry.title);
+            out.writeInt(entry.links.size());
+            for (String link : entry.links) {
+                out.writeUTF(link);
+            }
+            out.writeLong(entry.simHash);
+        }
+        Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    private Entry readIndex(String url) {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(indexPath(url))))) {
+            // an unknown version or a fingerprint collision reads as a miss
+            if (in.readInt() != INDEX_VERSION || !in.readUTF().equals(url)) return null;
+            String finalUrl = in.readUTF();
+            String etag = readNullable(in);
+            String lastModified = readNullable(in);
+            String contentHash = in.readUTF();
+            int bodyLength = in.readInt();
+            String title = in.readUTF();
+            int count = in.readInt();
+            List<String> links = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                links.add(in.readUTF());
+            }
+            return new Entry(finalUrl, etag, lastModified, contentHash, bodyLength, title, links, in.readLong());
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read cache index for " + url, e);
+        }
+    }
+
+    private static void writeNullable(DataOutputStream out, String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) out.writeUTF(value);
+    }
+
+    private static String readNullable(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
+    private static String sha256(byte[] body) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(body));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is required by every JRE", e);
+        }
+    }
+
+    /**
+     * What is cached for one URL. Immutable.
+     */
+    public static class Entry {
+        private final String finalUrl;
+        private final String etag;
+        private final String lastModified;
+        private final String contentHash;
+        private final int bodyLength;
+        private final String title;
+        private final List<String> links;
+        private final long simHash;
+
+        /**
+         * @param finalUrl     URL after redirects, base of the links
+         * @param etag         ETag header, or null
+         * @param lastModified Last-Modified header, or null
+         * @param title        page title
+         * @param links        absolute links found on the page
+         */
+        public Entry(String finalUrl, String etag, String lastModified, String title, List<String> links) {
+            this(finalUrl, etag, lastModified, title, links, 0);
+        }
+
+        /**
+         * @param finalUrl     URL after redirects, base of the links
+         * @param etag         ETag header, or null
+         * @param lastModified Last-Modified header, or null
+         * @param title        page title
+         * @param links        absolute links found on the page
+         * @param simHash      {@link webcrawler.dedup.SimHash} of the page text
+         */
+        public Entry(String finalUrl, String etag, String lastModified, String title, List<String> links, long simHash) {
+            this(finalUrl, etag, lastModified, null, 0, title, links, simHash);
+        }
+
+        private Entry(String finalUrl, String etag, String lastModified, String contentHash, int bodyLength,
+                      String title, List<String> links, long simHash) {
+            this.finalUrl = finalUrl;
+            this.etag = etag;
+            this.lastModified = lastModified;
+            this.contentHash = contentHash;
+            this.bodyLength = bodyLength;
+            this.title = title;
+            this.links = List.copyOf(links);
+            this.simHash = simHash;
+        }
+
+        public String getFinalUrl() {
+            return finalUrl;
+        }
+
+        public String getEtag() {
+            return etag;
+        }
+
+        public String getLastModified() {
+            return lastModified;
+        }
+
+        /**
+         * @return SHA-256 of the body in hex, null if not stored yet
+         */
+        public String getContentHash() {
+            return contentHash;
+        }
+
+        /**
+         * @return bytes of the uncompressed body
+         */
+        public int getBodyLength() {
+            return bodyLength;
+        }
+
+        public String getTitle() {
+            return title;
+        }
+
+        public List<String> getLinks() {
+            return links;
+        }
+
+        /**
+         * @return SimHash of the page text, 0 if none was given
+         */
+        public long getSimHash() {
+            return simHash;
+        }
+
+        /**
+         * @return true if a conditional request can be sent
+         */
+        public boolean hasValidator() {
+            return etag != null || lastModified != null;
+        }
+    }
+}
@@ -0,0 +1,228 @@
+package webcrawler.util;
+
+import edu.neu.coe.info6205.util.LazyLogger;
+import webcrawler.dedup.SimHash;
+import webcrawler.metrics.CrawlMetrics;
+import webcrawler.metrics.CrawlStage;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Fetches pages through a {@link ResponseCache} with conditional requests.
+ * <p>
+ * A URL fetched before is requested with {@code If-None-Match} / {@code If-Modified-Since}. On
+ * {@code 304 Not Modified} the cached title, links and SimHash are returned as they are: no body is
+ * transferred and nothing is parsed. Otherwise the body is scanned once with the
+ * {@link StreamingLinkExtractor}, its text hashed with a {@link SimHash}, and stored. Counters give the hit ratio and the bytes saved.
+ */
+public class RevalidatingFetcher {
+
+    private static final LazyLogger logger = new LazyLogger(RevalidatingFetcher.class);
+    private static final String CACHE_PROPERTY = "crawler.cache";
+    private static final int DEFAULT_INDEX_ENTRIES = 100_000;
+    private static final Duration DEFAULT_TIMEOUT = Duration.ofSeconds(30);
+
+    private final ResponseCache cache;
+    private final HttpClient client;
+    private final Duration requestTimeout;
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong notModified = new AtomicLong();
+    private final AtomicLong changed = new AtomicLong();
+    private final AtomicLong bytesDownloaded = new AtomicLong();
+    private final AtomicLong bytesSaved = new AtomicLong();
+
+    /**
+     * @param cache where pages and validators are kept
+     */
+    public RevalidatingFetcher(ResponseCache cache) {
+        this(cache, HttpClient.newBuilder()
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .connectTimeout(DEFAULT_TIMEOUT)
+                .build(), DEFAULT_TIMEOUT);
+    }
+
+    /**
+     * @param cache          where pages and validators are kept
+     * @param client         shared client
+     * @param requestTimeout per-request timeout
+     */
+    public RevalidatingFetcher(ResponseCache cache, HttpClient client, Duration requestTimeout) {
+        this.cache = cache;
+        this.client = client;
+        this.requestTimeout = requestTimeout;
+    }
+
+    /**
+     * Fetcher on the cache directory given by {@code -Dcrawler.cache=<dir>}
+     * @return the fetcher, or null if the property is not set or the directory is unusable
+     */
+    public static RevalidatingFetcher load() {
+        String directory = System.getProperty(CACHE_PROPERTY);
+        if (directory == null || directory.isBlank()) return null;
+        try {
+            return new RevalidatingFetcher(new ResponseCache(Path.of(directory), DEFAULT_INDEX_ENTRIES));
+        } catch (IOException e) {
+            logger.error("Response cache disabled, cannot use " + directory + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Fetch a page, or confirm the cached copy is still current
+     * @param url absolute URL
+     * @return title, absolute links and SimHash of the page
+     * @throws Exception if the request fails or the response is not HTML
+     */
+    public Page fetch(String url) throws Exception {
+        requests.incrementAndGet();
+        ResponseCache.Entry entry = cache.get(url);
+        HttpRequest.Builder request = HttpRequest.newBuilder(URI.create(url))
+                .timeout(requestTimeout)
+                .header("Accept", "text/html,application/xhtml+xml")
+                .GET();
+        if (entry != null && entry.getEtag() != null) request.header("If-None-Match", entry.getEtag());
+        if (entry != null && entry.getLastModified() != null) request.header("If-Modified-Since", entry.getLastModified());
+
+        HttpResponse<byte[]> response = client.send(request.build(),
+                HttpClientPageFetcher.timed(url, HttpResponse.BodyHandlers.ofByteArray(), true));
+        if (response.statusCode() == 304 && entry != null) {
+            notModified.incrementAndGet();
+            bytesSaved.addAndGet(entry.getBodyLength());
+            return new Page(entry.getFinalUrl(), entry.getTitle(), entry.getLinks(), entry.getSimHash(), true);
+        }
+        String contentType = HttpClientPageFetcher.check(url, response);
+        if (entry != null) changed.incrementAndGet();
+        byte[] body = response.body();
+        bytesDownloaded.addAndGet(body.length);
+
+        String finalUrl = response.uri().toString();
+        long start = System.nanoTime();
+        String[] title = {""};
+        List<String> links = new ArrayList<>();
+        SimHash simHash = new SimHash();
+        new StreamingLinkExtractor().extract(new ByteArrayInputStream(body), finalUrl,
+                HttpClientPageFetcher.charset(contentType), new StreamingLinkExtractor.Handler() {
+            @Override
+            public void onTitle(String pageTitle) {
+                title[0] = pageTitle;
+            }
+
+            @Override
+            public void onLink(String absoluteUrl) {
+                links.add(absoluteUrl);
+            }
+
+            @Override
+            public void onText(byte[] buffer, int start, int length) {
+                // a call ends at a tag or whitespace, like a text node
+                simHash.append(buffer, start, length).append(" ");
+            }
+        });
+        CrawlMetrics.global().recordSince(CrawlStage.PARSE, start);
+        cache.put(url, new ResponseCache.Entry(finalUrl,
+                response.headers().firstValue("ETag").orElse(null),
+                response.headers().firstValue("Last-Modified").orElse(null),
+                title[0], links, simHash.value()), body);
+        return new Page(finalUrl, title[0], links, simHash.value(), false);
+    }
+
+    /**
+     * @return requests sent
+     */
+    public long getRequests() {
+        return requests.get();
+    }
+
+    /**
+     * @return requests answered with 304 from the cache
+     */
+    public long getNotModified() {
+        return notModified.get();
+    }
+
+    /**
+     * @return share of requests answered from the cache
+     */
+    public double hitRatio() {
+        long total = requests.get();
+        return total == 0 ? 0 : notModified.get() / (double) total;
+    }
+
+    /**
+     * @return body bytes not transferred thanks to 304 answers
+     */
+    public long getBytesSaved() {
+        return bytesSaved.get();
+    }
+
+    /**
+     * @return summary of the cache counters
+     */
+    public String getStats() {
+        return String.format("Response cache: %d requests, %d not modified (hit ratio %.1f%%), %d changed, "
+                        + "%d KB downloaded, %d KB saved",
+                requests.get(), notModified.get(), 100 * hitRatio(), changed.get(),
+                bytesDownloaded.get() / 1024, bytesSaved.get() / 1024);
+    }
+
+    /**
+     * A fetched or revalidated page.
+     */
+    public static class Page {
+        private final String url;
+        private final String title;
+        private final List<String> links;
+        private final long simHash;
+        private final boolean fromCache;
+
+        Page(String url, String title, List<String> links, long simHash, boolean fromCache) {
+            this.url = url;
+            this.title = title;
+            this.links = links;
+            this.simHash = simHash;
+            this.fromCache = fromCache;
+        }
+
+        /**
+         * @return URL after redirects
+         */
+        public String getUrl() {
+            return url;
+        }
+
+        public String getTitle() {
+            return title;
+        }
+
+        /**
+         * @return absolute links, not yet normalized or filtered
+         */
+        public List<String> getLinks() {
+            return links;
+        }
+
+        /**
+         * @return SimHash of the page text, as stored with the cached copy for a 304 answer
+         */
+        public long getSimHash() {
+            return simHash;
+        }
+
+        /**
+         * @return true if the server answered 304 and the cached copy was used
+         */
+        public boolean isFromCache() {
+            return fromCache;
+        }
+    }
+}
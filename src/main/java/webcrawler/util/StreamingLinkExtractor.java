@@ -0,0 +1,581 @@
+package webcrawler.util;
+
+import org.jsoup.internal.StringUtil;
+import org.jsoup.parser.Parser;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.MalformedURLException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Extracts the title and the resolved {@code <a href>} links of an HTML page straight from the
+ * response byte stream, without building a DOM.
+ * <p>
+ * A small SAX-style tokenizer walks the bytes once: tags and attribute names are matched on the fly,
+ * comments and the content of script/style are skipped, and only href values and the first title
+ * are ever turned into strings. Memory per page is a few reusable buffers instead of a full Jsoup
+ * {@code Document}. {@code <base href>} is honoured, entities are decoded and relative links are
+ * resolved the same way Jsoup's {@code abs:href} does.
+ * <p>
+ * Titles and links are decoded with the charset of the Content-Type header, else of the first
+ * {@code <meta charset>} or {@code <meta http-equiv="Content-Type">}, else as UTF-8; like a browser,
+ * strings before the meta tag are decoded as UTF-8. Tags are matched as ASCII bytes, so UTF-16 and
+ * other encodings that are not ASCII compatible are not supported. Text passed to
+ * {@link Handler#onText} is not decoded.
+ * <p>
+ * Instances keep their buffers between pages and are not thread safe.
+ */
+public class StreamingLinkExtractor {
+
+    /**
+     * Receives what the extractor finds, in document order.
+     */
+    public interface Handler {
+        /**
+         * @param title text of the first {@code <title>}, whitespace normalized
+         */
+        void onTitle(String title);
+
+        /**
+         * @param absoluteUrl resolved href of an {@code <a>} tag
+         */
+        void onLink(String absoluteUrl);
+
+        /**
+         * Text between tags, outside title, script, style and comments, undecoded. Every call ends at a
+         * tag or at whitespace, so a word is never split across calls; a long run of text may come in
+         * several calls. The buffer is reused after the call.
+         * @param buffer bytes of the page
+         * @param start  first text byte
+         * @param length number of text bytes
+         */
+        default void onText(byte[] buffer, int start, int length) {
+        }
+    }
+
+    private static final int TEXT = 0;
+    private static final int TAG_OPEN = 1;
+    private static final int TAG_NAME = 2;
+    private static final int BEFORE_ATTR = 3;
+    private static final int ATTR_NAME = 4;
+    private static final int AFTER_ATTR_NAME = 5;
+    private static final int BEFORE_VALUE = 6;
+    private static final int VALUE = 7;
+    private static final int MARKUP = 8;
+    private static final int COMMENT = 9;
+    private static final int RAW_TEXT = 10;
+    private static final int SKIP_TAG = 11;
+    // pseudo states returned by endOfStartTag, resolved right after the switch
+    private static final int RAW_TEXT_PENDING = 12;
+    private static final int TEXT_AFTER_TAG = 13;
+
+    private static final int TAG_OTHER = 0;
+    private static final int TAG_A = 1;
+    private static final int TAG_BASE = 2;
+    private static final int TAG_TITLE = 3;
+    private static final int TAG_SCRIPT = 4;
+    private static final int TAG_STYLE = 5;
+    private static final int TAG_META = 6;
+    private static final byte[][] RAW_END = {null, null, null, "title".getBytes(), "script".getBytes(), "style".getBytes()};
+
+    // attributes whose value is kept
+    private static final int ATTR_OTHER = 0;
+    private static final int ATTR_HREF = 1;
+    private static final int ATTR_CHARSET = 2;
+    private static final int ATTR_CONTENT = 3;
+    private static final int ATTR_HTTP_EQUIV = 4;
+
+    private URL base;
+    private Charset charset;
+    // meta attributes of the current tag, null if absent
+    private String metaCharset;
+    private String metaContent;
+    private String metaHttpEquiv;
+    private final byte[] readBuffer = new byte[8192];
+    private final byte[] name = new byte[16];
+    private int nameLength;
+    private byte[] value = new byte[256];
+    private int valueLength;
+    private byte[] title = new byte[256];
+    private int titleLength;
+    // end of a text run cut off by the read buffer, up to its last whitespace
+    private byte[] text = new byte[256];
+    private int textLength;
+
+    /**
+     * @param in      response body, not closed
+     * @param baseUrl URL the page was fetched from
+     * @param handler receives title and links
+     * @throws IOException if reading the stream fails
+     */
+    public void extract(InputStream in, String baseUrl, Handler handler) throws IOException {
+        extract(in, baseUrl, null, handler);
+    }
+
+    /**
+     * @param in              response body, not closed
+     * @param baseUrl         URL the page was fetched from
+     * @param declaredCharset charset of the Content-Type header, or null to use a meta tag or UTF-8
+     * @param handler         receives title and links
+     * @throws IOException if reading the stream fails
+     */
+    public void extract(InputStream in, String baseUrl, String declaredCharset, Handler handler) throws IOException {
+        base = null;
+        setBase(baseUrl);
+        charset = charsetOf(declaredCharset);
+        // the header wins over meta tags
+        boolean charsetKnown = charset != null;
+        if (!charsetKnown) charset = StandardCharsets.UTF_8;
+        boolean baseSeen = false;
+        boolean titleSeen = false;
+        int state = TEXT;
+        int tag = TAG_OTHER;
+        int attr = ATTR_OTHER;
+        String href = null;
+        byte quote = 0;
+        int match = 0; // progress through "--" / "-->" / "</name"
+        int rawTag = TAG_OTHER;
+        titleLength = 0;
+        textLength = 0;
+
+        int read;
+        while ((read = in.read(readBuffer)) > 0) {
+            // start of the current run of text in the buffer
+            int textStart = 0;
+            for (int i = 0; i < read; i++) {
+                byte b = readBuffer[i];
+                int previous = state;
+                switch (state) {
+                    case TEXT:
+                        if (b == '<') state = TAG_OPEN;
+                        break;
+                    case TAG_OPEN:
+                        if (isLetter(b)) {
+                            nameLength = 0;
+                            appendName(b);
+                            state = TAG_NAME;
+                        } else if (b == '/') {
+                            state = SKIP_TAG;
+                        } else if (b == '!') {
+                            match = 0;
+                            state = MARKUP;
+                        } else if (b == '?') {
+                            state = SKIP_TAG;
+                        } else {
+                            state = b == '<' ? TAG_OPEN : TEXT;
+                        }
+                        break;
+                    case TAG_NAME:
+                        if (isSpace(b) || b == '/' || b == '>') {
+                            tag = tagOf();
+                            href = null;
+                            metaCharset = null;
+                            metaContent = null;
+                            metaHttpEquiv = null;
+                            if (b == '>') {
+                                state = endOfStartTag(tag);
+                            } else {
+                                state = BEFORE_ATTR;
+                            }
+                        } else {
+                            appendName(b);
+                        }
+                        break;
+                    case BEFORE_ATTR:
+                        if (b == '>') {
+                            state = endOfStartTag(tag);
+                        } else if (!isSpace(b) && b != '/') {
+                            nameLength = 0;
+                            appendName(b);
+                            state = ATTR_NAME;
+                        }
+                        break;
+                    case ATTR_NAME:
+                        if (b == '=') {
+                            attr = attrOf(tag);
+                            state = BEFORE_VALUE;
+                        } else if (isSpace(b)) {
+                            state = AFTER_ATTR_NAME;
+                        } else if (b == '>') {
+                            state = endOfStartTag(tag);
+                        } else if (b == '/') {
+                            state = BEFORE_ATTR;
+                        } else {
+                            appendName(b);
+                        }
+                        break;
+                    case AFTER_ATTR_NAME:
+                        if (b == '=') {
+                            attr = attrOf(tag);
+                            state = BEFORE_VALUE;
+                        } else if (b == '>') {
+                            state = endOfStartTag(tag);
+                        } else if (!isSpace(b) && b != '/') {
+                            nameLength = 0;
+                            appendName(b);
+                            state = ATTR_NAME;
+                        }
+                        break;
+                    case BEFORE_VALUE:
+                        if (isSpace(b)) break;
+                        if (b == '>') {
+                            state = endOfStartTag(tag);
+                            break;
+                        }
+                        valueLength = 0;
+                        if (b == '"' || b == '\'') {
+                            quote = b;
+                        } else {
+                            quote = 0;
+                            appendValue(b);
+                        }
+                        state = VALUE;
+                        break;
+                    case VALUE:
+                        if (quote != 0 ? b == quote : isSpace(b) || b == '>') {
+                            if (attr == ATTR_HREF && href == null) {
+                                href = unescape(new String(value, 0, valueLength, charset), true);
+                            } else if (attr != ATTR_OTHER) {
+                                setMetaAttribute(attr, new String(value, 0, valueLength, StandardCharsets.ISO_8859_1));
+                            }
+                            state = quote == 0 && b == '>' ? endOfStartTag(tag) : BEFORE_ATTR;
+                        } else if (attr != ATTR_OTHER) {
+                            appendValue(b);
+                        }
+                        break;
+                    case MARKUP:
+                        // after "<!": a comment starts with "--", anything else (doctype) ends at '>'
+                        if (b == '-' && match < 2) {
+                            if (++match == 2) {
+                                match = 0;
+                                state = COMMENT;
+                            }
+                        } else {
+                            state = b == '>' ? TEXT : SKIP_TAG;
+                        }
+                        break;
+                    case COMMENT:
+                        if (b == '-') {
+                            match = Math.min(match + 1, 2);
+                        } else if (b == '>' && match == 2) {
+                            state = TEXT;
+                        } else {
+                            match = 0;
+                        }
+                        break;
+                    case RAW_TEXT:
+                        // content of title/script/style runs up to "</name"
+                        byte[] end = RAW_END[rawTag];
+                        if (match == 0) {
+                            if (b == '<') match = 1;
+                            else if (rawTag == TAG_TITLE) appendTitle(b);
+                        } else if (match == 1) {
+                            if (b == '/') {
+                                match = 2;
+                            } else {
+                                if (rawTag == TAG_TITLE) appendTitle((byte) '<');
+                                if (b == '<') break;
+                                match = 0;
+                                if (rawTag == TAG_TITLE) appendTitle(b);
+                            }
+                        } else if (match - 2 < end.length && lower(b) == end[match - 2]) {
+                            if (++match - 2 == end.length) {
+                                if (rawTag == TAG_TITLE && !titleSeen) {
+                                    titleSeen = true;
+                                    handler.onTitle(StringUtil.normaliseWhitespace(
+                                            unescape(new String(title, 0, titleLength, charset), false)).trim());
+                                }
+                                state = SKIP_TAG;
+                            }
+                        } else {
+                            if (rawTag == TAG_TITLE) {
+                                appendTitle((byte) '<');
+                                appendTitle((byte) '/');
+                                for (int k = 0; k < match - 2; k++) appendTitle(end[k]);
+                            }
+                            match = 0;
+                            if (b == '<') match = 1;
+                            else if (rawTag == TAG_TITLE) appendTitle(b);
+                        }
+                        break;
+                    case SKIP_TAG:
+                        if (b == '>') state = TEXT;
+                        break;
+                    default:
+                        throw new IllegalStateException("state " + state);
+                }
+                if (state == RAW_TEXT_PENDING) {
+                    rawTag = tag;
+                    match = 0;
+                    if (tag == TAG_TITLE) titleLength = 0;
+                    state = RAW_TEXT;
+                } else if (state == TEXT_AFTER_TAG) {
+                    if (tag == TAG_A && href != null) {
+                        String absoluteUrl = resolve(href);
+                        if (!absoluteUrl.isEmpty()) handler.onLink(absoluteUrl);
+                    } else if (tag == TAG_BASE && href != null && !baseSeen) {
+                        // like Jsoup, only the first <base href> counts
+                        String resolved = resolve(href);
+                        if (!resolved.isEmpty()) {
+                            baseSeen = true;
+                            setBase(resolved);
+                        }
+                    } else if (tag == TAG_META && !charsetKnown) {
+                        Charset declared = metaCharset();
+                        if (declared != null) {
+                            charsetKnown = true;
+                            charset = declared;
+                        }
+                    }
+                    state = TEXT;
+                }
+                if (previous == TEXT && state != TEXT) {
+                    endText(handler, textStart, i);
+                } else if (previous != TEXT && state == TEXT) {
+                    textStart = i + 1;
+                }
+            }
+            if (state == TEXT) carryText(handler, textStart, read);
+        }
+        if (textLength > 0) handler.onText(text, 0, textLength);
+        if (!titleSeen) handler.onTitle("");
+    }
+
+    /**
+     * A run of text ends at a tag: pass it on with what was carried over from the previous read
+     */
+    private void endText(Handler handler, int start, int end) {
+        if (textLength > 0) {
+            appendText(start, end);
+            handler.onText(text, 0, textLength);
+            textLength = 0;
+        } else if (end > start) {
+            handler.onText(readBuffer, start, end - start);
+        }
+    }
+
+    /**
+     * The read buffer ends inside a run of text: pass it on up to its last whitespace and keep the
+     * partial word for the next read
+     */
+    private void carryText(Handler handler, int start, int end) {
+        int split = end;
+        while (split > start && !isSpace(readBuffer[split - 1])) split--;
+        if (split > start || textLength > readBuffer.length) {
+            // a "word" longer than the read buffer is passed on in pieces
+            if (split == start) split = end;
+            endText(handler, start, split);
+        }
+        appendText(split, end);
+    }
+
+    private void appendText(int start, int end) {
+        int length = end - start;
+        if (textLength + length > text.length) text = Arrays.copyOf(text, Math.max(text.length * 2, textLength + length));
+        System.arraycopy(readBuffer, start, text, textLength, length);
+        textLength += length;
+    }
+
+    private int endOfStartTag(int tag) {
+        return tag == TAG_TITLE || tag == TAG_SCRIPT || tag == TAG_STYLE ? RAW_TEXT_PENDING : TEXT_AFTER_TAG;
+    }
+
+    /**
+     * @return false if the URL cannot be parsed, the base is then unchanged
+     */
+    private boolean setBase(String base) {
+        try {
+            this.base = new URI(base).toURL();
+            return true;
+        } catch (URISyntaxException | MalformedURLException | IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    private void setMetaAttribute(int attr, String value) {
+        if (attr == ATTR_CHARSET) metaCharset = value;
+        else if (attr == ATTR_CONTENT) metaContent = value;
+        else if (attr == ATTR_HTTP_EQUIV) metaHttpEquiv = value;
+    }
+
+    /**
+     * @return charset declared by the current meta tag, or null if it declares none
+     */
+    private Charset metaCharset() {
+        if (metaCharset != null) return charsetOf(metaCharset);
+        if (metaContent != null && metaHttpEquiv != null && metaHttpEquiv.trim().equalsIgnoreCase("content-type")) {
+            return charsetOf(HttpClientPageFetcher.charset(metaContent));
+        }
+        return null;
+    }
+
+    /**
+     * @return the charset, UTF-8 for a UTF-16 or UTF-32 label as in the HTML spec (the bytes being
+     * parsed are ASCII compatible), or null if unknown
+     */
+    private static Charset charsetOf(String name) {
+        if (name == null || name.isBlank()) return null;
+        try {
+            Charset charset = Charset.forName(name.trim());
+            String canonical = charset.name();
+            return canonical.startsWith("UTF-16") || canonical.startsWith("UTF-32") ? StandardCharsets.UTF_8 : charset;
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Same result as Jsoup's {@code StringUtil.resolve(base, href)}, but the base URL is parsed once per page
+     * instead of once per link.
+     * @return absolute URL, or "" if it cannot be resolved
+     */
+    private String resolve(String href) {
+        String relative = stripControlChars(href.trim());
+        try {
+            if (base == null) return new URI(relative).toURL().toExternalForm();
+            return StringUtil.resolve(base, relative).toExternalForm();
+        } catch (URISyntaxException | MalformedURLException | IllegalArgumentException e) {
+            // an unknown scheme such as mailto: or javascript: is kept as is
+            return hasScheme(relative) ? relative : "";
+        }
+    }
+
+    /**
+     * Decode character references. The common ones (amp, lt, gt, quot, apos and numeric references)
+     * are handled inline; anything else goes to Jsoup's tokenizer, which is far more expensive per call.
+     */
+    private static String unescape(String s, boolean inAttribute) {
+        int amp = s.indexOf('&');
+        if (amp < 0) return s;
+        StringBuilder sb = new StringBuilder(s.length());
+        sb.append(s, 0, amp);
+        int i = amp;
+        while (i < s.length()) {
+            char c = s.charAt(i);
+            if (c != '&') {
+                sb.append(c);
+                i++;
+                continue;
+            }
+            int semicolon = s.indexOf(';', i);
+            if (semicolon < 0) return Parser.unescapeEntities(s, inAttribute);
+            String entity = s.substring(i + 1, semicolon);
+            switch (entity) {
+                case "amp": sb.append('&'); break;
+                case "lt": sb.append('<'); break;
+                case "gt": sb.append('>'); break;
+                case "quot": sb.append('"'); break;
+                case "apos": sb.append('\''); break;
+                default:
+                    int codePoint = numericReference(entity);
+                    if (codePoint < 0) return Parser.unescapeEntities(s, inAttribute);
+                    sb.appendCodePoint(codePoint);
+            }
+            i = semicolon + 1;
+        }
+        return sb.toString();
+    }
+
+    /**
+     * @return code point of "#NN" or "#xHH", or -1 if the reference needs Jsoup's rules
+     */
+    private static int numericReference(String entity) {
+        if (entity.length() < 2 || entity.charAt(0) != '#') return -1;
+        boolean hex = entity.charAt(1) == 'x' || entity.charAt(1) == 'X';
+        try {
+            int codePoint = hex ? Integer.parseInt(entity.substring(2), 16) : Integer.parseInt(entity.substring(1));
+            // zero, surrogates, C1 controls and out-of-range values have remapping rules in HTML
+            return codePoint > 0 && codePoint < 0x80 || codePoint >= 0xA0 && codePoint < 0xD800
+                    || codePoint > 0xDFFF && codePoint <= 0x10FFFF ? codePoint : -1;
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private static String stripControlChars(String s) {
+        for (int i = 0; i < s.length(); i++) {
+            if (s.charAt(i) < 0x20) {
+                StringBuilder sb = new StringBuilder(s.length());
+                for (int j = 0; j < s.length(); j++) {
+                    if (s.charAt(j) >= 0x20) sb.append(s.charAt(j));
+                }
+                return sb.toString();
+            }
+        }
+        return s;
+    }
+
+    private static boolean hasScheme(String s) {
+        if (s.isEmpty() || !Character.isLetter(s.charAt(0)) || s.charAt(0) > 'z') return false;
+        for (int i = 1; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c == ':') return true;
+            if (!(c < 128 && (Character.isLetterOrDigit(c) || (c >= '+' && c <= '.')))) return false;
+        }
+        return false;
+    }
+
+    private int tagOf() {
+        if (nameLength == 1 && name[0] == 'a') return TAG_A;
+        if (nameIs("base")) return TAG_BASE;
+        if (nameIs("title")) return TAG_TITLE;
+        if (nameIs("script")) return TAG_SCRIPT;
+        if (nameIs("style")) return TAG_STYLE;
+        if (nameIs("meta")) return TAG_META;
+        return TAG_OTHER;
+    }
+
+    /**
+     * @return which kept attribute the current name is in the given tag
+     */
+    private int attrOf(int tag) {
+        if (tag == TAG_A || tag == TAG_BASE) return nameIs("href") ? ATTR_HREF : ATTR_OTHER;
+        if (tag != TAG_META) return ATTR_OTHER;
+        if (nameIs("charset")) return ATTR_CHARSET;
+        if (nameIs("content")) return ATTR_CONTENT;
+        if (nameIs("http-equiv")) return ATTR_HTTP_EQUIV;
+        return ATTR_OTHER;
+    }
+
+    private boolean nameIs(String s) {
+        if (nameLength != s.length()) return false;
+        for (int i = 0; i < nameLength; i++) {
+            if (name[i] != s.charAt(i)) return false;
+        }
+        return true;
+    }
+
+    private void appendName(byte b) {
+        // only short names matter, longer ones just must not match
+        if (nameLength < name.length) name[nameLength++] = lower(b);
+        else nameLength = name.length + 1;
+    }
+
+    private void appendValue(byte b) {
+        if (valueLength == value.length) value = Arrays.copyOf(value, value.length * 2);
+        value[valueLength++] = b;
+    }
+
+    private void appendTitle(byte b) {
+        if (titleLength == title.length) title = Arrays.copyOf(title, title.length * 2);
+        title[titleLength++] = b;
+    }
+
+    private static byte lower(byte b) {
+        return b >= 'A' && b <= 'Z' ? (byte) (b + ('a' - 'A')) : b;
+    }
+
+    private static boolean isLetter(byte b) {
+        return (b >= 'a' && b <= 'z') || (b >= 'A' && b <= 'Z');
+    }
+
+    private static boolean isSpace(byte b) {
+        return b == ' ' || b == '\n' || b == '\t' || b == '\r' || b == '\f';
+    }
+}
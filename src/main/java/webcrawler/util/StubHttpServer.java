@@ -0,0 +1,135 @@
+package webcrawler.util;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Minimal local HTTP server for benchmarks and tests, so fetchers can be measured without the network.
+ * <p>
+ * Serves {@code /page/0 .. /page/(pageCount-1)}, each an HTML page with a title and links to
+ * {@code linksPerPage} other pages, after an optional fixed latency. Every page has a fixed
+ * {@code ETag}, and a request whose {@code If-None-Match} matches it gets an empty 304.
+ */
+public class StubHttpServer implements AutoCloseable {
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final int pageCount;
+    private final int linksPerPage;
+    private final long latencyMillis;
+    private final AtomicLong bodiesServed = new AtomicLong();
+    private final AtomicLong notModifiedServed = new AtomicLong();
+
+    /**
+     * Start a server on a free port of the loopback interface
+     * @param pageCount     number of pages served
+     * @param linksPerPage  outgoing links on every page
+     * @param latencyMillis delay before each response is written
+     * @throws IOException if the server cannot bind
+     */
+    public StubHttpServer(int pageCount, int linksPerPage, long latencyMillis) throws IOException {
+        this.pageCount = pageCount;
+        this.linksPerPage = linksPerPage;
+        this.latencyMillis = latencyMillis;
+        this.server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        // latency is simulated by sleeping, so each request gets its own cheap thread
+        this.executor = Executors.newVirtualThreadPerTaskExecutor();
+        server.setExecutor(executor);
+        server.createContext("/page/", this::handlePage);
+        server.start();
+    }
+
+    /**
+     * @return base URL, e.g. http://127.0.0.1:54321
+     */
+    public String getBaseUrl() {
+        return "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    /**
+     * @param i page number
+     * @return absolute URL of page i
+     */
+    public String pageUrl(int i) {
+        return getBaseUrl() + "/page/" + i;
+    }
+
+    public int getPageCount() {
+        return pageCount;
+    }
+
+    /**
+     * @return 200 responses with a body sent so far
+     */
+    public long getBodiesServed() {
+        return bodiesServed.get();
+    }
+
+    /**
+     * @return 304 responses sent so far
+     */
+    public long getNotModifiedServed() {
+        return notModifiedServed.get();
+    }
+
+    private void handlePage(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            int page;
+            try {
+                page = Integer.parseInt(exchange.getRequestURI().getPath().substring("/page/".length()));
+            } catch (NumberFormatException e) {
+                page = -1;
+            }
+            if (page < 0 || page >= pageCount) {
+                exchange.sendResponseHeaders(404, -1);
+                return;
+            }
+            if (latencyMillis > 0) {
+                try {
+                    Thread.sleep(latencyMillis);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+            String etag = "\"page-" + page + "-" + linksPerPage + "\"";
+            exchange.getResponseHeaders().set("ETag", etag);
+            if (etag.equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+                notModifiedServed.incrementAndGet();
+                exchange.sendResponseHeaders(304, -1);
+                return;
+            }
+            byte[] body = render(page).getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "text/html; charset=UTF-8");
+            bodiesServed.incrementAndGet();
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        }
+    }
+
+    private String render(int page) {
+        StringBuilder html = new StringBuilder(256 + linksPerPage * 40);
+        html.append("<html><head><title>Page ").append(page).append("</title></head><body>");
+        for (int i = 1; i <= linksPerPage; i++) {
+            html.append("<a href=\"/page/").append((page + i) % pageCount).append("\">link ").append(i).append("</a>\n");
+        }
+        html.append("</body></html>");
+        return html.toString();
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,231 @@
+package webcrawler.util;
+
+import webcrawler.dedup.ConcurrentFingerprintSet;
+import webcrawler.frontier.PriorityFrontier;
+import webcrawler.metrics.CrawlMetrics;
+import webcrawler.metrics.CrawlStage;
+import webcrawler.metrics.LatencyHistogram;
+import webcrawler.parallel.CrawlExecutionMode;
+import webcrawler.parallel.ParallelCrawler;
+import webcrawler.repository.EmbeddedGraphStore;
+import webcrawler.service.CrawlerService;
+import webcrawler.service.GraphService;
+import webcrawler.url.UrlFilter;
+import webcrawler.url.UrlFilterRules;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.OperatingSystemMXBean;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The thread count x depth grid of {@link Benchmark#benchmarkrun()}, run against a
+ * {@link SyntheticSiteServer} in the same process instead of a live site, so results only depend
+ * on the code and the machine.
+ * <p>
+ * Each run crawls from the site's hub page into an in-memory graph store and yields one JSON line:
+ * pages per second, p50/p99 of the time per URL, peak heap and CPU per page. CPU is the whole
+ * process, so it includes serving the site. Lines are printed and appended to a file, one file per
+ * build to compare against the last.
+ * <p>
+ * Usage: {@code SyntheticCrawlBenchmark [pages] [latencyMillis] [errorRate] [output.jsonl]}
+ */
+public class SyntheticCrawlBenchmark {
+
+    private static final int[] THREAD_COUNTS = {4, 5, 6};
+    private static final int[] DEPTHS = {2, 3, 4};
+    private static final String DEFAULT_OUTPUT = "target/synthetic-benchmark.jsonl";
+
+    public static void main(String[] args) throws IOException {
+        SyntheticSiteServer.Site site = new SyntheticSiteServer.Site();
+        if (args.length > 0) site.pages(Integer.parseInt(args[0]));
+        if (args.length > 1) site.latency(Long.parseLong(args[1]) * 1000, Long.parseLong(args[1]) * 500, 0.01);
+        if (args.length > 2) site.errorRate(Double.parseDouble(args[2]));
+        Path output = Path.of(args.length > 3 ? args[3] : DEFAULT_OUTPUT);
+
+        try (SyntheticSiteServer server = new SyntheticSiteServer(site)) {
+            System.out.println("Synthetic site " + site + " at " + server.getBaseUrl());
+            // warmup, not reported
+            run(server, THREAD_COUNTS[0], DEPTHS[0]);
+            List<Result> results = runGrid(server, THREAD_COUNTS, DEPTHS);
+            if (output.getParent() != null) Files.createDirectories(output.getParent());
+            List<String> lines = new ArrayList<>();
+            for (Result result : results) {
+                lines.add(result.toJson());
+            }
+            Files.write(output, lines, StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+            System.out.println("Results appended to " + output.toAbsolutePath());
+        }
+    }
+
+    /**
+     * Crawl the site once for every combination
+     * @param server       site to crawl
+     * @param threadCounts consumer and fetch pool sizes
+     * @param depths       max depths
+     * @return one result per run, in grid order
+     */
+    public static List<Result> runGrid(SyntheticSiteServer server, int[] threadCounts, int[] depths) {
+        List<Result> results = new ArrayList<>();
+        for (int threads : threadCounts) {
+            for (int depth : depths) {
+                Result result = run(server, threads, depth);
+                System.out.println(result.toJson());
+                results.add(result);
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Crawl the site from page 0 with a fresh crawler and graph store
+     * @param server  site to crawl
+     * @param threads consumer threads and fetch pool size
+     * @param depth   max depth
+     * @return measurements of the run
+     */
+    public static Result run(SyntheticSiteServer server, int threads, int depth) {
+        UrlFilterRules rules = UrlFilterRules.defaults();
+        rules.setAllowedHosts(List.of("127.0.0.1"));
+        GraphService graphService = new GraphService(new EmbeddedGraphStore());
+        CrawlerService crawlerService = new CrawlerService(
+                new ConcurrentFingerprintSet(server.getSite().getPages() * 2), new UrlFilter(rules), graphService);
+        ParallelCrawler crawler = new ParallelCrawler(threads, depth, CrawlExecutionMode.PLATFORM, threads,
+                new PriorityFrontier(), crawlerService);
+
+        System.gc();
+        List<MemoryPoolMXBean> heapPools = new ArrayList<>();
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                pool.resetPeakUsage();
+                heapPools.add(pool);
+            }
+        }
+        CrawlMetrics metrics = CrawlMetrics.global();
+        metrics.reset();
+        long cpuStart = processCpuNanos();
+        long start = System.nanoTime();
+
+        crawler.startCrawling(Set.of(server.pageUrl(0)));
+        boolean finished;
+        try {
+            finished = crawler.awaitCompletion(1, TimeUnit.HOURS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            finished = false;
+        }
+
+        long nanos = System.nanoTime() - start;
+        long cpuNanos = processCpuNanos() - cpuStart;
+        if (!finished) crawler.stopCrawling();
+        graphService.close();
+        long peakHeap = 0;
+        for (MemoryPoolMXBean pool : heapPools) {
+            peakHeap += pool.getPeakUsage().getUsed();
+        }
+        CrawlMetrics.Snapshot snapshot = metrics.snapshot();
+        return new Result(server.getSite(), threads, depth, finished, snapshot.getPagesCrawled(),
+                snapshot.getPagesFailed(), nanos, snapshot.getStage(CrawlStage.TOTAL), peakHeap,
+                cpuNanos < 0 ? -1 : cpuNanos);
+    }
+
+    /**
+     * @return CPU time of the process, or a negative value if the JVM does not report it
+     */
+    private static long processCpuNanos() {
+        OperatingSystemMXBean os = ManagementFactory.getOperatingSystemMXBean();
+        if (os instanceof com.sun.management.OperatingSystemMXBean bean) return bean.getProcessCpuTime();
+        return -1;
+    }
+
+    /**
+     * Measurements of one crawl.
+     */
+    public static class Result {
+        private final SyntheticSiteServer.Site site;
+        private final int threads;
+        private final int depth;
+        private final boolean finished;
+        private final long pages;
+        private final long failed;
+        private final long nanos;
+        private final LatencyHistogram.Snapshot latency;
+        private final long peakHeapBytes;
+        private final long cpuNanos;
+
+        Result(SyntheticSiteServer.Site site, int threads, int depth, boolean finished, long pages, long failed,
+               long nanos, LatencyHistogram.Snapshot latency, long peakHeapBytes, long cpuNanos) {
+            this.site = site;
+            this.threads = threads;
+            this.depth = depth;
+            this.finished = finished;
+            this.pages = pages;
+            this.failed = failed;
+            this.nanos = nanos;
+            this.latency = latency;
+            this.peakHeapBytes = peakHeapBytes;
+            this.cpuNanos = cpuNanos;
+        }
+
+        /**
+         * @return pages crawled successfully
+         */
+        public long getPages() {
+            return pages;
+        }
+
+        /**
+         * @return pages whose fetch failed
+         */
+        public long getFailed() {
+            return failed;
+        }
+
+        public double getPagesPerSecond() {
+            return pages / (nanos / 1e9);
+        }
+
+        /**
+         * @param quantile e.g. 0.99
+         * @return time per URL from take to stored, in milliseconds
+         */
+        public double getLatencyMillis(double quantile) {
+            return latency.getValueAt(quantile) / 1e6;
+        }
+
+        public long getPeakHeapBytes() {
+            return peakHeapBytes;
+        }
+
+        /**
+         * @return process CPU milliseconds per crawled or failed page, -1 if unknown
+         */
+        public double getCpuMillisPerPage() {
+            return cpuNanos < 0 ? -1 : cpuNanos / 1e6 / Math.max(1, pages + failed);
+        }
+
+        /**
+         * @return the result as one line of JSON
+         */
+        public String toJson() {
+            return String.format(Locale.ROOT, "{\"benchmark\":\"synthetic-crawl\",\"time\":\"%s\",\"java\":\"%s\","
+                            + "\"threads\":%d,\"depth\":%d,\"finished\":%b,\"pages\":%d,\"failed\":%d,\"seconds\":%.3f,"
+                            + "\"pagesPerSecond\":%.1f,\"latencyP50Ms\":%.2f,\"latencyP99Ms\":%.2f,"
+                            + "\"peakHeapBytes\":%d,\"cpuMsPerPage\":%.3f,\"site\":%s}",
+                    Instant.now(), System.getProperty("java.version"), threads, depth, finished, pages, failed,
+                    nanos / 1e9, getPagesPerSecond(), getLatencyMillis(0.5), getLatencyMillis(0.99),
+                    peakHeapBytes, getCpuMillisPerPage(), site);
+        }
+    }
+}
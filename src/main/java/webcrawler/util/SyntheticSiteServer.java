@@ -0,0 +1,287 @@
+package webcrawler.util;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Local HTTP server for a generated web site, so whole crawls can be benchmarked without the network.
+ * <p>
+ * Unlike {@link StubHttpServer}, whose pages form a ring, the site looks like a real one: out-degrees
+ * follow a Pareto distribution and link targets are drawn with a Zipf-like bias, so a few hub pages
+ * collect most in-links. Page sizes vary around a mean, and every response waits a base latency plus
+ * an exponential jitter. Some pages always answer 500 and some are ten times slower, to show error
+ * handling and tail latency. Everything is derived from the seed, so runs with the same {@link Site}
+ * serve identical sites.
+ */
+public class SyntheticSiteServer implements AutoCloseable {
+
+    private static final String[] WORDS = {"crawl", "frontier", "latency", "graph", "page", "link", "host",
+            "queue", "index", "rank", "fetch", "parse", "store", "thread", "cache", "robots"};
+
+    private final Site site;
+    private final int[][] links;
+    private final int[] bodyBytes;
+    private final long[] latencyMicros;
+    private final boolean[] failing;
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final AtomicLong pagesServed = new AtomicLong();
+    private final AtomicLong errorsServed = new AtomicLong();
+    private final AtomicLong bytesServed = new AtomicLong();
+
+    /**
+     * Generate the site and start serving it on a free port of the loopback interface
+     * @param site shape of the site
+     * @throws IOException if the server cannot bind
+     */
+    public SyntheticSiteServer(Site site) throws IOException {
+        this.site = site;
+        int n = site.pages;
+        links = new int[n][];
+        bodyBytes = new int[n];
+        latencyMicros = new long[n];
+        failing = new boolean[n];
+        SplittableRandom random = new SplittableRandom(site.seed);
+        for (int page = 0; page < n; page++) {
+            // Pareto out-degree with the configured mean: xm * alpha / (alpha - 1) = mean
+            double xm = site.meanLinks * (site.alpha - 1) / site.alpha;
+            int degree = (int) Math.min(n - 1, Math.max(1, Math.round(xm / Math.pow(1 - random.nextDouble(), 1 / site.alpha))));
+            links[page] = new int[degree];
+            for (int i = 0; i < degree; i++) {
+                // u^skew puts most targets near page 0, giving power-law in-degrees
+                links[page][i] = (int) (n * Math.pow(random.nextDouble(), site.skew));
+            }
+            bodyBytes[page] = (int) Math.max(256, site.meanBodyBytes * Math.exp(0.5 * random.nextGaussian() - 0.125));
+            long latency = site.latencyMicros - (long) (site.jitterMicros * Math.log(1 - random.nextDouble()));
+            if (random.nextDouble() < site.slowRate) latency *= 10;
+            latencyMicros[page] = latency;
+            // the seed page always works, so a crawl can start
+            failing[page] = page > 0 && random.nextDouble() < site.errorRate;
+        }
+        this.server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        this.executor = Executors.newVirtualThreadPerTaskExecutor();
+        server.setExecutor(executor);
+        server.createContext("/p/", this::handlePage);
+        server.start();
+    }
+
+    /**
+     * @return base URL, e.g. http://127.0.0.1:54321
+     */
+    public String getBaseUrl() {
+        return "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    /**
+     * @param i page number
+     * @return absolute URL of page i; page 0 is the best connected
+     */
+    public String pageUrl(int i) {
+        return getBaseUrl() + "/p/" + i;
+    }
+
+    public Site getSite() {
+        return site;
+    }
+
+    /**
+     * @param i page number
+     * @return pages linked from page i, possibly repeated
+     */
+    public int[] links(int i) {
+        return links[i].clone();
+    }
+
+    /**
+     * @param i page number
+     * @return true if page i answers 500
+     */
+    public boolean isFailing(int i) {
+        return failing[i];
+    }
+
+    /**
+     * @return 200 responses sent so far
+     */
+    public long getPagesServed() {
+        return pagesServed.get();
+    }
+
+    /**
+     * @return 500 responses sent so far
+     */
+    public long getErrorsServed() {
+        return errorsServed.get();
+    }
+
+    /**
+     * @return body bytes sent so far
+     */
+    public long getBytesServed() {
+        return bytesServed.get();
+    }
+
+    private void handlePage(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            int page;
+            try {
+                page = Integer.parseInt(exchange.getRequestURI().getPath().substring("/p/".length()));
+            } catch (NumberFormatException e) {
+                page = -1;
+            }
+            if (page < 0 || page >= site.pages) {
+                exchange.sendResponseHeaders(404, -1);
+                return;
+            }
+            if (latencyMicros[page] > 0) {
+                try {
+                    Thread.sleep(latencyMicros[page] / 1000, (int) (latencyMicros[page] % 1000) * 1000);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+            if (failing[page]) {
+                errorsServed.incrementAndGet();
+                exchange.sendResponseHeaders(500, -1);
+                return;
+            }
+            byte[] body = render(page).getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "text/html; charset=UTF-8");
+            pagesServed.incrementAndGet();
+            bytesServed.addAndGet(body.length);
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        }
+    }
+
+    /**
+     * HTML of a page: title, its links, then filler text up to its body size
+     */
+    String render(int page) {
+        StringBuilder html = new StringBuilder(bodyBytes[page] + 64);
+        html.append("<html><head><title>Synthetic page ").append(page).append("</title></head><body>\n");
+        for (int target : links[page]) {
+            html.append("<a href=\"/p/").append(target).append("\">page ").append(target).append("</a>\n");
+        }
+        SplittableRandom words = new SplittableRandom(site.seed ^ page);
+        html.append("<p>");
+        while (html.length() < bodyBytes[page] - 20) {
+            html.append(WORDS[words.nextInt(WORDS.length)]).append(' ');
+        }
+        html.append("</p></body></html>");
+        return html.toString();
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    /**
+     * Shape of a generated site. Defaults: 5,000 pages, 20 links per page on average (Pareto alpha 2),
+     * target skew 3, 16 KB pages, 20 ms latency with 10 ms mean jitter, 1% slow pages, 1% failing pages.
+     */
+    public static class Site {
+        private int pages = 5000;
+        private double meanLinks = 20;
+        private double alpha = 2;
+        private double skew = 3;
+        private int meanBodyBytes = 16 * 1024;
+        private long latencyMicros = 20_000;
+        private long jitterMicros = 10_000;
+        private double slowRate = 0.01;
+        private double errorRate = 0.01;
+        private long seed = 42;
+
+        /**
+         * @param pages number of pages
+         * @return this
+         */
+        public Site pages(int pages) {
+            if (pages < 1) throw new IllegalArgumentException("pages must be positive: " + pages);
+            this.pages = pages;
+            return this;
+        }
+
+        /**
+         * @param meanLinks mean out-degree
+         * @param alpha     Pareto shape of the out-degree, above 1; smaller is heavier tailed
+         * @param skew      bias of link targets towards low page numbers, 1 for uniform
+         * @return this
+         */
+        public Site links(double meanLinks, double alpha, double skew) {
+            if (meanLinks < 1 || alpha <= 1 || skew < 1) {
+                throw new IllegalArgumentException("need meanLinks >= 1, alpha > 1, skew >= 1");
+            }
+            this.meanLinks = meanLinks;
+            this.alpha = alpha;
+            this.skew = skew;
+            return this;
+        }
+
+        /**
+         * @param meanBodyBytes mean page size, sizes are log-normal around it
+         * @return this
+         */
+        public Site bodyBytes(int meanBodyBytes) {
+            this.meanBodyBytes = meanBodyBytes;
+            return this;
+        }
+
+        /**
+         * @param latencyMicros base latency of every response
+         * @param jitterMicros  mean of the exponential jitter added to it
+         * @param slowRate      share of pages ten times slower
+         * @return this
+         */
+        public Site latency(long latencyMicros, long jitterMicros, double slowRate) {
+            this.latencyMicros = latencyMicros;
+            this.jitterMicros = jitterMicros;
+            this.slowRate = slowRate;
+            return this;
+        }
+
+        /**
+         * @param errorRate share of pages answering 500
+         * @return this
+         */
+        public Site errorRate(double errorRate) {
+            this.errorRate = errorRate;
+            return this;
+        }
+
+        /**
+         * @param seed seed of the generator
+         * @return this
+         */
+        public Site seed(long seed) {
+            this.seed = seed;
+            return this;
+        }
+
+        public int getPages() {
+            return pages;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.ROOT, "{\"pages\":%d,\"meanLinks\":%.1f,\"alpha\":%.2f,\"skew\":%.2f,\"meanBodyBytes\":%d,"
+                            + "\"latencyMicros\":%d,\"jitterMicros\":%d,\"slowRate\":%.4f,\"errorRate\":%.4f,\"seed\":%d}",
+                    pages, meanLinks, alpha, skew, meanBodyBytes, latencyMicros, jitterMicros, slowRate, errorRate, seed);
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package webcrawler.util;
+
+import com.sun.management.ThreadMXBean;
+import webcrawler.url.UrlNormalizer;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Measures {@link UrlNormalizer} throughput (normalizations per second) and allocation per call,
+ * on a mix of canonical and non-canonical URLs like those extracted from real pages.
+ */
+public class UrlNormalizerBenchmark {
+
+    private static final String[] HOSTS = {"www.cfainstitute.org", "WWW.CFAINSTITUTE.ORG", "www.cfainstitute.org:443",
+            "blogs.cfainstitute.org", "www.example.com"};
+    private static final String[] SEGMENTS = {"insights", "professional-learning", "research", "en", "..", ".", "",
+            "foundation", "programs", "cfa-program", "%7Euser", "about"};
+
+    public static void main(String[] args) throws Exception {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        String[] urls = generate(count, 42);
+        UrlNormalizer normalizer = new UrlNormalizer();
+
+        // warmup
+        for (int i = 0; i < 3; i++) run(normalizer, urls);
+
+        ThreadMXBean threads = (ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long bytesBefore = threads.getCurrentThreadAllocatedBytes();
+        long nanos = run(normalizer, urls);
+        long bytes = threads.getCurrentThreadAllocatedBytes() - bytesBefore;
+        System.out.printf("1 thread : %.0f normalizations/s, %.1f bytes allocated per call%n",
+                count / (nanos / 1e9), (double) bytes / count);
+
+        int threadCount = Runtime.getRuntime().availableProcessors();
+        ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+        List<Future<Long>> futures = new ArrayList<>();
+        long start = System.nanoTime();
+        for (int t = 0; t < threadCount; t++) {
+            futures.add(executor.submit(() -> run(normalizer, urls)));
+        }
+        for (Future<Long> future : futures) future.get();
+        long elapsed = System.nanoTime() - start;
+        executor.shutdown();
+        System.out.printf("%d threads: %.0f normalizations/s%n", threadCount, (double) count * threadCount / (elapsed / 1e9));
+    }
+
+    private static long run(UrlNormalizer normalizer, String[] urls) {
+        long start = System.nanoTime();
+        int sink = 0;
+        for (String url : urls) {
+            sink += normalizer.normalize(url).length();
+        }
+        if (sink == 42) System.out.println();
+        return System.nanoTime() - start;
+    }
+
+    /**
+     * Roughly half the generated URLs are already canonical.
+     */
+    static String[] generate(int count, long seed) {
+        Random random = new Random(seed);
+        String[] urls = new String[count];
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            sb.setLength(0);
+            boolean messy = random.nextBoolean();
+            sb.append(messy && random.nextBoolean() ? "http://" : "https://");
+            sb.append(messy ? HOSTS[random.nextInt(HOSTS.length)] : HOSTS[0]);
+            int depth = 1 + random.nextInt(5);
+            for (int d = 0; d < depth; d++) {
+                String segment = SEGMENTS[random.nextInt(SEGMENTS.length)];
+                if (!messy && (segment.isEmpty() || segment.startsWith(".") || segment.startsWith("%"))) segment = "page";
+                sb.append('/').append(segment);
+            }
+            if (random.nextInt(4) == 0) sb.append("?id=").append(random.nextInt(1000));
+            if (messy && random.nextInt(3) == 0) sb.append("#section");
+            urls[i] = sb.toString();
+        }
+        return urls;
+    }
+}
@@ -0,0 +1,37 @@
+package webcrawler.util;
+
+/**
+ * Small string helpers for absolute URLs that avoid the cost of {@link java.net.URI} parsing.
+ */
+public class UrlUtils {
+
+    private UrlUtils() {
+    }
+
+    /**
+     * Host part of an absolute URL, lower-cased, without user info and port
+     * @param url absolute URL, e.g. https://www.example.com:8080/path
+     * @return host, e.g. www.example.com, or "" if the URL has no authority
+     */
+    public static String host(String url) {
+        int start = url.indexOf("://");
+        if (start < 0) return "";
+        start += 3;
+        int end = start;
+        int n = url.length();
+        while (end < n) {
+            char c = url.charAt(end);
+            if (c == '/' || c == '?' || c == '#') break;
+            if (c == '@') start = end + 1;
+            end++;
+        }
+        // strip the port, but not inside an IPv6 literal
+        int colon = url.lastIndexOf(':', end - 1);
+        if (colon >= start && url.lastIndexOf(']', end - 1) < colon) end = colon;
+        String host = url.substring(start, end);
+        for (int i = 0; i < host.length(); i++) {
+            if (Character.isUpperCase(host.charAt(i))) return host.toLowerCase();
+        }
+        return host;
+    }
+}
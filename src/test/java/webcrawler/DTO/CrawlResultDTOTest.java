@@ -73,4 +73,16 @@ class CrawlResultDTOTest {
         assertTrue(resultString.contains("https://www.example.com/about"));
         assertTrue(resultString.contains("https://www.example.com/contact"));
     }
+
+    @Test
+    void testDuplicate() {
+        // Arrange
+        assertFalse(crawlResult.isDuplicate());
+
+        // Act
+        crawlResult.setDuplicate(true);
+
+        // Assert
+        assertTrue(crawlResult.isDuplicate());
+    }
 }
@@ -0,0 +1,139 @@
+package webcrawler.checkpoint;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import webcrawler.dedup.ConcurrentFingerprintSet;
+import webcrawler.frontier.UrlDepthPair;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CrawlCheckpointTest {
+
+    private static final long SMALL_CHUNK = 70_000;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    public void testRecoverPendingAndVisited() throws IOException {
+        try (CrawlCheckpoint checkpoint = new CrawlCheckpoint(directory)) {
+            assertFalse(checkpoint.exists());
+            checkpoint.logQueued("https://a.com/", 0);
+            checkpoint.logQueued("https://a.com/1", 1);
+            checkpoint.logQueued("https://a.com/2", 1);
+            checkpoint.logDone("https://a.com/");
+            checkpoint.logDone("https://a.com/2");
+            checkpoint.checkpoint(2);
+            // after the last checkpoint, lost in the crash
+            checkpoint.logQueued("https://a.com/3", 2);
+            checkpoint.logDone("https://a.com/1");
+        }
+
+        try (CrawlCheckpoint checkpoint = new CrawlCheckpoint(directory)) {
+            assertTrue(checkpoint.exists());
+            ConcurrentFingerprintSet visited = new ConcurrentFingerprintSet(16);
+            CrawlCheckpoint.Recovery recovery = checkpoint.recover(visited);
+
+            assertEquals(2, recovery.crawlCount());
+            assertEquals(3, recovery.queued());
+            assertEquals(List.of("https://a.com/1"), recovery.pending().stream().map(UrlDepthPair::getUrl).toList());
+            assertEquals(1, recovery.pending().get(0).getDepth());
+            assertTrue(visited.contains("https://a.com/"));
+            assertTrue(visited.contains("https://a.com/2"));
+            assertFalse(visited.contains("https://a.com/3"));
+        }
+    }
+
+    @Test
+    public void testResumeAppendsToTheSameJournal() throws IOException {
+        try (CrawlCheckpoint checkpoint = new CrawlCheckpoint(directory, SMALL_CHUNK)) {
+            for (int i = 0; i < 5000; i++) {
+                checkpoint.logQueued("https://example.com/page/" + i, i % 3);
+                if (i % 2 == 0) checkpoint.logDone("https://example.com/page/" + i);
+            }
+            checkpoint.checkpoint(2500);
+            // several mapped chunks, so records were moved past chunk ends
+            assertTrue(checkpoint.logBytes() > 2 * SMALL_CHUNK);
+        }
+
+        try (CrawlCheckpoint checkpoint = new CrawlCheckpoint(directory, SMALL_CHUNK)) {
+            CrawlCheckpoint.Recovery recovery = checkpoint.recover(new ConcurrentFingerprintSet(16));
+            assertEquals(2500, recovery.pending().size());
+            assertEquals("https://example.com/page/1", recovery.pending().get(0).getUrl());
+            for (UrlDepthPair pair : recovery.pending()) {
+                checkpoint.logDone(pair.getUrl());
+            }
+            checkpoint.logQueued("https://example.com/new", 1);
+            checkpoint.checkpoint(5000);
+        }
+
+        try (CrawlCheckpoint checkpoint = new CrawlCheckpoint(directory, SMALL_CHUNK)) {
+            ConcurrentFingerprintSet visited = new ConcurrentFingerprintSet(16);
+            CrawlCheckpoint.Recovery recovery = checkpoint.recover(visited);
+            assertEquals(5000, recovery.crawlCount());
+            assertEquals(5001, visited.size());
+            assertEquals(List.of("https://example.com/new"), recovery.pending().stream().map(UrlDepthPair::getUrl).toList());
+        }
+    }
+
+    @Test
+    public void testTornHeaderFallsBackToPreviousCheckpoint() throws IOException {
+        try (CrawlCheckpoint checkpoint = new CrawlCheckpoint(directory)) {
+            checkpoint.logQueued("https://a.com/", 0);
+            checkpoint.checkpoint(0);
+            checkpoint.logQueued("https://b.com/", 0);
+            checkpoint.checkpoint(1);
+        }
+        // the second checkpoint went to slot 0; damage its crawl counter
+        try (FileChannel meta = FileChannel.open(directory.resolve("checkpoint.meta"), StandardOpenOption.WRITE)) {
+            meta.write(ByteBuffer.wrap(new byte[]{42}), 16);
+        }
+
+        try (CrawlCheckpoint checkpoint = new CrawlCheckpoint(directory)) {
+            CrawlCheckpoint.Recovery recovery = checkpoint.recover(new ConcurrentFingerprintSet(16));
+            assertEquals(0, recovery.crawlCount());
+            assertEquals(List.of("https://a.com/"), recovery.pending().stream().map(UrlDepthPair::getUrl).toList());
+        }
+    }
+
+    @Test
+    public void testCheckpointWhileAppending() throws Exception {
+        int threads = 4, perThread = 20_000;
+        try (CrawlCheckpoint checkpoint = new CrawlCheckpoint(directory, SMALL_CHUNK)) {
+            ExecutorService pool = Executors.newFixedThreadPool(threads);
+            for (int t = 0; t < threads; t++) {
+                int id = t;
+                pool.submit(() -> {
+                    for (int i = 0; i < perThread; i++) {
+                        String url = "https://t" + id + ".com/" + i;
+                        checkpoint.logQueued(url, 1);
+                        checkpoint.logDone(url);
+                    }
+                });
+            }
+            pool.shutdown();
+            while (!pool.awaitTermination(1, TimeUnit.MILLISECONDS)) {
+                checkpoint.checkpoint(0);
+            }
+            checkpoint.checkpoint(threads * perThread);
+        }
+
+        try (CrawlCheckpoint checkpoint = new CrawlCheckpoint(directory, SMALL_CHUNK)) {
+            ConcurrentFingerprintSet visited = new ConcurrentFingerprintSet(16);
+            CrawlCheckpoint.Recovery recovery = checkpoint.recover(visited);
+            assertEquals(threads * perThread, recovery.queued());
+            assertEquals(threads * perThread, visited.size());
+            assertTrue(recovery.pending().isEmpty());
+        }
+    }
+}
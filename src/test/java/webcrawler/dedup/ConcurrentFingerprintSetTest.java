@@ -0,0 +1,84 @@
+package webcrawler.dedup;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ConcurrentFingerprintSetTest {
+
+    @Test
+    public void testAddAndContains() {
+        ConcurrentFingerprintSet set = new ConcurrentFingerprintSet(100);
+
+        assertTrue(set.add("https://www.example.com/a"));
+        assertFalse(set.add("https://www.example.com/a"));
+        assertTrue(set.add("https://www.example.com/b"));
+
+        assertTrue(set.contains("https://www.example.com/a"));
+        assertFalse(set.contains("https://www.example.com/c"));
+        assertEquals(2, set.size());
+    }
+
+    @Test
+    public void testGrowsPastExpectedSize() {
+        ConcurrentFingerprintSet set = new ConcurrentFingerprintSet(0);
+        long before = set.memoryBytes();
+
+        for (int i = 0; i < 100_000; i++) {
+            assertTrue(set.add("https://www.example.com/page/" + i));
+        }
+
+        assertEquals(100_000, set.size());
+        assertTrue(set.memoryBytes() > before);
+        for (int i = 0; i < 100_000; i++) {
+            assertTrue(set.contains("https://www.example.com/page/" + i));
+        }
+        Set<Long> visited = new HashSet<>();
+        set.forEach(visited::add);
+        assertEquals(100_000, visited.size());
+    }
+
+    @Test
+    public void testConcurrentAddsCountEachUrlOnce() throws Exception {
+        ConcurrentFingerprintSet set = new ConcurrentFingerprintSet(16);
+        AtomicInteger newUrls = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Future<?>> futures = new ArrayList<>();
+        // every thread adds the same URLs, each must be reported new exactly once
+        for (int t = 0; t < 8; t++) {
+            futures.add(executor.submit(() -> {
+                for (int i = 0; i < 50_000; i++) {
+                    if (set.add("https://www.example.com/" + i)) newUrls.incrementAndGet();
+                }
+            }));
+        }
+        for (Future<?> future : futures) future.get();
+        executor.shutdown();
+
+        assertEquals(50_000, newUrls.get());
+        assertEquals(50_000, set.size());
+    }
+
+    @Test
+    public void testRejectsZeroFingerprint() {
+        ConcurrentFingerprintSet set = new ConcurrentFingerprintSet(16);
+        assertThrows(IllegalArgumentException.class, () -> set.add(0L));
+    }
+
+    @Test
+    public void testFingerprintDistinguishesSimilarUrls() {
+        assertNotEquals(UrlFingerprint.of("https://a.com/ab"), UrlFingerprint.of("https://a.com/ba"));
+        assertNotEquals(UrlFingerprint.of("https://a.com/"), UrlFingerprint.of("https://a.com"));
+        assertEquals(UrlFingerprint.of("https://a.com/x"), UrlFingerprint.of(new StringBuilder("https://a.com/x")));
+        assertNotEquals(0, UrlFingerprint.of(""));
+    }
+}
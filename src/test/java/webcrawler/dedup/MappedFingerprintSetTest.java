@@ -0,0 +1,53 @@
+package webcrawler.dedup;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MappedFingerprintSetTest {
+
+    @Test
+    public void testAddAndContains(@TempDir Path directory) throws Exception {
+        try (MappedFingerprintSet set = new MappedFingerprintSet(directory.resolve("set"), 1000)) {
+            assertTrue(set.add(7));
+            assertFalse(set.add(7));
+            // same slot, found by probing
+            assertTrue(set.add(7 + set.fileBytes() / Long.BYTES));
+            assertTrue(set.contains(7));
+            assertFalse(set.contains(8));
+            assertEquals(2, set.size());
+            assertThrows(IllegalArgumentException.class, () -> set.add(0));
+        }
+    }
+
+    @Test
+    public void testReopen(@TempDir Path directory) throws Exception {
+        Path file = directory.resolve("set");
+        try (MappedFingerprintSet set = new MappedFingerprintSet(file, 1000)) {
+            for (long i = 1; i <= 1000; i++) set.add(UrlFingerprint.fmix64(i));
+        }
+        long bytes = Files.size(file);
+        // the size of an existing table wins over expectedSize
+        try (MappedFingerprintSet set = new MappedFingerprintSet(file, 10)) {
+            assertEquals(1000, set.size());
+            assertEquals(bytes, set.fileBytes());
+            assertTrue(set.contains(UrlFingerprint.fmix64(500)));
+            assertFalse(set.add(UrlFingerprint.fmix64(500)));
+        }
+    }
+
+    @Test
+    public void testFull(@TempDir Path directory) throws Exception {
+        try (MappedFingerprintSet set = new MappedFingerprintSet(directory.resolve("set"), 0)) {
+            long capacity = set.fileBytes() / Long.BYTES;
+            assertThrows(IllegalStateException.class, () -> {
+                for (long i = 1; i <= capacity; i++) set.add(UrlFingerprint.fmix64(i));
+            });
+            assertEquals((long) (capacity * 0.9), set.size());
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package webcrawler.dedup;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class NearDuplicateIndexTest {
+
+    @Test
+    public void testWithinThreshold() {
+        NearDuplicateIndex index = new NearDuplicateIndex(3);
+        long original = 0x0123456789abcdefL;
+
+        assertFalse(index.isDuplicate(original));
+        assertTrue(index.isDuplicate(original));
+        // three bits in three different places, two of them in the same band
+        assertTrue(index.isDuplicate(original ^ (1L | 1L << 5 | 1L << 63)));
+        assertEquals(original, index.findNear(original ^ 1L << 40));
+        // four bits, one in every band, is beyond the threshold
+        long far = original ^ (1L | 1L << 20 | 1L << 40 | 1L << 60);
+        assertEquals(0, index.findNear(far));
+        assertFalse(index.isDuplicate(far));
+
+        assertEquals(4, index.getPages());
+        assertEquals(2, index.getDuplicates());
+    }
+
+    @Test
+    public void testNoTextIsNeverDuplicate() {
+        NearDuplicateIndex index = new NearDuplicateIndex();
+
+        assertFalse(index.isDuplicate(0));
+        assertFalse(index.isDuplicate(0));
+        assertEquals(0, index.getPages());
+    }
+
+    @Test
+    public void testFindsEveryNearHash() {
+        // randomized: every hash within the threshold of an indexed one is found
+        SplittableRandom random = new SplittableRandom(7);
+        for (int maxDistance = 0; maxDistance <= 7; maxDistance++) {
+            NearDuplicateIndex index = new NearDuplicateIndex(maxDistance);
+            long[] indexed = new long[2000];
+            for (int i = 0; i < indexed.length; i++) {
+                indexed[i] = random.nextLong() | 1;
+                index.isDuplicate(indexed[i]);
+            }
+            for (long hash : indexed) {
+                long near = hash;
+                for (int flip = 0; flip < maxDistance; flip++) {
+                    near ^= 1L << random.nextInt(64);
+                }
+                assertNotEquals(0, index.findNear(near), "maxDistance " + maxDistance);
+            }
+        }
+    }
+
+    @Test
+    public void testConcurrentPages() throws Exception {
+        NearDuplicateIndex index = new NearDuplicateIndex();
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            long seed = t;
+            futures.add(executor.submit(() -> {
+                SplittableRandom random = new SplittableRandom(seed);
+                for (int i = 0; i < 10_000; i++) {
+                    index.isDuplicate(random.nextLong() | 1);
+                }
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        executor.shutdown();
+
+        assertEquals(80_000, index.getPages());
+        // random hashes are about 32 bits apart
+        assertTrue(index.getDuplicates() < 10, "duplicates " + index.getDuplicates());
+    }
+
+    @Test
+    public void testInvalidDistance() {
+        assertThrows(IllegalArgumentException.class, () -> new NearDuplicateIndex(-1));
+        assertThrows(IllegalArgumentException.class, () -> new NearDuplicateIndex(8));
+    }
+}
@@ -0,0 +1,60 @@
+package webcrawler.dedup;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SimHashTest {
+
+    private static final String PAGE = "The CFA Program is a graduate-level self-study program that combines "
+            + "practical skills in investment analysis with ethics. Candidates take three exams, covering "
+            + "portfolio management, wealth planning, equity, fixed income, derivatives and alternative "
+            + "investments. Most candidates spend more than three hundred hours preparing for each level, "
+            + "and the program is offered in many countries around the world every year.";
+
+    @Test
+    public void testIdenticalTextSameHash() {
+        assertEquals(SimHash.of(PAGE), SimHash.of(PAGE));
+        // case and punctuation are not words
+        assertEquals(SimHash.of(PAGE), SimHash.of(PAGE.toUpperCase().replace(",", " ;")));
+    }
+
+    @Test
+    public void testNearCopyIsClose() {
+        long original = SimHash.of(PAGE);
+        long edited = SimHash.of(PAGE.replace("every year", "every year. Printed 2024-05-01"));
+        long unrelated = SimHash.of("Neo4j stores the crawled pages as nodes and the links between them "
+                + "as relationships, and PageRank runs over the whole graph once the crawl has finished.");
+
+        assertTrue(SimHash.distance(original, edited) <= NearDuplicateIndex.DEFAULT_MAX_DISTANCE,
+                "distance " + SimHash.distance(original, edited));
+        assertTrue(SimHash.distance(original, unrelated) > 12, "distance " + SimHash.distance(original, unrelated));
+    }
+
+    @Test
+    public void testPiecesAndBytes() {
+        SimHash pieces = new SimHash();
+        // a word split between two pieces is still one word
+        pieces.append(PAGE.substring(0, 101)).append(PAGE.substring(101));
+        assertEquals(SimHash.of(PAGE), pieces.value());
+
+        byte[] bytes = PAGE.getBytes(StandardCharsets.UTF_8);
+        SimHash fromBytes = new SimHash().append(bytes, 0, 50).append(bytes, 50, bytes.length - 50);
+        assertEquals(SimHash.of(PAGE), fromBytes.value());
+    }
+
+    @Test
+    public void testShortAndEmptyText() {
+        assertEquals(0, SimHash.of(""));
+        assertEquals(0, SimHash.of(" ,. "));
+        assertNotEquals(0, SimHash.of("home"));
+        assertNotEquals(SimHash.of("home page"), SimHash.of("page home"));
+
+        SimHash simHash = new SimHash().append("something else entirely");
+        simHash.reset();
+        assertEquals(SimHash.of(PAGE), simHash.append(PAGE).value());
+        assertEquals(60, simHash.words());
+    }
+}
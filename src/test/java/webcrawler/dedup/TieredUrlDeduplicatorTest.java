@@ -0,0 +1,111 @@
+package webcrawler.dedup;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TieredUrlDeduplicatorTest {
+
+    @Test
+    public void testAddReportsNewAndDuplicate() {
+        TieredUrlDeduplicator deduplicator = TieredUrlDeduplicator.inMemory(1000, 0.01);
+
+        assertTrue(deduplicator.add("https://www.example.com/a"));
+        assertFalse(deduplicator.add("https://www.example.com/a"));
+        assertTrue(deduplicator.contains("https://www.example.com/a"));
+        assertFalse(deduplicator.contains("https://www.example.com/b"));
+
+        TieredUrlDeduplicator.Stats stats = deduplicator.getStats();
+        assertEquals(1, stats.getDefinitelyNew());
+        assertEquals(1, stats.getConfirmedDuplicates());
+        assertEquals(0, stats.getFalsePositives());
+    }
+
+    @Test
+    public void testNoUrlLostWhenBloomFilterGrows() {
+        TieredUrlDeduplicator deduplicator = TieredUrlDeduplicator.inMemory(1000, 0.01);
+
+        for (int i = 0; i < 50_000; i++) {
+            assertTrue(deduplicator.add("https://www.example.com/page/" + i), "page " + i + " is new");
+        }
+        for (int i = 0; i < 50_000; i++) {
+            assertFalse(deduplicator.add("https://www.example.com/page/" + i), "page " + i + " is a duplicate");
+        }
+
+        TieredUrlDeduplicator.Stats stats = deduplicator.getStats();
+        assertEquals(50_000, stats.getDefinitelyNew() + stats.getFalsePositives());
+        assertEquals(50_000, stats.getConfirmedDuplicates());
+        assertTrue(stats.getBloomSlices() > 1);
+        // the scalable filter keeps the overall rate under the target
+        assertTrue(stats.getObservedFalsePositiveRate() < 0.01, stats.toString());
+    }
+
+    @Test
+    public void testBloomFilterFalsePositiveRate() {
+        ScalableBloomFilter filter = new ScalableBloomFilter(100_000, 0.01);
+        for (int i = 0; i < 100_000; i++) {
+            filter.put(UrlFingerprint.of("https://www.example.com/in/" + i));
+        }
+        for (int i = 0; i < 100_000; i++) {
+            assertTrue(filter.mightContain(UrlFingerprint.of("https://www.example.com/in/" + i)));
+        }
+        int falsePositives = 0;
+        for (int i = 0; i < 100_000; i++) {
+            if (filter.mightContain(UrlFingerprint.of("https://www.example.com/out/" + i))) falsePositives++;
+        }
+        assertTrue(falsePositives < 1_000, "false positives: " + falsePositives);
+    }
+
+    @Test
+    public void testConcurrentAddsReportNewOnce() throws Exception {
+        TieredUrlDeduplicator deduplicator = TieredUrlDeduplicator.inMemory(100_000, 0.01);
+        int threads = 8;
+        int urls = 20_000;
+        AtomicInteger reportedNew = new AtomicInteger();
+        CyclicBarrier start = new CyclicBarrier(threads);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            Future<?>[] futures = new Future<?>[threads];
+            for (int t = 0; t < threads; t++) {
+                futures[t] = executor.submit(() -> {
+                    start.await();
+                    for (int i = 0; i < urls; i++) {
+                        if (deduplicator.add("https://www.example.com/page/" + i)) reportedNew.incrementAndGet();
+                    }
+                    return null;
+                });
+            }
+            for (Future<?> future : futures) future.get();
+        } finally {
+            executor.shutdown();
+        }
+        assertEquals(urls, reportedNew.get());
+        assertEquals(urls, deduplicator.size());
+    }
+
+    @Test
+    public void testOnDisk(@TempDir Path directory) throws Exception {
+        Path file = directory.resolve("visited.table");
+        TieredUrlDeduplicator deduplicator = TieredUrlDeduplicator.onDisk(file, 10_000, 0.01);
+        for (int i = 0; i < 10_000; i++) {
+            assertTrue(deduplicator.add("https://www.example.com/page/" + i));
+        }
+        assertFalse(deduplicator.add("https://www.example.com/page/42"));
+        ((MappedFingerprintSet) deduplicator.getExactStore()).close();
+
+        // the exact tier survives a restart, with a fresh Bloom filter in front
+        deduplicator = TieredUrlDeduplicator.onDisk(file, 10_000, 0.01);
+        assertEquals(10_000, deduplicator.size());
+        assertFalse(deduplicator.add("https://www.example.com/page/42"));
+        assertTrue(deduplicator.add("https://www.example.com/page/10000"));
+        ((MappedFingerprintSet) deduplicator.getExactStore()).close();
+    }
+}
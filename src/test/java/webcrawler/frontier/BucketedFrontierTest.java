@@ -0,0 +1,165 @@
+package webcrawler.frontier;
+
+import org.junit.jupiter.api.Test;
+import webcrawler.graph.OpicEstimator;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BucketedFrontierTest {
+
+    @Test
+    public void testBreadthFirst() throws InterruptedException {
+        BucketedFrontier frontier = new BucketedFrontier(PriorityPolicy.breadthFirst());
+        frontier.offer(new UrlDepthPair("https://a.com/deep", 3));
+        frontier.offer(new UrlDepthPair("https://a.com/1", 1));
+        frontier.offer(new UrlDepthPair("https://a.com/2", 1));
+        frontier.offer(new UrlDepthPair("https://a.com/", 0));
+
+        assertEquals(4, frontier.size());
+        assertEquals("https://a.com/", frontier.take().getUrl());
+        // same bucket: arrival order
+        assertEquals("https://a.com/1", frontier.take().getUrl());
+        assertEquals("https://a.com/2", frontier.take().getUrl());
+        assertEquals("https://a.com/deep", frontier.take().getUrl());
+        assertEquals(0, frontier.size());
+    }
+
+    @Test
+    public void testInLinksRaisePriority() throws InterruptedException {
+        InLinkCountPolicy policy = new InLinkCountPolicy();
+        BucketedFrontier frontier = new BucketedFrontier(policy);
+        frontier.offer(new UrlDepthPair("https://a.com/x", 1));
+        frontier.offer(new UrlDepthPair("https://a.com/popular", 1));
+        int before = frontier.bucketOf("https://a.com/popular");
+
+        for (int i = 0; i < 5; i++) {
+            frontier.onCrawled("https://b.com/" + i, List.of("https://a.com/popular", "https://a.com/taken"));
+        }
+
+        assertEquals(6, policy.inLinks("https://a.com/popular"));
+        assertTrue(frontier.bucketOf("https://a.com/popular") > before);
+        assertEquals(-1, frontier.bucketOf("https://a.com/taken"));
+        assertEquals("https://a.com/popular", frontier.take().getUrl());
+        assertEquals("https://a.com/x", frontier.take().getUrl());
+        assertEquals(0, frontier.size());
+    }
+
+    @Test
+    public void testOpicCash() throws InterruptedException {
+        OpicEstimator estimator = new OpicEstimator(0);
+        BucketedFrontier frontier = new BucketedFrontier(new OpicPriorityPolicy(estimator));
+        estimator.seed("https://a.com/");
+        estimator.onCrawled("https://a.com/", List.of("https://a.com/1", "https://a.com/2", "https://a.com/3", "https://a.com/4"));
+        frontier.offer(new UrlDepthPair("https://a.com/1", 1));
+        frontier.offer(new UrlDepthPair("https://a.com/2", 1));
+
+        // a second page sends more cash to /2
+        estimator.seed("https://b.com/");
+        estimator.onCrawled("https://b.com/", List.of("https://a.com/2"));
+        frontier.onCrawled("https://b.com/", List.of("https://a.com/2"));
+
+        assertEquals("https://a.com/2", frontier.take().getUrl());
+        assertEquals("https://a.com/1", frontier.take().getUrl());
+    }
+
+    @Test
+    public void testHostBudgetDemotesLazily() throws InterruptedException {
+        HostBudgetPolicy policy = new HostBudgetPolicy(PriorityPolicy.breadthFirst(), 2);
+        BucketedFrontier frontier = new BucketedFrontier(policy);
+        for (int i = 0; i < 4; i++) {
+            frontier.offer(new UrlDepthPair("https://big.com/" + i, 1));
+        }
+        frontier.offer(new UrlDepthPair("https://small.com/", 2));
+
+        assertEquals("https://big.com/0", frontier.take().getUrl());
+        assertEquals("https://big.com/1", frontier.take().getUrl());
+        // big.com is over budget, so the deeper URL of another host goes first
+        assertEquals("https://small.com/", frontier.take().getUrl());
+        assertEquals("https://big.com/2", frontier.take().getUrl());
+        assertEquals("https://big.com/3", frontier.take().getUrl());
+        assertEquals(4, policy.fetches("big.com"));
+    }
+
+    @Test
+    public void testDuplicateAndClose() throws Exception {
+        BucketedFrontier frontier = new BucketedFrontier(PriorityPolicy.breadthFirst());
+        assertTrue(frontier.offer(new UrlDepthPair("https://a.com/", 0)));
+        assertFalse(frontier.offer(new UrlDepthPair("https://a.com/", 1)));
+        frontier.take();
+
+        CompletableFuture<UrlDepthPair> first = CompletableFuture.supplyAsync(() -> takeUnchecked(frontier));
+        CompletableFuture<UrlDepthPair> second = CompletableFuture.supplyAsync(() -> takeUnchecked(frontier));
+        Thread.sleep(100);
+        assertFalse(first.isDone());
+
+        frontier.close();
+        assertNull(first.get(5, TimeUnit.SECONDS));
+        assertNull(second.get(5, TimeUnit.SECONDS));
+        assertFalse(frontier.offer(new UrlDepthPair("https://b.com/", 0)));
+    }
+
+    private static UrlDepthPair takeUnchecked(Frontier frontier) {
+        try {
+            return frontier.take();
+        } catch (InterruptedException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    @Test
+    public void testConcurrentProducersAndConsumers() throws InterruptedException {
+        InLinkCountPolicy policy = new InLinkCountPolicy();
+        BucketedFrontier frontier = new BucketedFrontier(policy);
+        int producers = 4, consumers = 4, perProducer = 20_000;
+        Set<String> taken = ConcurrentHashMap.newKeySet();
+        AtomicInteger duplicates = new AtomicInteger();
+        CountDownLatch done = new CountDownLatch(consumers);
+        ExecutorService pool = Executors.newFixedThreadPool(producers + consumers);
+
+        for (int c = 0; c < consumers; c++) {
+            pool.submit(() -> {
+                try {
+                    UrlDepthPair pair;
+                    while ((pair = frontier.take()) != null) {
+                        if (!taken.add(pair.getUrl())) duplicates.incrementAndGet();
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    done.countDown();
+                }
+            });
+        }
+        List<CompletableFuture<Void>> producing = new ArrayList<>();
+        for (int p = 0; p < producers; p++) {
+            int id = p;
+            producing.add(CompletableFuture.runAsync(() -> {
+                for (int i = 0; i < perProducer; i++) {
+                    String url = "https://p" + id + ".com/" + i;
+                    frontier.offer(new UrlDepthPair(url, 1));
+                    // links to earlier URLs move them between buckets while consumers take them
+                    frontier.onCrawled(url, List.of("https://p" + id + ".com/" + (i / 2)));
+                }
+            }, pool));
+        }
+        CompletableFuture.allOf(producing.toArray(new CompletableFuture<?>[0])).join();
+        while (frontier.size() > 0) Thread.sleep(10);
+        frontier.close();
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        pool.shutdown();
+
+        assertEquals(0, duplicates.get());
+        assertEquals(producers * perProducer, taken.size());
+    }
+}
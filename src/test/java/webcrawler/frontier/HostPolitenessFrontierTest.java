@@ -0,0 +1,137 @@
+package webcrawler.frontier;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class HostPolitenessFrontierTest {
+
+    @Test
+    public void testAlternatesBetweenHosts() throws Exception {
+        HostPolitenessFrontier frontier = new HostPolitenessFrontier(1, TimeUnit.HOURS, 1);
+        frontier.offer(new UrlDepthPair("https://a.com/1", 0));
+        frontier.offer(new UrlDepthPair("https://a.com/2", 0));
+        frontier.offer(new UrlDepthPair("https://b.com/1", 0));
+
+        UrlDepthPair first = frontier.take();
+        UrlDepthPair second = frontier.take();
+
+        // a.com is not ready again for an hour, so b.com must come next
+        assertNotEquals(hostOf(first), hostOf(second));
+        assertEquals(1, frontier.size());
+        assertEquals(2, frontier.hostCount());
+    }
+
+    @Test
+    public void testCrawlDelayOfOneHost() throws Exception {
+        HostPolitenessFrontier frontier = new HostPolitenessFrontier(0, TimeUnit.MILLISECONDS, 1);
+        frontier.offer(new UrlDepthPair("https://a.com/1", 0));
+        frontier.offer(new UrlDepthPair("https://a.com/2", 0));
+        frontier.offer(new UrlDepthPair("https://b.com/1", 0));
+        frontier.offer(new UrlDepthPair("https://b.com/2", 0));
+        frontier.setCrawlDelay("a.com", 1, TimeUnit.HOURS);
+
+        // after one fetch each, only b.com is ready again
+        for (int i = 0; i < 2; i++) {
+            UrlDepthPair pair = frontier.take();
+            frontier.release(pair);
+        }
+        UrlDepthPair third = frontier.take();
+
+        assertEquals("https://b.com", hostOf(third));
+        assertEquals(1, frontier.getCrawlDelay("a.com", TimeUnit.HOURS));
+        assertEquals(0, frontier.getCrawlDelay("b.com", TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    public void testIdleHostsAreForgotten() throws Exception {
+        HostPolitenessFrontier frontier = new HostPolitenessFrontier(50, TimeUnit.MILLISECONDS, 1);
+        frontier.offer(new UrlDepthPair("https://a.com/1", 0));
+        frontier.offer(new UrlDepthPair("https://b.com/1", 0));
+        frontier.release(frontier.take());
+        frontier.release(frontier.take());
+
+        // still remembered while their delay runs, so a new URL of a.com would wait for it
+        assertEquals(2, frontier.hostCount());
+        Thread.sleep(100);
+        assertEquals(0, frontier.hostCount());
+
+        frontier.offer(new UrlDepthPair("https://a.com/2", 0));
+        assertEquals("https://a.com/2", frontier.take().getUrl());
+        assertEquals(1, frontier.hostCount());
+    }
+
+    @Test
+    public void testMaxConnectionsPerHost() throws Exception {
+        HostPolitenessFrontier frontier = new HostPolitenessFrontier(0, TimeUnit.MILLISECONDS, 2);
+        for (int i = 0; i < 3; i++) {
+            frontier.offer(new UrlDepthPair("https://a.com/" + i, 0));
+        }
+
+        UrlDepthPair first = frontier.take();
+        frontier.take();
+        CompletableFuture<UrlDepthPair> third = CompletableFuture.supplyAsync(() -> {
+            try {
+                return frontier.take();
+            } catch (InterruptedException e) {
+                throw new RuntimeException(e);
+            }
+        });
+
+        // both connections to a.com are busy
+        Thread.sleep(100);
+        assertFalse(third.isDone());
+
+        frontier.release(first);
+        assertNotNull(third.get(5, TimeUnit.SECONDS));
+        assertEquals(0, frontier.size());
+    }
+
+    @Test
+    public void testMinDelay() throws Exception {
+        HostPolitenessFrontier frontier = new HostPolitenessFrontier(200, TimeUnit.MILLISECONDS, 4);
+        frontier.offer(new UrlDepthPair("https://a.com/1", 0));
+        frontier.offer(new UrlDepthPair("https://a.com/2", 0));
+
+        frontier.take();
+        long start = System.nanoTime();
+        frontier.take();
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        assertTrue(elapsedMillis >= 150, "second fetch of the same host should wait for the delay, waited " + elapsedMillis);
+    }
+
+    @Test
+    public void testPriorityWithinHost() throws Exception {
+        HostPolitenessFrontier frontier = new HostPolitenessFrontier(0, TimeUnit.MILLISECONDS, 1);
+        frontier.offer(new UrlDepthPair("https://a.com/deep", 2));
+        frontier.offer(new UrlDepthPair("https://a.com/shallow", 0));
+
+        assertEquals(0, frontier.take().getDepth());
+    }
+
+    @Test
+    public void testCloseWakesTakers() throws Exception {
+        HostPolitenessFrontier frontier = new HostPolitenessFrontier(0, TimeUnit.MILLISECONDS, 1);
+        CompletableFuture<UrlDepthPair> waiting = CompletableFuture.supplyAsync(() -> {
+            try {
+                return frontier.take();
+            } catch (InterruptedException e) {
+                throw new RuntimeException(e);
+            }
+        });
+        Thread.sleep(50);
+
+        frontier.close();
+
+        assertNull(waiting.get(5, TimeUnit.SECONDS));
+        assertFalse(frontier.offer(new UrlDepthPair("https://a.com/1", 0)));
+    }
+
+    private static String hostOf(UrlDepthPair pair) {
+        return pair.getUrl().substring(0, pair.getUrl().indexOf('/', "https://".length()));
+    }
+}
@@ -0,0 +1,170 @@
+package webcrawler.frontier;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SpillingFrontierTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    public void testSpillsAndRefillsInOrder() throws Exception {
+        SpillingFrontier frontier = new SpillingFrontier(directory, PriorityPolicy.breadthFirst(), 10, 25);
+        for (int i = 0; i < 100; i++) {
+            frontier.offer(new UrlDepthPair("https://a.com/" + i, 1));
+        }
+
+        assertEquals(100, frontier.size());
+        assertEquals(10, frontier.inMemory());
+        assertEquals(90, frontier.onDisk());
+        assertEquals(3, frontier.getSegmentsWritten());
+
+        for (int i = 0; i < 50; i++) {
+            assertEquals("https://a.com/" + i, frontier.take().getUrl());
+        }
+        // new URLs queue behind the spilled ones
+        frontier.offer(new UrlDepthPair("https://a.com/new", 1));
+        for (int i = 50; i < 100; i++) {
+            UrlDepthPair pair = frontier.take();
+            assertEquals("https://a.com/" + i, pair.getUrl());
+            assertEquals(1, pair.getDepth());
+        }
+        assertEquals("https://a.com/new", frontier.take().getUrl());
+        assertEquals(0, frontier.size());
+        assertEquals(0, segmentFiles());
+    }
+
+    @Test
+    public void testBandsInPriorityOrder() throws Exception {
+        SpillingFrontier frontier = new SpillingFrontier(directory, PriorityPolicy.breadthFirst(), 2, 3);
+        for (int i = 0; i < 5; i++) {
+            frontier.offer(new UrlDepthPair("https://deep.com/" + i, 2));
+        }
+        for (int i = 0; i < 5; i++) {
+            frontier.offer(new UrlDepthPair("https://shallow.com/" + i, 1));
+        }
+
+        for (int i = 0; i < 5; i++) {
+            assertEquals("https://shallow.com/" + i, frontier.take().getUrl());
+        }
+        for (int i = 0; i < 5; i++) {
+            assertEquals("https://deep.com/" + i, frontier.take().getUrl());
+        }
+    }
+
+    @Test
+    public void testMemoryStaysBounded() throws Exception {
+        SpillingFrontier frontier = new SpillingFrontier(directory, PriorityPolicy.breadthFirst(), 100, 10_000);
+        for (int i = 0; i < 200_000; i++) {
+            frontier.offer(new UrlDepthPair("https://example.com/page/" + i, i % 4));
+        }
+        assertEquals(400, frontier.inMemory());
+        assertEquals(200_000 - 400, frontier.onDisk());
+
+        int[] lastPerDepth = {-1, -1, -1, -1};
+        int lastDepth = 0;
+        for (int i = 0; i < 200_000; i++) {
+            UrlDepthPair pair = frontier.take();
+            int index = Integer.parseInt(pair.getUrl().substring("https://example.com/page/".length()));
+            assertTrue(pair.getDepth() >= lastDepth);
+            assertTrue(index > lastPerDepth[pair.getDepth()]);
+            lastPerDepth[pair.getDepth()] = index;
+            lastDepth = pair.getDepth();
+            assertTrue(frontier.inMemory() <= 400);
+        }
+        assertEquals(0, segmentFiles());
+    }
+
+    @Test
+    public void testCloseDeletesSegments() throws Exception {
+        SpillingFrontier frontier = new SpillingFrontier(directory, PriorityPolicy.breadthFirst(), 1, 2);
+        for (int i = 0; i < 10; i++) {
+            frontier.offer(new UrlDepthPair("https://a.com/" + i, 0));
+        }
+        frontier.take();
+        frontier.take();
+        assertTrue(segmentFiles() > 0);
+
+        frontier.close();
+        assertEquals(0, segmentFiles());
+        assertNull(frontier.take());
+        assertFalse(frontier.offer(new UrlDepthPair("https://a.com/x", 0)));
+    }
+
+    @Test
+    public void testTakeBlocksUntilOffer() throws Exception {
+        SpillingFrontier frontier = new SpillingFrontier(directory);
+        CompletableFuture<UrlDepthPair> taken = CompletableFuture.supplyAsync(() -> {
+            try {
+                return frontier.take();
+            } catch (InterruptedException e) {
+                throw new RuntimeException(e);
+            }
+        });
+        Thread.sleep(100);
+        assertFalse(taken.isDone());
+
+        frontier.offer(new UrlDepthPair("https://a.com/", 0));
+        assertEquals("https://a.com/", taken.get(5, TimeUnit.SECONDS).getUrl());
+    }
+
+    @Test
+    public void testUnwritableDirectory() throws Exception {
+        Path segments = directory.resolve("segments");
+        SpillingFrontier frontier = new SpillingFrontier(segments, PriorityPolicy.breadthFirst(), 2, 3);
+        frontier.offer(new UrlDepthPair("https://a.com/0", 0));
+        frontier.offer(new UrlDepthPair("https://a.com/1", 0));
+        // no segment can be created in a path that is a file
+        Files.delete(segments);
+        Files.createFile(segments);
+
+        assertFalse(frontier.offer(new UrlDepthPair("https://a.com/2", 0)));
+        assertEquals(2, frontier.size());
+        assertEquals("https://a.com/0", frontier.take().getUrl());
+        assertEquals("https://a.com/1", frontier.take().getUrl());
+        assertEquals(0, frontier.getLost());
+    }
+
+    @Test
+    public void testUnreadableSegmentIsSkipped() throws Exception {
+        SpillingFrontier frontier = new SpillingFrontier(directory, PriorityPolicy.breadthFirst(), 2, 3);
+        List<Integer> reported = new CopyOnWriteArrayList<>();
+        frontier.setLossListener(reported::add);
+        for (int i = 0; i < 10; i++) {
+            frontier.offer(new UrlDepthPair("https://a.com/" + i, 0));
+        }
+        // head 0-1, segments 2-4 and 5-7, open segment 8-9
+        try (Stream<Path> files = Files.list(directory)) {
+            Files.delete(files.filter(file -> file.toString().endsWith("-0.seg.gz")).findFirst().orElseThrow());
+        }
+
+        List<String> taken = new ArrayList<>();
+        while (frontier.size() > 0) {
+            taken.add(frontier.take().getUrl());
+        }
+        assertEquals(List.of("https://a.com/0", "https://a.com/1", "https://a.com/5", "https://a.com/6",
+                "https://a.com/7", "https://a.com/8", "https://a.com/9"), taken);
+        assertEquals(3, frontier.getLost());
+        assertEquals(List.of(3), reported);
+        assertEquals(0, segmentFiles());
+    }
+
+    private long segmentFiles() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.count();
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package webcrawler.graph;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CsrGraphTest {
+
+    @Test
+    public void testFromEdges() {
+        int[] from = {0, 0, 1, 2, 3};
+        int[] to = {1, 2, 2, 0, 2};
+        CsrGraph graph = CsrGraph.fromEdges(4, from, to, from.length);
+
+        assertEquals(4, graph.vertexCount());
+        assertEquals(5, graph.edgeCount());
+        assertEquals(2, graph.outDegree(0));
+        assertEquals(1, graph.outDegree(3));
+        assertEquals(3, graph.inDegree(2));
+        assertArrayEquals(new int[]{0, 1, 3}, graph.inLinks(2));
+        assertArrayEquals(new int[]{2}, graph.inLinks(0));
+        assertArrayEquals(new int[0], graph.inLinks(3));
+    }
+
+    @Test
+    public void testBuilderWithLabels() {
+        CsrGraph.Builder builder = new CsrGraph.Builder();
+        builder.addEdge("https://a.com/", "https://b.com/")
+                .addEdge("https://b.com/", "https://a.com/")
+                .addEdge("https://c.com/", "https://a.com/");
+        CsrGraph graph = builder.build();
+
+        assertEquals(3, graph.vertexCount());
+        int a = builder.vertex("https://a.com/");
+        assertEquals("https://a.com/", builder.label(a));
+        assertEquals(2, graph.inDegree(a));
+        assertEquals(0, graph.inDegree(builder.vertex("https://c.com/")));
+    }
+
+    @Test
+    public void testEmpty() {
+        CsrGraph graph = new CsrGraph.Builder().build();
+        assertEquals(0, graph.vertexCount());
+        assertEquals(0, graph.edgeCount());
+    }
+}
@@ -0,0 +1,123 @@
+package webcrawler.graph;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class OpicEstimatorTest {
+
+    @Test
+    public void testCashFlowsToLinks() {
+        OpicEstimator estimator = new OpicEstimator(0);
+        estimator.seed("a");
+        estimator.onCrawled("a", List.of("b", "c"));
+
+        assertEquals(0, estimator.cash("a"), 1e-12);
+        assertEquals(0.5, estimator.cash("b"), 1e-12);
+        assertEquals(0.5, estimator.cash("c"), 1e-12);
+        // a keeps its history, so the importances still sum to 1
+        assertEquals(0.5, estimator.importance("a"), 1e-12);
+        assertEquals(0.25, estimator.importance("b"), 1e-12);
+        assertEquals(3, estimator.pageCount());
+        assertEquals(0, estimator.importance("unknown"));
+    }
+
+    @Test
+    public void testDanglingCashGoesToAllPages() {
+        OpicEstimator estimator = new OpicEstimator(0);
+        estimator.seed("a");
+        estimator.onCrawled("a", List.of("b", "c"));
+        estimator.onCrawled("b", List.of());
+
+        // b's 0.5 is spread over a, b and c
+        double share = 0.5 / 3;
+        assertEquals(share, estimator.cash("a"), 1e-12);
+        assertEquals(share, estimator.cash("b"), 1e-12);
+        assertEquals(0.5 + share, estimator.cash("c"), 1e-12);
+
+        // pages discovered later do not get cash spread before they existed
+        estimator.onCrawled("a", List.of("d"));
+        assertEquals(share, estimator.cash("d"), 1e-12);
+    }
+
+    @Test
+    public void testConvergesToPageRank() {
+        int n = 200;
+        Random random = new Random(7);
+        List<List<Integer>> links = new ArrayList<>();
+        CsrGraph.Builder builder = new CsrGraph.Builder();
+        for (int v = 0; v < n; v++) builder.vertex(String.valueOf(v));
+        for (int v = 0; v < n; v++) {
+            List<Integer> out = new ArrayList<>();
+            // skewed targets, so some pages are clearly more important than others
+            int degree = 1 + random.nextInt(8);
+            while (out.size() < degree) {
+                int target = (int) (n * Math.pow(random.nextDouble(), 3));
+                if (target != v && !out.contains(target)) out.add(target);
+            }
+            for (int target : out) builder.addEdge(v, target);
+            links.add(out);
+        }
+        CsrGraph graph = builder.build();
+        ParallelPageRank.Result exact = new ParallelPageRank(0.85, 1e-12, 200).compute(graph);
+
+        OpicEstimator estimator = new OpicEstimator(0.15);
+        for (int v = 0; v < n; v++) estimator.seed(String.valueOf(v));
+        // greedy OPIC: always fetch the page holding the most cash
+        for (int step = 0; step < 200 * n; step++) {
+            int best = 0;
+            for (int v = 1; v < n; v++) {
+                if (estimator.cash(String.valueOf(v)) > estimator.cash(String.valueOf(best))) best = v;
+            }
+            List<String> out = new ArrayList<>();
+            for (int target : links.get(best)) out.add(String.valueOf(target));
+            estimator.onCrawled(String.valueOf(best), out);
+        }
+
+        double error = 0;
+        for (int v = 0; v < n; v++) {
+            error += Math.abs(estimator.importance(String.valueOf(v)) - exact.score(v));
+        }
+        assertTrue(error < 0.05, "L1 error " + error);
+
+        int[] top = exact.topK(3);
+        Map<String, Double> estimated = estimator.topK(3);
+        assertEquals(3, estimated.size());
+        assertTrue(estimated.containsKey(String.valueOf(top[0])), estimated + " vs " + top[0]);
+    }
+
+    @Test
+    public void testConcurrentUpdatesConserveCash() throws InterruptedException {
+        OpicEstimator estimator = new OpicEstimator();
+        int n = 1000;
+        // every page known up front: a page created while virtual cash is spread may receive a share it was not counted in
+        for (int v = 0; v < n; v++) estimator.seed(String.valueOf(v));
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        for (int t = 0; t < 8; t++) {
+            int seed = t;
+            pool.submit(() -> {
+                Random random = new Random(seed);
+                for (int i = 0; i < 20_000; i++) {
+                    int v = random.nextInt(n);
+                    estimator.onCrawled(String.valueOf(v),
+                            List.of(String.valueOf(random.nextInt(n)), String.valueOf(random.nextInt(n))));
+                }
+            });
+        }
+        pool.shutdown();
+        assertTrue(pool.awaitTermination(30, TimeUnit.SECONDS));
+
+        assertEquals(160_000, estimator.crawledCount());
+        double sum = 0;
+        for (int v = 0; v < n; v++) sum += estimator.importance(String.valueOf(v));
+        assertEquals(1.0, sum, 1e-6);
+    }
+}
@@ -0,0 +1,108 @@
+package webcrawler.graph;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ParallelPageRankTest {
+
+    /**
+     * Straightforward sequential PageRank to check against
+     */
+    private static double[] reference(int n, int[] from, int[] to, double damping, int iterations) {
+        int[] outDegree = new int[n];
+        for (int f : from) outDegree[f]++;
+        double[] rank = new double[n];
+        Arrays.fill(rank, 1.0 / n);
+        for (int it = 0; it < iterations; it++) {
+            double[] next = new double[n];
+            double dangling = 0;
+            for (int v = 0; v < n; v++) if (outDegree[v] == 0) dangling += rank[v];
+            for (int e = 0; e < from.length; e++) next[to[e]] += rank[from[e]] / outDegree[from[e]];
+            for (int v = 0; v < n; v++) next[v] = (1 - damping) / n + damping * (next[v] + dangling / n);
+            rank = next;
+        }
+        return rank;
+    }
+
+    private static int[][] randomGraph(int n, int m, long seed) {
+        Random random = new Random(seed);
+        int[] from = new int[m];
+        int[] to = new int[m];
+        for (int e = 0; e < m; e++) {
+            from[e] = random.nextInt(n);
+            // skewed targets, like links to popular pages
+            to[e] = (int) (n * Math.pow(random.nextDouble(), 3));
+        }
+        return new int[][]{from, to};
+    }
+
+    @Test
+    public void testMatchesReference() {
+        int n = 20_000;
+        int[][] edges = randomGraph(n, 100_000, 42);
+        CsrGraph graph = CsrGraph.fromEdges(n, edges[0], edges[1], edges[0].length);
+
+        ParallelPageRank.Result result = new ParallelPageRank(new ForkJoinPool(4), 0.85, 0, 30).compute(graph);
+        double[] expected = reference(n, edges[0], edges[1], 0.85, 30);
+
+        assertEquals(30, result.iterations());
+        for (int v = 0; v < n; v++) {
+            assertEquals(expected[v], result.score(v), 1e-12);
+        }
+        assertEquals(1.0, Arrays.stream(result.scores()).sum(), 1e-9);
+    }
+
+    @Test
+    public void testConvergence() {
+        int n = 5_000;
+        int[][] edges = randomGraph(n, 40_000, 7);
+        CsrGraph graph = CsrGraph.fromEdges(n, edges[0], edges[1], edges[0].length);
+
+        ParallelPageRank.Result result = new ParallelPageRank(0.85, 1e-8, 1000).compute(graph);
+
+        assertTrue(result.converged());
+        assertTrue(result.iterations() < 1000);
+        assertTrue(result.delta() < 1e-8);
+        double[] longRun = reference(n, edges[0], edges[1], 0.85, 300);
+        for (int v = 0; v < n; v++) {
+            assertEquals(longRun[v], result.score(v), 1e-7);
+        }
+    }
+
+    @Test
+    public void testTopK() {
+        int n = 10_000;
+        int[][] edges = randomGraph(n, 50_000, 3);
+        ParallelPageRank.Result result = new ParallelPageRank().compute(CsrGraph.fromEdges(n, edges[0], edges[1], edges[0].length));
+
+        int[] top = result.topK(10);
+        Integer[] all = new Integer[n];
+        for (int v = 0; v < n; v++) all[v] = v;
+        Arrays.sort(all, (a, b) -> Double.compare(result.score(b), result.score(a)));
+
+        assertEquals(10, top.length);
+        for (int i = 0; i < 10; i++) {
+            assertEquals(result.score(all[i]), result.score(top[i]));
+        }
+        assertEquals(3, result.topK(3).length);
+        assertEquals(n, result.topK(n + 5).length);
+    }
+
+    @Test
+    public void testDanglingAndEmpty() {
+        // 0 -> 1, 1 has no out-links
+        CsrGraph graph = CsrGraph.fromEdges(2, new int[]{0}, new int[]{1}, 1);
+        ParallelPageRank.Result result = new ParallelPageRank().compute(graph);
+        assertEquals(1.0, result.score(0) + result.score(1), 1e-9);
+        assertTrue(result.score(1) > result.score(0));
+
+        ParallelPageRank.Result empty = new ParallelPageRank().compute(new CsrGraph.Builder().build());
+        assertEquals(0, empty.scores().length);
+        assertEquals(0, empty.topK(5).length);
+    }
+}
@@ -0,0 +1,86 @@
+package webcrawler.metrics;
+
+import org.junit.jupiter.api.Test;
+import webcrawler.util.HttpClientPageFetcher;
+import webcrawler.util.StubHttpServer;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.openmbean.TabularData;
+import java.lang.management.ManagementFactory;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CrawlMetricsTest {
+
+    @Test
+    public void testCountersAndSnapshots() {
+        CrawlMetrics metrics = new CrawlMetrics();
+        metrics.recordResponse("https://a.com/1", 200);
+        metrics.recordResponse("https://a.com/2", 200);
+        metrics.recordResponse("https://B.com:8080/x", 404);
+        metrics.recordPage(true);
+        metrics.recordPage(false);
+        metrics.record(CrawlStage.DOWNLOAD, 5_000_000);
+        CrawlMetrics.Snapshot first = metrics.snapshot();
+
+        assertEquals(2L, first.getStatusCounts().get(200));
+        assertEquals(1L, first.getStatusCounts().get(404));
+        assertEquals(2L, metrics.getTopHosts().get("a.com"));
+        assertEquals(1L, metrics.getTopHosts().get("b.com"));
+        assertEquals(1, first.getPagesCrawled());
+        assertEquals(1, first.getPagesFailed());
+        assertTrue(first.toString().contains("DOWNLOAD"));
+
+        metrics.recordResponse("https://a.com/3", 200);
+        metrics.recordPage(true);
+        CrawlMetrics.Snapshot interval = metrics.snapshot().since(first);
+        assertEquals(1L, interval.getStatusCounts().get(200));
+        assertNull(interval.getStatusCounts().get(404));
+        assertEquals(1, interval.getPagesCrawled());
+        assertEquals(0, interval.getStage(CrawlStage.DOWNLOAD).getCount());
+
+        metrics.reset();
+        assertEquals(0, metrics.getPagesCrawled());
+        assertTrue(metrics.getTopHosts().isEmpty());
+    }
+
+    @Test
+    public void testReadableOverJmx() throws Exception {
+        CrawlMetrics metrics = new CrawlMetrics();
+        metrics.record(CrawlStage.STORE, 2_000_000);
+        metrics.recordResponse("https://a.com/", 200);
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName name = new ObjectName("webcrawler:type=CrawlMetrics");
+        if (server.isRegistered(name)) server.unregisterMBean(name);
+        metrics.registerMBean();
+        try {
+            TabularData counts = (TabularData) server.getAttribute(name, "StageCounts");
+            assertEquals(1L, counts.get(new Object[]{"STORE"}).get("value"));
+            assertTrue(((String) server.getAttribute(name, "Report")).contains("STORE"));
+            server.invoke(name, "reset", null, null);
+            assertEquals(0L, metrics.histogram(CrawlStage.STORE).count());
+        } finally {
+            server.unregisterMBean(name);
+        }
+    }
+
+    @Test
+    public void testFetcherRecordsStages() throws Exception {
+        CrawlMetrics metrics = CrawlMetrics.global();
+        metrics.reset();
+        try (StubHttpServer server = new StubHttpServer(3, 2, 20)) {
+            HttpClientPageFetcher fetcher = new HttpClientPageFetcher();
+            fetcher.fetch(server.pageUrl(0));
+            fetcher.fetchAsync(server.pageUrl(1), Runnable::run).get();
+        }
+        CrawlMetrics.Snapshot snapshot = metrics.snapshot();
+        assertEquals(2, snapshot.getStage(CrawlStage.CONNECT).getCount());
+        assertEquals(2, snapshot.getStage(CrawlStage.DOWNLOAD).getCount());
+        assertEquals(2, snapshot.getStage(CrawlStage.PARSE).getCount());
+        // the stub answers after 20 ms
+        assertTrue(snapshot.getStage(CrawlStage.CONNECT).getValueAt(0.5) >= 15_000_000);
+        assertEquals(2L, snapshot.getStatusCounts().get(200));
+        metrics.reset();
+    }
+}
@@ -0,0 +1,79 @@
+package webcrawler.metrics;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LatencyHistogramTest {
+
+    @Test
+    public void testBucketsCoverTheWholeRange() {
+        int last = -1;
+        for (long value = 0; value < 100_000; value++) {
+            int bucket = LatencyHistogram.bucket(value);
+            assertTrue(bucket == last || bucket == last + 1, "value " + value);
+            assertTrue(LatencyHistogram.lowerBound(bucket) <= value && value <= LatencyHistogram.upperBound(bucket));
+            last = bucket;
+        }
+        assertTrue(LatencyHistogram.bucket(Long.MAX_VALUE) < LatencyHistogram.BUCKETS);
+        assertEquals(Long.MAX_VALUE, LatencyHistogram.upperBound(LatencyHistogram.bucket(Long.MAX_VALUE)));
+    }
+
+    @Test
+    public void testPercentilesWithinPrecision() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        // 1 ms .. 1000 ms uniformly
+        for (int i = 1; i <= 1000; i++) {
+            histogram.record(i * 1_000_000L);
+        }
+        LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+        assertEquals(1000, snapshot.getCount());
+        assertEquals(500.5e6, snapshot.getMean(), 1);
+        assertEquals(1_000_000_000L, snapshot.getMax());
+        assertEquals(500e6, snapshot.getValueAt(0.5), 500e6 * 0.04);
+        assertEquals(990e6, snapshot.getValueAt(0.99), 990e6 * 0.04);
+        assertTrue(snapshot.getValueAt(1) <= snapshot.getMax());
+        assertEquals(0, new LatencyHistogram().snapshot().getValueAt(0.5));
+    }
+
+    @Test
+    public void testSinceGivesTheInterval() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 0; i < 100; i++) {
+            histogram.record(1_000);
+        }
+        LatencyHistogram.Snapshot first = histogram.snapshot();
+        for (int i = 0; i < 100; i++) {
+            histogram.record(1_000_000);
+        }
+        LatencyHistogram.Snapshot interval = histogram.snapshot().since(first);
+        assertEquals(100, interval.getCount());
+        assertEquals(1_000_000, interval.getValueAt(0.01), 1_000_000 * 0.04);
+    }
+
+    @Test
+    public void testConcurrentRecordsAreNotLost() throws Exception {
+        LatencyHistogram histogram = new LatencyHistogram();
+        int threads = 8, perThread = 200_000;
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        for (int t = 0; t < threads; t++) {
+            int seed = t;
+            pool.submit(() -> {
+                Random random = new Random(seed);
+                for (int i = 0; i < perThread; i++) {
+                    histogram.record(random.nextInt(1000));
+                }
+            });
+        }
+        pool.shutdown();
+        assertTrue(pool.awaitTermination(30, TimeUnit.SECONDS));
+        assertEquals(threads * perThread, histogram.count());
+        assertEquals(threads * perThread, histogram.snapshot().getCount());
+        assertTrue(histogram.snapshot().getMax() < 1000);
+    }
+}
@@ -0,0 +1,97 @@
+package webcrawler.parallel;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class AdaptiveConcurrencyControllerTest {
+
+    private static final long MILLIS = 1_000_000L;
+
+    @Test
+    public void testSettlesNearTheKneeOfTheLatencyCurve() {
+        // a site that serves 50 fetches at once in 100 ms and queues everything beyond that
+        int knee = 50;
+        AdaptiveConcurrencyController controller = new AdaptiveConcurrencyController(4, 1, 500);
+        long now = 0;
+        for (int round = 0; round < 300; round++) {
+            int limit = controller.getLimit();
+            long latency = 100 * MILLIS * Math.max(1, limit) / Math.min(limit, knee);
+            for (int i = 0; i < limit; i++) {
+                controller.onSample(latency, true, limit, () -> 1000, now);
+            }
+            now += latency;
+        }
+        int limit = controller.getLimit();
+        assertTrue(limit >= knee && limit <= knee * 3 / 2, "limit " + limit);
+    }
+
+    @Test
+    public void testErrorsCutTheLimit() {
+        AdaptiveConcurrencyController controller = new AdaptiveConcurrencyController(100, 2, 100);
+        long now = 0;
+        for (int i = 0; i < 100; i++) {
+            controller.onSample(10 * MILLIS, true, 100, () -> 1000, now);
+        }
+        assertEquals(100, controller.getLimit());
+
+        // a third of the fetches time out
+        for (int i = 0; i < 100; i++) {
+            controller.onSample(10 * MILLIS, i % 3 != 0, 100, () -> 1000, now);
+        }
+        assertEquals(70, controller.getLimit());
+        for (int i = 0; i < 2000; i++) {
+            controller.onSample(10 * MILLIS, false, 100, () -> 1000, now);
+        }
+        assertEquals(2, controller.getLimit());
+    }
+
+    @Test
+    public void testNoGrowthWithoutDemand() {
+        AdaptiveConcurrencyController controller = new AdaptiveConcurrencyController(10, 1, 100);
+        long now = 0;
+        // empty queue
+        for (int i = 0; i < 1000; i++) {
+            controller.onSample(10 * MILLIS, true, 10, () -> 0, now);
+        }
+        assertEquals(10, controller.getLimit());
+        // URLs waiting, but only 3 fetches ever in flight
+        for (int i = 0; i < 1000; i++) {
+            controller.onSample(10 * MILLIS, true, 3, () -> 1000, now);
+        }
+        assertEquals(10, controller.getLimit());
+        // limit in use and URLs waiting
+        for (int i = 0; i < 1000; i++) {
+            controller.onSample(10 * MILLIS, true, controller.getLimit(), () -> 1000, now);
+        }
+        assertTrue(controller.getLimit() > 10);
+    }
+
+    @Test
+    public void testInstantSamplesDragTheLimitDown() {
+        // why ParallelCrawler only samples real fetches: a URL that robots.txt disallows at fetch
+        // time comes back in about a millisecond, and a window of those becomes the baseline latency
+        AdaptiveConcurrencyController controller = new AdaptiveConcurrencyController(50, 1, 50);
+        long now = 0;
+        for (int i = 0; i < 500; i++) {
+            controller.onSample(100 * MILLIS, true, controller.getLimit(), () -> 1000, now);
+        }
+        assertEquals(50, controller.getLimit());
+
+        for (int i = 0; i < 50; i++) {
+            controller.onSample(MILLIS, true, controller.getLimit(), () -> 1000, now);
+        }
+        for (int i = 0; i < 200; i++) {
+            controller.onSample(100 * MILLIS, true, controller.getLimit(), () -> 1000, now);
+        }
+        int limit = controller.getLimit();
+        assertTrue(limit <= 40, "limit " + limit);
+    }
+
+    @Test
+    public void testInvalidBounds() {
+        assertThrows(IllegalArgumentException.class, () -> new AdaptiveConcurrencyController(0, 0, 10));
+        assertThrows(IllegalArgumentException.class, () -> new AdaptiveConcurrencyController(20, 1, 10));
+        assertThrows(IllegalArgumentException.class, () -> new AdaptiveConcurrencyController(5, 6, 10));
+    }
+}
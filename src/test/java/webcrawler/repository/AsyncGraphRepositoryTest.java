@@ -0,0 +1,134 @@
+package webcrawler.repository;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.neo4j.driver.AuthTokens;
+import org.neo4j.driver.Driver;
+import org.neo4j.driver.GraphDatabase;
+import webcrawler.model.Edge;
+import webcrawler.model.Node;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class AsyncGraphRepositoryTest {
+
+    // the driver connects lazily, so no database is needed as long as write() is overridden
+    private final Driver driver = GraphDatabase.driver("bolt://localhost:7687", AuthTokens.basic("neo4j", "unused"));
+
+    @AfterEach
+    public void tearDown() {
+        driver.close();
+    }
+
+    /**
+     * Hands out a future per write and lets the test decide when each one commits.
+     */
+    private class ControlledRepository extends AsyncGraphRepository {
+        private final List<CompletableFuture<Void>> writes = new CopyOnWriteArrayList<>();
+        private final List<List<Map<String, Object>>> edgeRows = new CopyOnWriteArrayList<>();
+
+        ControlledRepository(int maxInFlightWrites) {
+            super(driver, maxInFlightWrites);
+        }
+
+        @Override
+        protected CompletionStage<Void> write(List<Map<String, Object>> nodeRows, List<Map<String, Object>> edgeRows) {
+            CompletableFuture<Void> write = new CompletableFuture<>();
+            this.edgeRows.add(edgeRows);
+            writes.add(write);
+            return write;
+        }
+    }
+
+    @Test
+    public void testInFlightCap() {
+        ControlledRepository repository = new ControlledRepository(2);
+        List<CompletionStage<Void>> results = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            results.add(repository.addNodeAsync(new Node("https://example.com/" + i, "t", "now")));
+        }
+
+        assertEquals(2, repository.writes.size());
+        assertEquals(2, repository.inFlightWrites());
+        assertEquals(3, repository.queuedWrites());
+
+        repository.writes.get(0).complete(null);
+        assertTrue(results.get(0).toCompletableFuture().isDone());
+        assertEquals(3, repository.writes.size());
+        assertEquals(2, repository.inFlightWrites());
+
+        for (int i = 1; i < 5; i++) {
+            repository.writes.get(i).complete(null);
+        }
+        for (CompletionStage<Void> result : results) {
+            assertTrue(result.toCompletableFuture().isDone());
+        }
+        assertEquals(0, repository.inFlightWrites());
+        assertEquals(5, repository.getWritesCompleted());
+    }
+
+    @Test
+    public void testFailureFreesSlot() {
+        ControlledRepository repository = new ControlledRepository(1);
+        CompletionStage<Void> first = repository.addEdgeAsync(new Edge("https://a.com/", "https://b.com/", "RELATES_TO"));
+        CompletionStage<Void> second = repository.addEdgeAsync(new Edge("https://a.com/", "https://c.com/", "RELATES_TO"));
+
+        repository.writes.get(0).completeExceptionally(new IllegalStateException("database down"));
+
+        CompletionException exception = assertThrows(CompletionException.class, () -> first.toCompletableFuture().join());
+        assertEquals("database down", exception.getCause().getMessage());
+        assertEquals(2, repository.writes.size());
+        assertEquals("https://c.com/", repository.edgeRows.get(1).get(0).get("to"));
+        repository.writes.get(1).complete(null);
+        assertNull(second.toCompletableFuture().join());
+        assertEquals(1, repository.getWritesFailed());
+    }
+
+    @Test
+    public void testEmptyBatchSkipsDatabase() {
+        ControlledRepository repository = new ControlledRepository(1);
+
+        assertTrue(repository.insertBatchAsync(List.of(), List.of()).toCompletableFuture().isDone());
+        assertTrue(repository.writes.isEmpty());
+    }
+
+    @Test
+    public void testConcurrentCallersNeverExceedCap() throws InterruptedException {
+        int cap = 4;
+        AsyncGraphRepository repository = new AsyncGraphRepository(driver, cap) {
+            private final AtomicInteger running = new AtomicInteger();
+
+            @Override
+            protected CompletionStage<Void> write(List<Map<String, Object>> nodeRows, List<Map<String, Object>> edgeRows) {
+                int now = running.incrementAndGet();
+                assertTrue(now <= cap, "in flight: " + now);
+                return CompletableFuture.runAsync(running::decrementAndGet, CompletableFuture.delayedExecutor(1, TimeUnit.MILLISECONDS));
+            }
+        };
+        ExecutorService callers = Executors.newFixedThreadPool(8);
+        List<CompletableFuture<Void>> results = new CopyOnWriteArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            int page = i;
+            callers.execute(() -> results.add(repository.addNodeAsync(new Node("https://example.com/" + page, "t", "now"))
+                    .toCompletableFuture()));
+        }
+        callers.shutdown();
+        assertTrue(callers.awaitTermination(10, TimeUnit.SECONDS));
+        CompletableFuture.allOf(results.toArray(new CompletableFuture<?>[0])).join();
+
+        assertEquals(200, repository.getWritesCompleted());
+        assertEquals(0, repository.inFlightWrites());
+    }
+}
@@ -0,0 +1,208 @@
+package webcrawler.repository;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import webcrawler.model.Edge;
+import webcrawler.model.Node;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BatchingGraphWriterTest {
+
+    private BatchingGraphWriter writer;
+
+    @AfterEach
+    public void tearDown() {
+        if (writer != null) writer.close();
+    }
+
+    /**
+     * Records batches instead of writing them; the driver connects lazily, so no database is needed.
+     */
+    private static class RecordingRepository extends GraphRepository {
+        private final List<List<Node>> nodeBatches = new ArrayList<>();
+        private final List<List<Edge>> edgeBatches = new ArrayList<>();
+        private volatile CountDownLatch gate = new CountDownLatch(0);
+
+        RecordingRepository() {
+            super("bolt://localhost:7687", "neo4j", "unused");
+        }
+
+        @Override
+        public void insertBatch(List<Node> nodes, List<Edge> edges) {
+            try {
+                gate.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            synchronized (this) {
+                nodeBatches.add(new ArrayList<>(nodes));
+                edgeBatches.add(new ArrayList<>(edges));
+            }
+        }
+
+        synchronized int rows() {
+            int rows = 0;
+            for (List<Node> batch : nodeBatches) rows += batch.size();
+            for (List<Edge> batch : edgeBatches) rows += batch.size();
+            return rows;
+        }
+    }
+
+    @Test
+    public void testBatchesAcrossPages() throws InterruptedException {
+        RecordingRepository repository = new RecordingRepository();
+        writer = new BatchingGraphWriter(repository, 1000, 1, TimeUnit.HOURS, 10_000);
+
+        for (int i = 0; i < 10; i++) {
+            writer.savePage("https://example.com/" + i, "Page " + i, "2024-12-01 12:00:00",
+                    List.of("https://example.com/" + i + "/a", "https://example.com/" + i + "/b"));
+        }
+        writer.flush();
+
+        // 10 pages with 2 links each: one transaction instead of 60
+        assertEquals(1, repository.nodeBatches.size());
+        assertEquals(10, repository.nodeBatches.get(0).size());
+        assertEquals(20, repository.edgeBatches.get(0).size());
+        assertEquals("2024-12-01 12:00:00", repository.nodeBatches.get(0).get(0).getCrawlTime());
+        assertEquals("https://example.com/0/a", repository.edgeBatches.get(0).get(0).getTo());
+        assertEquals(30, writer.getRowsWritten());
+        assertEquals(0, writer.pendingRows());
+    }
+
+    @Test
+    public void testFlushOnSize() throws InterruptedException {
+        RecordingRepository repository = new RecordingRepository();
+        writer = new BatchingGraphWriter(repository, 3, 1, TimeUnit.HOURS, 100);
+
+        for (int i = 0; i < 6; i++) {
+            writer.savePage("https://example.com/" + i, "t", "now", List.of());
+        }
+        writer.flush();
+
+        assertEquals(2, repository.nodeBatches.size());
+        assertEquals(3, repository.nodeBatches.get(0).size());
+    }
+
+    @Test
+    public void testFlushOnTime() throws InterruptedException {
+        RecordingRepository repository = new RecordingRepository();
+        writer = new BatchingGraphWriter(repository, 1000, 20, TimeUnit.MILLISECONDS, 10_000);
+
+        writer.savePage("https://example.com/", "t", "now", List.of("https://example.com/x"));
+
+        long deadline = System.currentTimeMillis() + 5000;
+        while (repository.rows() < 2 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        assertEquals(2, repository.rows());
+    }
+
+    @Test
+    public void testBackpressure() throws InterruptedException {
+        RecordingRepository repository = new RecordingRepository();
+        repository.gate = new CountDownLatch(1);
+        writer = new BatchingGraphWriter(repository, 2, 1, TimeUnit.HOURS, 4);
+
+        // first batch is stuck in the database, the next four rows fill the buffer
+        for (int i = 0; i < 3; i++) {
+            writer.savePage("https://example.com/" + i, "t", "now", List.of());
+        }
+        AtomicBoolean blockedWriteDone = new AtomicBoolean();
+        Thread producer = new Thread(() -> {
+            try {
+                writer.savePage("https://example.com/3", "t", "now", List.of("https://example.com/4"));
+                blockedWriteDone.set(true);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        producer.start();
+        producer.join(200);
+        assertFalse(blockedWriteDone.get(), "producer should wait for buffer space");
+
+        repository.gate.countDown();
+        producer.join(5000);
+        assertTrue(blockedWriteDone.get());
+        writer.flush();
+        assertEquals(5, repository.rows());
+    }
+
+    @Test
+    public void testCloseWritesRemaining() throws InterruptedException {
+        RecordingRepository repository = new RecordingRepository();
+        writer = new BatchingGraphWriter(repository, 1000, 1, TimeUnit.HOURS, 10_000);
+
+        writer.savePage("https://example.com/", "t", "now", List.of("https://example.com/x"));
+        writer.close();
+
+        assertEquals(2, repository.rows());
+        assertThrows(IllegalStateException.class, () -> writer.savePage("https://example.com/y", "t", "now", List.of()));
+    }
+
+    @Test
+    public void testConcurrentFlushAndClose() throws InterruptedException {
+        for (int round = 0; round < 200; round++) {
+            RecordingRepository repository = new RecordingRepository();
+            BatchingGraphWriter shared = new BatchingGraphWriter(repository, 10, 1, TimeUnit.HOURS, 100);
+            writer = shared;
+            AtomicInteger saved = new AtomicInteger();
+            AtomicInteger flushed = new AtomicInteger();
+            CountDownLatch start = new CountDownLatch(1);
+            List<Thread> producers = new ArrayList<>();
+            for (int t = 0; t < 4; t++) {
+                int id = t;
+                Thread producer = new Thread(() -> {
+                    try {
+                        start.await();
+                        for (int i = 0; i < 5; i++) {
+                            shared.savePage("https://example.com/" + id + "/" + i, "t", "now", List.of());
+                            saved.incrementAndGet();
+                            shared.flush();
+                            flushed.incrementAndGet();
+                        }
+                    } catch (IllegalStateException e) {
+                        // closed: later pages are refused, not lost
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                });
+                producer.start();
+                producers.add(producer);
+            }
+            start.countDown();
+            shared.close();
+            for (Thread producer : producers) {
+                producer.join(5000);
+                assertFalse(producer.isAlive(), "flush must not block after close");
+            }
+            // every accepted page was written
+            assertEquals(saved.get(), repository.rows());
+            assertTrue(flushed.get() <= saved.get());
+        }
+    }
+
+    @Test
+    public void testFailedBatchIsCountedAndReleased() throws InterruptedException {
+        GraphRepository failing = new GraphRepository("bolt://localhost:7687", "neo4j", "unused") {
+            @Override
+            public void insertBatch(List<Node> nodes, List<Edge> edges) {
+                throw new IllegalStateException("database down");
+            }
+        };
+        writer = new BatchingGraphWriter(failing, 10, 1, TimeUnit.HOURS, 10);
+
+        writer.savePage("https://example.com/", "t", "now", List.of("https://example.com/x"));
+        writer.flush();
+
+        assertEquals(2, writer.getRowsFailed());
+        assertEquals(0, writer.pendingRows());
+    }
+}
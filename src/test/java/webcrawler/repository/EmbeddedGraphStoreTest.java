@@ -0,0 +1,132 @@
+package webcrawler.repository;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import webcrawler.model.Edge;
+import webcrawler.model.Node;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class EmbeddedGraphStoreTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    public void testMergeSemantics() {
+        EmbeddedGraphStore store = new EmbeddedGraphStore();
+        store.insertBatch(List.of(new Node("https://a.com/", "A", "2024-12-01 12:00:00")),
+                List.of(new Edge("https://a.com/", "https://b.com/", "RELATES_TO"),
+                        new Edge("https://a.com/", "https://c.com/", "RELATES_TO"),
+                        new Edge("https://a.com/", "https://b.com/", "RELATES_TO")));
+
+        assertEquals(3, store.nodeCount());
+        assertEquals(2, store.edgeCount());
+        int a = store.idOf("https://a.com/");
+        assertEquals("A", store.title(a));
+        // link targets are titled with their URL until crawled
+        assertEquals("https://b.com/", store.title(store.idOf("https://b.com/")));
+        assertArrayEquals(new int[]{store.idOf("https://b.com/"), store.idOf("https://c.com/")}, store.outLinks(a));
+
+        store.addNode(new Node("https://b.com/", "B", "2024-12-01 12:00:01"));
+        assertEquals(3, store.nodeCount());
+        assertEquals("B", store.title(store.idOf("https://b.com/")));
+        assertEquals(-1, store.idOf("https://unknown.com/"));
+    }
+
+    @Test
+    public void testPageRank() {
+        EmbeddedGraphStore store = new EmbeddedGraphStore();
+        List<Edge> edges = new ArrayList<>();
+        // every page links to the hub, the hub links back to page 0
+        for (int i = 0; i < 10; i++) {
+            edges.add(new Edge("https://example.com/" + i, "https://example.com/hub", "RELATES_TO"));
+        }
+        edges.add(new Edge("https://example.com/hub", "https://example.com/0", "RELATES_TO"));
+        store.insertEdges(edges);
+
+        double[] rank = store.pageRank(50, 0.85);
+        double sum = 0;
+        for (double r : rank) sum += r;
+        assertEquals(1.0, sum, 1e-9);
+
+        int hub = store.idOf("https://example.com/hub");
+        int first = store.idOf("https://example.com/0");
+        int other = store.idOf("https://example.com/5");
+        assertTrue(rank[hub] > rank[first]);
+        assertTrue(rank[first] > rank[other]);
+    }
+
+    @Test
+    public void testReplay() throws IOException {
+        // tiny chunks so the edge log is remapped many times
+        try (EmbeddedGraphStore store = new EmbeddedGraphStore(directory, 64)) {
+            for (int i = 0; i < 100; i++) {
+                store.insertBatch(List.of(new Node("https://example.com/" + i, "Page " + i, "t" + i)),
+                        List.of(new Edge("https://example.com/" + i, "https://example.com/" + (i + 1) % 100, "RELATES_TO"),
+                                new Edge("https://example.com/" + i, "https://example.com/" + (i + 7) % 100, "RELATES_TO")));
+            }
+        }
+
+        try (EmbeddedGraphStore store = new EmbeddedGraphStore(directory, 64)) {
+            assertEquals(100, store.nodeCount());
+            assertEquals(200, store.edgeCount());
+            int page = store.idOf("https://example.com/42");
+            assertEquals("Page 42", store.title(page));
+            assertArrayEquals(new int[]{store.idOf("https://example.com/43"), store.idOf("https://example.com/49")},
+                    store.outLinks(page));
+
+            // appends after a replay continue the same logs
+            store.addEdge(new Edge("https://example.com/42", "https://example.com/new", "RELATES_TO"));
+        }
+
+        try (EmbeddedGraphStore store = new EmbeddedGraphStore(directory, 64)) {
+            assertEquals(101, store.nodeCount());
+            assertEquals(201, store.edgeCount());
+        }
+    }
+
+    @Test
+    public void testTornNodeLog() throws IOException {
+        try (EmbeddedGraphStore store = new EmbeddedGraphStore(directory)) {
+            store.addNode(new Node("https://a.com/", "A", "t"));
+            store.addNode(new Node("https://b.com/", "B", "t"));
+        }
+        Path nodeFile = directory.resolve("nodes.log");
+        try (FileChannel channel = FileChannel.open(nodeFile, StandardOpenOption.WRITE)) {
+            channel.truncate(Files.size(nodeFile) - 3);
+        }
+
+        try (EmbeddedGraphStore store = new EmbeddedGraphStore(directory)) {
+            assertEquals(1, store.nodeCount());
+            store.addNode(new Node("https://c.com/", "C", "t"));
+        }
+        try (EmbeddedGraphStore store = new EmbeddedGraphStore(directory)) {
+            assertEquals(2, store.nodeCount());
+            assertEquals("C", store.title(store.idOf("https://c.com/")));
+        }
+    }
+
+    @Test
+    public void testBehindBatchingWriter() throws InterruptedException {
+        EmbeddedGraphStore store = new EmbeddedGraphStore();
+        try (BatchingGraphWriter writer = new BatchingGraphWriter(store, 100, 10, TimeUnit.MILLISECONDS, 1000)) {
+            writer.savePage("https://a.com/", "A", "t", List.of("https://b.com/", "https://c.com/"));
+            writer.savePage("https://b.com/", "B", "t", List.of("https://a.com/"));
+            writer.flush();
+        }
+
+        assertEquals(3, store.nodeCount());
+        assertEquals(3, store.edgeCount());
+        assertEquals("B", store.title(store.idOf("https://b.com/")));
+    }
+}
@@ -0,0 +1,155 @@
+package webcrawler.robots;
+
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.http.HttpClient;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RobotsCacheTest {
+
+    private HttpServer server;
+    private final AtomicInteger requests = new AtomicInteger();
+    private volatile int status = 200;
+    private volatile String robots = "User-agent: *\nDisallow: /private\nCrawl-delay: 3\n";
+
+    @BeforeEach
+    public void start() throws Exception {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/robots.txt", exchange -> {
+            try (exchange) {
+                requests.incrementAndGet();
+                byte[] body = robots.getBytes(StandardCharsets.UTF_8);
+                exchange.sendResponseHeaders(status, status == 200 ? body.length : -1);
+                if (status == 200) {
+                    try (OutputStream out = exchange.getResponseBody()) {
+                        out.write(body);
+                    }
+                }
+            }
+        });
+        server.start();
+    }
+
+    @AfterEach
+    public void stop() {
+        server.stop(0);
+    }
+
+    private String url(String path) {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + path;
+    }
+
+    private RobotsCache cache(Duration ttl, int maxHosts) {
+        return new RobotsCache(HttpClient.newHttpClient(), "webcrawler", ttl, maxHosts);
+    }
+
+    @Test
+    public void testFetchedOnceAndChecked() throws Exception {
+        RobotsCache cache = cache(RobotsCache.DEFAULT_TTL, 10);
+        Map<String, Long> delays = new ConcurrentHashMap<>();
+        cache.setRulesListener((host, rules) -> delays.put(host, rules.getCrawlDelayMillis()));
+
+        // unknown host: let through and loaded in the background
+        assertTrue(cache.isAllowedIfKnown(url("/private/1")));
+        List<CompletableFuture<RobotsRules>> futures = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            futures.add(cache.rulesAsync(url("/page/" + i)));
+        }
+        for (CompletableFuture<RobotsRules> future : futures) {
+            future.get();
+        }
+
+        assertEquals(1, requests.get());
+        assertFalse(cache.isAllowedIfKnown(url("/private/1")));
+        assertTrue(cache.isAllowedIfKnown(url("/public")));
+        assertFalse(cache.isAllowed(url("/private")));
+        assertEquals(Map.of("127.0.0.1", 3000L), delays);
+        assertEquals(1, cache.size());
+        assertTrue(cache.getStats().contains("1 fetched"));
+    }
+
+    @Test
+    public void testMissingAndFailingRobots() throws Exception {
+        status = 404;
+        assertTrue(cache(RobotsCache.DEFAULT_TTL, 10).rulesAsync(url("/")).get().isAllowed(url("/private")));
+
+        status = 503;
+        RobotsRules failing = cache(RobotsCache.DEFAULT_TTL, 10).rulesAsync(url("/")).get();
+        assertFalse(failing.isAllowed(url("/public")));
+        assertTrue(failing.isUnreachable());
+
+        // nothing listens on port 1
+        RobotsRules unreachable = cache(RobotsCache.DEFAULT_TTL, 10).rulesAsync("http://127.0.0.1:1/x").get();
+        assertFalse(unreachable.isAllowed("http://127.0.0.1:1/x"));
+        assertTrue(unreachable.isUnreachable());
+        assertFalse(RobotsRules.DISALLOW_ALL.isUnreachable());
+    }
+
+    @Test
+    public void testUnreachableIsRetried() throws Exception {
+        status = 503;
+        RobotsCache cache = cache(Duration.ofMillis(50), 10);
+        assertEquals(Duration.ofMillis(50), cache.getErrorTtl());
+        assertTrue(cache.rulesAsync(url("/")).get().isUnreachable());
+
+        // not a decision of the site: let through, to be put off by the fetch path
+        assertTrue(cache.isAllowedIfKnown(url("/private")));
+        assertEquals(1, requests.get());
+
+        status = 200;
+        Thread.sleep(100);
+        RobotsRules rules = cache.rulesAsync(url("/")).get();
+        assertFalse(rules.isUnreachable());
+        assertTrue(rules.isAllowed(url("/public")));
+        assertFalse(cache.isAllowedIfKnown(url("/private")));
+        assertEquals(2, requests.get());
+    }
+
+    @Test
+    public void testExpiredRulesAreFetchedAgain() throws Exception {
+        RobotsCache cache = cache(Duration.ofMillis(50), 10);
+        cache.rulesAsync(url("/")).get();
+        robots = "User-agent: *\nDisallow: /public\n";
+        Thread.sleep(100);
+
+        // expired: let through while reloading
+        assertTrue(cache.isAllowedIfKnown(url("/public")));
+        assertFalse(cache.rulesAsync(url("/public")).get().isAllowed(url("/public")));
+        assertEquals(2, requests.get());
+    }
+
+    @Test
+    public void testHostsBounded() throws Exception {
+        RobotsCache cache = cache(RobotsCache.DEFAULT_TTL, 2);
+        // one server, but every authority is its own origin
+        cache.rulesAsync(url("/")).get();
+        cache.rulesAsync("http://localhost:" + server.getAddress().getPort() + "/").get();
+        cache.rulesAsync("http://127.0.0.1:1/").get();
+
+        assertEquals(2, cache.size());
+    }
+
+    @Test
+    public void testPutRules() throws Exception {
+        RobotsCache cache = cache(RobotsCache.DEFAULT_TTL, 10);
+        cache.put(url("/"), RobotsRules.parse("User-agent: *\nDisallow: /\n", "webcrawler"));
+
+        assertFalse(cache.isAllowedIfKnown(url("/public")));
+        assertFalse(cache.rulesAsync(url("/public")).get().isAllowed(url("/public")));
+        assertEquals(0, requests.get());
+    }
+}
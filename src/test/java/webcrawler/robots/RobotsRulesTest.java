@@ -0,0 +1,114 @@
+package webcrawler.robots;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RobotsRulesTest {
+
+    private static final String ROBOTS = """
+            # comments and unknown lines are ignored
+            User-agent: *
+            Disallow: /account
+            Disallow: /search?
+            Allow: /account/login
+            Crawl-delay: 2
+
+            User-agent: otherbot
+            User-agent: WebCrawler
+            Disallow: /private/
+            Allow: /private/public
+            Disallow: /*.pdf$
+            Disallow: /tmp*/cache
+            Allow: /*?lang=en
+            Crawl-delay: 1.5
+
+            Sitemap: https://www.example.com/sitemap.xml
+            """;
+
+    @Test
+    public void testGroupForOwnAgent() {
+        RobotsRules rules = RobotsRules.parse(ROBOTS, "webcrawler");
+
+        assertTrue(rules.isAllowed("https://www.example.com/account/settings"));
+        assertFalse(rules.isAllowed("https://www.example.com/private/data"));
+        assertTrue(rules.isAllowed("https://www.example.com/private/public/page"));
+        assertEquals(1500, rules.getCrawlDelayMillis());
+        assertEquals(List.of("https://www.example.com/sitemap.xml"), rules.getSitemaps());
+    }
+
+    @Test
+    public void testStarGroupForOtherAgents() {
+        RobotsRules rules = RobotsRules.parse(ROBOTS, "somebot");
+
+        assertFalse(rules.isAllowed("https://www.example.com/account/settings"));
+        assertTrue(rules.isAllowed("https://www.example.com/account/login"));
+        assertFalse(rules.isAllowed("https://www.example.com/search?q=cfa"));
+        assertTrue(rules.isAllowed("https://www.example.com/search"));
+        assertTrue(rules.isAllowed("https://www.example.com/"));
+        assertTrue(rules.isAllowed("https://www.example.com"));
+        assertEquals(2000, rules.getCrawlDelayMillis());
+    }
+
+    @Test
+    public void testWildcards() {
+        RobotsRules rules = RobotsRules.parse(ROBOTS, "webcrawler");
+
+        assertFalse(rules.isAllowed("https://www.example.com/docs/report.pdf"));
+        assertTrue(rules.isAllowed("https://www.example.com/docs/report.pdf?download=1"));
+        assertFalse(rules.isAllowed("https://www.example.com/tmp/x/cache/1"));
+        assertFalse(rules.isAllowed("https://www.example.com/tmp-files/cache"));
+        assertTrue(rules.isAllowed("https://www.example.com/tmp/x/cach"));
+        // the fragment is not part of the match
+        assertFalse(rules.isAllowed("https://www.example.com/a.pdf#page=2"));
+        // the longer allow beats the shorter disallow
+        assertTrue(rules.isAllowed("https://www.example.com/private/x?lang=en"));
+    }
+
+    @Test
+    public void testLongestMatchAndTies() {
+        RobotsRules rules = RobotsRules.parse("""
+                User-agent: *
+                Disallow: /page
+                Allow: /page
+                Disallow: /p*
+                Allow: /pages/*
+                Disallow: /pages/secret
+                Disallow: /x$
+                """, "webcrawler");
+
+        // equal patterns: allow wins
+        assertTrue(rules.isAllowed("https://a.com/page"));
+        // "/pages/*" (8) is longer than "/page" (5)
+        assertTrue(rules.isAllowed("https://a.com/pages/open"));
+        assertFalse(rules.isAllowed("https://a.com/pages/secret/1"));
+        assertFalse(rules.isAllowed("https://a.com/photo"));
+        assertFalse(rules.isAllowed("https://a.com/x"));
+        assertTrue(rules.isAllowed("https://a.com/xy"));
+    }
+
+    @Test
+    public void testEncodingAndEdgeCases() {
+        RobotsRules rules = RobotsRules.parse("""
+                user-agent: *
+                disallow: /café
+                disallow: /a%2fb
+                disallow:
+                crawl-delay: 1000
+                """, "webcrawler");
+
+        assertFalse(rules.isAllowed("https://a.com/caf%C3%A9/menu"));
+        assertFalse(rules.isAllowed("https://a.com/a%2Fb"));
+        assertTrue(rules.isAllowed("https://a.com/other"));
+        // capped, so a host cannot stall the crawl
+        assertEquals(RobotsRules.MAX_CRAWL_DELAY_MILLIS, rules.getCrawlDelayMillis());
+
+        RobotsRules empty = RobotsRules.parse("", "webcrawler");
+        assertTrue(empty.isAllowed("https://a.com/anything"));
+        assertEquals(-1, empty.getCrawlDelayMillis());
+        assertFalse(RobotsRules.DISALLOW_ALL.isAllowed("https://a.com/"));
+        assertTrue(RobotsRules.ALLOW_ALL.isAllowed("https://a.com/"));
+    }
+}
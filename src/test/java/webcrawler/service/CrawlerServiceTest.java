@@ -5,10 +5,21 @@ import org.jsoup.nodes.Element;
 import org.jsoup.select.Elements;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 import org.mockito.Mockito;
 import webcrawler.DTO.CrawlResultDTO;
+import webcrawler.dedup.ConcurrentFingerprintSet;
+import webcrawler.dedup.NearDuplicateIndex;
+import webcrawler.repository.EmbeddedGraphStore;
+import webcrawler.url.UrlFilter;
+import webcrawler.url.UrlFilterRules;
 import webcrawler.util.HttpUtils;
+import webcrawler.util.ResponseCache;
+import webcrawler.util.RevalidatingFetcher;
+import webcrawler.util.StubHttpServer;
 
+import java.nio.file.Path;
+import java.util.List;
 import java.util.Set;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -102,4 +113,35 @@ public class CrawlerServiceTest {
         verify(mockGraphService, times(1)).savePageNode(toURL, toURL, crawlTime);
         verify(mockGraphService, times(1)).saveLink(fromURL, toURL, "RELATES_TO");
     }
+
+    private static CrawlerService cachingService(Path cacheDirectory) throws Exception {
+        UrlFilterRules rules = UrlFilterRules.defaults();
+        rules.setAllowedHosts(List.of("127.0.0.1"));
+        CrawlerService service = new CrawlerService(new ConcurrentFingerprintSet(100), new UrlFilter(rules),
+                new GraphService(new EmbeddedGraphStore()));
+        service.setRevalidatingFetcher(new RevalidatingFetcher(new ResponseCache(cacheDirectory, 100)));
+        service.setNearDuplicateIndex(new NearDuplicateIndex());
+        return service;
+    }
+
+    @Test
+    public void testNearDuplicatesWithResponseCache(@TempDir Path cacheDirectory) throws Exception {
+        // every stub page has the same text, only the title and link targets differ
+        try (StubHttpServer server = new StubHttpServer(10, 3, 0)) {
+            for (int run = 0; run < 2; run++) {
+                // the second run revalidates both pages with 304 and checks their stored SimHash
+                CrawlerService service = cachingService(cacheDirectory);
+                CrawlResultDTO original = service.crawl(server.pageUrl(0));
+                assertFalse(original.isDuplicate());
+                assertEquals(3, original.getExtractedUrls().size());
+
+                CrawlResultDTO copy = service.crawl(server.pageUrl(5));
+                assertTrue(copy.isDuplicate());
+                assertTrue(copy.getExtractedUrls().isEmpty());
+                // the links of the copy were not marked visited
+                assertFalse(service.getVisitedUrls().contains(server.pageUrl(8)));
+            }
+            assertEquals(2, server.getNotModifiedServed());
+        }
+    }
 }
@@ -0,0 +1,106 @@
+package webcrawler.sitemap;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SitemapParserTest {
+
+    static final String URLSET = """
+            <?xml version="1.0" encoding="UTF-8"?>
+            <urlset xmlns="http://www.sitemaps.org/schemas/sitemap/0.9">
+              <url><loc>https://example.com/</loc><lastmod>2024-01-01</lastmod></url>
+              <url>
+                <loc>
+                  https://example.com/a?x=1&amp;y=2
+                </loc>
+                <changefreq>daily</changefreq>
+              </url>
+              <url><loc></loc></url>
+            </urlset>
+            """;
+
+    static final String INDEX = """
+            <?xml version="1.0" encoding="UTF-8"?>
+            <sitemapindex xmlns="http://www.sitemaps.org/schemas/sitemap/0.9">
+              <sitemap><loc>https://example.com/sitemap-1.xml.gz</loc></sitemap>
+              <sitemap><loc>https://example.com/sitemap-2.xml</loc></sitemap>
+            </sitemapindex>
+            """;
+
+    static byte[] gzip(String text) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (GZIPOutputStream out = new GZIPOutputStream(bytes)) {
+            out.write(text.getBytes(StandardCharsets.UTF_8));
+        }
+        return bytes.toByteArray();
+    }
+
+    private static List<SitemapParser.Entry> parse(InputStream in) throws IOException {
+        List<SitemapParser.Entry> entries = new ArrayList<>();
+        try (SitemapParser parser = new SitemapParser(in)) {
+            for (SitemapParser.Entry entry = parser.next(); entry != null; entry = parser.next()) {
+                entries.add(entry);
+            }
+        }
+        return entries;
+    }
+
+    @Test
+    public void testUrlset() throws IOException {
+        List<SitemapParser.Entry> entries = parse(new ByteArrayInputStream(URLSET.getBytes(StandardCharsets.UTF_8)));
+        assertEquals(List.of(new SitemapParser.Entry("https://example.com/", false),
+                new SitemapParser.Entry("https://example.com/a?x=1&y=2", false)), entries);
+    }
+
+    @Test
+    public void testIndex() throws IOException {
+        List<SitemapParser.Entry> entries = parse(new ByteArrayInputStream(INDEX.getBytes(StandardCharsets.UTF_8)));
+        assertEquals(2, entries.size());
+        assertTrue(entries.get(0).sitemap());
+        assertEquals("https://example.com/sitemap-2.xml", entries.get(1).loc());
+    }
+
+    @Test
+    public void testGzip() throws IOException {
+        List<SitemapParser.Entry> entries = parse(new ByteArrayInputStream(gzip(URLSET)));
+        assertEquals(2, entries.size());
+        assertEquals("https://example.com/", entries.get(0).loc());
+    }
+
+    @Test
+    public void testPrefixedAndWithoutNamespace() throws IOException {
+        String xml = "<s:urlset xmlns:s=\"http://www.sitemaps.org/schemas/sitemap/0.9\">"
+                + "<s:url><s:loc>https://example.com/p</s:loc></s:url></s:urlset>";
+        assertEquals("https://example.com/p",
+                parse(new ByteArrayInputStream(xml.getBytes(StandardCharsets.UTF_8))).get(0).loc());
+        xml = "<urlset><url><loc>https://example.com/q</loc></url></urlset>";
+        assertEquals("https://example.com/q",
+                parse(new ByteArrayInputStream(xml.getBytes(StandardCharsets.UTF_8))).get(0).loc());
+    }
+
+    @Test
+    public void testMalformedKeepsEarlierEntries() throws IOException {
+        String xml = "<urlset><url><loc>https://example.com/1</loc></url><url><loc>https://exa";
+        try (SitemapParser parser = new SitemapParser(new ByteArrayInputStream(xml.getBytes(StandardCharsets.UTF_8)))) {
+            assertEquals("https://example.com/1", parser.next().loc());
+            assertThrows(IOException.class, parser::next);
+        }
+    }
+
+    @Test
+    public void testNoExternalEntities() {
+        String xml = "<?xml version=\"1.0\"?><!DOCTYPE urlset [<!ENTITY x SYSTEM \"file:///etc/passwd\">]>"
+                + "<urlset><url><loc>&x;</loc></url></urlset>";
+        assertThrows(IOException.class, () -> parse(new ByteArrayInputStream(xml.getBytes(StandardCharsets.UTF_8))));
+    }
+}
@@ -0,0 +1,118 @@
+package webcrawler.sitemap;
+
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import webcrawler.robots.RobotsCache;
+
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.http.HttpClient;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SitemapSourceTest {
+
+    private HttpServer server;
+    private final Map<String, byte[]> files = new ConcurrentHashMap<>();
+    private final List<String> requested = new ArrayList<>();
+
+    @BeforeEach
+    public void start() throws Exception {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", exchange -> {
+            try (exchange) {
+                String path = exchange.getRequestURI().getPath();
+                synchronized (requested) {
+                    requested.add(path);
+                }
+                byte[] body = files.get(path);
+                exchange.sendResponseHeaders(body == null ? 404 : 200, body == null ? -1 : body.length);
+                if (body != null) {
+                    try (OutputStream out = exchange.getResponseBody()) {
+                        out.write(body);
+                    }
+                }
+            }
+        });
+        server.start();
+    }
+
+    @AfterEach
+    public void stop() {
+        server.stop(0);
+    }
+
+    private String url(String path) {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + path;
+    }
+
+    private void serve(String path, String xml) {
+        files.put(path, xml.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String urlset(String... locs) {
+        StringBuilder xml = new StringBuilder("<urlset xmlns=\"http://www.sitemaps.org/schemas/sitemap/0.9\">");
+        for (String loc : locs) {
+            xml.append("<url><loc>").append(loc).append("</loc></url>");
+        }
+        return xml.append("</urlset>").toString();
+    }
+
+    private static String index(String... locs) {
+        StringBuilder xml = new StringBuilder("<sitemapindex>");
+        for (String loc : locs) {
+            xml.append("<sitemap><loc>").append(loc).append("</loc></sitemap>");
+        }
+        return xml.append("</sitemapindex>").toString();
+    }
+
+    @Test
+    public void testIndexOfPlainAndGzipSitemaps() throws Exception {
+        serve("/index.xml", index(url("/a.xml"), url("/b.xml.gz"), url("/missing.xml"), url("/index.xml")));
+        serve("/a.xml", urlset("https://example.com/1", "https://example.com/2"));
+        files.put("/b.xml.gz", SitemapParserTest.gzip(urlset("https://example.com/3")));
+
+        List<String> urls = new ArrayList<>();
+        try (SitemapSource source = new SitemapSource(HttpClient.newHttpClient(), List.of(url("/index.xml")))) {
+            source.forEachRemaining(urls::add);
+            assertEquals(3, source.getUrls());
+            assertTrue(source.getStats().contains("1 failed"));
+        }
+        assertEquals(List.of("https://example.com/1", "https://example.com/2", "https://example.com/3"), urls);
+        // the index listing itself is not read twice
+        assertEquals(List.of("/index.xml", "/a.xml", "/b.xml.gz", "/missing.xml"), requested);
+    }
+
+    @Test
+    public void testLazy() {
+        serve("/a.xml", urlset("https://example.com/1"));
+        serve("/b.xml", urlset("https://example.com/2"));
+
+        SitemapSource source = new SitemapSource(HttpClient.newHttpClient(), List.of(url("/a.xml"), url("/b.xml")));
+        assertTrue(requested.isEmpty());
+        assertEquals("https://example.com/1", source.next());
+        assertEquals(List.of("/a.xml"), requested);
+        source.close();
+        assertFalse(source.hasNext());
+        assertEquals(List.of("/a.xml"), requested);
+    }
+
+    @Test
+    public void testLocate() {
+        serve("/robots.txt", "User-agent: *\nDisallow:\nSitemap: " + url("/listed.xml") + "\n");
+        RobotsCache robots = new RobotsCache(HttpClient.newHttpClient(), "webcrawler", Duration.ofMinutes(1), 10);
+        assertEquals(List.of(url("/listed.xml")), SitemapSource.locate(robots, List.of(url("/"), url("/page"))));
+
+        files.remove("/robots.txt");
+        robots = new RobotsCache(HttpClient.newHttpClient(), "webcrawler", Duration.ofMinutes(1), 10);
+        assertEquals(List.of(url("/sitemap.xml")), SitemapSource.locate(robots, List.of(url("/page"))));
+    }
+}
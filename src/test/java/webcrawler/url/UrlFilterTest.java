@@ -0,0 +1,88 @@
+package webcrawler.url;
+
+import edu.neu.coe.info6205.util.Config;
+import org.junit.jupiter.api.Test;
+
+import java.io.StringReader;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class UrlFilterTest {
+
+    private final UrlFilter defaults = new UrlFilter(UrlFilterRules.defaults());
+
+    @Test
+    public void testDefaultsMatchOriginalRules() {
+        assertTrue(defaults.accept("https://www.cfainstitute.org/insights/professional-learning"));
+        assertTrue(defaults.accept("https://cfainstitute.org/"));
+        assertTrue(defaults.accept("http://www.CFAINSTITUTE.org/en"));
+
+        assertFalse(defaults.accept("https://www.example.com/insights"));
+        assertFalse(defaults.accept("https://notcfainstitute.org/"));
+        assertFalse(defaults.accept("ftp://www.cfainstitute.org/file"));
+        assertFalse(defaults.accept("https://my.cfainstitute.org/login"));
+        assertFalse(defaults.accept("https://www.cfainstitute.org/search?q=1"));
+        assertFalse(defaults.accept("https://www.cfainstitute.org/page#top"));
+        assertFalse(defaults.accept("https://www.cfainstitute.org/SessionExpired"));
+        assertFalse(defaults.accept("https://www.cfainstitute.org/Create-Account"));
+        assertFalse(defaults.accept("https://www.cfainstitute.org/report.PDF"));
+        assertFalse(defaults.accept("https://www.cfainstitute.org/video/intro.webm"));
+    }
+
+    @Test
+    public void testPathPrefixesAndPatterns() {
+        UrlFilterRules rules = new UrlFilterRules();
+        rules.setAllowedPathPrefixes(List.of("/insights", "/research"));
+        rules.setDeniedPathPrefixes(List.of("/insights/archive"));
+        rules.setDeniedPatterns(List.of("/20[01][0-9]/", "print=\\w+"));
+        UrlFilter filter = new UrlFilter(rules);
+
+        assertTrue(filter.accept("https://any.host/insights/article"));
+        assertTrue(filter.accept("https://any.host/research?id=3"));
+        assertFalse(filter.accept("https://any.host/about"));
+        assertFalse(filter.accept("https://any.host/insights/archive/old"));
+        assertFalse(filter.accept("https://any.host/insights/2015/old"));
+        assertFalse(filter.accept("https://any.host/research?print=yes"));
+        assertTrue(filter.accept("https://any.host/insights/2024/new"));
+    }
+
+    @Test
+    public void testHostRules() {
+        UrlFilterRules rules = new UrlFilterRules();
+        rules.setAllowedHosts(List.of("example.com", "example.org"));
+        rules.setDeniedHostSuffixes(List.of(".internal.example.com"));
+        UrlFilter filter = new UrlFilter(rules);
+
+        assertTrue(filter.accept("https://example.com"));
+        assertTrue(filter.accept("https://user@www.example.org:8443/x"));
+        assertFalse(filter.accept("https://wiki.internal.example.com/"));
+        assertFalse(filter.accept("https://example.com.evil.net/"));
+    }
+
+    @Test
+    public void testRulesFromConfig() throws Exception {
+        Config config = new Config(new StringReader("""
+                [crawlerfilter]
+                allowedHosts =
+                deniedSubstrings = logout
+                allowQuery = true
+                """));
+        UrlFilterRules rules = UrlFilterRules.fromConfig(config);
+        UrlFilter filter = new UrlFilter(rules);
+
+        assertTrue(rules.getAllowedHosts().isEmpty());
+        // keys that are not set keep their defaults
+        assertEquals(UrlFilterRules.defaults().getDeniedExtensions(), rules.getDeniedExtensions());
+        assertTrue(filter.accept("https://www.example.com/search?q=1"));
+        assertTrue(filter.accept("https://www.example.com/account"));
+        assertFalse(filter.accept("https://www.example.com/LogOut"));
+        assertFalse(filter.accept("https://www.example.com/a.pdf"));
+    }
+
+    @Test
+    public void testMissingSectionUsesDefaults() throws Exception {
+        Config config = new Config(new StringReader("[helper]\ninstrument = false\n"));
+        assertEquals(UrlFilterRules.defaults().toString(), UrlFilterRules.fromConfig(config).toString());
+    }
+}
@@ -0,0 +1,78 @@
+package webcrawler.url;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class UrlNormalizerTest {
+
+    private final UrlNormalizer normalizer = new UrlNormalizer();
+
+    @Test
+    public void testCanonicalUrlIsReturnedAsIs() {
+        String url = "https://www.example.com/insights/research?page=2";
+        assertSame(url, normalizer.normalize(url));
+    }
+
+    @Test
+    public void testSchemeHostAndPort() {
+        assertEquals("http://www.example.com/a", normalizer.normalize("HTTP://WWW.Example.COM:80/a"));
+        assertEquals("http://127.0.0.1:8080/a", normalizer.normalize("http://127.0.0.1:8080/a"));
+        assertEquals("https://www.example.com/a", normalizer.normalize("https://www.example.com:443/a"));
+        assertEquals("https://www.example.com:8080/a", normalizer.normalize("https://www.example.com:8080/a"));
+        assertEquals("https://www.example.com/", normalizer.normalize("https://www.example.com."));
+        assertEquals("https://user@www.example.com/", normalizer.normalize("https://user@WWW.example.com"));
+    }
+
+    @Test
+    public void testPath() {
+        assertEquals("https://a.com/", normalizer.normalize("https://a.com"));
+        assertEquals("https://a.com/", normalizer.normalize("https://a.com/"));
+        assertEquals("https://a.com/x/y/", normalizer.normalize("https://a.com//x///y/"));
+        assertEquals("https://a.com/x/z", normalizer.normalize("https://a.com/x/./y/../z"));
+        assertEquals("https://a.com/z", normalizer.normalize("https://a.com/../../z"));
+        assertEquals("https://a.com/~me/%2F", normalizer.normalize("https://a.com/%7eme/%2f"));
+    }
+
+    @Test
+    public void testQueryAndFragment() {
+        assertEquals("https://a.com/x", normalizer.normalize("https://a.com/x#top"));
+        assertEquals("https://a.com/x", normalizer.normalize("https://a.com/x?"));
+        assertEquals("https://a.com/x/?q=1", normalizer.normalize("https://a.com/x/?q=1#frag"));
+        assertEquals("https://a.com/?q=a/../b", normalizer.normalize("https://a.com?q=a/../b"));
+    }
+
+    @Test
+    public void testRemoveTrailingSlash() {
+        UrlNormalizer trimming = new UrlNormalizer(false, true);
+        assertEquals("https://a.com/x/y", trimming.normalize("https://a.com//x///y/"));
+        assertEquals("https://a.com/x?q=1", trimming.normalize("https://a.com/x/?q=1#frag"));
+        // the root path keeps its slash
+        assertEquals("https://a.com/", trimming.normalize("https://a.com/"));
+    }
+
+    @Test
+    public void testUpgradeHttp() {
+        UrlNormalizer upgrading = new UrlNormalizer(true, true);
+        assertEquals("https://www.example.com/a", upgrading.normalize("HTTP://WWW.Example.COM:80/a"));
+        assertEquals("https://user@www.example.com/", upgrading.normalize("http://user@www.example.com"));
+        // an explicit port stays with its scheme
+        assertEquals("http://www.example.com:8080/a", upgrading.normalize("http://www.example.com:8080/a"));
+    }
+
+    @Test
+    public void testOptionsOff() {
+        UrlNormalizer strict = new UrlNormalizer(false, false);
+        assertEquals("http://a.com/x/", strict.normalize("http://A.com:80//x/"));
+        assertEquals("https://a.com/x", strict.normalize("https://a.com/x"));
+    }
+
+    @Test
+    public void testNonHttpUnchanged() {
+        String mail = "mailto:someone@example.com";
+        assertSame(mail, normalizer.normalize(mail));
+        assertSame("", normalizer.normalize(""));
+        String noHost = "https:///path";
+        assertSame(noHost, normalizer.normalize(noHost));
+    }
+}
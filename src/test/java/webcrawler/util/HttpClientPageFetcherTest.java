@@ -0,0 +1,91 @@
+package webcrawler.util;
+
+import org.jsoup.nodes.Document;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class HttpClientPageFetcherTest {
+
+    private static StubHttpServer server;
+    private static ExecutorService executor;
+    private final HttpClientPageFetcher fetcher = new HttpClientPageFetcher();
+
+    @BeforeAll
+    public static void startServer() throws Exception {
+        server = new StubHttpServer(10, 3, 0);
+        executor = Executors.newFixedThreadPool(2);
+    }
+
+    @AfterAll
+    public static void stopServer() {
+        server.close();
+        executor.shutdown();
+    }
+
+    @Test
+    public void testFetch() throws Exception {
+        Document document = fetcher.fetch(server.pageUrl(4));
+
+        assertEquals("Page 4", document.title());
+        assertEquals(3, document.select("a[href]").size());
+        // relative links resolve against the fetched URL
+        assertEquals(server.pageUrl(5), document.select("a[href]").first().attr("abs:href"));
+    }
+
+    @Test
+    public void testFetchAsync() {
+        Document document = fetcher.fetchAsync(server.pageUrl(9), executor).join();
+
+        assertEquals("Page 9", document.title());
+        assertEquals(server.pageUrl(0), document.select("a[href]").first().attr("abs:href"));
+    }
+
+    @Test
+    public void testFetchAsyncNotFound() {
+        CompletionException exception = assertThrows(CompletionException.class,
+                () -> fetcher.fetchAsync(server.pageUrl(10), executor).join());
+        assertTrue(exception.getCause().getMessage().contains("Status=404"));
+    }
+
+    @Test
+    public void testFetchAsyncInvalidUrl() {
+        assertThrows(CompletionException.class, () -> fetcher.fetchAsync("invalid url", executor).join());
+    }
+
+    @Test
+    public void testOpenStream() throws Exception {
+        List<String> links = new ArrayList<>();
+        String[] title = new String[1];
+        try (PageStream page = fetcher.openStream(server.pageUrl(4))) {
+            new StreamingLinkExtractor().extract(page.getBody(), page.getUrl(), new StreamingLinkExtractor.Handler() {
+                @Override
+                public void onTitle(String pageTitle) {
+                    title[0] = pageTitle;
+                }
+
+                @Override
+                public void onLink(String absoluteUrl) {
+                    links.add(absoluteUrl);
+                }
+            });
+        }
+
+        assertEquals("Page 4", title[0]);
+        assertEquals(List.of(server.pageUrl(5), server.pageUrl(6), server.pageUrl(7)), links);
+    }
+
+    @Test
+    public void testOpenStreamNotFound() {
+        Exception exception = assertThrows(Exception.class, () -> fetcher.openStream(server.pageUrl(10)));
+        assertTrue(exception.getMessage().contains("Status=404"));
+    }
+}
@@ -0,0 +1,68 @@
+package webcrawler.util;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ResponseCacheTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    public void testPutAndGet() throws IOException {
+        ResponseCache cache = new ResponseCache(directory, 10);
+        byte[] body = "<html><title>A</title></html>".getBytes(StandardCharsets.UTF_8);
+        ResponseCache.Entry stored = cache.put("https://a.com/", new ResponseCache.Entry("https://a.com/index",
+                "\"v1\"", null, "A", List.of("https://a.com/1"), 42), body);
+
+        assertEquals(64, stored.getContentHash().length());
+        assertEquals(body.length, stored.getBodyLength());
+        assertArrayEquals(body, cache.body(stored));
+        ResponseCache.Entry entry = cache.get("https://a.com/");
+        assertEquals("https://a.com/index", entry.getFinalUrl());
+        assertEquals("\"v1\"", entry.getEtag());
+        assertNull(entry.getLastModified());
+        assertTrue(entry.hasValidator());
+        assertNull(cache.get("https://b.com/"));
+        // read back from the index file
+        assertEquals(42, new ResponseCache(directory, 10).get("https://a.com/").getSimHash());
+    }
+
+    @Test
+    public void testIndexSurvivesEvictionAndRestart() throws IOException {
+        ResponseCache cache = new ResponseCache(directory, 2);
+        for (int i = 0; i < 5; i++) {
+            cache.put("https://a.com/" + i, new ResponseCache.Entry("https://a.com/" + i, null,
+                    "Mon, 01 Jan 2024 00:00:00 GMT", "Page " + i, List.of()), ("body " + i).getBytes(StandardCharsets.UTF_8));
+        }
+        assertEquals(2, cache.indexedInMemory());
+        // evicted from memory, read back from disk
+        assertEquals("Page 0", cache.get("https://a.com/0").getTitle());
+
+        ResponseCache reopened = new ResponseCache(directory, 2);
+        assertEquals("Page 3", reopened.get("https://a.com/3").getTitle());
+        assertEquals("Mon, 01 Jan 2024 00:00:00 GMT", reopened.get("https://a.com/3").getLastModified());
+    }
+
+    @Test
+    public void testIdenticalBodiesStoredOnce() throws IOException {
+        ResponseCache cache = new ResponseCache(directory, 10);
+        byte[] body = "same".getBytes(StandardCharsets.UTF_8);
+        ResponseCache.Entry a = cache.put("https://a.com/", new ResponseCache.Entry("https://a.com/", null, null, "", List.of()), body);
+        ResponseCache.Entry b = cache.put("https://b.com/", new ResponseCache.Entry("https://b.com/", null, null, "", List.of()), body);
+
+        assertEquals(a.getContentHash(), b.getContentHash());
+        try (Stream<Path> files = Files.walk(directory.resolve("bodies"))) {
+            assertEquals(1, files.filter(Files::isRegularFile).count());
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package webcrawler.util;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RevalidatingFetcherTest {
+
+    private static StubHttpServer server;
+
+    @TempDir
+    Path directory;
+
+    @BeforeAll
+    public static void startServer() throws Exception {
+        server = new StubHttpServer(10, 3, 0);
+    }
+
+    @AfterAll
+    public static void stopServer() {
+        server.close();
+    }
+
+    @Test
+    public void testSecondFetchIsNotModified() throws Exception {
+        RevalidatingFetcher fetcher = new RevalidatingFetcher(new ResponseCache(directory, 100));
+        long bodies = server.getBodiesServed();
+
+        RevalidatingFetcher.Page first = fetcher.fetch(server.pageUrl(4));
+        assertFalse(first.isFromCache());
+        assertEquals("Page 4", first.getTitle());
+        assertEquals(3, first.getLinks().size());
+        assertEquals(server.pageUrl(5), first.getLinks().get(0));
+
+        RevalidatingFetcher.Page second = fetcher.fetch(server.pageUrl(4));
+        assertTrue(second.isFromCache());
+        assertEquals(first.getTitle(), second.getTitle());
+        assertEquals(first.getLinks(), second.getLinks());
+        assertNotEquals(0, first.getSimHash());
+        assertEquals(first.getSimHash(), second.getSimHash());
+        assertEquals(bodies + 1, server.getBodiesServed());
+
+        assertEquals(2, fetcher.getRequests());
+        assertEquals(1, fetcher.getNotModified());
+        assertEquals(0.5, fetcher.hitRatio(), 1e-9);
+        assertTrue(fetcher.getBytesSaved() > 0);
+        assertTrue(fetcher.getStats().contains("hit ratio 50.0%"));
+    }
+
+    @Test
+    public void testRecrawlAfterRestart() throws Exception {
+        RevalidatingFetcher firstRun = new RevalidatingFetcher(new ResponseCache(directory, 100));
+        for (int i = 0; i < 10; i++) {
+            firstRun.fetch(server.pageUrl(i));
+        }
+
+        // a new process: empty in-memory index, same directory
+        RevalidatingFetcher secondRun = new RevalidatingFetcher(new ResponseCache(directory, 100));
+        long bodies = server.getBodiesServed();
+        for (int i = 0; i < 10; i++) {
+            assertEquals("Page " + i, secondRun.fetch(server.pageUrl(i)).getTitle());
+        }
+        assertEquals(bodies, server.getBodiesServed());
+        assertEquals(1.0, secondRun.hitRatio(), 1e-9);
+    }
+
+    @Test
+    public void testNotFound() throws Exception {
+        RevalidatingFetcher fetcher = new RevalidatingFetcher(new ResponseCache(directory, 100));
+        Exception exception = assertThrows(Exception.class, () -> fetcher.fetch(server.pageUrl(10)));
+        assertTrue(exception.getMessage().contains("Status=404"));
+    }
+}
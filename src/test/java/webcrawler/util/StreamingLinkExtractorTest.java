@@ -0,0 +1,186 @@
+package webcrawler.util;
+
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+import org.jsoup.nodes.Element;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class StreamingLinkExtractorTest {
+
+    private static final String BASE = "https://example.com/dir/page.html";
+
+    private static final String PAGE = "<!DOCTYPE html>\n"
+            + "<html><head>\n"
+            + "<TITLE>  Tom &amp; Jerry &#169; &hellip;\n  <b>not a tag</b> </TITLE>\n"
+            + "<script>var s = '<a href=\"/script\">'; if (a </b) {}</script>\n"
+            + "<style>a[href] { color: red }</style>\n"
+            + "</head><body>\n"
+            + "<!-- <a href=\"/comment\">hidden</a> -->\n"
+            + "<a href=\"relative.html\">1</a>\n"
+            + "<A HREF='/absolute?x=1&amp;y=2'>2</A>\n"
+            + "<a class=x href=unquoted.html>3</a>\n"
+            + "<a data-href=\"/nope\" href = \" /spaced \" >4</a>\n"
+            + "<a name=anchor>no href</a>\n"
+            + "<area href=\"/area\">\n"
+            + "<abbr href=\"/abbr\">5</abbr>\n"
+            + "<a href=\"https://other.org/x\"/>\n"
+            + "<a href=\"#frag\">6</a>\n"
+            + "<a href=\"/q?a=1&b=2;c&#x41;&#66;&copy;&lt;\">entities</a>\n"
+            + "<a href=\"mailto:someone@example.com\">mail</a>\n"
+            + "<p>1 < 2 and <a\nhref=\"../up.html\">7</a></p>\n"
+            + "</body></html>";
+
+    @Test
+    public void testMatchesJsoup() throws IOException {
+        Result streamed = extract(PAGE, BASE);
+
+        Document document = Jsoup.parse(PAGE, BASE);
+        List<String> expected = new ArrayList<>();
+        for (Element link : document.select("a[href]")) {
+            expected.add(link.attr("abs:href"));
+        }
+
+        assertEquals(document.title(), streamed.title);
+        assertEquals(expected, streamed.links);
+    }
+
+    @Test
+    public void testBaseHref() throws IOException {
+        String html = "<html><head><base href=\"https://cdn.example.org/root/\"><title>t</title></head>"
+                + "<body><a href=\"a.html\">a</a></body></html>";
+
+        Result streamed = extract(html, BASE);
+
+        assertEquals("t", streamed.title);
+        assertEquals(List.of("https://cdn.example.org/root/a.html"), streamed.links);
+        assertEquals(Jsoup.parse(html, BASE).select("a[href]").first().attr("abs:href"), streamed.links.get(0));
+    }
+
+    @Test
+    public void testNoTitle() throws IOException {
+        Result streamed = extract("<a href=/x>x</a>", BASE);
+
+        assertEquals("", streamed.title);
+        assertEquals(List.of("https://example.com/x"), streamed.links);
+    }
+
+    @Test
+    public void testSplitAcrossReads() throws IOException {
+        // a stream that returns one byte per read exercises every state across buffer boundaries
+        byte[] bytes = PAGE.getBytes(StandardCharsets.UTF_8);
+        InputStream oneByteAtATime = new ByteArrayInputStream(bytes) {
+            @Override
+            public synchronized int read(byte[] b, int off, int len) {
+                return super.read(b, off, Math.min(len, 1));
+            }
+        };
+        Result streamed = new Result();
+        new StreamingLinkExtractor().extract(oneByteAtATime, BASE, streamed);
+
+        assertEquals(extract(PAGE, BASE).links, streamed.links);
+    }
+
+    @Test
+    public void testUtf8() throws IOException {
+        Result streamed = extract("<title>Über café</title><a href=\"/wiki/Straße\">s</a>", BASE);
+
+        assertEquals("Über café", streamed.title);
+        assertEquals(List.of("https://example.com/wiki/Straße"), streamed.links);
+    }
+
+    @Test
+    public void testDeclaredCharset() throws IOException {
+        byte[] latin1 = "<title>Über café</title>".getBytes(StandardCharsets.ISO_8859_1);
+        Result fromHeader = new Result();
+        new StreamingLinkExtractor().extract(new ByteArrayInputStream(latin1), BASE, "ISO-8859-1", fromHeader);
+        assertEquals("Über café", fromHeader.title);
+
+        byte[] meta = "<meta charset=\"windows-1252\"><title>Über café</title>".getBytes(StandardCharsets.ISO_8859_1);
+        assertEquals("Über café", extract(new ByteArrayInputStream(meta), null).title);
+
+        byte[] httpEquiv = ("<meta http-equiv=Content-Type content=\"text/html; charset=ISO-8859-1\">"
+                + "<title>Über café</title>").getBytes(StandardCharsets.ISO_8859_1);
+        assertEquals("Über café", extract(new ByteArrayInputStream(httpEquiv), null).title);
+
+        // the header wins over the meta tag
+        byte[] utf8 = "<meta charset=\"ISO-8859-1\"><title>Über café</title>".getBytes(StandardCharsets.UTF_8);
+        assertEquals("Über café", extract(new ByteArrayInputStream(utf8), "UTF-8").title);
+    }
+
+    @Test
+    public void testText() throws IOException {
+        String html = "<html><head><title>skip</title><style>p{}</style></head>"
+                + "<body><p>one <b>two</b></p><!-- no --><script>x</script>three</body></html>";
+        Result streamed = extract(html, BASE);
+        assertEquals(List.of("one ", "two", "three"), streamed.text);
+
+        // runs cut by the read buffer are joined again, words are never split
+        InputStream oneByteAtATime = new ByteArrayInputStream(html.getBytes(StandardCharsets.UTF_8)) {
+            @Override
+            public synchronized int read(byte[] b, int off, int len) {
+                return super.read(b, off, Math.min(len, 1));
+            }
+        };
+        Result split = new Result();
+        new StreamingLinkExtractor().extract(oneByteAtATime, BASE, split);
+        assertEquals(List.of("one ", "two", "three"), split.text);
+    }
+
+    @Test
+    public void testReusable() throws IOException {
+        StreamingLinkExtractor extractor = new StreamingLinkExtractor();
+        Result first = new Result();
+        extractor.extract(stream("<title>first</title><a href=/1>"), BASE, first);
+        Result second = new Result();
+        extractor.extract(stream("<title>second</title><a href=/2>"), BASE, second);
+
+        assertEquals("second", second.title);
+        assertEquals(List.of("https://example.com/2"), second.links);
+    }
+
+    private static Result extract(String html, String base) throws IOException {
+        Result result = new Result();
+        new StreamingLinkExtractor().extract(stream(html), base, result);
+        return result;
+    }
+
+    private static Result extract(InputStream in, String charset) throws IOException {
+        Result result = new Result();
+        new StreamingLinkExtractor().extract(in, BASE, charset, result);
+        return result;
+    }
+
+    private static InputStream stream(String html) {
+        return new ByteArrayInputStream(html.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static class Result implements StreamingLinkExtractor.Handler {
+        private String title;
+        private final List<String> links = new ArrayList<>();
+        private final List<String> text = new ArrayList<>();
+
+        @Override
+        public void onTitle(String title) {
+            this.title = title;
+        }
+
+        @Override
+        public void onLink(String absoluteUrl) {
+            links.add(absoluteUrl);
+        }
+
+        @Override
+        public void onText(byte[] buffer, int start, int length) {
+            text.add(new String(buffer, start, length, StandardCharsets.UTF_8));
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package webcrawler.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SyntheticSiteServerTest {
+
+    @Test
+    public void testSameSeedSameSite() throws Exception {
+        SyntheticSiteServer.Site site = new SyntheticSiteServer.Site().pages(500).latency(0, 0, 0);
+        try (SyntheticSiteServer first = new SyntheticSiteServer(site);
+             SyntheticSiteServer second = new SyntheticSiteServer(site)) {
+            for (int i = 0; i < 500; i++) {
+                assertArrayEquals(first.links(i), second.links(i));
+                assertEquals(first.isFailing(i), second.isFailing(i));
+                assertEquals(first.render(i), second.render(i));
+            }
+        }
+    }
+
+    @Test
+    public void testPowerLawInDegrees() throws Exception {
+        int pages = 5000;
+        try (SyntheticSiteServer server = new SyntheticSiteServer(new SyntheticSiteServer.Site().pages(pages).latency(0, 0, 0))) {
+            int[] inDegree = new int[pages];
+            long edges = 0;
+            for (int i = 0; i < pages; i++) {
+                for (int target : server.links(i)) {
+                    inDegree[target]++;
+                    edges++;
+                }
+            }
+            // mean out-degree near the configured 20
+            assertEquals(20, edges / (double) pages, 3);
+            int[] sorted = inDegree.clone();
+            Arrays.sort(sorted);
+            // hubs collect far more links than the median page
+            assertTrue(sorted[pages - 1] > 50 * Math.max(1, sorted[pages / 2]));
+            assertTrue(inDegree[0] >= sorted[pages - 10]);
+        }
+    }
+
+    @Test
+    public void testServesPagesAndErrors() throws Exception {
+        SyntheticSiteServer.Site site = new SyntheticSiteServer.Site().pages(200).bodyBytes(4096)
+                .latency(1000, 0, 0).errorRate(0.2);
+        try (SyntheticSiteServer server = new SyntheticSiteServer(site)) {
+            HttpClient client = HttpClient.newHttpClient();
+            int failing = 0;
+            for (int i = 0; i < 200; i++) {
+                HttpResponse<String> response = client.send(HttpRequest.newBuilder(URI.create(server.pageUrl(i))).build(),
+                        HttpResponse.BodyHandlers.ofString());
+                if (server.isFailing(i)) {
+                    failing++;
+                    assertEquals(500, response.statusCode());
+                } else {
+                    assertEquals(200, response.statusCode());
+                    assertTrue(response.body().contains("<title>Synthetic page " + i + "</title>"));
+                    assertTrue(response.body().contains("href=\"/p/" + server.links(i)[0] + "\""));
+                }
+            }
+            assertFalse(server.isFailing(0));
+            assertTrue(failing > 20 && failing < 60, "failing " + failing);
+            assertEquals(failing, server.getErrorsServed());
+            assertEquals(200 - failing, server.getPagesServed());
+            assertEquals(4096, server.getBytesServed() / (double) server.getPagesServed(), 1024);
+        }
+    }
+
+    @Test
+    public void testBenchmarkRunProducesJson() throws Exception {
+        SyntheticSiteServer.Site site = new SyntheticSiteServer.Site().pages(300).latency(1000, 500, 0).errorRate(0.05);
+        try (SyntheticSiteServer server = new SyntheticSiteServer(site)) {
+            List<SyntheticCrawlBenchmark.Result> results = SyntheticCrawlBenchmark.runGrid(server, new int[]{4}, new int[]{2});
+            assertEquals(1, results.size());
+            SyntheticCrawlBenchmark.Result result = results.get(0);
+            assertTrue(result.getPages() > 10);
+            assertEquals(server.getPagesServed(), result.getPages());
+            assertEquals(server.getErrorsServed(), result.getFailed());
+            assertTrue(result.getPagesPerSecond() > 0);
+            assertTrue(result.getLatencyMillis(0.99) >= result.getLatencyMillis(0.5));
+            assertTrue(result.getPeakHeapBytes() > 0);
+            String json = result.toJson();
+            assertTrue(json.startsWith("{\"benchmark\":\"synthetic-crawl\""));
+            assertTrue(json.contains("\"threads\":4,\"depth\":2,\"finished\":true"));
+            assertTrue(json.contains("\"site\":{\"pages\":300"));
+        }
+    }
+}